@@ -0,0 +1,381 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.processor;
+
+import com.google.auto.service.AutoService;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates direct member accessors for classes that are converted by Firestore's {@code
+ * CustomClassMapper}.
+ *
+ * <p>Code is generated for every class that declares a field or method annotated with
+ * {@code @DocumentId} or {@code @PropertyName}. For a class {@code Foo}, the processor emits
+ * {@code Foo_FirestoreMapper} in the same package:
+ *
+ * <pre>{@code
+ * public final class Foo_FirestoreMapper implements GeneratedBeanMapper<Foo> {
+ *   private static final Map<String, Getter<Foo>> GETTERS;
+ *   private static final Map<String, Setter<Foo>> SETTERS;
+ *
+ *   static {
+ *     Map<String, Getter<Foo>> getters = new HashMap<>();
+ *     getters.put("getName()", object -> object.getName());
+ *     ...
+ *   }
+ *
+ *   public Foo newInstance() { return new Foo(); }
+ *   ...
+ * }
+ * }</pre>
+ *
+ * <p>Only members that are accessible from the generated class get an accessor; the runtime falls
+ * back to reflection for the rest. Generic classes, inner (non-static) classes and private classes
+ * are skipped entirely.
+ */
+@AutoService(Processor.class)
+@SupportedAnnotationTypes({
+  BeanMapperProcessor.DOCUMENT_ID_ANNOTATION,
+  BeanMapperProcessor.PROPERTY_NAME_ANNOTATION
+})
+public class BeanMapperProcessor extends AbstractProcessor {
+  static final String DOCUMENT_ID_ANNOTATION = "com.google.firebase.firestore.DocumentId";
+  static final String PROPERTY_NAME_ANNOTATION = "com.google.firebase.firestore.PropertyName";
+
+  private static final String CLASS_NAME_SUFFIX = "_FirestoreMapper";
+  private static final ClassName GENERATED_BEAN_MAPPER =
+      ClassName.get("com.google.firebase.firestore.util", "GeneratedBeanMapper");
+  private static final ClassName GETTER = GENERATED_BEAN_MAPPER.nestedClass("Getter");
+  private static final ClassName SETTER = GENERATED_BEAN_MAPPER.nestedClass("Setter");
+
+  private Elements elements;
+  private Types types;
+
+  // Classes for which code has already been generated, by qualified name.
+  private final Set<String> processed = new LinkedHashSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnvironment) {
+    super.init(processingEnvironment);
+    elements = processingEnvironment.getElementUtils();
+    types = processingEnvironment.getTypeUtils();
+  }
+
+  @Override
+  public boolean process(
+      Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+    Set<TypeElement> beans = new LinkedHashSet<>();
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnvironment.getElementsAnnotatedWith(annotation)) {
+        Element enclosingElement = element.getEnclosingElement();
+        // Enum constants can be annotated with @PropertyName too, but enums are not beans.
+        if (enclosingElement.getKind() == ElementKind.CLASS) {
+          beans.add((TypeElement) enclosingElement);
+        }
+      }
+    }
+    for (TypeElement bean : beans) {
+      if (processed.add(bean.getQualifiedName().toString()) && canGenerate(bean)) {
+        generate(bean);
+      }
+    }
+    return false;
+  }
+
+  /** Returns whether the generated class can refer to {@code bean}. */
+  private static boolean canGenerate(TypeElement bean) {
+    if (!bean.getTypeParameters().isEmpty()) {
+      return false;
+    }
+    Element element = bean;
+    while (element instanceof TypeElement) {
+      TypeElement type = (TypeElement) element;
+      if (type.getModifiers().contains(Modifier.PRIVATE)) {
+        return false;
+      }
+      if (type.getNestingKind() == NestingKind.MEMBER
+          && !type.getModifiers().contains(Modifier.STATIC)
+          && type.getEnclosingElement().getKind() != ElementKind.INTERFACE) {
+        return false;
+      }
+      if (type.getNestingKind() == NestingKind.LOCAL
+          || type.getNestingKind() == NestingKind.ANONYMOUS) {
+        return false;
+      }
+      element = type.getEnclosingElement();
+    }
+    return true;
+  }
+
+  private void generate(TypeElement bean) {
+    String packageName = elements.getPackageOf(bean).getQualifiedName().toString();
+    ClassName beanName = ClassName.get(bean);
+    ClassName className = ClassName.get(packageName, generatedSimpleName(bean));
+    TypeName getterType = ParameterizedTypeName.get(GETTER, beanName);
+    TypeName setterType = ParameterizedTypeName.get(SETTER, beanName);
+    TypeName gettersType =
+        ParameterizedTypeName.get(
+            ClassName.get(Map.class), ClassName.get(String.class), getterType);
+    TypeName settersType =
+        ParameterizedTypeName.get(
+            ClassName.get(Map.class), ClassName.get(String.class), setterType);
+
+    CodeBlock.Builder getters = CodeBlock.builder();
+    CodeBlock.Builder setters = CodeBlock.builder();
+    DeclaredType beanType = (DeclaredType) bean.asType();
+
+    for (VariableElement field : ElementFilter.fieldsIn(bean.getEnclosedElements())) {
+      Set<Modifier> modifiers = field.getModifiers();
+      if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)) {
+        continue;
+      }
+      String name = field.getSimpleName().toString();
+      TypeMirror fieldType = types.erasure(field.asType());
+      getters.addStatement("getters.put($S, object -> object.$N)", name, name);
+      if (!modifiers.contains(Modifier.FINAL) && isAccessible(fieldType, packageName)) {
+        setters.addStatement(
+            "setters.put($S, (object, value) -> object.$N = ($T) value)",
+            name,
+            name,
+            TypeName.get(fieldType));
+      }
+    }
+
+    for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(bean))) {
+      Set<Modifier> modifiers = method.getModifiers();
+      TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+      if (!modifiers.contains(Modifier.PUBLIC)
+          || modifiers.contains(Modifier.STATIC)
+          || declaringType.getQualifiedName().contentEquals("java.lang.Object")
+          || throwsCheckedExceptions(method)) {
+        continue;
+      }
+      String name = method.getSimpleName().toString();
+      ExecutableType memberType = (ExecutableType) types.asMemberOf(beanType, method);
+      if ((name.startsWith("get") || name.startsWith("is"))
+          && method.getParameters().isEmpty()
+          && method.getReturnType().getKind() != TypeKind.VOID) {
+        getters.addStatement("getters.put($S, object -> object.$N())", name + "()", name);
+      } else if (name.startsWith("set")
+          && method.getParameters().size() == 1
+          && method.getReturnType().getKind() == TypeKind.VOID) {
+        // The key uses the parameter type of the declaration, which is what reflection reports,
+        // while the cast uses the parameter type as seen from the bean.
+        String parameterName = binaryName(types.erasure(method.getParameters().get(0).asType()));
+        TypeMirror parameterType = types.erasure(memberType.getParameterTypes().get(0));
+        if (parameterName == null || !isAccessible(parameterType, packageName)) {
+          continue;
+        }
+        setters.addStatement(
+            "setters.put($S, (object, value) -> object.$N(($T) value))",
+            name + "(" + parameterName + ")",
+            name,
+            TypeName.get(parameterType));
+      }
+    }
+
+    MethodSpec.Builder newInstance =
+        MethodSpec.methodBuilder("newInstance")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(beanName);
+    if (hasAccessibleNoArgConstructor(bean)) {
+      newInstance.addStatement("return new $T()", beanName);
+    } else {
+      newInstance.addStatement("return null");
+    }
+
+    TypeSpec mapper =
+        TypeSpec.classBuilder(className)
+            .addJavadoc("Generated by {@link $T}. Do not edit.\n", BeanMapperProcessor.class)
+            .addOriginatingElement(bean)
+            // The accessor interface is internal to the Firestore library.
+            .addAnnotation(
+                AnnotationSpec.builder(ClassName.get("android.annotation", "SuppressLint"))
+                    .addMember("value", "$S", "RestrictedApi")
+                    .build())
+            // Casts to erased parameter types are unchecked.
+            .addAnnotation(
+                AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember("value", "{$S, $S}", "unchecked", "rawtypes")
+                    .build())
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addSuperinterface(ParameterizedTypeName.get(GENERATED_BEAN_MAPPER, beanName))
+            .addField(
+                FieldSpec.builder(gettersType, "GETTERS", Modifier.PRIVATE, Modifier.STATIC)
+                    .addModifiers(Modifier.FINAL)
+                    .build())
+            .addField(
+                FieldSpec.builder(settersType, "SETTERS", Modifier.PRIVATE, Modifier.STATIC)
+                    .addModifiers(Modifier.FINAL)
+                    .build())
+            .addStaticBlock(
+                CodeBlock.builder()
+                    .addStatement("$T getters = new $T<>()", gettersType, HashMap.class)
+                    .add(getters.build())
+                    .addStatement("GETTERS = $T.unmodifiableMap(getters)", Collections.class)
+                    .addStatement("$T setters = new $T<>()", settersType, HashMap.class)
+                    .add(setters.build())
+                    .addStatement("SETTERS = $T.unmodifiableMap(setters)", Collections.class)
+                    .build())
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC).build())
+            .addMethod(newInstance.build())
+            .addMethod(
+                MethodSpec.methodBuilder("getters")
+                    .addAnnotation(Override.class)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(gettersType)
+                    .addStatement("return GETTERS")
+                    .build())
+            .addMethod(
+                MethodSpec.methodBuilder("setters")
+                    .addAnnotation(Override.class)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(settersType)
+                    .addStatement("return SETTERS")
+                    .build())
+            .build();
+
+    try {
+      JavaFile.builder(packageName, mapper).build().writeTo(processingEnv.getFiler());
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR, "Could not generate " + className + ": " + e.getMessage());
+    }
+  }
+
+  private static boolean hasAccessibleNoArgConstructor(TypeElement bean) {
+    if (bean.getModifiers().contains(Modifier.ABSTRACT)) {
+      return false;
+    }
+    for (ExecutableElement constructor :
+        ElementFilter.constructorsIn(bean.getEnclosedElements())) {
+      if (constructor.getParameters().isEmpty()) {
+        return !constructor.getModifiers().contains(Modifier.PRIVATE);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether code in {@code packageName} can name the erased type {@code type}, which is
+   * required to cast values to it.
+   */
+  private boolean isAccessible(TypeMirror type, String packageName) {
+    switch (type.getKind()) {
+      case ARRAY:
+        return isAccessible(((ArrayType) type).getComponentType(), packageName);
+      case DECLARED:
+        Element element = types.asElement(type);
+        while (element instanceof TypeElement) {
+          Set<Modifier> modifiers = element.getModifiers();
+          if (modifiers.contains(Modifier.PRIVATE)
+              || (!modifiers.contains(Modifier.PUBLIC) && !isInPackage(element, packageName))) {
+            return false;
+          }
+          element = element.getEnclosingElement();
+        }
+        return true;
+      default:
+        return type.getKind().isPrimitive();
+    }
+  }
+
+  private boolean isInPackage(Element element, String packageName) {
+    return elements.getPackageOf(element).getQualifiedName().contentEquals(packageName);
+  }
+
+  /** Returns whether calling {@code method} from a lambda can throw checked exceptions. */
+  private boolean throwsCheckedExceptions(ExecutableElement method) {
+    TypeMirror runtimeException = elements.getTypeElement("java.lang.RuntimeException").asType();
+    TypeMirror error = elements.getTypeElement("java.lang.Error").asType();
+    for (TypeMirror thrownType : method.getThrownTypes()) {
+      if (!types.isAssignable(thrownType, runtimeException)
+          && !types.isAssignable(thrownType, error)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the name that {@code Class.getName()} reports for the erased type {@code type}, or
+   * {@code null} for types that are not matched by name, such as arrays.
+   */
+  private String binaryName(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return type.toString();
+    } else if (type.getKind() == TypeKind.DECLARED) {
+      return elements.getBinaryName((TypeElement) types.asElement(type)).toString();
+    }
+    return null;
+  }
+
+  /** Returns {@code Outer_Inner_FirestoreMapper} for a class {@code Outer.Inner}. */
+  private static String generatedSimpleName(TypeElement bean) {
+    StringBuilder sb = new StringBuilder(bean.getSimpleName().toString());
+    Element enclosingElement = bean.getEnclosingElement();
+    while (!(enclosingElement instanceof PackageElement)) {
+      sb.insert(0, '_');
+      sb.insert(0, enclosingElement.getSimpleName().toString());
+      enclosingElement = enclosingElement.getEnclosingElement();
+    }
+    return sb.append(CLASS_NAME_SUFFIX).toString();
+  }
+}
@@ -0,0 +1,168 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.processor;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static org.junit.Assert.assertTrue;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BeanMapperProcessorTest {
+  // Stand-ins for the Firestore classes that annotated beans and generated code refer to.
+  private static final JavaFileObject DOCUMENT_ID =
+      JavaFileObjects.forSourceLines(
+          "com.google.firebase.firestore.DocumentId",
+          "package com.google.firebase.firestore;",
+          "public @interface DocumentId {}");
+  private static final JavaFileObject PROPERTY_NAME =
+      JavaFileObjects.forSourceLines(
+          "com.google.firebase.firestore.PropertyName",
+          "package com.google.firebase.firestore;",
+          "public @interface PropertyName { String value(); }");
+  private static final JavaFileObject SUPPRESS_LINT =
+      JavaFileObjects.forSourceLines(
+          "android.annotation.SuppressLint",
+          "package android.annotation;",
+          "public @interface SuppressLint { String[] value(); }");
+  private static final JavaFileObject GENERATED_BEAN_MAPPER =
+      JavaFileObjects.forSourceLines(
+          "com.google.firebase.firestore.util.GeneratedBeanMapper",
+          "package com.google.firebase.firestore.util;",
+          "import java.util.Map;",
+          "public interface GeneratedBeanMapper<T> {",
+          "  interface Getter<T> { Object get(T object); }",
+          "  interface Setter<T> { void set(T object, Object value); }",
+          "  T newInstance();",
+          "  Map<String, Getter<T>> getters();",
+          "  Map<String, Setter<T>> setters();",
+          "}");
+
+  @Test
+  public void testGeneratesAccessorsForAnnotatedBean() {
+    Compilation result =
+        compile(
+            JavaFileObjects.forSourceLines(
+                "com.example.City",
+                "package com.example;",
+                "import com.google.firebase.firestore.DocumentId;",
+                "import com.google.firebase.firestore.PropertyName;",
+                "import java.util.List;",
+                "public class City {",
+                "  @DocumentId public String id;",
+                "  public long population;",
+                "  public final int zip = 0;",
+                "  private String secret;",
+                "  private List<String> tags;",
+                "  @PropertyName(\"full_name\") public String getName() { return null; }",
+                "  public void setName(String name) {}",
+                "  public List<String> getTags() { return tags; }",
+                "  public void setTags(List<String> tags) { this.tags = tags; }",
+                "  public boolean isCapital() { return false; }",
+                "  public static void setDefault(City city) {}",
+                "}"));
+
+    assertThat(result).succeededWithoutWarnings();
+    assertThat(result)
+        .generatedSourceFile("com/example/City_FirestoreMapper")
+        .contentsAsUtf8String()
+        .contains("return new City();");
+    String[] expectedFragments = {
+      "getters.put(\"id\", object -> object.id);",
+      "object.id = (String) value",
+      "getters.put(\"population\", object -> object.population);",
+      "object.population = (long) value",
+      "getters.put(\"zip\", object -> object.zip);",
+      "getters.put(\"getName()\", object -> object.getName());",
+      "\"setName(java.lang.String)\"",
+      "object.setName((String) value)",
+      "getters.put(\"getTags()\", object -> object.getTags());",
+      "\"setTags(java.util.List)\"",
+      "object.setTags((List) value)",
+      "getters.put(\"isCapital()\", object -> object.isCapital());"
+    };
+    for (String fragment : expectedFragments) {
+      assertThat(result)
+          .generatedSourceFile("com/example/City_FirestoreMapper")
+          .contentsAsUtf8String()
+          .contains(fragment);
+    }
+    assertThat(result)
+        .generatedSourceFile("com/example/City_FirestoreMapper")
+        .contentsAsUtf8String()
+        .doesNotContain("zip = ");
+  }
+
+  @Test
+  public void testSkipsInaccessibleMembers() {
+    Compilation result =
+        compile(
+            JavaFileObjects.forSourceLines(
+                "com.example.Holder",
+                "package com.example;",
+                "import com.google.firebase.firestore.DocumentId;",
+                "public class Holder {",
+                "  public static class Item {",
+                "    @DocumentId private String id;",
+                "    private Item() {}",
+                "    public String getHidden() throws Exception { return null; }",
+                "  }",
+                "}"));
+
+    assertThat(result).succeededWithoutWarnings();
+    String generated = "com/example/Holder_Item_FirestoreMapper";
+    assertThat(result)
+        .generatedSourceFile(generated)
+        .contentsAsUtf8String()
+        .contains("return null;");
+    assertThat(result)
+        .generatedSourceFile(generated)
+        .contentsAsUtf8String()
+        .doesNotContain("object.id");
+    assertThat(result)
+        .generatedSourceFile(generated)
+        .contentsAsUtf8String()
+        .doesNotContain("getHidden");
+  }
+
+  @Test
+  public void testSkipsGenericAndInnerClasses() {
+    Compilation result =
+        compile(
+            JavaFileObjects.forSourceLines(
+                "com.example.Outer",
+                "package com.example;",
+                "import com.google.firebase.firestore.DocumentId;",
+                "public class Outer {",
+                "  public static class Generic<T> { @DocumentId public String id; }",
+                "  public class Inner { @DocumentId public String id; }",
+                "}"));
+
+    assertThat(result).succeededWithoutWarnings();
+    assertTrue(result.generatedSourceFiles().isEmpty());
+  }
+
+  private static Compilation compile(JavaFileObject source) {
+    return javac()
+        .withProcessors(new BeanMapperProcessor())
+        .compile(DOCUMENT_ID, PROPERTY_NAME, SUPPRESS_LINT, GENERATED_BEAN_MAPPER, source);
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.benchmark;
+
+import static com.google.firebase.firestore.testutil.TestUtil.doc;
+import static com.google.firebase.firestore.testutil.TestUtil.map;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.firebase.firestore.local.LocalSerializer;
+import com.google.firebase.firestore.local.LruGarbageCollector;
+import com.google.firebase.firestore.local.MemoryPersistence;
+import com.google.firebase.firestore.local.Persistence;
+import com.google.firebase.firestore.local.SQLitePersistence;
+import com.google.firebase.firestore.model.DatabaseId;
+import com.google.firebase.firestore.model.MutableDocument;
+import com.google.firebase.firestore.remote.RemoteSerializer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/** Generates the persistence layers and documents that the microbenchmarks operate on. */
+public final class BenchmarkData {
+  /** The value of a {@code persistence} benchmark parameter that selects MemoryPersistence. */
+  public static final String MEMORY = "memory";
+
+  /** The value of a {@code persistence} benchmark parameter that selects SQLitePersistence. */
+  public static final String SQLITE = "sqlite";
+
+  public static final DatabaseId DATABASE_ID = DatabaseId.forProject("benchmark-project");
+
+  private static int databaseNameCounter = 0;
+
+  private BenchmarkData() {}
+
+  public static LocalSerializer serializer() {
+    return new LocalSerializer(new RemoteSerializer(DATABASE_ID));
+  }
+
+  /** Creates and starts a new, empty persistence layer of the given type. */
+  public static Persistence createPersistence(String type) {
+    Persistence persistence;
+    switch (type) {
+      case MEMORY:
+        persistence = MemoryPersistence.createEagerGcMemoryPersistence();
+        break;
+      case SQLITE:
+        Context context = ApplicationProvider.getApplicationContext();
+        persistence =
+            new SQLitePersistence(
+                context,
+                "benchmark-" + databaseNameCounter++,
+                DATABASE_ID,
+                serializer(),
+                LruGarbageCollector.Params.Default());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown persistence type: " + type);
+    }
+    persistence.start();
+    return persistence;
+  }
+
+  /**
+   * Generates {@code count} documents in {@code collection}.
+   *
+   * <p>Every document has a numeric {@code sort} field that is unique within the collection, a
+   * {@code name} and a {@code tags} array, followed by {@code fieldCount} nested map fields that
+   * determine the size of the document. The contents only depend on the arguments, so repeated
+   * runs operate on the same data.
+   */
+  public static List<MutableDocument> documents(
+      String collection, int count, int fieldCount, long version) {
+    Random random = new Random(count * 31L + fieldCount);
+    List<MutableDocument> documents = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      Map<String, Object> data = new HashMap<>();
+      data.put("sort", i);
+      data.put("name", "document-" + i);
+      data.put("tags", Arrays.asList("tag" + (i % 10), "tag" + (i % 7), "tag" + (i % 3)));
+      for (int j = 0; j < fieldCount; ++j) {
+        data.put("field" + j, map("value", randomString(random, 16), "count", random.nextInt()));
+      }
+      documents.add(doc(String.format("%s/doc%08d", collection, i), version, data));
+    }
+    return documents;
+  }
+
+  private static String randomString(Random random, int length) {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; ++i) {
+      builder.append((char) ('a' + random.nextInt(26)));
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,61 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.benchmark;
+
+import static org.junit.Assert.assertFalse;
+
+import java.util.Collection;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Runs the JMH benchmarks of this module.
+ *
+ * <p>The benchmarks depend on Android classes that only exist inside Robolectric's sandbox, so
+ * they are run in-process ({@code forks(0)}) from a Robolectric test rather than in a forked JVM.
+ * This makes individual runs noisier than a forked JMH run; compare results of the same machine
+ * and prefer relative over absolute numbers.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class BenchmarkRunnerTest {
+  @Test
+  public void runBenchmarks() throws RunnerException {
+    Options options =
+        new OptionsBuilder()
+            .include(System.getProperty("benchmark.include", ".*Benchmark.*"))
+            .forks(0)
+            .warmupIterations(3)
+            .warmupTime(TimeValue.seconds(1))
+            .measurementIterations(5)
+            .measurementTime(TimeValue.seconds(1))
+            .resultFormat(ResultFormatType.JSON)
+            .result(System.getProperty("benchmark.results", "benchmark-results.json"))
+            .build();
+
+    Collection<RunResult> results = new Runner(options).run();
+
+    assertFalse("No benchmarks matched the include pattern", results.isEmpty());
+  }
+}
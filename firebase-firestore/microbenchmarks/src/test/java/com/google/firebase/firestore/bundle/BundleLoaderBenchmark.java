@@ -0,0 +1,107 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.bundle;
+
+import static com.google.firebase.firestore.testutil.TestUtil.version;
+
+import com.google.firebase.database.collection.ImmutableSortedMap;
+import com.google.firebase.firestore.auth.User;
+import com.google.firebase.firestore.benchmark.BenchmarkData;
+import com.google.firebase.firestore.local.LocalSerializer;
+import com.google.firebase.firestore.local.LocalStore;
+import com.google.firebase.firestore.local.Persistence;
+import com.google.firebase.firestore.local.QueryEngine;
+import com.google.firebase.firestore.model.Document;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.MutableDocument;
+import com.google.firebase.firestore.model.SnapshotVersion;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks loading a bundle into a {@link LocalStore}, from the decoded bundle elements to the
+ * saved documents and bundle metadata.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BundleLoaderBenchmark {
+  private static final SnapshotVersion READ_TIME = version(1000);
+
+  @Param({BenchmarkData.MEMORY, BenchmarkData.SQLITE})
+  public String persistenceType;
+
+  @Param({"10", "1000"})
+  public int documentCount;
+
+  @Param({"1", "20"})
+  public int fieldCount;
+
+  private Persistence persistence;
+  private LocalStore localStore;
+  private List<MutableDocument> documents;
+  private long[] documentSizes;
+
+  @Setup
+  public void setUp() {
+    persistence = BenchmarkData.createPersistence(persistenceType);
+    localStore = new LocalStore(persistence, null, new QueryEngine(), User.UNAUTHENTICATED);
+    localStore.start();
+
+    documents = BenchmarkData.documents("coll", documentCount, fieldCount, /* version= */ 1);
+    LocalSerializer serializer = BenchmarkData.serializer();
+    documentSizes = new long[documents.size()];
+    for (int i = 0; i < documentSizes.length; ++i) {
+      documentSizes[i] = serializer.encodeMaybeDocument(documents.get(i)).getSerializedSize();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    persistence.shutdown();
+  }
+
+  @Benchmark
+  public ImmutableSortedMap<DocumentKey, Document> loadBundle() {
+    long totalBytes = 0;
+    for (long size : documentSizes) {
+      totalBytes += size;
+    }
+    BundleLoader loader =
+        new BundleLoader(
+            localStore,
+            new BundleMetadata(
+                "benchmark-bundle", /* schemaVersion= */ 1, READ_TIME, documentCount, totalBytes));
+    for (int i = 0; i < documents.size(); ++i) {
+      MutableDocument document = documents.get(i);
+      loader.addElement(
+          new BundledDocumentMetadata(
+              document.getKey(), READ_TIME, /* exists= */ true, Collections.emptyList()),
+          /* byteSize= */ 0);
+      loader.addElement(new BundleDocument(document.mutableCopy()), documentSizes[i]);
+    }
+    return loader.applyChanges();
+  }
+}
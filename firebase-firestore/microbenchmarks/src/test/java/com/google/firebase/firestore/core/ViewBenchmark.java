@@ -0,0 +1,84 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.core;
+
+import static com.google.firebase.firestore.model.DocumentCollections.emptyDocumentMap;
+import static com.google.firebase.firestore.testutil.TestUtil.filter;
+import static com.google.firebase.firestore.testutil.TestUtil.orderBy;
+import static com.google.firebase.firestore.testutil.TestUtil.query;
+
+import com.google.firebase.database.collection.ImmutableSortedMap;
+import com.google.firebase.database.collection.ImmutableSortedSet;
+import com.google.firebase.firestore.benchmark.BenchmarkData;
+import com.google.firebase.firestore.model.Document;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.MutableDocument;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks {@link View#computeDocChanges} for the initial snapshot and for updates. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ViewBenchmark {
+  @Param({"10", "1000"})
+  public int documentCount;
+
+  @Param({"1", "20"})
+  public int fieldCount;
+
+  private Query query;
+  private ImmutableSortedSet<DocumentKey> remoteKeys;
+  private ImmutableSortedMap<DocumentKey, Document> initialDocuments;
+  private ImmutableSortedMap<DocumentKey, Document> updatedDocuments;
+  private View populatedView;
+
+  @Setup
+  public void setUp() {
+    query = query("coll").filter(filter("sort", ">=", 0)).orderBy(orderBy("name"));
+    remoteKeys = new ImmutableSortedSet<>(Collections.emptyList(), DocumentKey::compareTo);
+    initialDocuments = toDocumentMap(documentCount, /* version= */ 1);
+    updatedDocuments = toDocumentMap(documentCount, /* version= */ 2);
+
+    populatedView = new View(query, remoteKeys);
+    populatedView.applyChanges(populatedView.computeDocChanges(initialDocuments));
+  }
+
+  @Benchmark
+  public View.DocumentChanges initialSnapshot() {
+    return new View(query, remoteKeys).computeDocChanges(initialDocuments);
+  }
+
+  @Benchmark
+  public View.DocumentChanges update() {
+    return populatedView.computeDocChanges(updatedDocuments);
+  }
+
+  private ImmutableSortedMap<DocumentKey, Document> toDocumentMap(int count, long version) {
+    ImmutableSortedMap<DocumentKey, Document> documents = emptyDocumentMap();
+    for (MutableDocument document : BenchmarkData.documents("coll", count, fieldCount, version)) {
+      documents = documents.insert(document.getKey(), document);
+    }
+    return documents;
+  }
+}
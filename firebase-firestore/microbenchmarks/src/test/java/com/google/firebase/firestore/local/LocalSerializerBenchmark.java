@@ -0,0 +1,87 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import com.google.firebase.firestore.benchmark.BenchmarkData;
+import com.google.firebase.firestore.model.FieldPath;
+import com.google.firebase.firestore.model.MutableDocument;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the conversion of documents to and from the bytes stored in the remote document
+ * cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocalSerializerBenchmark {
+  @Param({"10", "1000"})
+  public int documentCount;
+
+  @Param({"1", "20"})
+  public int fieldCount;
+
+  private LocalSerializer serializer;
+  private List<MutableDocument> documents;
+  private byte[][] encodedDocuments;
+
+  @Setup
+  public void setUp() {
+    serializer = BenchmarkData.serializer();
+    documents = BenchmarkData.documents("coll", documentCount, fieldCount, /* version= */ 1);
+    encodedDocuments = new byte[documents.size()][];
+    for (int i = 0; i < encodedDocuments.length; ++i) {
+      encodedDocuments[i] = serializer.encodeMaybeDocument(documents.get(i)).toByteArray();
+    }
+  }
+
+  @Benchmark
+  public int encode() {
+    int size = 0;
+    for (MutableDocument document : documents) {
+      size += serializer.encodeMaybeDocument(document).getSerializedSize();
+    }
+    return size;
+  }
+
+  /** Decodes the documents, which only parses the document envelope. */
+  @Benchmark
+  public int decode() {
+    int hash = 0;
+    for (byte[] bytes : encodedDocuments) {
+      hash += serializer.decodeMaybeDocument(bytes).getKey().hashCode();
+    }
+    return hash;
+  }
+
+  /** Decodes the documents and reads all of their fields. */
+  @Benchmark
+  public int decodeAndReadFields() {
+    int hash = 0;
+    for (byte[] bytes : encodedDocuments) {
+      hash += serializer.decodeMaybeDocument(bytes).getData().get(FieldPath.EMPTY_PATH).hashCode();
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import static com.google.firebase.firestore.testutil.TestUtil.filter;
+import static com.google.firebase.firestore.testutil.TestUtil.orderBy;
+import static com.google.firebase.firestore.testutil.TestUtil.query;
+
+import com.google.firebase.database.collection.ImmutableSortedMap;
+import com.google.firebase.database.collection.ImmutableSortedSet;
+import com.google.firebase.firestore.auth.User;
+import com.google.firebase.firestore.benchmark.BenchmarkData;
+import com.google.firebase.firestore.core.Query;
+import com.google.firebase.firestore.model.Document;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.MutableDocument;
+import com.google.firebase.firestore.model.SnapshotVersion;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks {@link QueryEngine#getDocumentsMatchingQuery} for queries without a previous result,
+ * which scan the whole collection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryEngineBenchmark {
+  @Param({BenchmarkData.MEMORY, BenchmarkData.SQLITE})
+  public String persistenceType;
+
+  @Param({"10", "1000"})
+  public int documentCount;
+
+  @Param({"1", "20"})
+  public int fieldCount;
+
+  private Persistence persistence;
+  private QueryEngine queryEngine;
+  private ImmutableSortedSet<DocumentKey> remoteKeys;
+  private Query filteredQuery;
+  private Query limitQuery;
+
+  @Setup
+  public void setUp() {
+    persistence = BenchmarkData.createPersistence(persistenceType);
+
+    IndexManager indexManager = persistence.getIndexManager(User.UNAUTHENTICATED);
+    MutationQueue mutationQueue = persistence.getMutationQueue(User.UNAUTHENTICATED, indexManager);
+    DocumentOverlayCache documentOverlayCache =
+        persistence.getDocumentOverlay(User.UNAUTHENTICATED);
+    RemoteDocumentCache remoteDocumentCache = persistence.getRemoteDocumentCache();
+
+    indexManager.start();
+    mutationQueue.start();
+    remoteDocumentCache.setIndexManager(indexManager);
+
+    persistence.runTransaction(
+        "Add benchmark documents",
+        () -> {
+          for (MutableDocument document :
+              BenchmarkData.documents("coll", documentCount, fieldCount, /* version= */ 1)) {
+            remoteDocumentCache.add(document, document.getVersion());
+          }
+        });
+
+    queryEngine = new QueryEngine();
+    queryEngine.initialize(
+        new LocalDocumentsView(
+            remoteDocumentCache, mutationQueue, documentOverlayCache, indexManager),
+        indexManager);
+
+    remoteKeys = new ImmutableSortedSet<>(Collections.emptyList(), DocumentKey::compareTo);
+    filteredQuery =
+        query("coll").filter(filter("sort", ">=", documentCount / 2)).orderBy(orderBy("sort"));
+    limitQuery = query("coll").orderBy(orderBy("sort", "desc")).limitToFirst(10);
+  }
+
+  @TearDown
+  public void tearDown() {
+    persistence.shutdown();
+  }
+
+  @Benchmark
+  public ImmutableSortedMap<DocumentKey, Document> filteredQuery() {
+    return queryEngine.getDocumentsMatchingQuery(filteredQuery, SnapshotVersion.NONE, remoteKeys);
+  }
+
+  @Benchmark
+  public ImmutableSortedMap<DocumentKey, Document> limitQuery() {
+    return queryEngine.getDocumentsMatchingQuery(limitQuery, SnapshotVersion.NONE, remoteKeys);
+  }
+}
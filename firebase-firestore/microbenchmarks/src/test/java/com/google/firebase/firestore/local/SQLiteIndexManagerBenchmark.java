@@ -0,0 +1,101 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import static com.google.firebase.firestore.model.DocumentCollections.emptyDocumentMap;
+import static com.google.firebase.firestore.testutil.TestUtil.field;
+import static com.google.firebase.firestore.testutil.TestUtil.fieldIndex;
+import static com.google.firebase.firestore.testutil.TestUtil.wrap;
+
+import com.google.firebase.database.collection.ImmutableSortedMap;
+import com.google.firebase.firestore.auth.User;
+import com.google.firebase.firestore.benchmark.BenchmarkData;
+import com.google.firebase.firestore.model.Document;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.FieldIndex.Segment.Kind;
+import com.google.firebase.firestore.model.MutableDocument;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks {@link SQLiteIndexManager#updateIndexEntries} for documents whose indexed values
+ * change on every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SQLiteIndexManagerBenchmark {
+  @Param({"10", "1000"})
+  public int documentCount;
+
+  @Param({"1", "20"})
+  public int fieldCount;
+
+  private SQLitePersistence persistence;
+  private IndexManager indexManager;
+  private ImmutableSortedMap<DocumentKey, Document> evenDocuments;
+  private ImmutableSortedMap<DocumentKey, Document> oddDocuments;
+  private boolean useOddDocuments;
+
+  @Setup
+  public void setUp() {
+    persistence = (SQLitePersistence) BenchmarkData.createPersistence(BenchmarkData.SQLITE);
+    indexManager = persistence.getIndexManager(User.UNAUTHENTICATED);
+    indexManager.start();
+    indexManager.addFieldIndex(fieldIndex("coll", "sort", Kind.ASCENDING));
+    indexManager.addFieldIndex(fieldIndex("coll", "name", Kind.ASCENDING, "sort", Kind.DESCENDING));
+    indexManager.addFieldIndex(fieldIndex("coll", "tags", Kind.CONTAINS));
+
+    // Both sets contain the same documents with different values for the indexed "sort" field, so
+    // that alternating between them rewrites the index entries of every document.
+    evenDocuments = toDocumentMap(/* offset= */ 0);
+    oddDocuments = toDocumentMap(/* offset= */ documentCount);
+  }
+
+  @TearDown
+  public void tearDown() {
+    persistence.shutdown();
+  }
+
+  @Benchmark
+  public void updateIndexEntries() {
+    ImmutableSortedMap<DocumentKey, Document> documents =
+        useOddDocuments ? oddDocuments : evenDocuments;
+    useOddDocuments = !useOddDocuments;
+    persistence.runTransaction(
+        "Update index entries", () -> indexManager.updateIndexEntries(documents));
+  }
+
+  private ImmutableSortedMap<DocumentKey, Document> toDocumentMap(int offset) {
+    List<MutableDocument> documents =
+        BenchmarkData.documents("coll", documentCount, fieldCount, /* version= */ 1);
+    ImmutableSortedMap<DocumentKey, Document> result = emptyDocumentMap();
+    for (int i = 0; i < documents.size(); ++i) {
+      MutableDocument document = documents.get(i);
+      document.getData().set(field("sort"), wrap(offset + i));
+      result = result.insert(document.getKey(), document);
+    }
+    return result;
+  }
+}
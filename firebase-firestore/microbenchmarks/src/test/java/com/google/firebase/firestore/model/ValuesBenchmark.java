@@ -0,0 +1,70 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.model;
+
+import com.google.firebase.firestore.benchmark.BenchmarkData;
+import com.google.firestore.v1.Value;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks {@link Values#compare} and {@link Values#canonicalId} on whole documents. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValuesBenchmark {
+  @Param({"10", "1000"})
+  public int documentCount;
+
+  @Param({"1", "20"})
+  public int fieldCount;
+
+  private Value[] values;
+
+  @Setup
+  public void setUp() {
+    List<MutableDocument> documents =
+        BenchmarkData.documents("coll", documentCount, fieldCount, /* version= */ 1);
+    values = new Value[documents.size()];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = documents.get(i).getData().get(FieldPath.EMPTY_PATH);
+    }
+  }
+
+  @Benchmark
+  public int compare() {
+    int result = 0;
+    for (int i = 1; i < values.length; ++i) {
+      result += Values.compare(values[i - 1], values[i]);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public int canonicalId() {
+    int length = 0;
+    for (Value value : values) {
+      length += Values.canonicalId(value).length();
+    }
+    return length;
+  }
+}
@@ -458,6 +458,23 @@ public class DocumentReference {
         Executors.DEFAULT_CALLBACK_EXECUTOR, internalOptions(metadataChanges), activity, listener);
   }
 
+  /**
+   * Starts listening to the referenced document with the given options.
+   *
+   * @param options Sets the metadata changes, executor, activity scope and coalescing window of
+   *     the listener.
+   * @param listener The event listener that will be called with the snapshots.
+   * @return A registration object that can be used to remove the listener.
+   */
+  @NonNull
+  public ListenerRegistration addSnapshotListener(
+      @NonNull SnapshotListenOptions options, @NonNull EventListener<DocumentSnapshot> listener) {
+    checkNotNull(options, "Provided options value must not be null.");
+    checkNotNull(listener, "Provided EventListener must not be null.");
+    return addSnapshotListenerInternal(
+        options.getExecutor(), internalOptions(options), options.getActivity(), listener);
+  }
+
   /**
    * Internal helper method to create add a snapshot listener.
    *
@@ -549,4 +566,11 @@ public class DocumentReference {
     internalOptions.waitForSyncWhenOnline = false;
     return internalOptions;
   }
+
+  /** Converts the public API SnapshotListenOptions object to the internal options object. */
+  private static ListenOptions internalOptions(SnapshotListenOptions options) {
+    ListenOptions internalOptions = internalOptions(options.getMetadataChanges());
+    internalOptions.coalescingWindowMs = options.getCoalescingWindowMillis();
+    return internalOptions;
+  }
 }
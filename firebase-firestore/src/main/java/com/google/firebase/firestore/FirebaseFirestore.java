@@ -590,6 +590,7 @@ public class FirebaseFirestore {
   public Task<Void> clearPersistence() {
     final TaskCompletionSource<Void> source = new TaskCompletionSource<>();
     asyncQueue.enqueueAndForgetEvenAfterShutdown(
+        "Clear persistence",
         () -> {
           try {
             if (client != null && !client.isTerminated()) {
@@ -667,9 +668,64 @@ public class FirebaseFirestore {
     return addSnapshotsInSyncListener(executor, null, runnable);
   }
 
+  /**
+   * Attaches a listener that is notified about every task that Firestore runs on its internal
+   * worker thread, which can be used to find out what delays Firestore operations.
+   *
+   * <p>Only tasks that are enqueued while a listener is attached are reported. Attaching a listener
+   * adds a small overhead to every task, so listeners should be removed when no longer needed.
+   *
+   * @param executor The executor to use to call the listener.
+   * @param listener The listener to call after every task.
+   * @return A registration object that can be used to remove the listener.
+   */
+  @NonNull
+  public ListenerRegistration addQueueTaskListener(
+      @NonNull Executor executor, @NonNull QueueTaskListener listener) {
+    return addQueueTaskListener(executor, /* minRunTimeMillis= */ 0, listener);
+  }
+
+  /**
+   * Attaches a listener that is notified about the tasks that Firestore runs on its internal worker
+   * thread and that run for at least {@code minRunTimeMillis}, which can be used to detect long
+   * running tasks.
+   *
+   * <p>Only tasks that are enqueued while a listener is attached are reported. Attaching a listener
+   * adds a small overhead to every task, so listeners should be removed when no longer needed.
+   *
+   * @param executor The executor to use to call the listener.
+   * @param minRunTimeMillis The minimum run time in milliseconds of the tasks to report.
+   * @param listener The listener to call after every task that ran for at least {@code
+   *     minRunTimeMillis}.
+   * @return A registration object that can be used to remove the listener.
+   */
+  @NonNull
+  public ListenerRegistration addQueueTaskListener(
+      @NonNull Executor executor, long minRunTimeMillis, @NonNull QueueTaskListener listener) {
+    checkNotNull(executor, "Provided executor must not be null.");
+    checkNotNull(listener, "Provided listener must not be null.");
+    AsyncEventListener<QueueTaskStats> asyncListener =
+        new AsyncEventListener<>(executor, (stats, error) -> listener.onTaskCompleted(stats));
+    AsyncQueue.TaskObserver observer =
+        (label, queueTimeMs, runTimeMs, queueDepth) -> {
+          if (runTimeMs >= minRunTimeMillis) {
+            asyncListener.onEvent(
+                new QueueTaskStats(label, queueTimeMs, runTimeMs, queueDepth), null);
+          }
+        };
+    asyncQueue.addTaskObserver(observer);
+    return () -> {
+      asyncListener.mute();
+      asyncQueue.removeTaskObserver(observer);
+    };
+  }
+
   /**
    * Loads a Firestore bundle into the local cache.
    *
+   * <p>If {@code bundleData} is a {@link java.io.FileInputStream}, the remainder of the file is
+   * memory-mapped while the bundle is loaded.
+   *
    * @param bundleData A stream representing the bundle to be loaded.
    * @return A {@link LoadBundleTask}, which notifies callers with progress updates, and completion
    *     or error events.
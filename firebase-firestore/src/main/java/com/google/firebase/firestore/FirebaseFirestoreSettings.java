@@ -32,6 +32,7 @@ public final class FirebaseFirestoreSettings {
 
   private static final long MINIMUM_CACHE_BYTES = 1 * 1024 * 1024; // 1 MB
   private static final long DEFAULT_CACHE_SIZE_BYTES = 100 * 1024 * 1024; // 100 MB
+  private static final long DEFAULT_DOCUMENT_CACHE_SIZE_BYTES = 0; // Disabled
 
   /** A Builder for creating {@code FirebaseFirestoreSettings}. */
   public static final class Builder {
@@ -39,6 +40,8 @@ public final class FirebaseFirestoreSettings {
     private boolean sslEnabled;
     private boolean persistenceEnabled;
     private long cacheSizeBytes;
+    private long documentCacheSizeBytes;
+    private boolean compactMemoryCacheEnabled;
 
     /** Constructs a new {@code FirebaseFirestoreSettings} Builder object. */
     public Builder() {
@@ -46,6 +49,8 @@ public final class FirebaseFirestoreSettings {
       sslEnabled = true;
       persistenceEnabled = true;
       cacheSizeBytes = DEFAULT_CACHE_SIZE_BYTES;
+      documentCacheSizeBytes = DEFAULT_DOCUMENT_CACHE_SIZE_BYTES;
+      compactMemoryCacheEnabled = false;
     }
 
     /**
@@ -58,6 +63,8 @@ public final class FirebaseFirestoreSettings {
       sslEnabled = settings.sslEnabled;
       persistenceEnabled = settings.persistenceEnabled;
       cacheSizeBytes = settings.cacheSizeBytes;
+      documentCacheSizeBytes = settings.documentCacheSizeBytes;
+      compactMemoryCacheEnabled = settings.compactMemoryCacheEnabled;
     }
 
     /**
@@ -116,6 +123,42 @@ public final class FirebaseFirestoreSettings {
       return this;
     }
 
+    /**
+     * Sets the maximum size of an in-memory cache of recently read documents. The cache sits in
+     * front of local persistent storage and avoids reading and decoding frequently accessed
+     * documents from disk. It is only used if local persistent storage is enabled.
+     *
+     * <p>By default, the in-memory document cache is disabled. Setting the size to 0 disables it.
+     *
+     * @return A settings object on which the in-memory document cache size is configured as
+     *     specified by the given {@code value}.
+     */
+    @NonNull
+    public Builder setDocumentCacheSizeBytes(long value) {
+      if (value < 0) {
+        throw new IllegalArgumentException("Document cache size must not be negative");
+      }
+      this.documentCacheSizeBytes = value;
+      return this;
+    }
+
+    /**
+     * Enables or disables the compact in-memory cache. The compact cache is only used if local
+     * persistent storage is disabled. It keeps cached documents in their serialized form and
+     * decodes them when they are read, which greatly reduces the memory used by large caches at
+     * the cost of additional work on every read.
+     *
+     * <p>By default, the compact in-memory cache is disabled.
+     *
+     * @return A settings object that uses the compact in-memory cache as specified by the given
+     *     <tt>value</tt>.
+     */
+    @NonNull
+    public Builder setCompactMemoryCacheEnabled(boolean value) {
+      this.compactMemoryCacheEnabled = value;
+      return this;
+    }
+
     /** @return the host of the Cloud Firestore backend. */
     @NonNull
     public String getHost() {
@@ -137,6 +180,16 @@ public final class FirebaseFirestoreSettings {
       return cacheSizeBytes;
     }
 
+    /** @return size of the in-memory cache of recently read documents. */
+    public long getDocumentCacheSizeBytes() {
+      return documentCacheSizeBytes;
+    }
+
+    /** @return boolean indicating whether the compact in-memory cache is enabled or not. */
+    public boolean isCompactMemoryCacheEnabled() {
+      return compactMemoryCacheEnabled;
+    }
+
     @NonNull
     public FirebaseFirestoreSettings build() {
       if (!this.sslEnabled && this.host.equals(DEFAULT_HOST)) {
@@ -151,6 +204,8 @@ public final class FirebaseFirestoreSettings {
   private final boolean sslEnabled;
   private final boolean persistenceEnabled;
   private final long cacheSizeBytes;
+  private final long documentCacheSizeBytes;
+  private final boolean compactMemoryCacheEnabled;
 
   /** Constructs a {@code FirebaseFirestoreSettings} object based on the values in the Builder. */
   private FirebaseFirestoreSettings(Builder builder) {
@@ -158,6 +213,8 @@ public final class FirebaseFirestoreSettings {
     sslEnabled = builder.sslEnabled;
     persistenceEnabled = builder.persistenceEnabled;
     cacheSizeBytes = builder.cacheSizeBytes;
+    documentCacheSizeBytes = builder.documentCacheSizeBytes;
+    compactMemoryCacheEnabled = builder.compactMemoryCacheEnabled;
   }
 
   @Override
@@ -173,7 +230,9 @@ public final class FirebaseFirestoreSettings {
     return host.equals(that.host)
         && sslEnabled == that.sslEnabled
         && persistenceEnabled == that.persistenceEnabled
-        && cacheSizeBytes == that.cacheSizeBytes;
+        && cacheSizeBytes == that.cacheSizeBytes
+        && documentCacheSizeBytes == that.documentCacheSizeBytes
+        && compactMemoryCacheEnabled == that.compactMemoryCacheEnabled;
   }
 
   @Override
@@ -182,6 +241,8 @@ public final class FirebaseFirestoreSettings {
     result = 31 * result + (sslEnabled ? 1 : 0);
     result = 31 * result + (persistenceEnabled ? 1 : 0);
     result = 31 * result + (int) cacheSizeBytes;
+    result = 31 * result + (int) documentCacheSizeBytes;
+    result = 31 * result + (compactMemoryCacheEnabled ? 1 : 0);
     return result;
   }
 
@@ -197,6 +258,10 @@ public final class FirebaseFirestoreSettings {
         + persistenceEnabled
         + ", cacheSizeBytes="
         + cacheSizeBytes
+        + ", documentCacheSizeBytes="
+        + documentCacheSizeBytes
+        + ", compactMemoryCacheEnabled="
+        + compactMemoryCacheEnabled
         + "}";
   }
 
@@ -223,4 +288,20 @@ public final class FirebaseFirestoreSettings {
   public long getCacheSizeBytes() {
     return cacheSizeBytes;
   }
+
+  /**
+   * Returns the maximum size of the in-memory cache of recently read documents, or 0 if the cache
+   * is disabled.
+   */
+  public long getDocumentCacheSizeBytes() {
+    return documentCacheSizeBytes;
+  }
+
+  /**
+   * Returns whether or not to keep the in-memory cache that is used without local persistent
+   * storage in a compact, serialized form.
+   */
+  public boolean isCompactMemoryCacheEnabled() {
+    return compactMemoryCacheEnabled;
+  }
 }
@@ -530,6 +530,7 @@ public class LoadBundleTask extends Task<LoadBundleTaskProgress> {
       snapshot =
           new LoadBundleTaskProgress(
               this.snapshot.getDocumentsLoaded(),
+              this.snapshot.getDocumentsSaved(),
               this.snapshot.getTotalDocuments(),
               this.snapshot.getBytesLoaded(),
               this.snapshot.getTotalBytes(),
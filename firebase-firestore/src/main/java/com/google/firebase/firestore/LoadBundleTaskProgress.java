@@ -37,6 +37,7 @@ public final class LoadBundleTaskProgress {
   }
 
   private final int documentsLoaded;
+  private final int documentsSaved;
   private final int totalDocuments;
   private final long bytesLoaded;
   private final long totalBytes;
@@ -52,7 +53,28 @@ public final class LoadBundleTaskProgress {
       long totalBytes,
       @Nullable Exception exception,
       @NonNull TaskState taskState) {
+    this(
+        documentsLoaded,
+        documentsLoaded,
+        totalDocuments,
+        bytesLoaded,
+        totalBytes,
+        exception,
+        taskState);
+  }
+
+  /** @hide */
+  @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+  public LoadBundleTaskProgress(
+      int documentsLoaded,
+      int documentsSaved,
+      int totalDocuments,
+      long bytesLoaded,
+      long totalBytes,
+      @Nullable Exception exception,
+      @NonNull TaskState taskState) {
     this.documentsLoaded = documentsLoaded;
+    this.documentsSaved = documentsSaved;
     this.totalDocuments = totalDocuments;
     this.bytesLoaded = bytesLoaded;
     this.totalBytes = totalBytes;
@@ -99,6 +121,15 @@ public final class LoadBundleTaskProgress {
     return documentsLoaded;
   }
 
+  /**
+   * Returns how many of the loaded documents have been saved to the local cache. Documents are
+   * saved in chunks, so this number can trail {@link #getDocumentsLoaded()} while the bundle is
+   * being loaded.
+   */
+  public int getDocumentsSaved() {
+    return documentsSaved;
+  }
+
   /**
    * Returns the total number of documents in the bundle. Returns 0 if the bundle failed to parse.
    */
@@ -138,6 +169,7 @@ public final class LoadBundleTaskProgress {
     LoadBundleTaskProgress that = (LoadBundleTaskProgress) o;
 
     if (documentsLoaded != that.documentsLoaded) return false;
+    if (documentsSaved != that.documentsSaved) return false;
     if (totalDocuments != that.totalDocuments) return false;
     if (bytesLoaded != that.bytesLoaded) return false;
     if (totalBytes != that.totalBytes) return false;
@@ -148,6 +180,7 @@ public final class LoadBundleTaskProgress {
   @Override
   public int hashCode() {
     int result = documentsLoaded;
+    result = 31 * result + documentsSaved;
     result = 31 * result + totalDocuments;
     result = 31 * result + (int) (bytesLoaded ^ (bytesLoaded >>> 32));
     result = 31 * result + (int) (totalBytes ^ (totalBytes >>> 32));
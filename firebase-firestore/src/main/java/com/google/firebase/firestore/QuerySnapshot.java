@@ -20,10 +20,17 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.google.firebase.firestore.core.ViewSnapshot;
 import com.google.firebase.firestore.model.Document;
+import com.google.firebase.firestore.util.CustomClassMapper;
+import com.google.firestore.v1.Value;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@code QuerySnapshot} contains the results of a query. It can contain zero or more {@link
@@ -35,6 +42,9 @@ import java.util.List;
  */
 public class QuerySnapshot implements Iterable<QueryDocumentSnapshot> {
 
+  /** The number of documents that {@code toObjects()} converts in a single parallel task. */
+  private static final int DOCUMENTS_PER_CHUNK = 250;
+
   private final Query originalQuery;
 
   private final ViewSnapshot snapshot;
@@ -178,14 +188,160 @@ public class QuerySnapshot implements Iterable<QueryDocumentSnapshot> {
   public <T> List<T> toObjects(
       @NonNull Class<T> clazz,
       @NonNull DocumentSnapshot.ServerTimestampBehavior serverTimestampBehavior) {
+    return convertDocuments(clazz, serverTimestampBehavior, /* executor= */ null);
+  }
+
+  /**
+   * Returns the contents of the documents in the {@code QuerySnapshot}, converted to the provided
+   * class, as a list.
+   *
+   * <p>Large result sets are split into chunks that are converted in parallel on the provided
+   * executor and on the calling thread. The calling thread blocks until all documents have been
+   * converted, but it never waits for chunks that the executor has not started yet, so it is safe
+   * to pass an executor that runs tasks on the calling thread. Note that the constructors and
+   * setters of the POJO type may be called on the executor's threads.
+   *
+   * @param clazz The POJO type used to convert the documents in the list.
+   * @param serverTimestampBehavior Configures the behavior for server timestamps that have not yet
+   *     been set to their final value.
+   * @param executor The executor used to convert chunks of the result set in parallel.
+   * @throws IllegalStateException if the calling thread is interrupted while it waits for the
+   *     executor's threads. The thread's interrupt status is preserved.
+   */
+  @NonNull
+  public <T> List<T> toObjects(
+      @NonNull Class<T> clazz,
+      @NonNull DocumentSnapshot.ServerTimestampBehavior serverTimestampBehavior,
+      @NonNull Executor executor) {
+    checkNotNull(executor, "Provided executor must not be null.");
+    return convertDocuments(clazz, serverTimestampBehavior, executor);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> List<T> convertDocuments(
+      Class<T> clazz,
+      DocumentSnapshot.ServerTimestampBehavior serverTimestampBehavior,
+      @Nullable Executor executor) {
     checkNotNull(clazz, "Provided POJO type must not be null.");
-    List<T> res = new ArrayList<>();
-    for (DocumentSnapshot d : this) {
-      res.add(d.toObject(clazz, serverTimestampBehavior));
+    checkNotNull(
+        serverTimestampBehavior, "Provided serverTimestampBehavior value must not be null.");
+
+    List<Document> documents = snapshot.getDocuments().toList();
+    Object[] results = new Object[documents.size()];
+    DocumentConverter<T> converter =
+        new DocumentConverter<>(
+            documents, results, clazz, new UserDataWriter(firestore, serverTimestampBehavior));
+
+    int chunkCount = (documents.size() + DOCUMENTS_PER_CHUNK - 1) / DOCUMENTS_PER_CHUNK;
+    if (executor == null || chunkCount <= 1) {
+      converter.convert(0, documents.size());
+    } else {
+      convertInParallel(converter, chunkCount, executor);
+    }
+
+    List<T> res = new ArrayList<>(results.length);
+    for (Object result : results) {
+      res.add((T) result);
     }
     return res;
   }
 
+  /**
+   * Converts the documents in chunks on the given executor and the calling thread. Chunks are
+   * claimed by whichever thread gets to them first, and the calling thread keeps claiming chunks
+   * until none are left. It then only waits for chunks that other threads are still converting.
+   */
+  private static void convertInParallel(
+      DocumentConverter<?> converter, int chunkCount, Executor executor) {
+    AtomicInteger nextChunk = new AtomicInteger();
+    CountDownLatch remainingChunks = new CountDownLatch(chunkCount);
+    Throwable[] firstError = new Throwable[1];
+    Runnable worker =
+        () -> {
+          int chunk;
+          while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+            int start = chunk * DOCUMENTS_PER_CHUNK;
+            try {
+              converter.convert(start, Math.min(start + DOCUMENTS_PER_CHUNK, converter.size()));
+            } catch (Throwable e) {
+              // Errors are rethrown on the calling thread, since they would otherwise be lost on
+              // the executor's threads.
+              synchronized (firstError) {
+                if (firstError[0] == null) {
+                  firstError[0] = e;
+                }
+              }
+            } finally {
+              remainingChunks.countDown();
+            }
+          }
+        };
+
+    // The calling thread converts a chunk as well, so one less task is needed.
+    for (int i = 1; i < chunkCount; ++i) {
+      executor.execute(worker);
+    }
+    worker.run();
+
+    try {
+      remainingChunks.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while converting documents", e);
+    }
+
+    Throwable error;
+    synchronized (firstError) {
+      error = firstError[0];
+    }
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    } else if (error instanceof Error) {
+      throw (Error) error;
+    } else if (error != null) {
+      // Checked exceptions can only be thrown by code that circumvents the compiler's checks.
+      throw new RuntimeException(error);
+    }
+  }
+
+  /** Converts a range of documents to POJOs and stores them at the same positions in an array. */
+  private class DocumentConverter<T> {
+    private final List<Document> documents;
+    private final Object[] results;
+    private final Class<T> clazz;
+    private final UserDataWriter userDataWriter;
+    // Unless documents are converted to a map type, the converted fields are read exactly once by
+    // the mapper and do not need to be copied into an intermediate map.
+    private final boolean convertLazily;
+
+    DocumentConverter(
+        List<Document> documents, Object[] results, Class<T> clazz, UserDataWriter userDataWriter) {
+      this.documents = documents;
+      this.results = results;
+      this.clazz = clazz;
+      this.userDataWriter = userDataWriter;
+      this.convertLazily = !clazz.isAssignableFrom(HashMap.class);
+    }
+
+    int size() {
+      return documents.size();
+    }
+
+    void convert(int start, int end) {
+      for (int i = start; i < end; ++i) {
+        Document document = documents.get(i);
+        Map<String, Value> fields = document.getData().getFieldsMap();
+        Map<String, Object> data =
+            convertLazily
+                ? userDataWriter.convertObjectView(fields)
+                : userDataWriter.convertObject(fields);
+        results[i] =
+            CustomClassMapper.convertToCustomClass(
+                data, clazz, new DocumentReference(document.getKey(), firestore));
+      }
+    }
+  }
+
   private QueryDocumentSnapshot convertDocument(Document document) {
     return QueryDocumentSnapshot.fromDocument(
         firestore,
@@ -0,0 +1,28 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A listener for the tasks that Firestore runs on its internal worker thread.
+ *
+ * @see FirebaseFirestore#addQueueTaskListener(java.util.concurrent.Executor, long,
+ *     QueueTaskListener)
+ */
+public interface QueueTaskListener {
+  /** Called after a task has finished running on the Firestore worker thread. */
+  void onTaskCompleted(@NonNull QueueTaskStats stats);
+}
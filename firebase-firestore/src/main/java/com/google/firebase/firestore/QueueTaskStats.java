@@ -0,0 +1,107 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Describes a task that Firestore ran on its internal worker thread.
+ *
+ * <p>Firestore runs all reads and writes of its local cache, the processing of server responses
+ * and background work such as garbage collection and index backfilling on a single worker thread.
+ * These statistics help to identify the work that delays other operations.
+ */
+public final class QueueTaskStats {
+  @NonNull private final String label;
+  private final long queueTimeMillis;
+  private final long runTimeMillis;
+  private final int queueDepth;
+
+  QueueTaskStats(@NonNull String label, long queueTimeMillis, long runTimeMillis, int queueDepth) {
+    this.label = label;
+    this.queueTimeMillis = queueTimeMillis;
+    this.runTimeMillis = runTimeMillis;
+    this.queueDepth = queueDepth;
+  }
+
+  /**
+   * Returns a label that identifies the kind of task.
+   *
+   * <p>Scheduled background tasks, such as garbage collection or index backfilling, are labeled
+   * with the name of their timer, e.g. {@code "GARBAGE_COLLECTION"}. Other tasks are labeled with
+   * the operation they perform, e.g. {@code "Listen"} or {@code "Write"}, or with {@code
+   * "Unlabeled"} if they have no label, such as internal callbacks. These labels are not part of
+   * the public API and may change between releases.
+   */
+  @NonNull
+  public String getLabel() {
+    return label;
+  }
+
+  /**
+   * Returns the time in milliseconds that the task waited before it started running. For scheduled
+   * tasks, this is the time between the end of their delay and their start.
+   */
+  public long getQueueTimeMillis() {
+    return queueTimeMillis;
+  }
+
+  /** Returns the time in milliseconds that the task ran for. */
+  public long getRunTimeMillis() {
+    return runTimeMillis;
+  }
+
+  /** Returns the number of tasks that were still waiting to run when the task started. */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    QueueTaskStats that = (QueueTaskStats) o;
+
+    if (queueTimeMillis != that.queueTimeMillis) return false;
+    if (runTimeMillis != that.runTimeMillis) return false;
+    if (queueDepth != that.queueDepth) return false;
+    return label.equals(that.label);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = label.hashCode();
+    result = 31 * result + (int) (queueTimeMillis ^ (queueTimeMillis >>> 32));
+    result = 31 * result + (int) (runTimeMillis ^ (runTimeMillis >>> 32));
+    result = 31 * result + queueDepth;
+    return result;
+  }
+
+  @Override
+  @NonNull
+  public String toString() {
+    return "QueueTaskStats{"
+        + "label="
+        + label
+        + ", queueTimeMillis="
+        + queueTimeMillis
+        + ", runTimeMillis="
+        + runTimeMillis
+        + ", queueDepth="
+        + queueDepth
+        + '}';
+  }
+}
@@ -0,0 +1,189 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore;
+
+import static com.google.firebase.firestore.util.Preconditions.checkNotNull;
+
+import android.app.Activity;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.firestore.util.Executors;
+import java.util.concurrent.Executor;
+
+/**
+ * An options object that configures the behavior of {@code addSnapshotListener()} calls. Instances
+ * of this class control whether metadata-only changes raise events, which executor or activity the
+ * listener is bound to, and whether changes that arrive in quick succession are coalesced into a
+ * single snapshot.
+ */
+public final class SnapshotListenOptions {
+
+  /** A Builder for creating {@code SnapshotListenOptions}. */
+  public static final class Builder {
+    private MetadataChanges metadataChanges;
+    private Executor executor;
+    @Nullable private Activity activity;
+    private long coalescingWindowMillis;
+
+    /** Constructs a new {@code SnapshotListenOptions} Builder object. */
+    public Builder() {
+      metadataChanges = MetadataChanges.EXCLUDE;
+      executor = Executors.DEFAULT_CALLBACK_EXECUTOR;
+      activity = null;
+      coalescingWindowMillis = 0;
+    }
+
+    /**
+     * Sets whether metadata-only changes (i.e. only {@code getMetadata()} changed) should trigger
+     * snapshot events. Metadata-only changes are excluded by default.
+     *
+     * @return This builder.
+     */
+    @NonNull
+    public Builder setMetadataChanges(@NonNull MetadataChanges metadataChanges) {
+      checkNotNull(metadataChanges, "Provided MetadataChanges value must not be null.");
+      this.metadataChanges = metadataChanges;
+      return this;
+    }
+
+    /**
+     * Sets the executor to use to call the listener. By default, the listener is called on the main
+     * thread.
+     *
+     * @return This builder.
+     */
+    @NonNull
+    public Builder setExecutor(@NonNull Executor executor) {
+      checkNotNull(executor, "Provided executor must not be null.");
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Scopes the listener to the given activity. The listener will be automatically removed during
+     * {@link Activity#onStop}.
+     *
+     * @return This builder.
+     */
+    @NonNull
+    public Builder setActivity(@NonNull Activity activity) {
+      checkNotNull(activity, "Provided activity must not be null.");
+      this.activity = activity;
+      return this;
+    }
+
+    /**
+     * Sets the length of the window in which changes are coalesced into a single snapshot. Once the
+     * initial snapshot has been raised, the first change to the listener's results opens a window
+     * of the given length. All changes that arrive within the window are merged and raised together
+     * as one snapshot when the window closes.
+     *
+     * <p>Coalescing trades latency for fewer events and is useful for listeners whose results
+     * change in rapid bursts. By default, changes are not coalesced. Setting the window to 0
+     * disables coalescing.
+     *
+     * @return This builder.
+     */
+    @NonNull
+    public Builder setCoalescingWindowMillis(long value) {
+      if (value < 0) {
+        throw new IllegalArgumentException("Coalescing window must not be negative");
+      }
+      this.coalescingWindowMillis = value;
+      return this;
+    }
+
+    @NonNull
+    public SnapshotListenOptions build() {
+      return new SnapshotListenOptions(this);
+    }
+  }
+
+  private final MetadataChanges metadataChanges;
+  private final Executor executor;
+  @Nullable private final Activity activity;
+  private final long coalescingWindowMillis;
+
+  private SnapshotListenOptions(Builder builder) {
+    metadataChanges = builder.metadataChanges;
+    executor = builder.executor;
+    activity = builder.activity;
+    coalescingWindowMillis = builder.coalescingWindowMillis;
+  }
+
+  /** Returns whether metadata-only changes trigger snapshot events. */
+  @NonNull
+  public MetadataChanges getMetadataChanges() {
+    return metadataChanges;
+  }
+
+  /** Returns the executor that is used to call the listener. */
+  @NonNull
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /** Returns the activity that the listener is scoped to, or {@code null} if there is none. */
+  @Nullable
+  public Activity getActivity() {
+    return activity;
+  }
+
+  /** Returns the length of the window in which changes are coalesced, or 0 if disabled. */
+  public long getCoalescingWindowMillis() {
+    return coalescingWindowMillis;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    SnapshotListenOptions that = (SnapshotListenOptions) o;
+
+    return coalescingWindowMillis == that.coalescingWindowMillis
+        && metadataChanges == that.metadataChanges
+        && executor.equals(that.executor)
+        && (activity != null ? activity.equals(that.activity) : that.activity == null);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = metadataChanges.hashCode();
+    result = 31 * result + executor.hashCode();
+    result = 31 * result + (activity != null ? activity.hashCode() : 0);
+    result = 31 * result + (int) (coalescingWindowMillis ^ (coalescingWindowMillis >>> 32));
+    return result;
+  }
+
+  @Override
+  @NonNull
+  public String toString() {
+    return "SnapshotListenOptions{"
+        + "metadataChanges="
+        + metadataChanges
+        + ", executor="
+        + executor
+        + ", activity="
+        + activity
+        + ", coalescingWindowMillis="
+        + coalescingWindowMillis
+        + "}";
+  }
+}
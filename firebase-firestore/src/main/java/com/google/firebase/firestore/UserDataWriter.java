@@ -38,10 +38,14 @@ import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.util.Logger;
 import com.google.firestore.v1.ArrayValue;
 import com.google.firestore.v1.Value;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Converts Firestore's internal types to the Java API types that we expose to the user.
@@ -95,13 +99,66 @@ public class UserDataWriter {
   }
 
   Map<String, Object> convertObject(Map<String, Value> mapValue) {
-    Map<String, Object> result = new HashMap<>();
+    Map<String, Object> result = new HashMap<>(mapValue.size() * 4 / 3 + 1);
     for (Map.Entry<String, Value> entry : mapValue.entrySet()) {
       result.put(entry.getKey(), convertValue(entry.getValue()));
     }
     return result;
   }
 
+  /**
+   * Returns a read-only view of {@code mapValue} that converts each value when it is read. Unlike
+   * {@link #convertObject}, this does not build an intermediate map, but values are converted
+   * again on every read. The view is meant to be read once, e.g. when mapping a document to a POJO,
+   * and must not be handed out to users.
+   */
+  Map<String, Object> convertObjectView(Map<String, Value> mapValue) {
+    return new AbstractMap<String, Object>() {
+      @Override
+      public int size() {
+        return mapValue.size();
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+        return mapValue.containsKey(key);
+      }
+
+      @Override
+      public Object get(Object key) {
+        Value value = mapValue.get(key);
+        return value == null ? null : convertValue(value);
+      }
+
+      @Override
+      public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+          @Override
+          public int size() {
+            return mapValue.size();
+          }
+
+          @Override
+          public Iterator<Entry<String, Object>> iterator() {
+            Iterator<Entry<String, Value>> it = mapValue.entrySet().iterator();
+            return new Iterator<Entry<String, Object>>() {
+              @Override
+              public boolean hasNext() {
+                return it.hasNext();
+              }
+
+              @Override
+              public Entry<String, Object> next() {
+                Entry<String, Value> entry = it.next();
+                return new SimpleImmutableEntry<>(entry.getKey(), convertValue(entry.getValue()));
+              }
+            };
+          }
+        };
+      }
+    };
+  }
+
   private Object convertServerTimestamp(Value serverTimestampValue) {
     switch (serverTimestampBehavior) {
       case PREVIOUS:
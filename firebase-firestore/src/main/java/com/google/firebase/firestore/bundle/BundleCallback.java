@@ -26,9 +26,14 @@ public interface BundleCallback {
    * Applies the documents from a bundle to the "ground-state" (remote) documents.
    *
    * <p>LocalDocuments are re-calculated if there are remaining mutations in the queue.
+   *
+   * <p>Large bundles are applied in several chunks. {@code isFirstChunk} is set for the first chunk
+   * of a bundle, which replaces the documents that an earlier version of the bundle retained.
    */
   ImmutableSortedMap<DocumentKey, Document> applyBundledDocuments(
-      ImmutableSortedMap<DocumentKey, MutableDocument> documents, String bundleId);
+      ImmutableSortedMap<DocumentKey, MutableDocument> documents,
+      String bundleId,
+      boolean isFirstChunk);
 
   /** Saves the given NamedQuery to local persistence. */
   void saveNamedQuery(NamedQuery namedQuery, ImmutableSortedSet<DocumentKey> documentKeys);
@@ -0,0 +1,528 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.bundle;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.json.JSONException;
+
+/**
+ * A streaming pull parser that reads the JSON of a single bundle element directly from its UTF-8
+ * encoded bytes.
+ *
+ * <p>Unlike {@link org.json.JSONObject}, the reader does not build an intermediate tree of the
+ * element. This allows {@link BundleSerializer} to decode documents straight into their protos.
+ * Like {@link org.json.JSONObject}, the reader accepts single-quoted strings and unquoted names.
+ *
+ * <p>The reader does not track the nesting of objects and arrays. Callers must consume the values
+ * in the order in which they appear, and can use {@link #skipValue} to ignore a value.
+ *
+ * <p>Names are interned in a small cache that is retained across elements, since the same field
+ * names repeat in every document of a bundle.
+ */
+final class BundleJsonReader {
+  /** The type of the next value in the element. */
+  enum Token {
+    BEGIN_OBJECT,
+    BEGIN_ARRAY,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL
+  }
+
+  private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+
+  /** The number of interned names. Must be a power of two. */
+  private static final int NAME_CACHE_SIZE = 256;
+
+  /** The maximum number of digits of an integer that is decoded without allocating a string. */
+  private static final int MAX_FAST_PATH_DIGITS = 15;
+
+  private final String[] nameCache = new String[NAME_CACHE_SIZE];
+
+  private ByteBuffer data = ByteBuffer.allocate(0);
+  private ByteBuffer view = data;
+  private byte[] scratch = new byte[64];
+  private int pos;
+  private int limit;
+
+  /**
+   * Starts reading the element between the position and the limit of the given buffer. The buffer
+   * must not be modified while it is being read.
+   */
+  void reset(ByteBuffer element) {
+    data = element;
+    view = element.duplicate();
+    pos = element.position();
+    limit = element.limit();
+  }
+
+  /** Returns the type of the next value without consuming it. */
+  Token peek() throws JSONException {
+    int c = peekNonWhitespace();
+    switch (c) {
+      case '{':
+        return Token.BEGIN_OBJECT;
+      case '[':
+        return Token.BEGIN_ARRAY;
+      case '"':
+      case '\'':
+        return Token.STRING;
+      case 't':
+      case 'f':
+        return Token.BOOLEAN;
+      case 'n':
+        return Token.NULL;
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          return Token.NUMBER;
+        }
+        throw syntaxError("Unexpected character '" + (char) c + "'");
+    }
+  }
+
+  void beginObject() throws JSONException {
+    consume('{');
+  }
+
+  void endObject() throws JSONException {
+    consume('}');
+  }
+
+  void beginArray() throws JSONException {
+    consume('[');
+  }
+
+  void endArray() throws JSONException {
+    consume(']');
+  }
+
+  /**
+   * Returns whether the current object or array has another entry, consuming the comma that
+   * separates it from the previous entry.
+   */
+  boolean hasNext() throws JSONException {
+    int c = peekNonWhitespace();
+    if (c == ',') {
+      ++pos;
+      c = peekNonWhitespace();
+    }
+    return c != '}' && c != ']';
+  }
+
+  /** Consumes the next name and the separator that follows it. */
+  String nextName() throws JSONException {
+    int c = peekNonWhitespace();
+    String name = (c == '"' || c == '\'') ? readString(/* intern= */ true) : readUnquotedName();
+    consume(':');
+    return name;
+  }
+
+  String nextString() throws JSONException {
+    if (peek() != Token.STRING) {
+      throw syntaxError("Expected a string");
+    }
+    return readString(/* intern= */ false);
+  }
+
+  /** Consumes the next boolean. Like {@link org.json.JSONObject}, accepts "true" and "false". */
+  boolean nextBoolean() throws JSONException {
+    Token token = peek();
+    if (token == Token.STRING) {
+      String value = readString(/* intern= */ false);
+      if (value.equalsIgnoreCase("true")) {
+        return true;
+      } else if (value.equalsIgnoreCase("false")) {
+        return false;
+      }
+      throw syntaxError("Expected a boolean but was '" + value + "'");
+    } else if (token == Token.BOOLEAN) {
+      if (data.get(pos) == 't') {
+        consumeLiteral("true");
+        return true;
+      }
+      consumeLiteral("false");
+      return false;
+    }
+    throw syntaxError("Expected a boolean");
+  }
+
+  void nextNull() throws JSONException {
+    consumeLiteral("null");
+  }
+
+  /** Consumes the next number. Like {@link org.json.JSONObject}, accepts string-encoded numbers. */
+  long nextLong() throws JSONException {
+    if (peek() == Token.STRING) {
+      return parseLong(readString(/* intern= */ false));
+    }
+    int start = pos;
+    int end = skipNumber();
+    if (isSmallInteger(start, end)) {
+      return parseSmallInteger(start, end);
+    }
+    return parseLong(decodeAscii(start, end));
+  }
+
+  /**
+   * Consumes the next number. Like {@link org.json.JSONObject}, accepts string-encoded numbers,
+   * including "NaN" and "Infinity".
+   */
+  double nextDouble() throws JSONException {
+    if (peek() == Token.STRING) {
+      return parseDouble(readString(/* intern= */ false));
+    }
+    int start = pos;
+    int end = skipNumber();
+    if (isSmallInteger(start, end)) {
+      // Integers with at most 15 digits are exactly representable as doubles.
+      long value = parseSmallInteger(start, end);
+      return value == 0 && data.get(start) == '-' ? -0.0 : value;
+    }
+    return parseDouble(decodeAscii(start, end));
+  }
+
+  /** Skips over the next value, including all of its nested values. */
+  void skipValue() throws JSONException {
+    int depth = 0;
+    do {
+      int c = peekNonWhitespace();
+      switch (c) {
+        case '{':
+        case '[':
+          ++depth;
+          ++pos;
+          break;
+        case '}':
+        case ']':
+          if (depth == 0) {
+            throw syntaxError("Expected a value");
+          }
+          --depth;
+          ++pos;
+          break;
+        case ',':
+        case ':':
+          if (depth == 0) {
+            throw syntaxError("Expected a value");
+          }
+          ++pos;
+          break;
+        case '"':
+        case '\'':
+          skipString(c);
+          break;
+        default:
+          skipLiteral();
+          break;
+      }
+    } while (depth > 0);
+  }
+
+  /** Consumes the next value and returns its JSON text. */
+  String nextRawValue() throws JSONException {
+    peekNonWhitespace();
+    int start = pos;
+    skipValue();
+    return decode(start, pos);
+  }
+
+  private int peekNonWhitespace() throws JSONException {
+    while (pos < limit) {
+      byte b = data.get(pos);
+      if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+        return b;
+      }
+      ++pos;
+    }
+    throw syntaxError("Unexpected end of input");
+  }
+
+  private void consume(char expected) throws JSONException {
+    if (peekNonWhitespace() != expected) {
+      throw syntaxError("Expected '" + expected + "'");
+    }
+    ++pos;
+  }
+
+  private void consumeLiteral(String literal) throws JSONException {
+    peekNonWhitespace();
+    int start = pos;
+    skipLiteral();
+    if (pos - start != literal.length() || !equalsAscii(literal, start, pos)) {
+      throw syntaxError("Expected '" + literal + "'");
+    }
+  }
+
+  /**
+   * Reads the quoted string at the current position. Strings without escape sequences are decoded
+   * directly from the underlying bytes.
+   */
+  private String readString(boolean intern) throws JSONException {
+    int quote = data.get(pos);
+    int start = ++pos;
+    int hash = 0;
+    boolean isAscii = true;
+    while (true) {
+      if (pos >= limit) {
+        throw syntaxError("Unterminated string");
+      }
+      byte b = data.get(pos);
+      if (b == quote) {
+        break;
+      } else if (b == '\\') {
+        return readEscapedString(start, quote);
+      } else if (b < 0) {
+        // Bytes of multi-byte UTF-8 sequences are negative and never match the quote.
+        isAscii = false;
+      }
+      hash = 31 * hash + b;
+      ++pos;
+    }
+    int end = pos++;
+    return intern && isAscii ? intern(start, end, hash) : decode(start, end);
+  }
+
+  private String readEscapedString(int start, int quote) throws JSONException {
+    StringBuilder result = new StringBuilder();
+    pos = start;
+    int runStart = start;
+    while (true) {
+      if (pos >= limit) {
+        throw syntaxError("Unterminated string");
+      }
+      byte b = data.get(pos);
+      if (b == quote) {
+        result.append(decode(runStart, pos));
+        ++pos;
+        return result.toString();
+      } else if (b != '\\') {
+        ++pos;
+        continue;
+      }
+
+      // Escape sequences only consist of ASCII characters, so the preceding run of bytes always
+      // ends on a character boundary.
+      result.append(decode(runStart, pos));
+      if (pos + 1 >= limit) {
+        throw syntaxError("Unterminated escape sequence");
+      }
+      byte escaped = data.get(pos + 1);
+      pos += 2;
+      switch (escaped) {
+        case 'b':
+          result.append('\b');
+          break;
+        case 'f':
+          result.append('\f');
+          break;
+        case 'n':
+          result.append('\n');
+          break;
+        case 'r':
+          result.append('\r');
+          break;
+        case 't':
+          result.append('\t');
+          break;
+        case 'u':
+          result.append(readUnicodeEscape());
+          break;
+        case '"':
+        case '\'':
+        case '\\':
+        case '/':
+          result.append((char) escaped);
+          break;
+        default:
+          throw syntaxError("Invalid escape sequence '\\" + (char) escaped + "'");
+      }
+      runStart = pos;
+    }
+  }
+
+  private char readUnicodeEscape() throws JSONException {
+    if (pos + 4 > limit) {
+      throw syntaxError("Unterminated escape sequence");
+    }
+    int result = 0;
+    for (int i = 0; i < 4; ++i) {
+      int digit = Character.digit(data.get(pos++), 16);
+      if (digit == -1) {
+        throw syntaxError("Invalid unicode escape sequence");
+      }
+      result = (result << 4) | digit;
+    }
+    return (char) result;
+  }
+
+  private String readUnquotedName() throws JSONException {
+    int start = pos;
+    int hash = 0;
+    boolean isAscii = true;
+    while (pos < limit && !isDelimiter(data.get(pos))) {
+      byte b = data.get(pos);
+      if (b < 0) {
+        isAscii = false;
+      }
+      hash = 31 * hash + b;
+      ++pos;
+    }
+    if (pos == start) {
+      throw syntaxError("Expected a name");
+    }
+    return isAscii ? intern(start, pos, hash) : decode(start, pos);
+  }
+
+  private void skipString(int quote) throws JSONException {
+    ++pos;
+    while (pos < limit) {
+      byte b = data.get(pos);
+      if (b == '\\') {
+        pos += 2;
+      } else {
+        ++pos;
+        if (b == quote) {
+          return;
+        }
+      }
+    }
+    throw syntaxError("Unterminated string");
+  }
+
+  private void skipLiteral() throws JSONException {
+    int start = pos;
+    while (pos < limit && !isDelimiter(data.get(pos))) {
+      ++pos;
+    }
+    if (pos == start) {
+      throw syntaxError("Expected a value");
+    }
+  }
+
+  /** Skips the number at the current position and returns its end. */
+  private int skipNumber() throws JSONException {
+    skipLiteral();
+    return pos;
+  }
+
+  private boolean isSmallInteger(int start, int end) {
+    int digitsStart = data.get(start) == '-' ? start + 1 : start;
+    if (digitsStart == end || end - digitsStart > MAX_FAST_PATH_DIGITS) {
+      return false;
+    }
+    for (int i = digitsStart; i < end; ++i) {
+      byte b = data.get(i);
+      if (b < '0' || b > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long parseSmallInteger(int start, int end) {
+    boolean negative = data.get(start) == '-';
+    long result = 0;
+    for (int i = negative ? start + 1 : start; i < end; ++i) {
+      result = result * 10 + (data.get(i) - '0');
+    }
+    return negative ? -result : result;
+  }
+
+  private long parseLong(String value) throws JSONException {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      // Matches JSONObject, which truncates numbers with fractions or exponents.
+      return (long) parseDouble(value);
+    }
+  }
+
+  private double parseDouble(String value) throws JSONException {
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw syntaxError("Invalid number '" + value + "'");
+    }
+  }
+
+  /** Returns the cached string for the given ASCII bytes, decoding and caching it if needed. */
+  private String intern(int start, int end, int hash) {
+    int index = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+    String cached = nameCache[index];
+    if (cached != null && cached.length() == end - start && equalsAscii(cached, start, end)) {
+      return cached;
+    }
+    String name = decodeAscii(start, end);
+    nameCache[index] = name;
+    return name;
+  }
+
+  private boolean equalsAscii(String value, int start, int end) {
+    for (int i = start; i < end; ++i) {
+      if (value.charAt(i - start) != data.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String decodeAscii(int start, int end) {
+    char[] chars = new char[end - start];
+    for (int i = start; i < end; ++i) {
+      chars[i - start] = (char) data.get(i);
+    }
+    return new String(chars);
+  }
+
+  private String decode(int start, int end) {
+    int length = end - start;
+    if (data.hasArray()) {
+      return new String(data.array(), data.arrayOffset() + start, length, UTF8_CHARSET);
+    }
+    // Memory-mapped buffers are not backed by an array, so we copy the bytes first.
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    view.position(start);
+    view.get(scratch, 0, length);
+    return new String(scratch, 0, length, UTF8_CHARSET);
+  }
+
+  private static boolean isDelimiter(byte b) {
+    switch (b) {
+      case ' ':
+      case '\n':
+      case '\r':
+      case '\t':
+      case ',':
+      case ':':
+      case '{':
+      case '}':
+      case '[':
+      case ']':
+      case '"':
+      case '\'':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private JSONException syntaxError(String message) {
+    return new JSONException(message + " at byte " + pos);
+  }
+}
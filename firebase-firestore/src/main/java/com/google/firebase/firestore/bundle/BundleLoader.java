@@ -14,6 +14,7 @@
 
 package com.google.firebase.firestore.bundle;
 
+import static com.google.firebase.firestore.model.DocumentCollections.emptyDocumentMap;
 import static com.google.firebase.firestore.model.DocumentCollections.emptyMutableDocumentMap;
 
 import androidx.annotation.Nullable;
@@ -26,29 +27,52 @@ import com.google.firebase.firestore.model.MutableDocument;
 import com.google.firebase.firestore.util.Preconditions;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A class to process the elements from a bundle, load them into local storage and provide progress
  * update while loading.
+ *
+ * <p>Documents are saved to local storage in chunks of {@code documentsPerChunk} documents, so
+ * that large bundles do not need to be held in memory until the entire bundle has been read. The
+ * loader only retains the keys and metadata of the documents that it already saved.
  */
 public class BundleLoader {
+  /** The default number of documents that are saved to local storage in a single chunk. */
+  public static final int DOCUMENTS_PER_CHUNK = 1000;
+
   private final BundleCallback bundleCallback;
   private final BundleMetadata bundleMetadata;
+  private final int documentsPerChunk;
   private final List<NamedQuery> queries;
   private final Map<DocumentKey, BundledDocumentMetadata> documentsMetadata;
+  private final Set<DocumentKey> loadedDocumentKeys;
+
+  /** The documents that have been added since the last chunk was saved. */
+  private ImmutableSortedMap<DocumentKey, MutableDocument> pendingDocuments;
 
-  private ImmutableSortedMap<DocumentKey, MutableDocument> documents;
+  private int documentsSaved;
+  private boolean hasSavedChunk;
   private long bytesLoaded;
   @Nullable private BundledDocumentMetadata currentMetadata;
 
   public BundleLoader(BundleCallback bundleCallback, BundleMetadata bundleMetadata) {
+    this(bundleCallback, bundleMetadata, DOCUMENTS_PER_CHUNK);
+  }
+
+  public BundleLoader(
+      BundleCallback bundleCallback, BundleMetadata bundleMetadata, int documentsPerChunk) {
+    Preconditions.checkArgument(documentsPerChunk > 0, "Chunk size must be positive");
     this.bundleCallback = bundleCallback;
     this.bundleMetadata = bundleMetadata;
+    this.documentsPerChunk = documentsPerChunk;
     this.queries = new ArrayList<>();
-    this.documents = emptyMutableDocumentMap();
+    this.pendingDocuments = emptyMutableDocumentMap();
     this.documentsMetadata = new HashMap<>();
+    this.loadedDocumentKeys = new HashSet<>();
   }
 
   /**
@@ -61,7 +85,7 @@ public class BundleLoader {
     Preconditions.checkArgument(
         !(bundleElement instanceof BundleMetadata), "Unexpected bundle metadata element.");
 
-    int beforeDocumentCount = documents.size();
+    int beforeDocumentCount = loadedDocumentKeys.size();
 
     if (bundleElement instanceof NamedQuery) {
       queries.add((NamedQuery) bundleElement);
@@ -70,12 +94,10 @@ public class BundleLoader {
       documentsMetadata.put(bundledDocumentMetadata.getKey(), bundledDocumentMetadata);
       currentMetadata = bundledDocumentMetadata;
       if (!((BundledDocumentMetadata) bundleElement).exists()) {
-        documents =
-            documents.insert(
-                bundledDocumentMetadata.getKey(),
-                MutableDocument.newNoDocument(
-                        bundledDocumentMetadata.getKey(), bundledDocumentMetadata.getReadTime())
-                    .setReadTime(bundledDocumentMetadata.getReadTime()));
+        addDocument(
+            MutableDocument.newNoDocument(
+                    bundledDocumentMetadata.getKey(), bundledDocumentMetadata.getReadTime())
+                .setReadTime(bundledDocumentMetadata.getReadTime()));
         currentMetadata = null;
       }
     } else if (bundleElement instanceof BundleDocument) {
@@ -84,40 +106,74 @@ public class BundleLoader {
         throw new IllegalArgumentException(
             "The document being added does not match the stored metadata.");
       }
-      documents =
-          documents.insert(
-              bundleDocument.getKey(),
-              bundleDocument.getDocument().setReadTime(currentMetadata.getReadTime()));
+      addDocument(bundleDocument.getDocument().setReadTime(currentMetadata.getReadTime()));
       currentMetadata = null;
     }
 
     bytesLoaded += byteSize;
 
-    return beforeDocumentCount != documents.size()
-        ? new LoadBundleTaskProgress(
-            documents.size(),
-            bundleMetadata.getTotalDocuments(),
-            bytesLoaded,
-            bundleMetadata.getTotalBytes(),
-            null,
-            LoadBundleTaskProgress.TaskState.RUNNING)
-        : null;
+    return beforeDocumentCount != loadedDocumentKeys.size() ? getProgress() : null;
+  }
+
+  /** Returns the metadata of the bundle that is being loaded. */
+  public BundleMetadata getBundleMetadata() {
+    return bundleMetadata;
+  }
+
+  /** Returns the current progress of the loader. */
+  public LoadBundleTaskProgress getProgress() {
+    return new LoadBundleTaskProgress(
+        loadedDocumentKeys.size(),
+        documentsSaved,
+        bundleMetadata.getTotalDocuments(),
+        bytesLoaded,
+        bundleMetadata.getTotalBytes(),
+        null,
+        LoadBundleTaskProgress.TaskState.RUNNING);
+  }
+
+  /** Returns whether enough documents have been added to save them as a chunk. */
+  public boolean hasFullChunk() {
+    return pendingDocuments.size() >= documentsPerChunk;
+  }
+
+  /**
+   * Saves the documents that have been added since the last chunk to local store. Returns the
+   * document view changes.
+   */
+  public ImmutableSortedMap<DocumentKey, Document> applyDocuments() {
+    Preconditions.checkArgument(bundleMetadata.getBundleId() != null, "Bundle ID must be set");
+
+    ImmutableSortedMap<DocumentKey, MutableDocument> documents = pendingDocuments;
+    pendingDocuments = emptyMutableDocumentMap();
+    if (documents.isEmpty() && hasSavedChunk) {
+      return emptyDocumentMap();
+    }
+
+    ImmutableSortedMap<DocumentKey, Document> changes =
+        bundleCallback.applyBundledDocuments(
+            documents, bundleMetadata.getBundleId(), /* isFirstChunk= */ !hasSavedChunk);
+    hasSavedChunk = true;
+    documentsSaved += documents.size();
+    return changes;
   }
 
-  /** Applies the loaded documents and queries to local store. Returns the document view changes. */
+  /**
+   * Saves the remaining documents and the queries to local store. Returns the document view
+   * changes of the documents that were saved by this call.
+   */
   public ImmutableSortedMap<DocumentKey, Document> applyChanges() {
     Preconditions.checkArgument(
         currentMetadata == null,
         "Bundled documents end with a document metadata element instead of a document.");
     Preconditions.checkArgument(bundleMetadata.getBundleId() != null, "Bundle ID must be set");
     Preconditions.checkArgument(
-        documents.size() == bundleMetadata.getTotalDocuments(),
+        loadedDocumentKeys.size() == bundleMetadata.getTotalDocuments(),
         "Expected %s documents, but loaded %s.",
         bundleMetadata.getTotalDocuments(),
-        documents.size());
+        loadedDocumentKeys.size());
 
-    ImmutableSortedMap<DocumentKey, Document> changes =
-        bundleCallback.applyBundledDocuments(documents, bundleMetadata.getBundleId());
+    ImmutableSortedMap<DocumentKey, Document> changes = applyDocuments();
 
     Map<String, ImmutableSortedSet<DocumentKey>> queryDocumentMap = getQueryDocumentMapping();
     for (NamedQuery namedQuery : queries) {
@@ -129,6 +185,11 @@ public class BundleLoader {
     return changes;
   }
 
+  private void addDocument(MutableDocument document) {
+    loadedDocumentKeys.add(document.getKey());
+    pendingDocuments = pendingDocuments.insert(document.getKey(), document);
+  }
+
   private Map<String, ImmutableSortedSet<DocumentKey>> getQueryDocumentMapping() {
     Map<String, ImmutableSortedSet<DocumentKey>> queryDocumentMap = new HashMap<>();
     for (NamedQuery namedQuery : queries) {
@@ -14,14 +14,21 @@
 
 package com.google.firebase.firestore.bundle;
 
+import static com.google.firebase.firestore.util.Assert.fail;
+import static com.google.firebase.firestore.util.Assert.hardAssert;
+
 import androidx.annotation.Nullable;
+import com.google.firebase.firestore.util.BackgroundQueue;
 import com.google.firebase.firestore.util.Logger;
-import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -30,28 +37,57 @@ import org.json.JSONObject;
  *
  * <p>The class takes a bundle stream and presents abstractions to read bundled elements out of the
  * underlying content.
+ *
+ * <p>Elements are parsed directly from their UTF-8 encoded bytes. Each element is read into an
+ * internal buffer that grows to fit the largest element of the bundle. If the stream is a {@link
+ * FileInputStream}, the remainder of the file is memory-mapped instead, and elements are parsed
+ * without copying them into the Java heap.
  */
 public class BundleReader {
-  /** The capacity for the internal char buffer. */
+  /** The default initial capacity for the internal byte buffer. */
   protected static final int BUFFER_CAPACITY = 1024;
 
+  /** The number of elements that a single background task decodes in {@link #getNextElements}. */
+  private static final int ELEMENTS_PER_DECODE_TASK = 32;
+
   private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
 
   private final BundleSerializer serializer;
   private final InputStream bundleInputStream;
-  private final InputStreamReader dataReader;
+  private final BundleJsonReader jsonReader = new BundleJsonReader();
+
+  /** Whether {@link #buffer} contains the memory-mapped remainder of the bundle. */
+  private final boolean isMapped;
 
   @Nullable BundleMetadata metadata;
   private ByteBuffer buffer;
   long bytesRead;
 
   public BundleReader(BundleSerializer serializer, InputStream bundleInputStream) {
+    this(serializer, bundleInputStream, BUFFER_CAPACITY);
+  }
+
+  /**
+   * @param serializer The serializer used to decode the bundle elements.
+   * @param bundleInputStream The stream to read the bundle from.
+   * @param bufferCapacity The initial capacity of the internal buffer. The buffer grows if an
+   *     element does not fit.
+   */
+  public BundleReader(
+      BundleSerializer serializer, InputStream bundleInputStream, int bufferCapacity) {
+    hardAssert(bufferCapacity > 0, "Buffer capacity must be positive");
     this.serializer = serializer;
     this.bundleInputStream = bundleInputStream;
-    this.dataReader = new InputStreamReader(this.bundleInputStream);
-    buffer = ByteBuffer.allocate(BUFFER_CAPACITY);
 
-    buffer.flip(); // Start the buffer in "reading mode"
+    ByteBuffer mappedBuffer = mapRemainingFile(bundleInputStream);
+    if (mappedBuffer != null) {
+      buffer = mappedBuffer;
+      isMapped = true;
+    } else {
+      buffer = ByteBuffer.allocate(bufferCapacity);
+      buffer.flip(); // Start the buffer in "reading mode"
+      isMapped = false;
+    }
   }
 
   /** Returns the metadata element from the bundle. */
@@ -81,6 +117,75 @@ public class BundleReader {
     return readNextElement();
   }
 
+  /**
+   * Returns up to {@code maxCount} of the next elements from the bundle, in bundle order. Returns
+   * an empty list if the end of the bundle has been reached.
+   *
+   * <p>The elements are framed on the calling thread and decoded in parallel on a {@link
+   * BackgroundQueue}, which blocks the calling thread until all elements are decoded.
+   */
+  public List<BundleElement> getNextElements(int maxCount) throws IOException, JSONException {
+    getBundleMetadata();
+
+    List<ByteBuffer> rawElements = new ArrayList<>();
+    ByteBuffer json;
+    while (rawElements.size() < maxCount && (json = readNextJson()) != null) {
+      // Unless the bundle is memory-mapped, the internal buffer is overwritten by the next read.
+      rawElements.add(isMapped ? json : ByteBuffer.allocate(json.remaining()).put(json));
+    }
+
+    BundleElement[] elements = new BundleElement[rawElements.size()];
+    Throwable[] firstError = new Throwable[1];
+    BackgroundQueue backgroundQueue = new BackgroundQueue();
+    for (int start = 0; start < elements.length; start += ELEMENTS_PER_DECODE_TASK) {
+      int end = Math.min(start + ELEMENTS_PER_DECODE_TASK, elements.length);
+      int taskStart = start;
+      Runnable decodeTask =
+          () -> {
+            BundleJsonReader taskReader = new BundleJsonReader();
+            try {
+              for (int i = taskStart; i < end; ++i) {
+                ByteBuffer rawElement = rawElements.get(i);
+                rawElement.rewind();
+                elements[i] = decodeBundleElement(rawElement, taskReader);
+              }
+            } catch (Throwable e) {
+              // Errors are rethrown on the calling thread. The BackgroundQueue would otherwise
+              // wait forever for a task that did not return normally.
+              synchronized (firstError) {
+                if (firstError[0] == null) {
+                  firstError[0] = e;
+                }
+              }
+            }
+          };
+      // Since scheduling background tasks incurs overhead, we decode the final batch on the
+      // current thread.
+      if (end == elements.length) {
+        decodeTask.run();
+      } else {
+        backgroundQueue.execute(decodeTask);
+      }
+    }
+
+    try {
+      backgroundQueue.drain();
+    } catch (InterruptedException e) {
+      throw fail("Interrupted while decoding bundle elements", e);
+    }
+
+    if (firstError[0] instanceof JSONException) {
+      throw (JSONException) firstError[0];
+    } else if (firstError[0] instanceof IOException) {
+      throw (IOException) firstError[0];
+    } else if (firstError[0] instanceof Error) {
+      throw (Error) firstError[0];
+    } else if (firstError[0] != null) {
+      throw (RuntimeException) firstError[0];
+    }
+    return Arrays.asList(elements);
+  }
+
   /** Returns the number of bytes processed so far. */
   public long getBytesRead() {
     return bytesRead;
@@ -90,6 +195,28 @@ public class BundleReader {
     bundleInputStream.close();
   }
 
+  /**
+   * Memory-maps the unread remainder of the given stream if it is backed by a file. Returns null if
+   * the stream cannot be mapped, in which case it is read through the internal buffer.
+   */
+  private static @Nullable ByteBuffer mapRemainingFile(InputStream inputStream) {
+    if (!(inputStream instanceof FileInputStream)) {
+      return null;
+    }
+    try {
+      FileChannel channel = ((FileInputStream) inputStream).getChannel();
+      long position = channel.position();
+      ByteBuffer mapped =
+          channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
+      channel.position(channel.size());
+      return mapped;
+    } catch (IOException | IllegalArgumentException e) {
+      // FileChannel.map() rejects regions larger than Integer.MAX_VALUE bytes.
+      Logger.debug("BundleReader", "Failed to memory-map bundle file: %s", e);
+      return null;
+    }
+  }
+
   /**
    * Reads from the head of internal buffer, Pulls more data from underlying stream until a complete
    * element is found (including the prefixed length and the JSON string).
@@ -100,24 +227,36 @@ public class BundleReader {
    */
   @Nullable
   private BundleElement readNextElement() throws IOException, JSONException {
-    String lengthPrefix = readLengthPrefix();
-    if (lengthPrefix == null) {
+    ByteBuffer json = readNextJson();
+    return json != null ? decodeBundleElement(json, jsonReader) : null;
+  }
+
+  /**
+   * Reads the next length-prefixed element and returns a view of its JSON encoding, or null if we
+   * have reached the end of the stream.
+   *
+   * <p>The returned view is only valid until more data is pulled into the internal buffer.
+   */
+  @Nullable
+  private ByteBuffer readNextJson() throws IOException {
+    int prefixByteCount = findOpenBracket();
+    if (prefixByteCount == -1) {
       return null;
     }
 
-    int jsonStringByteCount = Integer.parseInt(lengthPrefix);
-    String json = readJsonString(jsonStringByteCount);
-    bytesRead += lengthPrefix.getBytes(UTF8_CHARSET).length + jsonStringByteCount;
-    return decodeBundleElement(json);
+    int jsonByteCount = readLengthPrefix(prefixByteCount);
+    ByteBuffer json = readJson(jsonByteCount);
+    bytesRead += prefixByteCount + jsonByteCount;
+    return json;
   }
 
   /**
-   * Reads the length prefix from the beginning of the internal buffer until the first '{'. Returns
-   * the integer-decoded length.
+   * Returns the number of bytes before the first '{' at the beginning of the internal buffer,
+   * pulling more data from the underlying stream if needed.
    *
-   * <p>If it reached the end of the stream, returns null.
+   * <p>If it reached the end of the stream, returns -1.
    */
-  private @Nullable String readLengthPrefix() throws IOException {
+  private int findOpenBracket() throws IOException {
     int nextOpenBracket;
 
     while ((nextOpenBracket = indexOfOpenBracket()) == -1) {
@@ -129,7 +268,7 @@ public class BundleReader {
     // We broke out of the loop because underlying stream is closed, and there happens to be no
     // more data to process.
     if (buffer.remaining() == 0) {
-      return null;
+      return -1;
     }
 
     // We broke out of the loop because underlying stream is closed, but still cannot find an
@@ -138,64 +277,81 @@ public class BundleReader {
       throw abort("Reached the end of bundle when a length string is expected.");
     }
 
-    byte[] b = new byte[nextOpenBracket];
-    buffer.get(b);
-    return UTF8_CHARSET.decode(ByteBuffer.wrap(b)).toString();
+    return nextOpenBracket;
   }
 
   /** Returns the index of the first open bracket, or -1 if none is found. */
   private int indexOfOpenBracket() {
-    buffer.mark();
-    try {
-      for (int i = 0; i < buffer.remaining(); ++i) {
-        if (buffer.get() == '{') {
-          return i;
-        }
+    int position = buffer.position();
+    for (int i = 0; i < buffer.remaining(); ++i) {
+      if (buffer.get(position + i) == '{') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Consumes and decodes the ASCII digits of the length prefix. */
+  private int readLengthPrefix(int prefixByteCount) throws IOException {
+    if (prefixByteCount == 0) {
+      throw abort("Missing length prefix.");
+    }
+
+    long length = 0;
+    for (int i = 0; i < prefixByteCount; ++i) {
+      byte digit = buffer.get();
+      if (digit < '0' || digit > '9') {
+        throw abort("Invalid length prefix.");
+      }
+      length = length * 10 + (digit - '0');
+      if (length > Integer.MAX_VALUE) {
+        throw abort("Length prefix exceeds the maximum element size.");
       }
-      return -1;
-    } finally {
-      buffer.reset();
     }
+    return (int) length;
   }
 
   /**
-   * Reads from a specified position from the internal buffer, for a specified number of bytes,
-   * pulling more data from the underlying stream if needed.
+   * Returns a view of the next {@code byteCount} bytes of the internal buffer and advances past
+   * them, pulling more data from the underlying stream if needed.
    *
-   * <p>Returns an object containing the Json string and its UTF8 byte count.
+   * <p>The returned view is only valid until more data is pulled into the buffer.
    */
-  private String readJsonString(int bytesToRead) throws IOException {
-    ByteArrayOutputStream jsonBytes = new ByteArrayOutputStream();
-
-    // Read at least `bytesToRead` number of bytes from the bundle into `this.buffer`, pulling more
-    // data if necessary.
-    // Exactly `bytesToRead` number of bytes will be put in `jsonBytes` after the loop completes.
-    int remaining = bytesToRead;
-    while (remaining > 0) {
-      if (buffer.remaining() == 0 && !pullMoreData()) {
+  private ByteBuffer readJson(int byteCount) throws IOException {
+    while (buffer.remaining() < byteCount) {
+      if (!pullMoreData()) {
         throw abort("Reached the end of bundle when more data was expected.");
       }
-
-      // `read` is the number of bytes guaranteed to exist in `this.buffer` after the above
-      // call to `pullMoreData`. Copy them to `jsonBytes` and advance `this.buffer`'s position.
-      int read = Math.min(remaining, buffer.remaining());
-      jsonBytes.write(buffer.array(), buffer.arrayOffset() + buffer.position(), read);
-      buffer.position(buffer.position() + read);
-
-      remaining -= read;
     }
 
-    return jsonBytes.toString(UTF8_CHARSET.name());
+    ByteBuffer json = buffer.slice();
+    json.limit(byteCount);
+    buffer.position(buffer.position() + byteCount);
+    return json;
   }
 
   /**
-   * Pulls more data from underlying stream into the internal buffer.
+   * Pulls more data from underlying stream into the internal buffer. If the buffer is full, its
+   * capacity is doubled first.
    *
    * @return whether more data was read.
    */
   private boolean pullMoreData() throws IOException {
+    if (isMapped) {
+      // The mapped buffer already contains the entire bundle.
+      return false;
+    }
+
     buffer.compact();
 
+    if (!buffer.hasRemaining()) {
+      // The current element does not fit into the buffer.
+      ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+      buffer.flip();
+      grown.put(buffer);
+      buffer = grown;
+    }
+
     int bytesRead =
         bundleInputStream.read(
             buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
@@ -209,29 +365,48 @@ public class BundleReader {
   }
 
   /** Converts a JSON-encoded bundle element into its model class. */
-  private BundleElement decodeBundleElement(String json) throws JSONException, IOException {
-    JSONObject object = new JSONObject(json);
+  private BundleElement decodeBundleElement(ByteBuffer json, BundleJsonReader jsonReader)
+      throws JSONException, IOException {
+    jsonReader.reset(json);
+    jsonReader.beginObject();
+    String type = jsonReader.hasNext() ? jsonReader.nextName() : "";
 
-    if (object.has("metadata")) {
-      BundleMetadata metadata = serializer.decodeBundleMetadata(object.getJSONObject("metadata"));
-      Logger.debug("BundleElement", "BundleMetadata element loaded");
-      return metadata;
-    } else if (object.has("namedQuery")) {
-      NamedQuery namedQuery = serializer.decodeNamedQuery(object.getJSONObject("namedQuery"));
-      Logger.debug("BundleElement", "Query loaded: " + namedQuery.getName());
-      return namedQuery;
-    } else if (object.has("documentMetadata")) {
-      BundledDocumentMetadata documentMetadata =
-          serializer.decodeBundledDocumentMetadata(object.getJSONObject("documentMetadata"));
-      Logger.debug("BundleElement", "Document metadata loaded: " + documentMetadata.getKey());
-      return documentMetadata;
-    } else if (object.has("document")) {
-      BundleDocument document = serializer.decodeDocument(object.getJSONObject("document"));
-      Logger.debug("BundleElement", "Document loaded: " + document.getKey());
-      return document;
-    } else {
-      throw abort("Cannot decode unknown Bundle element: " + json);
+    BundleElement element;
+    switch (type) {
+      case "metadata":
+        // Metadata and named queries are small and rare, so we decode them via JSONObject.
+        BundleMetadata bundleMetadata =
+            serializer.decodeBundleMetadata(new JSONObject(jsonReader.nextRawValue()));
+        Logger.debug("BundleElement", "BundleMetadata element loaded");
+        element = bundleMetadata;
+        break;
+      case "namedQuery":
+        NamedQuery namedQuery =
+            serializer.decodeNamedQuery(new JSONObject(jsonReader.nextRawValue()));
+        Logger.debug("BundleElement", "Query loaded: " + namedQuery.getName());
+        element = namedQuery;
+        break;
+      case "documentMetadata":
+        BundledDocumentMetadata documentMetadata =
+            serializer.decodeBundledDocumentMetadata(jsonReader);
+        Logger.debug("BundleElement", "Document metadata loaded: " + documentMetadata.getKey());
+        element = documentMetadata;
+        break;
+      case "document":
+        BundleDocument document = serializer.decodeDocument(jsonReader);
+        Logger.debug("BundleElement", "Document loaded: " + document.getKey());
+        element = document;
+        break;
+      default:
+        throw abort("Cannot decode unknown Bundle element: " + UTF8_CHARSET.decode(json));
+    }
+
+    while (jsonReader.hasNext()) {
+      jsonReader.nextName();
+      jsonReader.skipValue();
     }
+    jsonReader.endObject();
+    return element;
   }
 
   /** Closes the underlying stream and raises an IllegalArgumentException. */
@@ -50,7 +50,11 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-/** A JSON serializer to deserialize Firestore Bundles. */
+/**
+ * A JSON serializer to deserialize Firestore Bundles.
+ *
+ * <p>This class is thread-safe, so that a single instance can decode elements in parallel.
+ */
 public class BundleSerializer {
 
   private static final long MILLIS_PER_SECOND = 1000;
@@ -102,6 +106,43 @@ public class BundleSerializer {
     return new BundledDocumentMetadata(key, readTime, exists, queries);
   }
 
+  /**
+   * Decodes the document metadata at the current position of the reader. Produces the same result
+   * as {@link #decodeBundledDocumentMetadata(JSONObject)}.
+   */
+  BundledDocumentMetadata decodeBundledDocumentMetadata(BundleJsonReader reader)
+      throws JSONException {
+    @Nullable String name = null;
+    @Nullable SnapshotVersion readTime = null;
+    boolean exists = false;
+    List<String> queries = new ArrayList<>();
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "name":
+          name = reader.nextString();
+          break;
+        case "readTime":
+          readTime = new SnapshotVersion(decodeTimestamp(reader));
+          break;
+        case "exists":
+          exists = reader.nextBoolean();
+          break;
+        case "queries":
+          decodeStringArray(queries, reader);
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+
+    DocumentKey key = DocumentKey.fromPath(decodeName(require(name, "name")));
+    return new BundledDocumentMetadata(key, require(readTime, "readTime"), exists, queries);
+  }
+
   BundleDocument decodeDocument(JSONObject document) throws JSONException {
     String name = document.getString("name");
     DocumentKey key = DocumentKey.fromPath(decodeName(name));
@@ -115,6 +156,44 @@ public class BundleSerializer {
             key, updateTime, ObjectValue.fromMap(value.getMapValue().getFieldsMap())));
   }
 
+  /**
+   * Decodes the document at the current position of the reader. Produces the same result as
+   * {@link #decodeDocument(JSONObject)}, but decodes the fields without building an intermediate
+   * {@link JSONObject}.
+   */
+  BundleDocument decodeDocument(BundleJsonReader reader) throws JSONException {
+    @Nullable String name = null;
+    @Nullable SnapshotVersion updateTime = null;
+    @Nullable Value.Builder value = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "name":
+          name = reader.nextString();
+          break;
+        case "updateTime":
+          updateTime = new SnapshotVersion(decodeTimestamp(reader));
+          break;
+        case "fields":
+          value = Value.newBuilder();
+          decodeMapValue(value, reader);
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+
+    DocumentKey key = DocumentKey.fromPath(decodeName(require(name, "name")));
+    return new BundleDocument(
+        MutableDocument.newFoundDocument(
+            key,
+            require(updateTime, "updateTime"),
+            ObjectValue.fromMap(require(value, "fields").getMapValue().getFieldsMap())));
+  }
+
   private ResourcePath decodeName(String name) {
     ResourcePath resourcePath = ResourcePath.fromString(name);
     if (!remoteSerializer.isLocalResourceName(resourcePath)) {
@@ -312,6 +391,146 @@ public class BundleSerializer {
     builder.setMapValue(mapBuilder);
   }
 
+  private Value decodeValue(BundleJsonReader reader) throws JSONException {
+    Value.Builder builder = Value.newBuilder();
+
+    reader.beginObject();
+    if (!reader.hasNext()) {
+      throw new IllegalArgumentException("Unexpected value type: {}");
+    }
+    String type = reader.nextName();
+    switch (type) {
+      case "nullValue":
+        reader.skipValue();
+        builder.setNullValue(NullValue.NULL_VALUE);
+        break;
+      case "booleanValue":
+        builder.setBooleanValue(reader.nextBoolean());
+        break;
+      case "integerValue":
+        builder.setIntegerValue(reader.nextLong());
+        break;
+      case "doubleValue":
+        builder.setDoubleValue(reader.nextDouble());
+        break;
+      case "timestampValue":
+        decodeTimestamp(builder, decodeTimestamp(reader));
+        break;
+      case "stringValue":
+        builder.setStringValue(reader.nextString());
+        break;
+      case "bytesValue":
+        builder.setBytesValue(
+            ByteString.copyFrom(Base64.decode(reader.nextString(), Base64.DEFAULT)));
+        break;
+      case "referenceValue":
+        builder.setReferenceValue(reader.nextString());
+        break;
+      case "geoPointValue":
+        decodeGeoPoint(builder, reader);
+        break;
+      case "arrayValue":
+        decodeArrayValue(builder, reader);
+        break;
+      case "mapValue":
+        decodeNestedMapValue(builder, reader);
+        break;
+      default:
+        throw new IllegalArgumentException("Unexpected value type: " + type);
+    }
+    skipRemainingValues(reader);
+    reader.endObject();
+
+    return builder.build();
+  }
+
+  /** Decodes an {@code arrayValue} object, whose elements are nested under "values". */
+  private void decodeArrayValue(Value.Builder builder, BundleJsonReader reader)
+      throws JSONException {
+    ArrayValue.Builder arrayBuilder = ArrayValue.newBuilder();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("values") && reader.peek() == BundleJsonReader.Token.BEGIN_ARRAY) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          arrayBuilder.addValues(decodeValue(reader));
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    builder.setArrayValue(arrayBuilder);
+  }
+
+  /** Decodes a {@code mapValue} object, whose fields are nested under "fields". */
+  private void decodeNestedMapValue(Value.Builder builder, BundleJsonReader reader)
+      throws JSONException {
+    builder.setMapValue(MapValue.getDefaultInstance());
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (reader.nextName().equals("fields")) {
+        decodeMapValue(builder, reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  private void decodeMapValue(Value.Builder builder, BundleJsonReader reader)
+      throws JSONException {
+    MapValue.Builder mapBuilder = MapValue.newBuilder();
+    if (reader.peek() == BundleJsonReader.Token.BEGIN_OBJECT) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String key = reader.nextName();
+        mapBuilder.putFields(key, decodeValue(reader));
+      }
+      reader.endObject();
+    } else {
+      reader.skipValue();
+    }
+    builder.setMapValue(mapBuilder);
+  }
+
+  private void decodeStringArray(List<String> result, BundleJsonReader reader)
+      throws JSONException {
+    if (reader.peek() != BundleJsonReader.Token.BEGIN_ARRAY) {
+      reader.skipValue();
+      return;
+    }
+    reader.beginArray();
+    while (reader.hasNext()) {
+      result.add(reader.nextString());
+    }
+    reader.endArray();
+  }
+
+  private void decodeGeoPoint(Value.Builder builder, BundleJsonReader reader)
+      throws JSONException {
+    double latitude = Double.NaN;
+    double longitude = Double.NaN;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "latitude":
+          latitude = reader.nextDouble();
+          break;
+        case "longitude":
+          longitude = reader.nextDouble();
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    builder.setGeoPointValue(LatLng.newBuilder().setLatitude(latitude).setLongitude(longitude));
+  }
+
   private void decodeGeoPoint(Value.Builder builder, JSONObject geoPoint) {
     builder.setGeoPointValue(
         LatLng.newBuilder()
@@ -352,7 +571,11 @@ public class BundleSerializer {
         secondValue = timeValue.substring(0, pointPosition);
         nanoValue = timeValue.substring(pointPosition + 1);
       }
-      Date date = timestampFormat.parse(secondValue);
+      Date date;
+      // SimpleDateFormat is not thread-safe, and bundle elements are decoded in parallel.
+      synchronized (timestampFormat) {
+        date = timestampFormat.parse(secondValue);
+      }
       long seconds = date.getTime() / MILLIS_PER_SECOND;
       int nanos = nanoValue.isEmpty() ? 0 : parseNanos(nanoValue);
       // Parse timezone offsets.
@@ -390,14 +613,46 @@ public class BundleSerializer {
     }
   }
 
-  private void decodeTimestamp(Value.Builder builder, Object timestamp) throws JSONException {
-    Timestamp decoded = decodeTimestamp(timestamp);
+  private Timestamp decodeTimestamp(BundleJsonReader reader) throws JSONException {
+    BundleJsonReader.Token token = reader.peek();
+    if (token == BundleJsonReader.Token.STRING) {
+      return decodeTimestamp(reader.nextString());
+    } else if (token != BundleJsonReader.Token.BEGIN_OBJECT) {
+      throw new IllegalArgumentException(
+          "Timestamps must be either ISO 8601-formatted strings or JSON objects");
+    }
+
+    long seconds = 0;
+    int nanos = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "seconds":
+          seconds = reader.nextLong();
+          break;
+        case "nanos":
+          nanos = (int) reader.nextLong();
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    return new Timestamp(seconds, nanos);
+  }
+
+  private void decodeTimestamp(Value.Builder builder, Timestamp decoded) {
     builder.setTimestampValue(
         com.google.protobuf.Timestamp.newBuilder()
             .setSeconds(decoded.getSeconds())
             .setNanos(decoded.getNanoseconds()));
   }
 
+  private void decodeTimestamp(Value.Builder builder, Object timestamp) throws JSONException {
+    decodeTimestamp(builder, decodeTimestamp(timestamp));
+  }
+
   private static int parseNanos(String value) {
     int result = 0;
     for (int i = 0; i < 9; ++i) {
@@ -422,6 +677,20 @@ public class BundleSerializer {
     return (Long.parseLong(hours) * 60 + Long.parseLong(minutes)) * 60;
   }
 
+  private static void skipRemainingValues(BundleJsonReader reader) throws JSONException {
+    while (reader.hasNext()) {
+      reader.nextName();
+      reader.skipValue();
+    }
+  }
+
+  private static <T> T require(@Nullable T value, String name) throws JSONException {
+    if (value == null) {
+      throw new JSONException("No value for " + name);
+    }
+    return value;
+  }
+
   private FieldFilter.Operator decodeFieldFilterOperator(String operator) {
     return FieldFilter.Operator.valueOf(operator);
   }
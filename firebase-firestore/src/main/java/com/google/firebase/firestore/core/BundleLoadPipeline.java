@@ -0,0 +1,207 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.core;
+
+import androidx.annotation.Nullable;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.LoadBundleTask;
+import com.google.firebase.firestore.bundle.BundleElement;
+import com.google.firebase.firestore.bundle.BundleLoader;
+import com.google.firebase.firestore.bundle.BundleMetadata;
+import com.google.firebase.firestore.bundle.BundleReader;
+import com.google.firebase.firestore.util.AsyncQueue;
+import com.google.firebase.firestore.util.Logger;
+import com.google.firebase.firestore.util.Supplier;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads a bundle in three pipelined stages:
+ *
+ * <ol>
+ *   <li>A loader task reads the length-prefixed elements from the bundle stream.
+ *   <li>The elements are decoded in parallel on background threads (see {@link
+ *       BundleReader#getNextElements}).
+ *   <li>The decoded elements are handed to the {@link SyncEngine} on the AsyncQueue, which saves
+ *       the documents to local storage in chunks.
+ * </ol>
+ *
+ * <p>The loader task reads and decodes the next batch of elements while the AsyncQueue saves the
+ * previous ones. At most {@link #MAX_PENDING_BATCHES} decoded batches wait for the AsyncQueue at
+ * any time. Once this limit is reached, the loader task blocks until the AsyncQueue catches up.
+ * The loader task stops once the AsyncQueue is shutting down, since the remaining steps would never
+ * run.
+ *
+ * <p>Documents are saved in chunks, so a bundle that fails to load can leave the documents of the
+ * chunks that were saved before the failure in the cache. The bundle is only marked as loaded once
+ * all of its elements have been saved.
+ */
+final class BundleLoadPipeline {
+  private static final String LOG_TAG = "BundleLoadPipeline";
+
+  /** The number of elements that are decoded together and handed to the AsyncQueue at once. */
+  private static final int ELEMENTS_PER_BATCH = 256;
+
+  /** The number of decoded batches that can wait for the AsyncQueue. */
+  private static final int MAX_PENDING_BATCHES = 2;
+
+  /** How often a blocked loader task checks whether the AsyncQueue has been shut down. */
+  private static final long SHUTDOWN_CHECK_INTERVAL_MS = 1000;
+
+  /**
+   * Runs the loader tasks of all bundle loads. Unlike {@link
+   * com.google.firebase.firestore.util.Executors#BACKGROUND_EXECUTOR}, it never runs a task on the
+   * calling thread, so starting a load does not block the main thread. Idle threads are released
+   * after a minute.
+   */
+  static final Executor LOADER_EXECUTOR =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            thread.setName("FirestoreBundleLoader");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final AsyncQueue asyncQueue;
+  private final Supplier<SyncEngine> syncEngine;
+  private final BundleReader bundleReader;
+  private final LoadBundleTask resultTask;
+  private final Executor executor;
+
+  /** The steps that have been scheduled on the AsyncQueue but may not have run yet. */
+  private final Deque<Task<Void>> pendingSteps = new ArrayDeque<>();
+
+  /** The loader that is used on the AsyncQueue. Null until the load has been started. */
+  @Nullable private BundleLoader bundleLoader;
+
+  /**
+   * @param asyncQueue The queue on which the elements are saved.
+   * @param syncEngine Supplies the SyncEngine. Only called on the AsyncQueue.
+   * @param bundleReader The reader of the bundle, which is closed once the bundle is loaded.
+   * @param resultTask The task that reports the progress and result of the load.
+   * @param executor The executor that runs the loader task.
+   */
+  BundleLoadPipeline(
+      AsyncQueue asyncQueue,
+      Supplier<SyncEngine> syncEngine,
+      BundleReader bundleReader,
+      LoadBundleTask resultTask,
+      Executor executor) {
+    this.asyncQueue = asyncQueue;
+    this.syncEngine = syncEngine;
+    this.bundleReader = bundleReader;
+    this.resultTask = resultTask;
+    this.executor = executor;
+  }
+
+  /** Starts loading the bundle on the executor. */
+  void start() {
+    executor.execute(this::run);
+  }
+
+  private void run() {
+    try {
+      BundleMetadata bundleMetadata = bundleReader.getBundleMetadata();
+      enqueueStep(
+          () -> bundleLoader = syncEngine.get().startBundleLoad(bundleMetadata, resultTask));
+
+      long bytesRead = 0;
+      List<BundleElement> elements;
+      // The task is only completed on the AsyncQueue, but checking it here stops reading the bundle
+      // early once a step has failed. LoadBundleTask is safe to read from any thread.
+      while (!resultTask.isComplete()
+          && !(elements = bundleReader.getNextElements(ELEMENTS_PER_BATCH)).isEmpty()) {
+        List<BundleElement> batch = elements;
+        long byteSize = bundleReader.getBytesRead() - bytesRead;
+        bytesRead = bundleReader.getBytesRead();
+        enqueueStep(
+            () -> syncEngine.get().addBundleElements(bundleLoader, batch, byteSize, resultTask));
+      }
+
+      enqueueStep(() -> syncEngine.get().completeBundleLoad(bundleLoader, resultTask));
+    } catch (Exception e) {
+      // Fail the task after all pending steps have run, as they may have already completed it.
+      asyncQueue.enqueueAndForget(
+          "Fail bundle load",
+          () -> {
+            if (!resultTask.isComplete()) {
+              syncEngine.get().failBundleLoad(e, resultTask);
+            }
+          });
+    } finally {
+      try {
+        bundleReader.close();
+      } catch (IOException e) {
+        Logger.warn(LOG_TAG, "Exception while closing bundle", e);
+      }
+    }
+  }
+
+  /**
+   * Schedules a step on the AsyncQueue, blocking the loader task while too many steps are
+   * pending. The step is skipped if the task has already completed, and an exception thrown by the
+   * step fails the task.
+   */
+  private void enqueueStep(Runnable step) throws ExecutionException, InterruptedException {
+    while (pendingSteps.size() >= MAX_PENDING_BATCHES) {
+      awaitStep(pendingSteps.remove());
+    }
+    verifyNotShuttingDown();
+
+    pendingSteps.add(
+        asyncQueue.enqueue(
+            "Load bundle",
+            () -> {
+              if (resultTask.isComplete()) {
+                return;
+              }
+              try {
+                step.run();
+              } catch (Exception e) {
+                syncEngine.get().failBundleLoad(e, resultTask);
+              }
+            }));
+  }
+
+  /**
+   * Waits for a step to finish. Since steps that are scheduled after the AsyncQueue is shut down
+   * never run, this gives up once the AsyncQueue is shutting down.
+   */
+  private void awaitStep(Task<Void> step) throws ExecutionException, InterruptedException {
+    while (true) {
+      try {
+        Tasks.await(step, SHUTDOWN_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        return;
+      } catch (TimeoutException e) {
+        verifyNotShuttingDown();
+      }
+    }
+  }
+
+  private void verifyNotShuttingDown() {
+    if (asyncQueue.isShuttingDown()) {
+      throw new IllegalStateException("The client has already been terminated");
+    }
+  }
+}
@@ -53,6 +53,7 @@ public abstract class ComponentProvider {
     private final User initialUser;
     private final int maxConcurrentLimboResolutions;
     private final FirebaseFirestoreSettings settings;
+    private final boolean adaptiveWritePipeline;
 
     public Configuration(
         Context context,
@@ -62,6 +63,26 @@ public abstract class ComponentProvider {
         User initialUser,
         int maxConcurrentLimboResolutions,
         FirebaseFirestoreSettings settings) {
+      this(
+          context,
+          asyncQueue,
+          databaseInfo,
+          datastore,
+          initialUser,
+          maxConcurrentLimboResolutions,
+          settings,
+          /* adaptiveWritePipeline= */ false);
+    }
+
+    public Configuration(
+        Context context,
+        AsyncQueue asyncQueue,
+        DatabaseInfo databaseInfo,
+        Datastore datastore,
+        User initialUser,
+        int maxConcurrentLimboResolutions,
+        FirebaseFirestoreSettings settings,
+        boolean adaptiveWritePipeline) {
       this.context = context;
       this.asyncQueue = asyncQueue;
       this.databaseInfo = databaseInfo;
@@ -69,6 +90,7 @@ public abstract class ComponentProvider {
       this.initialUser = initialUser;
       this.maxConcurrentLimboResolutions = maxConcurrentLimboResolutions;
       this.settings = settings;
+      this.adaptiveWritePipeline = adaptiveWritePipeline;
     }
 
     FirebaseFirestoreSettings getSettings() {
@@ -95,6 +117,10 @@ public abstract class ComponentProvider {
       return maxConcurrentLimboResolutions;
     }
 
+    boolean isAdaptiveWritePipeline() {
+      return adaptiveWritePipeline;
+    }
+
     Context getContext() {
       return context;
     }
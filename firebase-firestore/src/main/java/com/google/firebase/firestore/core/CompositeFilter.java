@@ -28,6 +28,8 @@ public class CompositeFilter extends Filter {
   private final List<Filter> filters;
   private final Operator operator;
 
+  private @Nullable String memoizedCanonicalId;
+
   public CompositeFilter(List<Filter> filters, Operator operator) {
     this.filters = filters;
     this.operator = operator;
@@ -134,13 +136,18 @@ public class CompositeFilter extends Filter {
   public String getCanonicalId() {
     // TODO(orquery): Add special case for flat AND filters.
 
+    if (memoizedCanonicalId != null) {
+      return memoizedCanonicalId;
+    }
+
     List<String> canonicalIds = new ArrayList<>();
     for (Filter filter : filters) canonicalIds.add(filter.getCanonicalId());
     StringBuilder builder = new StringBuilder();
     builder.append(isConjunction() ? "and(" : "or(");
     TextUtils.join(",", canonicalIds);
     builder.append(")");
-    return builder.toString();
+    memoizedCanonicalId = builder.toString();
+    return memoizedCanonicalId;
   }
 
   @Override
@@ -16,8 +16,12 @@ package com.google.firebase.firestore.core;
 
 import static com.google.firebase.firestore.util.Assert.hardAssert;
 
+import androidx.annotation.Nullable;
 import com.google.firebase.firestore.EventListener;
 import com.google.firebase.firestore.core.SyncEngine.SyncEngineCallback;
+import com.google.firebase.firestore.util.AsyncQueue;
+import com.google.firebase.firestore.util.AsyncQueue.DelayedTask;
+import com.google.firebase.firestore.util.AsyncQueue.TimerId;
 import com.google.firebase.firestore.util.Util;
 import io.grpc.Status;
 import java.util.ArrayList;
@@ -30,6 +34,11 @@ import java.util.Set;
 /**
  * EventManager is responsible for mapping queries to query event listeners. It handles "fan-out."
  * (Identical queries will re-use the same watch on the backend.)
+ *
+ * <p>Listeners that specify a coalescing window receive the snapshots that arrive within the window
+ * as a single merged snapshot once the window closes. Coalescing requires an AsyncQueue to schedule
+ * the end of the window on; without one, all snapshots are raised immediately. Snapshots-in-sync
+ * events do not wait for coalesced snapshots to be raised.
  */
 public final class EventManager implements SyncEngineCallback {
 
@@ -53,18 +62,34 @@ public final class EventManager implements SyncEngineCallback {
 
     /** Wait for a sync with the server when online, but still raise events while offline. */
     public boolean waitForSyncWhenOnline;
+
+    /**
+     * Merge the changes that arrive within this many milliseconds after the initial event into a
+     * single event. Changes are raised immediately if 0.
+     */
+    public long coalescingWindowMs;
   }
 
   private final SyncEngine syncEngine;
 
+  @Nullable private final AsyncQueue asyncQueue;
+
   private final Map<Query, QueryListenersInfo> queries;
 
+  /** The timers that close the open coalescing windows, keyed by listener. */
+  private final Map<QueryListener, DelayedTask> coalescingTimers = new HashMap<>();
+
   private final Set<EventListener<Void>> snapshotsInSyncListeners = new HashSet<>();
 
   private OnlineState onlineState = OnlineState.UNKNOWN;
 
   public EventManager(SyncEngine syncEngine) {
+    this(syncEngine, /* asyncQueue= */ null);
+  }
+
+  public EventManager(SyncEngine syncEngine, @Nullable AsyncQueue asyncQueue) {
     this.syncEngine = syncEngine;
+    this.asyncQueue = asyncQueue;
     queries = new HashMap<>();
     syncEngine.setCallback(this);
   }
@@ -109,6 +134,7 @@ public final class EventManager implements SyncEngineCallback {
   /** Removes a previously added listener. It's a no-op if the listener is not found. */
   public void removeQueryListener(QueryListener listener) {
     Query query = listener.getQuery();
+    cancelCoalescingTimer(listener);
     QueryListenersInfo queryInfo = queries.get(query);
     boolean lastListen = false;
     if (queryInfo != null) {
@@ -146,7 +172,11 @@ public final class EventManager implements SyncEngineCallback {
       QueryListenersInfo info = queries.get(query);
       if (info != null) {
         for (QueryListener listener : info.listeners) {
-          if (listener.onViewSnapshot(viewSnapshot)) {
+          if (asyncQueue != null && listener.shouldCoalesce()) {
+            if (listener.coalesceViewSnapshot(viewSnapshot)) {
+              scheduleCoalescingTimer(listener);
+            }
+          } else if (listener.onViewSnapshot(viewSnapshot)) {
             raisedEvent = true;
           }
         }
@@ -163,6 +193,7 @@ public final class EventManager implements SyncEngineCallback {
     QueryListenersInfo info = queries.get(query);
     if (info != null) {
       for (QueryListener listener : info.listeners) {
+        cancelCoalescingTimer(listener);
         listener.onError(Util.exceptionFromStatus(error));
       }
     }
@@ -184,4 +215,25 @@ public final class EventManager implements SyncEngineCallback {
       raiseSnapshotsInSyncEvent();
     }
   }
+
+  private void scheduleCoalescingTimer(QueryListener listener) {
+    DelayedTask timer =
+        asyncQueue.enqueueAfterDelay(
+            TimerId.SNAPSHOT_COALESCING,
+            listener.getCoalescingWindowMs(),
+            () -> {
+              coalescingTimers.remove(listener);
+              if (listener.raiseCoalescedSnapshot()) {
+                raiseSnapshotsInSyncEvent();
+              }
+            });
+    coalescingTimers.put(listener, timer);
+  }
+
+  private void cancelCoalescingTimer(QueryListener listener) {
+    DelayedTask timer = coalescingTimers.remove(listener);
+    if (timer != null) {
+      timer.cancel();
+    }
+  }
 }
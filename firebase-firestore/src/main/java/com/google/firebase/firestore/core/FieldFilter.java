@@ -16,6 +16,7 @@ package com.google.firebase.firestore.core;
 
 import static com.google.firebase.firestore.util.Assert.hardAssert;
 
+import androidx.annotation.Nullable;
 import com.google.firebase.firestore.model.Document;
 import com.google.firebase.firestore.model.FieldPath;
 import com.google.firebase.firestore.model.Values;
@@ -57,6 +58,10 @@ public class FieldFilter extends Filter {
 
   private final FieldPath field;
 
+  private @Nullable String memoizedCanonicalId;
+
+  private int memoizedHashCode;
+
   /**
    * Creates a new filter that compares fields and values. Only intended to be called from
    * Filter.create().
@@ -64,7 +69,8 @@ public class FieldFilter extends Filter {
   protected FieldFilter(FieldPath field, Operator operator, Value value) {
     this.field = field;
     this.operator = operator;
-    this.value = value;
+    // Array values can be large, so equal filters share them to make comparisons cheap.
+    this.value = Values.isArray(value) ? FilterValueInterner.intern(value) : value;
   }
 
   public Operator getOperator() {
@@ -155,9 +161,13 @@ public class FieldFilter extends Filter {
 
   @Override
   public String getCanonicalId() {
-    // TODO: Technically, this won't be unique if two values have the same description,
-    // such as the int 3 and the string "3". So we should add the types in here somehow, too.
-    return getField().canonicalString() + getOperator().toString() + Values.canonicalId(getValue());
+    if (memoizedCanonicalId == null) {
+      // TODO: Technically, this won't be unique if two values have the same description,
+      // such as the int 3 and the string "3". So we should add the types in here somehow, too.
+      memoizedCanonicalId =
+          getField().canonicalString() + getOperator().toString() + Values.canonicalId(getValue());
+    }
+    return memoizedCanonicalId;
   }
 
   @Override
@@ -191,15 +201,21 @@ public class FieldFilter extends Filter {
       return false;
     }
     FieldFilter other = (FieldFilter) o;
+    if (hashCode() != other.hashCode()) {
+      return false;
+    }
     return operator == other.operator && field.equals(other.field) && value.equals(other.value);
   }
 
   @Override
   public int hashCode() {
-    int result = 37;
-    result = 31 * result + operator.hashCode();
-    result = 31 * result + field.hashCode();
-    result = 31 * result + value.hashCode();
-    return result;
+    if (memoizedHashCode == 0) {
+      int result = 37;
+      result = 31 * result + operator.hashCode();
+      result = 31 * result + field.hashCode();
+      result = 31 * result + value.hashCode();
+      memoizedHashCode = result;
+    }
+    return memoizedHashCode;
   }
 }
@@ -0,0 +1,48 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.core;
+
+import com.google.firestore.v1.Value;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Hash-conses the array values of filters, so that equal {@code in}, {@code not-in} and {@code
+ * array-contains-any} filters share a single {@link Value} instance.
+ *
+ * <p>Queries are used as keys by the SyncEngine and the EventManager, and comparing two equal
+ * queries compares all of their filter values. Sharing the instances reduces these comparisons to
+ * identity checks once a value has been interned. Entries are held weakly and are dropped once no
+ * filter refers to their value anymore.
+ */
+final class FilterValueInterner {
+  private static final Map<Value, WeakReference<Value>> values = new WeakHashMap<>();
+
+  private FilterValueInterner() {}
+
+  /** Returns the canonical instance of the given value. */
+  static Value intern(Value value) {
+    synchronized (values) {
+      WeakReference<Value> reference = values.get(value);
+      Value interned = reference != null ? reference.get() : null;
+      if (interned == null) {
+        values.put(value, new WeakReference<>(value));
+        interned = value;
+      }
+      return interned;
+    }
+  }
+}
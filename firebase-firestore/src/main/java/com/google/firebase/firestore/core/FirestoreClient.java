@@ -46,6 +46,7 @@ import com.google.firebase.firestore.remote.GrpcMetadataProvider;
 import com.google.firebase.firestore.remote.RemoteSerializer;
 import com.google.firebase.firestore.remote.RemoteStore;
 import com.google.firebase.firestore.util.AsyncQueue;
+import com.google.firebase.firestore.util.Executors;
 import com.google.firebase.firestore.util.Function;
 import com.google.firebase.firestore.util.Logger;
 import java.io.InputStream;
@@ -102,6 +103,7 @@ public final class FirestoreClient {
     // guaranteed to be synchronously dispatched onto our worker queue, so we will be initialized
     // before any subsequently queued work runs.
     asyncQueue.enqueueAndForget(
+        "Initialize",
         () -> {
           try {
             // Block on initial user being available
@@ -119,6 +121,7 @@ public final class FirestoreClient {
             firstUser.setResult(user);
           } else {
             asyncQueue.enqueueAndForget(
+                "Change user",
                 () -> {
                   hardAssert(syncEngine != null, "SyncEngine not yet initialized");
                   Logger.debug(LOG_TAG, "Credential changed. Current user: %s", user.getUid());
@@ -132,6 +135,7 @@ public final class FirestoreClient {
           // This will ensure that once a new App Check token is retrieved, streams are
           // re-established using the new token.
           asyncQueue.enqueueAndForget(
+              "Change App Check token",
               () -> {
                 Logger.debug(LOG_TAG, "App Check token changed.");
                 remoteStore.handleCredentialChange();
@@ -141,12 +145,12 @@ public final class FirestoreClient {
 
   public Task<Void> disableNetwork() {
     this.verifyNotTerminated();
-    return asyncQueue.enqueue(() -> remoteStore.disableNetwork());
+    return asyncQueue.enqueue("Disable network", () -> remoteStore.disableNetwork());
   }
 
   public Task<Void> enableNetwork() {
     this.verifyNotTerminated();
-    return asyncQueue.enqueue(() -> remoteStore.enableNetwork());
+    return asyncQueue.enqueue("Enable network", () -> remoteStore.enableNetwork());
   }
 
   /** Terminates this client, cancels all writes / listeners, and releases all resources. */
@@ -178,7 +182,7 @@ public final class FirestoreClient {
       Query query, ListenOptions options, EventListener<ViewSnapshot> listener) {
     this.verifyNotTerminated();
     QueryListener queryListener = new QueryListener(query, options, listener);
-    asyncQueue.enqueueAndForget(() -> eventManager.addQueryListener(queryListener));
+    asyncQueue.enqueueAndForget("Listen", () -> eventManager.addQueryListener(queryListener));
     return queryListener;
   }
 
@@ -189,13 +193,13 @@ public final class FirestoreClient {
     if (this.isTerminated()) {
       return;
     }
-    asyncQueue.enqueueAndForget(() -> eventManager.removeQueryListener(listener));
+    asyncQueue.enqueueAndForget("Stop listening", () -> eventManager.removeQueryListener(listener));
   }
 
   public Task<Document> getDocumentFromLocalCache(DocumentKey docKey) {
     this.verifyNotTerminated();
     return asyncQueue
-        .enqueue(() -> localStore.readDocument(docKey))
+        .enqueue("Get document from cache", () -> localStore.readDocument(docKey))
         .continueWith(
             (result) -> {
               Document document = result.getResult();
@@ -215,20 +219,29 @@ public final class FirestoreClient {
 
   public Task<ViewSnapshot> getDocumentsFromLocalCache(Query query) {
     this.verifyNotTerminated();
-    return asyncQueue.enqueue(
-        () -> {
-          QueryResult queryResult = localStore.executeQuery(query, /* usePreviousResults= */ true);
-          View view = new View(query, queryResult.getRemoteKeys());
-          View.DocumentChanges viewDocChanges = view.computeDocChanges(queryResult.getDocuments());
-          return view.applyChanges(viewDocChanges).getSnapshot();
-        });
+    // Only the reads from the LocalStore need to be serialized with writes and remote events. The
+    // documents in the QueryResult are not shared with any other component, so the View is
+    // computed on a background thread to keep large cache queries from blocking the AsyncQueue.
+    return asyncQueue
+        .enqueue(
+            "Get documents from cache",
+            () -> localStore.executeQuery(query, /* usePreviousResults= */ true))
+        .continueWith(
+            Executors.BACKGROUND_EXECUTOR,
+            result -> {
+              QueryResult queryResult = result.getResult();
+              View view = new View(query, queryResult.getRemoteKeys());
+              View.DocumentChanges viewDocChanges =
+                  view.computeDocChanges(queryResult.getDocuments());
+              return view.applyChanges(viewDocChanges).getSnapshot();
+            });
   }
 
   /** Writes mutations. The returned task will be notified when it's written to the backend. */
   public Task<Void> write(final List<Mutation> mutations) {
     this.verifyNotTerminated();
     final TaskCompletionSource<Void> source = new TaskCompletionSource<>();
-    asyncQueue.enqueueAndForget(() -> syncEngine.writeMutations(mutations, source));
+    asyncQueue.enqueueAndForget("Write", () -> syncEngine.writeMutations(mutations, source));
     return source.getTask();
   }
 
@@ -247,7 +260,8 @@ public final class FirestoreClient {
     this.verifyNotTerminated();
 
     final TaskCompletionSource<Void> source = new TaskCompletionSource<>();
-    asyncQueue.enqueueAndForget(() -> syncEngine.registerPendingWritesTask(source));
+    asyncQueue.enqueueAndForget(
+        "Wait for pending writes", () -> syncEngine.registerPendingWritesTask(source));
     return source.getTask();
   }
 
@@ -268,7 +282,8 @@ public final class FirestoreClient {
             datastore,
             user,
             MAX_CONCURRENT_LIMBO_RESOLUTIONS,
-            settings);
+            settings,
+            /* adaptiveWritePipeline= */ true);
 
     ComponentProvider provider =
         settings.isPersistenceEnabled()
@@ -295,19 +310,27 @@ public final class FirestoreClient {
 
   public void addSnapshotsInSyncListener(EventListener<Void> listener) {
     verifyNotTerminated();
-    asyncQueue.enqueueAndForget(() -> eventManager.addSnapshotsInSyncListener(listener));
+    asyncQueue.enqueueAndForget(
+        "Add snapshots in sync listener", () -> eventManager.addSnapshotsInSyncListener(listener));
   }
 
   public void loadBundle(InputStream bundleData, LoadBundleTask resultTask) {
     verifyNotTerminated();
     BundleReader bundleReader = new BundleReader(bundleSerializer, bundleData);
-    asyncQueue.enqueueAndForget(() -> syncEngine.loadBundle(bundleReader, resultTask));
+    new BundleLoadPipeline(
+            asyncQueue,
+            () -> syncEngine,
+            bundleReader,
+            resultTask,
+            BundleLoadPipeline.LOADER_EXECUTOR)
+        .start();
   }
 
   public Task<Query> getNamedQuery(String queryName) {
     verifyNotTerminated();
     TaskCompletionSource<Query> completionSource = new TaskCompletionSource<>();
     asyncQueue.enqueueAndForget(
+        "Get named query",
         () -> {
           NamedQuery namedQuery = localStore.getNamedQuery(queryName);
           if (namedQuery != null) {
@@ -331,7 +354,8 @@ public final class FirestoreClient {
 
   public Task<Void> configureFieldIndexes(List<FieldIndex> fieldIndices) {
     verifyNotTerminated();
-    return asyncQueue.enqueue(() -> localStore.configureFieldIndexes(fieldIndices));
+    return asyncQueue.enqueue(
+        "Configure field indexes", () -> localStore.configureFieldIndexes(fieldIndices));
   }
 
   public void removeSnapshotsInSyncListener(EventListener<Void> listener) {
@@ -339,7 +363,9 @@ public final class FirestoreClient {
     if (isTerminated()) {
       return;
     }
-    asyncQueue.enqueueAndForget(() -> eventManager.removeSnapshotsInSyncListener(listener));
+    asyncQueue.enqueueAndForget(
+        "Remove snapshots in sync listener",
+        () -> eventManager.removeSnapshotsInSyncListener(listener));
   }
 
   private void verifyNotTerminated() {
@@ -17,6 +17,7 @@ package com.google.firebase.firestore.core;
 import androidx.annotation.Nullable;
 import com.google.firebase.database.collection.ImmutableSortedSet;
 import com.google.firebase.firestore.local.IndexBackfiller;
+import com.google.firebase.firestore.local.LocalSerializer;
 import com.google.firebase.firestore.local.LocalStore;
 import com.google.firebase.firestore.local.MemoryPersistence;
 import com.google.firebase.firestore.local.Persistence;
@@ -26,6 +27,7 @@ import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.mutation.MutationBatchResult;
 import com.google.firebase.firestore.remote.AndroidConnectivityMonitor;
 import com.google.firebase.firestore.remote.RemoteEvent;
+import com.google.firebase.firestore.remote.RemoteSerializer;
 import com.google.firebase.firestore.remote.RemoteStore;
 import io.grpc.Status;
 
@@ -49,7 +51,7 @@ public class MemoryComponentProvider extends ComponentProvider {
 
   @Override
   protected EventManager createEventManager(Configuration configuration) {
-    return new EventManager(getSyncEngine());
+    return new EventManager(getSyncEngine(), configuration.getAsyncQueue());
   }
 
   @Override
@@ -65,6 +67,12 @@ public class MemoryComponentProvider extends ComponentProvider {
 
   @Override
   protected Persistence createPersistence(Configuration configuration) {
+    if (configuration.getSettings().isCompactMemoryCacheEnabled()) {
+      LocalSerializer serializer =
+          new LocalSerializer(
+              new RemoteSerializer(configuration.getDatabaseInfo().getDatabaseId()));
+      return MemoryPersistence.createCompactEagerGcMemoryPersistence(serializer);
+    }
     return MemoryPersistence.createEagerGcMemoryPersistence();
   }
 
@@ -75,7 +83,8 @@ public class MemoryComponentProvider extends ComponentProvider {
         getLocalStore(),
         configuration.getDatastore(),
         configuration.getAsyncQueue(),
-        getConnectivityMonitor());
+        getConnectivityMonitor(),
+        configuration.isAdaptiveWritePipeline());
   }
 
   @Override
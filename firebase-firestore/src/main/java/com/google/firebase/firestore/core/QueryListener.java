@@ -48,6 +48,9 @@ public class QueryListener {
 
   private @Nullable ViewSnapshot snapshot;
 
+  /** The snapshots that arrived in the current coalescing window, merged into one snapshot. */
+  private @Nullable ViewSnapshot coalescedSnapshot;
+
   public QueryListener(
       Query query, EventManager.ListenOptions options, EventListener<ViewSnapshot> listener) {
     this.query = query;
@@ -104,7 +107,46 @@ public class QueryListener {
     return raisedEvent;
   }
 
+  /**
+   * Returns whether a new ViewSnapshot should be coalesced with the snapshots that follow it rather
+   * than applied immediately. The initial event is never delayed.
+   */
+  boolean shouldCoalesce() {
+    return options.coalescingWindowMs > 0 && raisedInitialEvent;
+  }
+
+  long getCoalescingWindowMs() {
+    return options.coalescingWindowMs;
+  }
+
+  /**
+   * Merges the new ViewSnapshot with the snapshots that arrived earlier in the current coalescing
+   * window. Returns true if this snapshot opened a new window.
+   */
+  boolean coalesceViewSnapshot(ViewSnapshot newSnapshot) {
+    boolean openedWindow = coalescedSnapshot == null;
+    coalescedSnapshot =
+        openedWindow ? newSnapshot : mergeViewSnapshots(coalescedSnapshot, newSnapshot);
+    return openedWindow;
+  }
+
+  /**
+   * Closes the current coalescing window and applies the merged ViewSnapshot as in {@link
+   * #onViewSnapshot}. Returns true if a user-facing event was raised.
+   */
+  boolean raiseCoalescedSnapshot() {
+    ViewSnapshot newSnapshot = coalescedSnapshot;
+    coalescedSnapshot = null;
+    if (newSnapshot == null
+        || (newSnapshot.getChanges().isEmpty() && !newSnapshot.didSyncStateChange())) {
+      // The changes in the window cancelled each other out.
+      return false;
+    }
+    return onViewSnapshot(newSnapshot);
+  }
+
   public void onError(FirebaseFirestoreException error) {
+    coalescedSnapshot = null;
     listener.onEvent(null, error);
   }
 
@@ -163,6 +205,32 @@ public class QueryListener {
     return false;
   }
 
+  /**
+   * Merges two consecutive ViewSnapshots into one that contains the documents of the newer snapshot
+   * and the combined changes from the documents before the older snapshot.
+   */
+  static ViewSnapshot mergeViewSnapshots(ViewSnapshot older, ViewSnapshot newer) {
+    DocumentViewChangeSet changeSet = new DocumentViewChangeSet();
+    for (DocumentViewChange change : older.getChanges()) {
+      changeSet.addChange(change);
+    }
+    for (DocumentViewChange change : newer.getChanges()) {
+      changeSet.addChange(change);
+    }
+    List<DocumentViewChange> changes = changeSet.getChanges();
+    View.sortChanges(changes, newer.getQuery());
+
+    return new ViewSnapshot(
+        newer.getQuery(),
+        newer.getDocuments(),
+        older.getOldDocuments(),
+        changes,
+        newer.isFromCache(),
+        newer.getMutatedKeys(),
+        older.didSyncStateChange() || newer.didSyncStateChange(),
+        /* excludesMetadataChanges= */ false);
+  }
+
   private void raiseInitialEvent(ViewSnapshot snapshot) {
     hardAssert(!raisedInitialEvent, "Trying to raise initial event for second time");
     snapshot =
@@ -0,0 +1,368 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.core;
+
+import androidx.annotation.Nullable;
+import com.google.firebase.firestore.core.FieldFilter.Operator;
+import com.google.firebase.firestore.model.Document;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.FieldPath;
+import com.google.firebase.firestore.model.ResourcePath;
+import com.google.firebase.firestore.model.Values;
+import com.google.firebase.firestore.util.Util;
+import com.google.firestore.v1.ArrayValue;
+import com.google.firestore.v1.Value;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled form of a query's constraints, which determines whether a document matches the
+ * query.
+ *
+ * <p>Compiling a query assigns a slot to each field that is referenced by its filters and
+ * order-bys, so that each field is looked up at most once per document. Comparisons against
+ * integer, string and boolean operands use specialized comparisons, and filters are reordered so
+ * that cheap and selective filters are evaluated first. Since filters do not have side effects,
+ * the evaluation order does not change the result.
+ *
+ * <p>Instances are immutable and may be used from multiple threads.
+ */
+final class QueryMatcher {
+  /** Marks a field that has not yet been looked up for the current document. */
+  private static final Value UNRESOLVED = Value.newBuilder().setStringValue("<unresolved>").build();
+
+  /** Filter ranks, in the order in which filters are evaluated. */
+  private static final int RANK_KEY = 0;
+
+  private static final int RANK_EQUALITY = 1;
+  private static final int RANK_RANGE = 2;
+  private static final int RANK_INEQUALITY = 3;
+  private static final int RANK_COMPOSITE = 4;
+
+  /** Evaluates a single filter against a document. */
+  private interface Evaluator {
+    boolean matches(Document doc, FieldValues values);
+  }
+
+  /** The values of the fields referenced by the query for a single document. */
+  private static final class FieldValues {
+    private final Document doc;
+    private final FieldPath[] paths;
+    private final Value[] values;
+
+    FieldValues(Document doc, FieldPath[] paths) {
+      this.doc = doc;
+      this.paths = paths;
+      this.values = new Value[paths.length];
+      Arrays.fill(values, UNRESOLVED);
+    }
+
+    /** Returns the value of the field in the given slot, or {@code null} if it does not exist. */
+    @Nullable
+    Value get(int slot) {
+      Value value = values[slot];
+      if (value == UNRESOLVED) {
+        value = doc.getField(paths[slot]);
+        values[slot] = value;
+      }
+      return value;
+    }
+  }
+
+  private final ResourcePath path;
+  private final @Nullable String collectionGroup;
+  private final boolean isDocumentPath;
+  private final FieldPath[] fieldPaths;
+  private final int[] orderBySlots;
+  private final Evaluator[] filters;
+  private final List<OrderBy> orderBy;
+  private final @Nullable Bound startAt;
+  private final @Nullable Bound endAt;
+
+  /** Compiles the constraints of the given query. */
+  static QueryMatcher compile(Query query) {
+    return new QueryMatcher(query);
+  }
+
+  private QueryMatcher(Query query) {
+    path = query.getPath();
+    collectionGroup = query.getCollectionGroup();
+    isDocumentPath = DocumentKey.isDocumentKey(path);
+    orderBy = query.getOrderBy();
+    startAt = query.getStartAt();
+    endAt = query.getEndAt();
+
+    Map<FieldPath, Integer> slots = new HashMap<>();
+
+    List<Integer> orderBySlotList = new ArrayList<>();
+    for (OrderBy order : query.getExplicitOrderBy()) {
+      // Order by key always matches.
+      if (!order.getField().equals(FieldPath.KEY_PATH)) {
+        orderBySlotList.add(slotFor(order.getField(), slots));
+      }
+    }
+    orderBySlots = new int[orderBySlotList.size()];
+    for (int i = 0; i < orderBySlots.length; ++i) {
+      orderBySlots[i] = orderBySlotList.get(i);
+    }
+
+    List<Evaluator> evaluators = compileAll(query.getFilters(), slots);
+    filters = evaluators.toArray(new Evaluator[0]);
+
+    fieldPaths = new FieldPath[slots.size()];
+    for (Map.Entry<FieldPath, Integer> entry : slots.entrySet()) {
+      fieldPaths[entry.getValue()] = entry.getKey();
+    }
+  }
+
+  /** Returns true if the document matches the constraints of the compiled query. */
+  boolean matches(Document doc) {
+    if (!doc.isFoundDocument() || !matchesPathAndCollectionGroup(doc)) {
+      return false;
+    }
+
+    FieldValues values = new FieldValues(doc, fieldPaths);
+
+    // A document must have a value for every ordering clause in order to show up in the results.
+    for (int slot : orderBySlots) {
+      if (values.get(slot) == null) {
+        return false;
+      }
+    }
+
+    for (Evaluator filter : filters) {
+      if (!filter.matches(doc, values)) {
+        return false;
+      }
+    }
+
+    return matchesBounds(doc);
+  }
+
+  private boolean matchesPathAndCollectionGroup(Document doc) {
+    ResourcePath docPath = doc.getKey().getPath();
+    if (collectionGroup != null) {
+      // NOTE: this.path is currently always empty since we don't expose Collection
+      // Group queries rooted at a document path yet.
+      return doc.getKey().hasCollectionId(collectionGroup) && path.isPrefixOf(docPath);
+    } else if (isDocumentPath) {
+      return path.equals(docPath);
+    } else {
+      return path.length() == docPath.length() - 1 && path.isPrefixOf(docPath);
+    }
+  }
+
+  /** Makes sure a document is within the bounds, if provided. */
+  private boolean matchesBounds(Document doc) {
+    if (startAt != null && !startAt.sortsBeforeDocument(orderBy, doc)) {
+      return false;
+    }
+    if (endAt != null && !endAt.sortsAfterDocument(orderBy, doc)) {
+      return false;
+    }
+    return true;
+  }
+
+  private static int slotFor(FieldPath fieldPath, Map<FieldPath, Integer> slots) {
+    Integer slot = slots.get(fieldPath);
+    if (slot == null) {
+      slot = slots.size();
+      slots.put(fieldPath, slot);
+    }
+    return slot;
+  }
+
+  /** Compiles the given filters, ordered by their rank. */
+  private static List<Evaluator> compileAll(List<Filter> filters, Map<FieldPath, Integer> slots) {
+    List<Filter> ordered = new ArrayList<>(filters);
+    // Collections.sort() is stable, so filters of the same rank keep their relative order.
+    Collections.sort(ordered, (left, right) -> Util.compareIntegers(rank(left), rank(right)));
+
+    List<Evaluator> evaluators = new ArrayList<>(ordered.size());
+    for (Filter filter : ordered) {
+      evaluators.add(compile(filter, slots));
+    }
+    return evaluators;
+  }
+
+  /** Returns how early the filter should be evaluated, based on its cost and selectivity. */
+  private static int rank(Filter filter) {
+    if (filter instanceof CompositeFilter) {
+      return RANK_COMPOSITE;
+    }
+    if (!(filter instanceof FieldFilter)) {
+      return RANK_INEQUALITY;
+    }
+
+    FieldFilter fieldFilter = (FieldFilter) filter;
+    if (fieldFilter.getField().isKeyField()) {
+      return RANK_KEY;
+    }
+    switch (fieldFilter.getOperator()) {
+      case EQUAL:
+      case IN:
+      case ARRAY_CONTAINS:
+        return RANK_EQUALITY;
+      case LESS_THAN:
+      case LESS_THAN_OR_EQUAL:
+      case GREATER_THAN:
+      case GREATER_THAN_OR_EQUAL:
+      case ARRAY_CONTAINS_ANY:
+        return RANK_RANGE;
+      default:
+        return RANK_INEQUALITY;
+    }
+  }
+
+  private static Evaluator compile(Filter filter, Map<FieldPath, Integer> slots) {
+    if (filter instanceof CompositeFilter) {
+      CompositeFilter compositeFilter = (CompositeFilter) filter;
+      Evaluator[] children =
+          compileAll(compositeFilter.getFilters(), slots).toArray(new Evaluator[0]);
+      return compositeFilter.isConjunction() ? conjunction(children) : disjunction(children);
+    }
+
+    Class<?> filterClass = filter.getClass();
+    if (filterClass == FieldFilter.class) {
+      FieldFilter fieldFilter = (FieldFilter) filter;
+      return new Comparison(fieldFilter, slotFor(fieldFilter.getField(), slots));
+    } else if (filterClass == ArrayContainsFilter.class) {
+      FieldFilter fieldFilter = (FieldFilter) filter;
+      int slot = slotFor(fieldFilter.getField(), slots);
+      Value operand = fieldFilter.getValue();
+      return (doc, values) -> {
+        Value other = values.get(slot);
+        return Values.isArray(other) && Values.contains(other.getArrayValue(), operand);
+      };
+    } else if (filterClass == ArrayContainsAnyFilter.class) {
+      FieldFilter fieldFilter = (FieldFilter) filter;
+      int slot = slotFor(fieldFilter.getField(), slots);
+      ArrayValue operands = fieldFilter.getValue().getArrayValue();
+      return (doc, values) -> {
+        Value other = values.get(slot);
+        if (!Values.isArray(other)) {
+          return false;
+        }
+        for (Value value : other.getArrayValue().getValuesList()) {
+          if (Values.contains(operands, value)) {
+            return true;
+          }
+        }
+        return false;
+      };
+    } else if (filterClass == InFilter.class) {
+      FieldFilter fieldFilter = (FieldFilter) filter;
+      int slot = slotFor(fieldFilter.getField(), slots);
+      ArrayValue operands = fieldFilter.getValue().getArrayValue();
+      return (doc, values) -> {
+        Value other = values.get(slot);
+        return other != null && Values.contains(operands, other);
+      };
+    } else if (filterClass == NotInFilter.class) {
+      FieldFilter fieldFilter = (FieldFilter) filter;
+      ArrayValue operands = fieldFilter.getValue().getArrayValue();
+      if (Values.contains(operands, Values.NULL_VALUE)) {
+        return (doc, values) -> false;
+      }
+      int slot = slotFor(fieldFilter.getField(), slots);
+      return (doc, values) -> {
+        Value other = values.get(slot);
+        return other != null && !Values.contains(operands, other);
+      };
+    } else {
+      // Key filters don't read document fields, and any other filters are evaluated as is.
+      return (doc, values) -> filter.matches(doc);
+    }
+  }
+
+  private static Evaluator conjunction(Evaluator[] children) {
+    return (doc, values) -> {
+      for (Evaluator child : children) {
+        if (!child.matches(doc, values)) {
+          return false;
+        }
+      }
+      return true;
+    };
+  }
+
+  private static Evaluator disjunction(Evaluator[] children) {
+    return (doc, values) -> {
+      for (Evaluator child : children) {
+        if (child.matches(doc, values)) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+
+  /**
+   * Evaluates a relational filter such as {@code a < 5}. Integer, string and boolean operands are
+   * compared directly against values of the same type, which produces the same result as {@link
+   * Values#compare} without going through its generic type dispatch.
+   */
+  private static final class Comparison implements Evaluator {
+    private final FieldFilter filter;
+    private final int slot;
+    private final Value operand;
+    private final Value.ValueTypeCase operandType;
+    private final int operandTypeOrder;
+    private final boolean requiresMatchingType;
+
+    Comparison(FieldFilter filter, int slot) {
+      this.filter = filter;
+      this.slot = slot;
+      this.operand = filter.getValue();
+      this.operandType = operand.getValueTypeCase();
+      this.operandTypeOrder = Values.typeOrder(operand);
+      // Types do not have to match in NOT_EQUAL filters.
+      this.requiresMatchingType = filter.getOperator() != Operator.NOT_EQUAL;
+    }
+
+    @Override
+    public boolean matches(Document doc, FieldValues values) {
+      Value other = values.get(slot);
+      if (other == null) {
+        return false;
+      }
+      // Only compare types with matching backend order (such as double and int).
+      if (requiresMatchingType && Values.typeOrder(other) != operandTypeOrder) {
+        return false;
+      }
+      return filter.matchesComparison(compare(other));
+    }
+
+    private int compare(Value other) {
+      if (other.getValueTypeCase() == operandType) {
+        switch (operandType) {
+          case INTEGER_VALUE:
+            return Util.compareLongs(other.getIntegerValue(), operand.getIntegerValue());
+          case STRING_VALUE:
+            return other.getStringValue().compareTo(operand.getStringValue());
+          case BOOLEAN_VALUE:
+            return Util.compareBooleans(other.getBooleanValue(), operand.getBooleanValue());
+          default:
+            break;
+        }
+      }
+      return Values.compare(other, operand);
+    }
+  }
+}
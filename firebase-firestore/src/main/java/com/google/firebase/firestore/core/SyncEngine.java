@@ -513,45 +513,34 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
     pendingWritesCallbacks.clear();
   }
 
+  /**
+   * Loads the bundle on the current thread. Unlike {@link FirestoreClient#loadBundle}, which
+   * decodes the bundle on background threads, this reads and applies every element while blocking
+   * the AsyncQueue.
+   */
   public void loadBundle(BundleReader bundleReader, LoadBundleTask resultTask) {
     try {
       BundleMetadata bundleMetadata = bundleReader.getBundleMetadata();
-      boolean hasNewerBundle = localStore.hasNewerBundle(bundleMetadata);
-      if (hasNewerBundle) {
-        resultTask.setResult(LoadBundleTaskProgress.forSuccess(bundleMetadata));
+      @Nullable BundleLoader bundleLoader = startBundleLoad(bundleMetadata, resultTask);
+      if (bundleLoader == null) {
         return;
       }
 
-      @Nullable LoadBundleTaskProgress progress = LoadBundleTaskProgress.forInitial(bundleMetadata);
-      resultTask.updateProgress(progress);
-
-      BundleLoader bundleLoader = new BundleLoader(localStore, bundleMetadata);
-
       long currentBytesRead = 0;
       BundleElement bundleElement;
       while ((bundleElement = bundleReader.getNextElement()) != null) {
         long oldBytesRead = currentBytesRead;
         currentBytesRead = bundleReader.getBytesRead();
-        progress = bundleLoader.addElement(bundleElement, currentBytesRead - oldBytesRead);
-        if (progress != null) {
-          resultTask.updateProgress(progress);
-        }
+        addBundleElements(
+            bundleLoader,
+            Collections.singletonList(bundleElement),
+            currentBytesRead - oldBytesRead,
+            resultTask);
       }
 
-      ImmutableSortedMap<DocumentKey, Document> changes = bundleLoader.applyChanges();
-
-      // TODO(b/160876443): This currently raises snapshots with `fromCache=false` if users already
-      // listen to some queries and bundles has newer version.
-      emitNewSnapsAndNotifyLocalStore(changes, /* remoteEvent= */ null);
-
-      // Save metadata, so loading the same bundle will skip.
-      localStore.saveBundle(bundleMetadata);
-      resultTask.setResult(LoadBundleTaskProgress.forSuccess(bundleMetadata));
+      completeBundleLoad(bundleLoader, resultTask);
     } catch (Exception e) {
-      Logger.warn("Firestore", "Loading bundle failed : %s", e);
-      resultTask.setException(
-          new FirebaseFirestoreException(
-              "Bundle failed to load", FirebaseFirestoreException.Code.INVALID_ARGUMENT, e));
+      failBundleLoad(e, resultTask);
     } finally {
       try {
         bundleReader.close();
@@ -561,6 +550,72 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
     }
   }
 
+  /**
+   * Starts loading a bundle with the given metadata. Returns null and completes the task if a newer
+   * version of the bundle has already been loaded.
+   */
+  @Nullable
+  BundleLoader startBundleLoad(BundleMetadata bundleMetadata, LoadBundleTask resultTask) {
+    boolean hasNewerBundle = localStore.hasNewerBundle(bundleMetadata);
+    if (hasNewerBundle) {
+      resultTask.setResult(LoadBundleTaskProgress.forSuccess(bundleMetadata));
+      return null;
+    }
+
+    resultTask.updateProgress(LoadBundleTaskProgress.forInitial(bundleMetadata));
+    return new BundleLoader(localStore, bundleMetadata);
+  }
+
+  /**
+   * Adds consecutive elements of a bundle to the loader and saves the added documents to the local
+   * store whenever a chunk is complete. The bytes of all elements are attributed to the last
+   * element.
+   */
+  void addBundleElements(
+      BundleLoader bundleLoader,
+      List<BundleElement> bundleElements,
+      long byteSize,
+      LoadBundleTask resultTask) {
+    for (int i = 0; i < bundleElements.size(); ++i) {
+      boolean isLast = i == bundleElements.size() - 1;
+      @Nullable
+      LoadBundleTaskProgress progress =
+          bundleLoader.addElement(bundleElements.get(i), isLast ? byteSize : 0);
+      if (progress != null) {
+        resultTask.updateProgress(progress);
+      }
+
+      if (bundleLoader.hasFullChunk()) {
+        // Raise snapshots for every chunk, so that the changed documents do not need to be kept
+        // in memory until the entire bundle is loaded.
+        emitNewSnapsAndNotifyLocalStore(bundleLoader.applyDocuments(), /* remoteEvent= */ null);
+        resultTask.updateProgress(bundleLoader.getProgress());
+      }
+    }
+  }
+
+  /** Saves the remaining documents and queries of the bundle and completes the task. */
+  void completeBundleLoad(BundleLoader bundleLoader, LoadBundleTask resultTask) {
+    ImmutableSortedMap<DocumentKey, Document> changes = bundleLoader.applyChanges();
+
+    // TODO(b/160876443): This currently raises snapshots with `fromCache=false` if users already
+    // listen to some queries and bundles has newer version.
+    emitNewSnapsAndNotifyLocalStore(changes, /* remoteEvent= */ null);
+
+    // Save metadata, so loading the same bundle will skip.
+    BundleMetadata bundleMetadata = bundleLoader.getBundleMetadata();
+    localStore.saveBundle(bundleMetadata);
+    resultTask.setResult(LoadBundleTaskProgress.forSuccess(bundleMetadata));
+  }
+
+  /** Fails the task of a bundle that could not be loaded. */
+  void failBundleLoad(Exception e, LoadBundleTask resultTask) {
+    Logger.warn("Firestore", "Loading bundle failed : %s", e);
+    resultTask.setException(
+        new FirebaseFirestoreException(
+            "Bundle failed to load", FirebaseFirestoreException.Code.INVALID_ARGUMENT, e));
+  }
+
   /** Resolves the task corresponding to this write result. */
   private void notifyUser(int batchId, @Nullable Status status) {
     Map<Integer, TaskCompletionSource<Void>> userTasks = mutationUserCallbacks.get(currentUser);
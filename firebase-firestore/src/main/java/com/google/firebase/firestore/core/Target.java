@@ -40,6 +40,8 @@ public final class Target {
 
   private @Nullable String memoizedCanonicalId;
 
+  private int memoizedHashCode;
+
   private final List<OrderBy> orderBys;
   private final List<Filter> filters;
 
@@ -405,6 +407,9 @@ public final class Target {
 
     Target target = (Target) o;
 
+    if (hashCode() != target.hashCode()) {
+      return false;
+    }
     if (collectionGroup != null
         ? !collectionGroup.equals(target.collectionGroup)
         : target.collectionGroup != null) {
@@ -430,14 +435,17 @@ public final class Target {
 
   @Override
   public int hashCode() {
-    int result = orderBys.hashCode();
-    result = 31 * result + (collectionGroup != null ? collectionGroup.hashCode() : 0);
-    result = 31 * result + filters.hashCode();
-    result = 31 * result + path.hashCode();
-    result = 31 * result + (int) (limit ^ (limit >>> 32));
-    result = 31 * result + (startAt != null ? startAt.hashCode() : 0);
-    result = 31 * result + (endAt != null ? endAt.hashCode() : 0);
-    return result;
+    if (memoizedHashCode == 0) {
+      int result = orderBys.hashCode();
+      result = 31 * result + (collectionGroup != null ? collectionGroup.hashCode() : 0);
+      result = 31 * result + filters.hashCode();
+      result = 31 * result + path.hashCode();
+      result = 31 * result + (int) (limit ^ (limit >>> 32));
+      result = 31 * result + (startAt != null ? startAt.hashCode() : 0);
+      result = 31 * result + (endAt != null ? endAt.hashCode() : 0);
+      memoizedHashCode = result;
+    }
+    return memoizedHashCode;
   }
 
   @Override
@@ -28,6 +28,7 @@ import com.google.firebase.firestore.model.DocumentSet;
 import com.google.firebase.firestore.remote.TargetChange;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -135,9 +136,13 @@ public class View {
         previousChanges != null ? previousChanges.documentSet : documentSet;
     ImmutableSortedSet<DocumentKey> newMutatedKeys =
         previousChanges != null ? previousChanges.mutatedKeys : mutatedKeys;
-    DocumentSet newDocumentSet = oldDocumentSet;
     boolean needsRefill = false;
 
+    // The changes to the document set are collected and applied as a single batch, which merges
+    // large batches into the set in one pass instead of inserting each document individually.
+    List<Document> addedDocuments = new ArrayList<>();
+    List<DocumentKey> removedKeys = new ArrayList<>();
+
     // Track the last doc in a (full) limit. This is necessary, because some update (a delete, or an
     // update moving a doc past the old limit) might mean there is some other document in the local
     // cache that either should come (1) between the old last limit doc and the new last document,
@@ -208,31 +213,34 @@ public class View {
 
       if (changeApplied) {
         if (newDoc != null) {
-          newDocumentSet = newDocumentSet.add(newDoc);
+          addedDocuments.add(newDoc);
           if (newDoc.hasLocalMutations()) {
             newMutatedKeys = newMutatedKeys.insert(newDoc.getKey());
           } else {
             newMutatedKeys = newMutatedKeys.remove(newDoc.getKey());
           }
         } else {
-          newDocumentSet = newDocumentSet.remove(key);
+          removedKeys.add(key);
           newMutatedKeys = newMutatedKeys.remove(key);
         }
       }
     }
 
+    DocumentSet newDocumentSet = oldDocumentSet.update(addedDocuments, removedKeys);
+
     // Drop documents out to meet limitToFirst/limitToLast requirement.
     if (query.hasLimitToFirst() || query.hasLimitToLast()) {
       long limit = query.hasLimitToFirst() ? query.getLimitToFirst() : query.getLimitToLast();
+      Iterator<Document> excessDocs =
+          query.hasLimitToFirst() ? newDocumentSet.reverseIterator() : newDocumentSet.iterator();
+      List<DocumentKey> excessKeys = new ArrayList<>();
       for (long i = newDocumentSet.size() - limit; i > 0; --i) {
-        Document oldDoc =
-            query.hasLimitToFirst()
-                ? newDocumentSet.getLastDocument()
-                : newDocumentSet.getFirstDocument();
-        newDocumentSet = newDocumentSet.remove(oldDoc.getKey());
+        Document oldDoc = excessDocs.next();
+        excessKeys.add(oldDoc.getKey());
         newMutatedKeys = newMutatedKeys.remove(oldDoc.getKey());
         changeSet.addChange(DocumentViewChange.create(Type.REMOVED, oldDoc));
       }
+      newDocumentSet = newDocumentSet.update(Collections.emptyList(), excessKeys);
     }
 
     hardAssert(
@@ -280,18 +288,8 @@ public class View {
     documentSet = docChanges.documentSet;
     mutatedKeys = docChanges.mutatedKeys;
 
-    // Sort changes based on type and query comparator.
     List<DocumentViewChange> viewChanges = docChanges.changeSet.getChanges();
-    Collections.sort(
-        viewChanges,
-        (DocumentViewChange o1, DocumentViewChange o2) -> {
-          int typeComp = compareIntegers(View.changeTypeOrder(o1), View.changeTypeOrder(o2));
-          o1.getType().compareTo(o2.getType());
-          if (typeComp != 0) {
-            return typeComp;
-          }
-          return query.comparator().compare(o1.getDocument(), o2.getDocument());
-        });
+    sortChanges(viewChanges, query);
     applyTargetChange(targetChange);
     List<LimboDocumentChange> limboDocumentChanges = updateLimboDocuments();
     boolean synced = limboDocuments.size() == 0 && current;
@@ -420,6 +418,19 @@ public class View {
     return syncedDocuments;
   }
 
+  /** Sorts changes based on type and query comparator. */
+  static void sortChanges(List<DocumentViewChange> changes, Query query) {
+    Collections.sort(
+        changes,
+        (DocumentViewChange o1, DocumentViewChange o2) -> {
+          int typeComp = compareIntegers(View.changeTypeOrder(o1), View.changeTypeOrder(o2));
+          if (typeComp != 0) {
+            return typeComp;
+          }
+          return query.comparator().compare(o1.getDocument(), o2.getDocument());
+        });
+  }
+
   /** Helper function to determine order of changes */
   private static int changeTypeOrder(DocumentViewChange change) {
     switch (change.getType()) {
@@ -93,6 +93,11 @@ public class IndexByteEncoder {
     orderedCode.seed(encodedBytes);
   }
 
+  /** Appends the bytes encoded by {@code prefix} to this encoder. */
+  public void seed(IndexByteEncoder prefix) {
+    orderedCode.seed(prefix.orderedCode);
+  }
+
   public DirectionalIndexByteEncoder forKind(FieldIndex.Segment.Kind kind) {
     if (kind.equals(FieldIndex.Segment.Kind.DESCENDING)) {
       return descending;
@@ -0,0 +1,53 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.index;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * A pool of {@link IndexByteEncoder}s, which allows index values to be encoded without allocating
+ * a new encoder and buffer for every value.
+ *
+ * <p>The pool is not thread-safe and must be confined to a single thread, such as the thread of
+ * the AsyncQueue that its owner runs on.
+ */
+public class IndexByteEncoderPool {
+  /** The maximum number of released encoders that are kept for reuse. */
+  private static final int MAX_POOLED_ENCODERS = 16;
+
+  private final ArrayDeque<IndexByteEncoder> encoders = new ArrayDeque<>();
+
+  /** Returns an empty encoder, which should be released once its bytes have been read. */
+  public IndexByteEncoder acquire() {
+    IndexByteEncoder encoder = encoders.pollLast();
+    return encoder != null ? encoder : new IndexByteEncoder();
+  }
+
+  /** Resets the given encoder and returns it to the pool. The encoder must not be used again. */
+  public void release(IndexByteEncoder encoder) {
+    if (encoders.size() < MAX_POOLED_ENCODERS) {
+      encoder.reset();
+      encoders.addLast(encoder);
+    }
+  }
+
+  /** Releases all of the given encoders. */
+  public void releaseAll(List<IndexByteEncoder> encoders) {
+    for (IndexByteEncoder encoder : encoders) {
+      release(encoder);
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.google.firebase.firestore.index;
 import static java.lang.Character.MAX_SURROGATE;
 import static java.lang.Character.MIN_SURROGATE;
 
+import androidx.annotation.VisibleForTesting;
 import com.google.protobuf.ByteString;
 import java.math.RoundingMode;
 import java.util.Arrays;
@@ -47,6 +48,12 @@ public class OrderedCodeWriter {
    */
   private static final int DEFAULT_BUFFER_SIZE = 1024;
 
+  /**
+   * The largest buffer that is kept when the writer is reset. Writers are reused to encode many
+   * values, and a single large value should not permanently increase their memory usage.
+   */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
   /**
    * This array maps encoding length to header bits in the first two bytes for SignedNumAscending
    * encoding.
@@ -260,6 +267,15 @@ public class OrderedCodeWriter {
   /** Resets the buffer such that it is the same as when it was newly constructed. */
   public void reset() {
     position = 0;
+    if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+      buffer = new byte[DEFAULT_BUFFER_SIZE];
+    }
+  }
+
+  /** Returns the size of the buffer, including the space that has not been written yet. */
+  @VisibleForTesting
+  int getBufferCapacity() {
+    return buffer.length;
   }
 
   /** Makes a copy of the encoded bytes in this buffer. */
@@ -355,7 +371,18 @@ public class OrderedCodeWriter {
   }
 
   public void seed(byte[] encodedBytes) {
-    ensureAvailable(encodedBytes.length);
-    for (byte b : encodedBytes) buffer[position++] = b;
+    seed(encodedBytes, 0, encodedBytes.length);
+  }
+
+  /** Appends the given slice of already encoded bytes to the buffer. */
+  public void seed(byte[] encodedBytes, int offset, int length) {
+    ensureAvailable(length);
+    System.arraycopy(encodedBytes, offset, buffer, position, length);
+    position += length;
+  }
+
+  /** Appends the bytes encoded by {@code other} to the buffer, without copying them out first. */
+  public void seed(OrderedCodeWriter other) {
+    seed(other.buffer, 0, other.position);
   }
 }
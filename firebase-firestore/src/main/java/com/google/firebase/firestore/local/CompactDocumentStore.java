@@ -0,0 +1,286 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.firebase.firestore.local;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.model.Document;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.MutableDocument;
+import com.google.firebase.firestore.model.ResourcePath;
+import com.google.firebase.firestore.model.SnapshotVersion;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link MemoryDocumentStore} that keeps documents in their serialized form in sorted arrays.
+ *
+ * <p>Documents are stored as the same protocol buffer bytes that SQLite persistence writes, keyed
+ * by their {@link EncodedPath encoded path}, which sorts in the same order as document keys. The
+ * arrays hold no per-document objects besides the key string and the bytes. Documents are decoded
+ * whenever they are read, and their fields only once they are accessed. This trades CPU time on
+ * reads for a much smaller heap footprint than {@link TreeDocumentStore} for large caches.
+ *
+ * <p>The documents are split into chunks of at most {@link #CHUNK_CAPACITY} entries, so that
+ * inserting or removing a document only shifts the entries of a single chunk. A full chunk is
+ * split in two when a document is inserted into it.
+ */
+final class CompactDocumentStore implements MemoryDocumentStore {
+  private static final int CHUNK_CAPACITY = 128;
+
+  private final LocalSerializer serializer;
+
+  /** The chunks in key order. None of them is empty. */
+  private final List<Chunk> chunks = new ArrayList<>();
+
+  private long byteSize = 0;
+
+  CompactDocumentStore(LocalSerializer serializer) {
+    this.serializer = serializer;
+  }
+
+  @Override
+  public void put(MutableDocument document) {
+    String key = EncodedPath.encode(document.getKey().getPath());
+    byte[] bytes = serializer.encodeMaybeDocument(document).toByteArray();
+    Timestamp readTime = document.getReadTime().getTimestamp();
+
+    if (chunks.isEmpty()) {
+      chunks.add(new Chunk());
+    }
+    int chunkIndex = chunkIndexOf(key);
+    Chunk chunk = chunks.get(chunkIndex);
+    int index = chunk.indexOf(key);
+    if (index >= 0) {
+      byteSize -= chunk.contents[index].length;
+    } else {
+      index = -(index + 1);
+      if (chunk.size == CHUNK_CAPACITY) {
+        if (index == CHUNK_CAPACITY && chunkIndex == chunks.size() - 1) {
+          // Appending to the last chunk starts a new one, so that documents that are added in key
+          // order fill their chunks completely.
+          chunk = new Chunk();
+          index = 0;
+          chunks.add(chunkIndex + 1, chunk);
+        } else {
+          Chunk upperHalf = chunk.split();
+          chunks.add(chunkIndex + 1, upperHalf);
+          if (index > chunk.size) {
+            index -= chunk.size;
+            chunk = upperHalf;
+          }
+        }
+      }
+      chunk.insertAt(index);
+      chunk.keys[index] = key;
+    }
+    chunk.contents[index] = bytes;
+    chunk.readTimeSeconds[index] = readTime.getSeconds();
+    chunk.readTimeNanos[index] = readTime.getNanoseconds();
+    byteSize += bytes.length;
+  }
+
+  @Override
+  public void remove(DocumentKey key) {
+    if (chunks.isEmpty()) {
+      return;
+    }
+    String encodedKey = EncodedPath.encode(key.getPath());
+    int chunkIndex = chunkIndexOf(encodedKey);
+    Chunk chunk = chunks.get(chunkIndex);
+    int index = chunk.indexOf(encodedKey);
+    if (index < 0) {
+      return;
+    }
+    byteSize -= chunk.contents[index].length;
+    chunk.removeAt(index);
+    if (chunk.size == 0) {
+      chunks.remove(chunkIndex);
+    }
+  }
+
+  @Nullable
+  @Override
+  public Document get(DocumentKey key) {
+    if (chunks.isEmpty()) {
+      return null;
+    }
+    String encodedKey = EncodedPath.encode(key.getPath());
+    Chunk chunk = chunks.get(chunkIndexOf(encodedKey));
+    int index = chunk.indexOf(encodedKey);
+    return index >= 0 ? decode(chunk, index) : null;
+  }
+
+  @Override
+  public Iterable<Document> getCollection(ResourcePath collection) {
+    String parent = EncodedPath.encode(collection);
+    return () -> {
+      if (chunks.isEmpty()) {
+        return new DocumentIterator(0, 0, parent);
+      }
+      // The parent sorts directly before all of its descendants.
+      int chunkIndex = chunkIndexOf(parent);
+      int index = chunks.get(chunkIndex).indexOf(parent);
+      return new DocumentIterator(chunkIndex, index >= 0 ? index + 1 : -(index + 1), parent);
+    };
+  }
+
+  @Override
+  public long getByteSize(LocalSerializer serializer) {
+    return byteSize;
+  }
+
+  @NonNull
+  @Override
+  public Iterator<Document> iterator() {
+    return new DocumentIterator(0, 0, /* parent= */ null);
+  }
+
+  /**
+   * Returns the index of the chunk that contains the given encoded key, or that it would be
+   * inserted into. This is the last chunk whose first key is not greater than the given key, or
+   * the first chunk if there is none. Must only be called if there is at least one chunk.
+   */
+  private int chunkIndexOf(String key) {
+    int low = 1;
+    int high = chunks.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (chunks.get(mid).keys[0].compareTo(key) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low - 1;
+  }
+
+  private MutableDocument decode(Chunk chunk, int index) {
+    SnapshotVersion readTime =
+        new SnapshotVersion(
+            new Timestamp(chunk.readTimeSeconds[index], chunk.readTimeNanos[index]));
+    return serializer.decodeMaybeDocument(chunk.contents[index]).setReadTime(readTime);
+  }
+
+  /** A sorted run of documents, kept in parallel arrays. */
+  private static final class Chunk {
+    final String[] keys = new String[CHUNK_CAPACITY];
+    final byte[][] contents = new byte[CHUNK_CAPACITY][];
+    final long[] readTimeSeconds = new long[CHUNK_CAPACITY];
+    final int[] readTimeNanos = new int[CHUNK_CAPACITY];
+    int size = 0;
+
+    /**
+     * Returns the index of the given encoded key, or {@code -(insertionPoint + 1)} if the chunk
+     * does not contain it.
+     */
+    int indexOf(String key) {
+      return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    /** Makes room for a new entry at the given index. The chunk must not be full. */
+    void insertAt(int index) {
+      int tail = size - index;
+      System.arraycopy(keys, index, keys, index + 1, tail);
+      System.arraycopy(contents, index, contents, index + 1, tail);
+      System.arraycopy(readTimeSeconds, index, readTimeSeconds, index + 1, tail);
+      System.arraycopy(readTimeNanos, index, readTimeNanos, index + 1, tail);
+      ++size;
+    }
+
+    void removeAt(int index) {
+      int tail = size - index - 1;
+      System.arraycopy(keys, index + 1, keys, index, tail);
+      System.arraycopy(contents, index + 1, contents, index, tail);
+      System.arraycopy(readTimeSeconds, index + 1, readTimeSeconds, index, tail);
+      System.arraycopy(readTimeNanos, index + 1, readTimeNanos, index, tail);
+      --size;
+      // Release the references so that the removed document can be collected.
+      keys[size] = null;
+      contents[size] = null;
+    }
+
+    /** Moves the upper half of the entries into a new chunk, which is returned. */
+    Chunk split() {
+      Chunk upperHalf = new Chunk();
+      int lowerSize = size / 2;
+      upperHalf.size = size - lowerSize;
+      System.arraycopy(keys, lowerSize, upperHalf.keys, 0, upperHalf.size);
+      System.arraycopy(contents, lowerSize, upperHalf.contents, 0, upperHalf.size);
+      System.arraycopy(readTimeSeconds, lowerSize, upperHalf.readTimeSeconds, 0, upperHalf.size);
+      System.arraycopy(readTimeNanos, lowerSize, upperHalf.readTimeNanos, 0, upperHalf.size);
+      Arrays.fill(keys, lowerSize, size, null);
+      Arrays.fill(contents, lowerSize, size, null);
+      size = lowerSize;
+      return upperHalf;
+    }
+  }
+
+  /**
+   * Iterates over the documents in key order, starting at the given position. If a parent is
+   * given, iteration ends after its descendants and only its direct children are returned.
+   */
+  private class DocumentIterator implements Iterator<Document> {
+    @Nullable private final String parent;
+    private int chunkIndex;
+    private int index;
+
+    DocumentIterator(int chunkIndex, int start, @Nullable String parent) {
+      this.parent = parent;
+      this.chunkIndex = chunkIndex;
+      this.index = start - 1;
+      advance();
+    }
+
+    private void advance() {
+      ++index;
+      for (; chunkIndex < chunks.size(); ++chunkIndex, index = 0) {
+        Chunk chunk = chunks.get(chunkIndex);
+        for (; index < chunk.size; ++index) {
+          if (parent == null) {
+            return;
+          }
+          String key = chunk.keys[index];
+          if (!key.startsWith(parent)) {
+            // We are now scanning past the parent's descendants.
+            chunkIndex = chunks.size();
+            return;
+          }
+          if (EncodedPath.isImmediateChild(parent, key)) {
+            return;
+          }
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return chunkIndex < chunks.size();
+    }
+
+    @Override
+    public Document next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Document result = decode(chunks.get(chunkIndex), index);
+      advance();
+      return result;
+    }
+  }
+}
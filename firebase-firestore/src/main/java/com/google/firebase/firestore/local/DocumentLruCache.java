@@ -0,0 +1,188 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import androidx.annotation.Nullable;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.MutableDocument;
+import com.google.firebase.firestore.util.Logger;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded, in-memory cache of decoded documents that sits in front of the persisted remote
+ * document cache.
+ *
+ * <p>The size of each entry is accounted as the size of its encoded contents plus a fixed per-entry
+ * overhead. Once the accounted size exceeds the configured maximum, the least recently used entries
+ * are evicted. A maximum size of zero disables the cache.
+ *
+ * <p>Documents are copied when they are added and when they are returned, since callers are free
+ * to modify the documents they receive.
+ *
+ * <p>Hit, miss and eviction counts are logged every {@link #STATS_LOG_INTERVAL} lookups when debug
+ * logging is enabled.
+ *
+ * <p>This class is thread-safe.
+ */
+final class DocumentLruCache {
+  private static final String LOG_TAG = "DocumentLruCache";
+
+  /** The number of lookups between two debug log messages with the cache statistics. */
+  static final long STATS_LOG_INTERVAL = 1000;
+
+  /** An estimate of the memory used by an entry in addition to the document contents. */
+  static final long ENTRY_OVERHEAD_BYTES = 200;
+
+  private static class Entry {
+    final MutableDocument document;
+    final long sizeBytes;
+
+    Entry(MutableDocument document, long sizeBytes) {
+      this.document = document;
+      this.sizeBytes = sizeBytes;
+    }
+  }
+
+  private final long maxSizeBytes;
+
+  /** The cached entries, in access order (least recently used first). */
+  private final LinkedHashMap<DocumentKey, Entry> entries =
+      new LinkedHashMap<>(
+          /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true);
+
+  private long sizeBytes = 0;
+  private long hitCount = 0;
+  private long missCount = 0;
+  private long evictionCount = 0;
+
+  DocumentLruCache(long maxSizeBytes) {
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /** Returns whether this cache retains any documents. */
+  boolean isEnabled() {
+    return maxSizeBytes > 0;
+  }
+
+  /** Returns a copy of the cached document for the given key, or {@code null} if not cached. */
+  @Nullable
+  synchronized MutableDocument get(DocumentKey key) {
+    if (!isEnabled()) {
+      return null;
+    }
+
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      ++missCount;
+    } else {
+      ++hitCount;
+    }
+    if ((hitCount + missCount) % STATS_LOG_INTERVAL == 0 && Logger.isDebugEnabled()) {
+      Logger.debug(LOG_TAG, "%s", this);
+    }
+    return entry != null ? entry.document.mutableCopy() : null;
+  }
+
+  /**
+   * Adds a copy of the given document to the cache, evicting the least recently used entries if
+   * the cache grows beyond its maximum size.
+   *
+   * @param document The document to cache.
+   * @param contentSizeBytes The size of the encoded document contents.
+   */
+  synchronized void put(MutableDocument document, long contentSizeBytes) {
+    long entrySizeBytes = contentSizeBytes + ENTRY_OVERHEAD_BYTES;
+    if (entrySizeBytes > maxSizeBytes) {
+      // The document would evict everything else (or the cache is disabled).
+      remove(document.getKey());
+      return;
+    }
+
+    Entry previous =
+        entries.put(document.getKey(), new Entry(document.mutableCopy(), entrySizeBytes));
+    if (previous != null) {
+      sizeBytes -= previous.sizeBytes;
+    }
+    sizeBytes += entrySizeBytes;
+
+    Iterator<Map.Entry<DocumentKey, Entry>> iterator = entries.entrySet().iterator();
+    while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+      sizeBytes -= iterator.next().getValue().sizeBytes;
+      iterator.remove();
+      ++evictionCount;
+    }
+  }
+
+  /** Removes the cached entry for the given key (no-op if it is not cached). */
+  synchronized void remove(DocumentKey key) {
+    Entry previous = entries.remove(key);
+    if (previous != null) {
+      sizeBytes -= previous.sizeBytes;
+    }
+  }
+
+  /** Removes the cached entries for the given keys. */
+  synchronized void removeAll(Collection<DocumentKey> keys) {
+    for (DocumentKey key : keys) {
+      remove(key);
+    }
+  }
+
+  /** Removes all cached entries. */
+  synchronized void clear() {
+    entries.clear();
+    sizeBytes = 0;
+  }
+
+  /** Returns the accounted size of all cached entries. */
+  synchronized long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  /** Returns the number of lookups that were served from this cache. */
+  synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of lookups that were not served from this cache. */
+  synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /** Returns the number of entries that were evicted to stay within the maximum size. */
+  synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "DocumentLruCache(hits="
+        + hitCount
+        + ", misses="
+        + missCount
+        + ", evictions="
+        + evictionCount
+        + ", entries="
+        + entries.size()
+        + ", sizeBytes="
+        + sizeBytes
+        + "/"
+        + maxSizeBytes
+        + ")";
+  }
+}
@@ -18,10 +18,8 @@ import static com.google.firebase.firestore.util.Assert.hardAssert;
 
 import com.google.firebase.firestore.model.BasePath;
 import com.google.firebase.firestore.model.FieldPath;
+import com.google.firebase.firestore.model.ParentPathCache;
 import com.google.firebase.firestore.model.ResourcePath;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 /**
  * Helpers for dealing with paths stored in SQLite.
@@ -74,19 +72,33 @@ final class EncodedPath {
   private static final char ENCODED_NUL = '\u0010';
   private static final char ENCODED_ESCAPE = '\u0011';
 
+  private static final String SEPARATOR = new String(new char[] {ESCAPE, ENCODED_SEPARATOR});
+
+  /** Shares the collection path between consecutively decoded documents of the same collection. */
+  private static final ParentPathCache parentPathCache = new ParentPathCache();
+
   /** Encodes a path into a SQLite-compatible string form. */
   static <B extends BasePath<B>> String encode(B path) {
     StringBuilder result = new StringBuilder();
-    for (int i = 0, length = path.length(); i < length; i++) {
-      if (result.length() > 0) {
-        encodeSeparator(result);
-      }
-      encodeSegment(path.getSegment(i), result);
-    }
+    encodeSegments(path, result);
     encodeSeparator(result);
     return result.toString();
   }
 
+  /** Encodes the segments of a path, separated but without a trailing separator. */
+  private static <B extends BasePath<B>> void encodeSegments(B path, StringBuilder result) {
+    if (path.isEmpty()) {
+      return;
+    }
+    // Paths are linked from their last segment, so encode the parent first.
+    B parent = path.popLast();
+    encodeSegments(parent, result);
+    if (!parent.isEmpty()) {
+      encodeSeparator(result);
+    }
+    encodeSegment(path.getLastSegment(), result);
+  }
+
   /** Encodes a single segment of a path into the given StringBuilder. */
   private static void encodeSegment(String segment, StringBuilder result) {
     for (int i = 0, length = segment.length(); i < length; i++) {
@@ -115,14 +127,49 @@ final class EncodedPath {
    * server; those are One Platform format strings.
    */
   static ResourcePath decodeResourcePath(String path) {
-    return ResourcePath.fromSegments(decode(path));
+    int lastSegmentStart = lastSegmentStart(path);
+    if (lastSegmentStart == 0) {
+      return decode(path, 0, ResourcePath.EMPTY);
+    }
+
+    ResourcePath parent = parentPathCache.get(path, lastSegmentStart);
+    if (parent != null) {
+      return decode(path, lastSegmentStart, parent);
+    }
+
+    ResourcePath result = decode(path, 0, ResourcePath.EMPTY);
+    parentPathCache.put(path, lastSegmentStart, result.popLast());
+    return result;
   }
 
   static FieldPath decodeFieldPath(String path) {
-    return FieldPath.fromSegments(decode(path));
+    return decode(path, 0, FieldPath.EMPTY_PATH);
   }
 
-  private static List<String> decode(String path) {
+  /**
+   * Returns the index at which the last segment of the encoded path starts, or 0 if the path has
+   * fewer than two segments. Invalid paths are left for {@link #decode} to reject.
+   */
+  private static int lastSegmentStart(String path) {
+    // Separators cannot be found by searching backwards, since the second character of an escape
+    // sequence may itself be an escape character.
+    int length = path.length();
+    int lastSegmentStart = 0;
+    for (int start = 0; start < length; ) {
+      int end = path.indexOf(ESCAPE, start);
+      if (end < 0 || end + 1 >= length) {
+        break;
+      }
+      if (path.charAt(end + 1) == ENCODED_SEPARATOR && end + 2 < length) {
+        lastSegmentStart = end + 2;
+      }
+      start = end + 2;
+    }
+    return lastSegmentStart;
+  }
+
+  /** Decodes the segments of {@code path} from index {@code from} on and appends them to parent. */
+  private static <B extends BasePath<B>> B decode(String path, int from, B parent) {
     // Even the empty path must encode as a path of at least length 2. A path with length of exactly
     // 2 must be the empty path.
     int length = path.length();
@@ -132,16 +179,16 @@ final class EncodedPath {
           path.charAt(0) == ESCAPE && path.charAt(1) == ENCODED_SEPARATOR,
           "Non-empty path \"%s\" had length 2",
           path);
-      return Collections.emptyList();
+      return parent;
     }
 
     // Escape characters cannot exist past the second-to-last position in the source value.
     int lastReasonableEscapeIndex = path.length() - 2;
 
-    List<String> segments = new ArrayList<>();
+    B result = parent;
     StringBuilder segmentBuilder = new StringBuilder();
 
-    for (int start = 0; start < length; ) {
+    for (int start = from; start < length; ) {
       // The last two characters of a valid encoded path must be a separator, so there must be an
       // end to this segment.
       int end = path.indexOf(ESCAPE, start);
@@ -163,7 +210,7 @@ final class EncodedPath {
             segmentBuilder.setLength(0);
           }
 
-          segments.add(segment);
+          result = result.append(segment);
           break;
 
         case ENCODED_NUL:
@@ -183,7 +230,24 @@ final class EncodedPath {
       start = end + 2;
     }
 
-    return segments;
+    return result;
+  }
+
+  /**
+   * Returns whether {@code path} is the encoding of a direct child of the path that is encoded as
+   * {@code parent}.
+   */
+  static boolean isImmediateChild(String parent, String path) {
+    // The empty path encodes as a lone separator, which the encodings of its children do not
+    // start with.
+    int parentLength = parent.length() == 2 ? 0 : parent.length();
+    if (!path.startsWith(parent.substring(0, parentLength))) {
+      return false;
+    }
+    // Escape sequences never contain a separator, so the first separator found after the parent is
+    // the end of the next segment. For a direct child, this is the trailing separator.
+    int separator = path.indexOf(SEPARATOR, parentLength);
+    return separator > parentLength && separator == path.length() - 2;
   }
 
   /**
@@ -25,10 +25,10 @@ import com.google.firebase.firestore.model.FieldIndex.IndexOffset;
 import com.google.firebase.firestore.util.AsyncQueue;
 import com.google.firebase.firestore.util.Logger;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /** Implements the steps for backfilling indexes. */
@@ -39,14 +39,40 @@ public class IndexBackfiller {
   private static final long INITIAL_BACKFILL_DELAY_MS = TimeUnit.SECONDS.toMillis(15);
   /** Minimum amount of time between backfill checks, after the first one. */
   private static final long REGULAR_BACKFILL_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+  /**
+   * How long we wait between backfill passes while there are documents left to index. The delay
+   * allows other operations on the AsyncQueue to run in between passes.
+   */
+  private static final long CONTINUOUS_BACKFILL_DELAY_MS = 100;
+  /** The amount of time a single call to backfill() may spend writing index entries. */
+  private static final long MAX_PASS_DURATION_MS = 50;
   /** The maximum number of documents to process each time backfill() is called. */
-  private static final int MAX_DOCUMENTS_TO_PROCESS = 50;
+  private static final int MAX_DOCUMENTS_TO_PROCESS = 10000;
+  /** The number of documents read in the first batch, before their processing cost is known. */
+  private static final int INITIAL_BATCH_SIZE = 50;
+  /** The bounds within which the number of documents read per batch is adjusted. */
+  private static final int MIN_BATCH_SIZE = 10;
+
+  private static final int MAX_BATCH_SIZE = 1000;
 
   private final Scheduler scheduler;
   private final Persistence persistence;
   private LocalDocumentsView localDocumentsView;
   private IndexManager indexManager;
   private int maxDocumentsToProcess = MAX_DOCUMENTS_TO_PROCESS;
+  private long maxPassDurationMs = MAX_PASS_DURATION_MS;
+
+  /**
+   * The number of documents to read per batch, adjusted after each batch so that a batch takes
+   * roughly a quarter of the pass duration.
+   */
+  private int batchSize = INITIAL_BATCH_SIZE;
+
+  /** Whether the last backfill pass stopped before all collection groups were fully indexed. */
+  private boolean hasPendingWork = false;
+
+  /** The number of documents processed per collection group during the last backfill pass. */
+  private Map<String, Integer> lastPassProgress = Collections.emptyMap();
 
   public IndexBackfiller(Persistence persistence, AsyncQueue asyncQueue) {
     this.persistence = persistence;
@@ -83,7 +109,14 @@ public class IndexBackfiller {
     }
 
     private void scheduleBackfill() {
-      long delay = hasRun ? REGULAR_BACKFILL_DELAY_MS : INITIAL_BACKFILL_DELAY_MS;
+      long delay;
+      if (!hasRun) {
+        delay = INITIAL_BACKFILL_DELAY_MS;
+      } else if (hasPendingWork) {
+        delay = CONTINUOUS_BACKFILL_DELAY_MS;
+      } else {
+        delay = REGULAR_BACKFILL_DELAY_MS;
+      }
       backfillTask =
           asyncQueue.enqueueAfterDelay(
               AsyncQueue.TimerId.INDEX_BACKFILL,
@@ -108,40 +141,100 @@ public class IndexBackfiller {
     return persistence.runTransaction("Backfill Indexes", () -> this.writeIndexEntries());
   }
 
-  /** Writes index entries until the cap is reached. Returns the number of documents processed. */
+  /**
+   * Writes index entries until the time budget or the document cap is reached, visiting each
+   * collection group at most once. Returns the number of documents processed.
+   */
   private int writeIndexEntries() {
-    Set<String> processedCollectionGroups = new HashSet<>();
+    long startTimeMs = System.currentTimeMillis();
+    long deadlineMs = startTimeMs + maxPassDurationMs;
+    Map<String, Integer> progress = new LinkedHashMap<>();
     int documentsRemaining = maxDocumentsToProcess;
-    while (documentsRemaining > 0) {
+    hasPendingWork = false;
+
+    while (true) {
       String collectionGroup = indexManager.getNextCollectionGroupToUpdate();
-      if (collectionGroup == null || processedCollectionGroups.contains(collectionGroup)) {
+      if (collectionGroup == null || progress.containsKey(collectionGroup)) {
+        break;
+      }
+      // Always process at least one batch so that every pass makes progress.
+      boolean pastDeadline = !progress.isEmpty() && System.currentTimeMillis() >= deadlineMs;
+      if (documentsRemaining <= 0 || pastDeadline) {
+        hasPendingWork = true;
         break;
       }
       Logger.debug(LOG_TAG, "Processing collection: %s", collectionGroup);
-      documentsRemaining -= writeEntriesForCollectionGroup(collectionGroup, documentsRemaining);
-      processedCollectionGroups.add(collectionGroup);
+      int documentsProcessed =
+          writeEntriesForCollectionGroup(collectionGroup, documentsRemaining, deadlineMs);
+      progress.put(collectionGroup, documentsProcessed);
+      documentsRemaining -= documentsProcessed;
+    }
+
+    lastPassProgress = Collections.unmodifiableMap(progress);
+    if (Logger.isDebugEnabled()) {
+      Logger.debug(
+          LOG_TAG,
+          "Backfill pass processed %s in %sms (batch size: %s, pending work: %s)",
+          progress,
+          System.currentTimeMillis() - startTimeMs,
+          batchSize,
+          hasPendingWork);
     }
     return maxDocumentsToProcess - documentsRemaining;
   }
 
   /**
-   * Writes entries for the provided collection group. Returns the number of documents processed.
+   * Writes entries for the provided collection group in batches until the collection group is
+   * fully indexed, the document cap is reached or the deadline has passed. Returns the number of
+   * documents processed.
    */
   private int writeEntriesForCollectionGroup(
-      String collectionGroup, int documentsRemainingUnderCap) {
+      String collectionGroup, int documentsRemainingUnderCap, long deadlineMs) {
     // Use the earliest offset of all field indexes to query the local cache.
     Collection<FieldIndex> fieldIndexes = indexManager.getFieldIndexes(collectionGroup);
     IndexOffset existingOffset = getExistingOffset(fieldIndexes);
 
-    LocalDocumentsResult nextBatch =
-        localDocumentsView.getNextDocuments(
-            collectionGroup, existingOffset, documentsRemainingUnderCap);
-    indexManager.updateIndexEntries(nextBatch.getDocuments());
+    int documentsProcessed = 0;
+    while (true) {
+      long batchStartTimeMs = System.currentTimeMillis();
+      int documentsRequested = Math.min(batchSize, documentsRemainingUnderCap - documentsProcessed);
+
+      LocalDocumentsResult nextBatch =
+          localDocumentsView.getNextDocuments(collectionGroup, existingOffset, documentsRequested);
+      indexManager.updateIndexEntries(nextBatch.getDocuments());
+
+      IndexOffset newOffset = getNewOffset(existingOffset, nextBatch);
+      indexManager.updateCollectionGroup(collectionGroup, newOffset);
+      existingOffset = newOffset;
+
+      int batchDocuments = nextBatch.getDocuments().size();
+      documentsProcessed += batchDocuments;
+      adjustBatchSize(batchDocuments, System.currentTimeMillis() - batchStartTimeMs);
 
-    IndexOffset newOffset = getNewOffset(existingOffset, nextBatch);
-    indexManager.updateCollectionGroup(collectionGroup, newOffset);
+      if (batchDocuments < documentsRequested) {
+        // The collection group is fully indexed.
+        return documentsProcessed;
+      }
+
+      if (documentsProcessed >= documentsRemainingUnderCap
+          || System.currentTimeMillis() >= deadlineMs) {
+        hasPendingWork = true;
+        return documentsProcessed;
+      }
+    }
+  }
 
-    return nextBatch.getDocuments().size();
+  /**
+   * Adjusts the number of documents read per batch based on the measured cost of the last batch,
+   * so that each batch takes about a quarter of the pass duration.
+   */
+  private void adjustBatchSize(int documentsProcessed, long durationMs) {
+    if (documentsProcessed == 0) {
+      return;
+    }
+    double durationPerDocumentMs = Math.max(1, durationMs) / (double) documentsProcessed;
+    long targetBatchSize = (long) (maxPassDurationMs / 4.0 / durationPerDocumentMs);
+    batchSize = (int) Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, targetBatchSize));
   }
 
   /** Returns the next offset based on the provided documents. */
@@ -177,8 +270,29 @@ public class IndexBackfiller {
     return IndexOffset.create(minOffset.getReadTime(), minOffset.getDocumentKey(), minBatchId);
   }
 
+  /**
+   * Returns the number of documents processed per collection group during the last backfill pass,
+   * in the order in which the collection groups were processed.
+   */
+  public Map<String, Integer> getLastPassProgress() {
+    return lastPassProgress;
+  }
+
+  /**
+   * Returns whether the last backfill pass ran out of time or reached its document cap before all
+   * collection groups were fully indexed.
+   */
+  public boolean hasPendingWork() {
+    return hasPendingWork;
+  }
+
   @VisibleForTesting
   void setMaxDocumentsToProcess(int newMax) {
     maxDocumentsToProcess = newMax;
   }
+
+  @VisibleForTesting
+  void setMaxPassDurationMs(long newMaxPassDurationMs) {
+    maxPassDurationMs = newMaxPassDurationMs;
+  }
 }
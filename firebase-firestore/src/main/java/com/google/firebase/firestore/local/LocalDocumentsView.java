@@ -15,6 +15,7 @@
 package com.google.firebase.firestore.local;
 
 import static com.google.firebase.firestore.model.DocumentCollections.emptyDocumentMap;
+import static com.google.firebase.firestore.util.Assert.fail;
 import static com.google.firebase.firestore.util.Assert.hardAssert;
 
 import androidx.annotation.Nullable;
@@ -33,6 +34,9 @@ import com.google.firebase.firestore.model.mutation.Mutation;
 import com.google.firebase.firestore.model.mutation.MutationBatch;
 import com.google.firebase.firestore.model.mutation.Overlay;
 import com.google.firebase.firestore.model.mutation.PatchMutation;
+import com.google.firebase.firestore.util.BackgroundQueue;
+import com.google.firebase.firestore.util.Executors;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,6 +44,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
 
 /**
  * A readonly view of the local state of all documents we're tracking (i.e. we have a cached version
@@ -47,6 +52,11 @@ import java.util.TreeMap;
  * mutations in the MutationQueue to the RemoteDocumentCache.
  */
 class LocalDocumentsView {
+  /**
+   * The number of documents whose overlays are recalculated per background task. Recalculations
+   * that affect fewer documents run on the calling thread.
+   */
+  private static final int OVERLAYS_PER_RECALCULATION_TASK = 100;
 
   private final RemoteDocumentCache remoteDocumentCache;
   private final MutationQueue mutationQueue;
@@ -159,38 +169,107 @@ class LocalDocumentsView {
     List<MutationBatch> batches =
         mutationQueue.getAllMutationBatchesAffectingDocumentKeys(docs.keySet());
 
-    Map<DocumentKey, FieldMask> masks = new HashMap<>();
-    // A reverse lookup map from batch id to the documents within that batch.
-    TreeMap<Integer, Set<DocumentKey>> documentsByBatchId = new TreeMap<>();
-
-    // Apply mutations from mutation queue to the documents, collecting batch id and field masks
-    // along the way.
+    // A lookup map from each document to the batches that affect it, in ascending batch id order.
+    // Documents that are not affected by any batch do not need an overlay and are skipped.
+    Map<DocumentKey, List<MutationBatch>> batchesByKey = new HashMap<>();
     for (MutationBatch batch : batches) {
       for (DocumentKey key : batch.getKeys()) {
-        FieldMask mask = masks.containsKey(key) ? masks.get(key) : FieldMask.EMPTY;
-        mask = batch.applyToLocalView(docs.get(key), mask);
-        masks.put(key, mask);
-        int batchId = batch.getBatchId();
-        if (!documentsByBatchId.containsKey(batchId)) {
-          documentsByBatchId.put(batchId, new HashSet<>());
+        if (!docs.containsKey(key)) {
+          // The batch also contains documents that we were not asked to recalculate.
+          continue;
         }
-        documentsByBatchId.get(batchId).add(key);
+        List<MutationBatch> documentBatches = batchesByKey.get(key);
+        if (documentBatches == null) {
+          documentBatches = new ArrayList<>();
+          batchesByKey.put(key, documentBatches);
+        }
+        documentBatches.add(batch);
       }
     }
 
-    Set<DocumentKey> processed = new HashSet<>();
-    // Iterate in descending order of batch ids, skip documents that are already saved.
-    for (Map.Entry<Integer, Set<DocumentKey>> entry :
-        documentsByBatchId.descendingMap().entrySet()) {
-      Map<DocumentKey, Mutation> overlays = new HashMap<>();
-      for (DocumentKey key : entry.getValue()) {
-        if (!processed.contains(key)) {
-          overlays.put(key, Mutation.calculateOverlayMutation(docs.get(key), masks.get(key)));
-          processed.add(key);
-        }
+    // The overlay of a document only depends on the document itself and on the batches that
+    // affect it, which allows us to compute the overlays of large sets of documents in parallel.
+    List<DocumentKey> keys = new ArrayList<>(batchesByKey.keySet());
+    Map<DocumentKey, Mutation> overlays = new HashMap<>();
+    Throwable[] firstError = new Throwable[1];
+    BackgroundQueue backgroundQueue = new BackgroundQueue();
+    for (int start = 0; start < keys.size(); start += OVERLAYS_PER_RECALCULATION_TASK) {
+      List<DocumentKey> chunk =
+          keys.subList(start, Math.min(start + OVERLAYS_PER_RECALCULATION_TASK, keys.size()));
+      // Since scheduling background tasks incurs overhead, we process the final chunk on the
+      // current thread.
+      Executor executor =
+          start + OVERLAYS_PER_RECALCULATION_TASK >= keys.size()
+              ? Executors.DIRECT_EXECUTOR
+              : backgroundQueue;
+      executor.execute(
+          () -> {
+            try {
+              Map<DocumentKey, Mutation> shard = calculateOverlays(chunk, docs, batchesByKey);
+              synchronized (overlays) {
+                overlays.putAll(shard);
+              }
+            } catch (Throwable e) {
+              // The BackgroundQueue only counts tasks that return normally, and errors on its
+              // threads would not reach the caller, so they are rethrown after the queue drained.
+              synchronized (firstError) {
+                if (firstError[0] == null) {
+                  firstError[0] = e;
+                }
+              }
+            }
+          });
+    }
+    try {
+      backgroundQueue.drain();
+    } catch (InterruptedException e) {
+      throw fail("Interrupted while recalculating overlays", e);
+    }
+
+    if (firstError[0] instanceof Error) {
+      throw (Error) firstError[0];
+    } else if (firstError[0] != null) {
+      throw (RuntimeException) firstError[0];
+    }
+
+    // Each overlay is saved with the largest batch id that affects its document, so that it is
+    // removed once all batches leading up to it have been acknowledged.
+    TreeMap<Integer, Map<DocumentKey, Mutation>> overlaysByBatchId = new TreeMap<>();
+    for (Map.Entry<DocumentKey, Mutation> entry : overlays.entrySet()) {
+      List<MutationBatch> documentBatches = batchesByKey.get(entry.getKey());
+      int largestBatchId = documentBatches.get(documentBatches.size() - 1).getBatchId();
+      Map<DocumentKey, Mutation> batchOverlays = overlaysByBatchId.get(largestBatchId);
+      if (batchOverlays == null) {
+        batchOverlays = new HashMap<>();
+        overlaysByBatchId.put(largestBatchId, batchOverlays);
       }
-      documentOverlayCache.saveOverlays(entry.getKey(), overlays);
+      batchOverlays.put(entry.getKey(), entry.getValue());
     }
+    for (Map.Entry<Integer, Map<DocumentKey, Mutation>> entry :
+        overlaysByBatchId.descendingMap().entrySet()) {
+      documentOverlayCache.saveOverlays(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Applies the given batches to each of the documents in {@code keys} and returns the resulting
+   * overlay mutations. Only reads from {@code docs} and {@code batchesByKey}, and only modifies the
+   * documents in {@code keys}, so that disjoint sets of keys can be processed concurrently.
+   */
+  private static Map<DocumentKey, Mutation> calculateOverlays(
+      List<DocumentKey> keys,
+      Map<DocumentKey, MutableDocument> docs,
+      Map<DocumentKey, List<MutationBatch>> batchesByKey) {
+    Map<DocumentKey, Mutation> overlays = new HashMap<>();
+    for (DocumentKey key : keys) {
+      MutableDocument doc = docs.get(key);
+      FieldMask mask = FieldMask.EMPTY;
+      for (MutationBatch batch : batchesByKey.get(key)) {
+        mask = batch.applyToLocalView(doc, mask);
+      }
+      overlays.put(key, Mutation.calculateOverlayMutation(doc, mask));
+    }
+    return overlays;
   }
 
   /**
@@ -297,10 +376,12 @@ class LocalDocumentsView {
 
   private ImmutableSortedMap<DocumentKey, Document> getDocumentsMatchingCollectionQuery(
       Query query, IndexOffset offset) {
-    Map<DocumentKey, MutableDocument> remoteDocuments =
-        remoteDocumentCache.getAll(query.getPath(), offset);
     Map<DocumentKey, Overlay> overlays =
         documentOverlayCache.getOverlays(query.getPath(), offset.getLargestBatchId());
+    // Documents with overlays are always returned by the cache, since their local view may match
+    // the query even if the remote version does not.
+    Map<DocumentKey, MutableDocument> remoteDocuments =
+        remoteDocumentCache.getDocumentsMatchingQuery(query, offset, overlays.keySet());
 
     // As documents might match the query because of their overlay we need to include documents
     // for all overlays in the initial document set.
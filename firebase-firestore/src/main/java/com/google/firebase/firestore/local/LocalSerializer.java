@@ -36,11 +36,20 @@ import com.google.firestore.v1.DocumentTransform.FieldTransform;
 import com.google.firestore.v1.Write;
 import com.google.firestore.v1.Write.Builder;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /** Serializer for values stored in the LocalStore. */
 public final class LocalSerializer {
+  // Wire tags of the fields in MaybeDocument and Document that are decoded by hand.
+  private static final int MAYBE_DOCUMENT_NO_DOCUMENT_TAG = (1 << 3) | 2;
+  private static final int MAYBE_DOCUMENT_DOCUMENT_TAG = (2 << 3) | 2;
+  private static final int MAYBE_DOCUMENT_UNKNOWN_DOCUMENT_TAG = (3 << 3) | 2;
+  private static final int MAYBE_DOCUMENT_HAS_COMMITTED_MUTATIONS_TAG = 4 << 3;
+  private static final int DOCUMENT_NAME_TAG = (1 << 3) | 2;
+  private static final int DOCUMENT_UPDATE_TIME_TAG = (4 << 3) | 2;
 
   private final RemoteSerializer rpcSerializer;
 
@@ -85,6 +94,85 @@ public final class LocalSerializer {
     }
   }
 
+  /**
+   * Decodes an encoded MaybeDocument proto to the equivalent model.
+   *
+   * <p>Unlike {@link #decodeMaybeDocument(com.google.firebase.firestore.proto.MaybeDocument)}, this
+   * does not decode the fields of a found document. Fields are decoded lazily by the document's
+   * {@link ObjectValue} when they are first accessed.
+   */
+  MutableDocument decodeMaybeDocument(byte[] bytes) {
+    int documentTypeTag = 0;
+    ByteString documentBytes = ByteString.EMPTY;
+    boolean hasCommittedMutations = false;
+
+    try {
+      CodedInputStream input = CodedInputStream.newInstance(bytes);
+      for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+        switch (tag) {
+          case MAYBE_DOCUMENT_NO_DOCUMENT_TAG:
+          case MAYBE_DOCUMENT_DOCUMENT_TAG:
+          case MAYBE_DOCUMENT_UNKNOWN_DOCUMENT_TAG:
+            // Only the last member of the oneof is retained.
+            documentTypeTag = tag;
+            documentBytes = input.readBytes();
+            break;
+          case MAYBE_DOCUMENT_HAS_COMMITTED_MUTATIONS_TAG:
+            hasCommittedMutations = input.readBool();
+            break;
+          default:
+            input.skipField(tag);
+        }
+      }
+
+      switch (documentTypeTag) {
+        case MAYBE_DOCUMENT_DOCUMENT_TAG:
+          return decodeLazyDocument(documentBytes, hasCommittedMutations);
+
+        case MAYBE_DOCUMENT_NO_DOCUMENT_TAG:
+          return decodeNoDocument(
+              com.google.firebase.firestore.proto.NoDocument.parseFrom(documentBytes),
+              hasCommittedMutations);
+
+        case MAYBE_DOCUMENT_UNKNOWN_DOCUMENT_TAG:
+          return decodeUnknownDocument(
+              com.google.firebase.firestore.proto.UnknownDocument.parseFrom(documentBytes));
+
+        default:
+          throw fail("Unknown MaybeDocument with %s bytes", bytes.length);
+      }
+    } catch (IOException e) {
+      throw fail("MaybeDocument failed to parse: %s", e);
+    }
+  }
+
+  /**
+   * Decodes the name and update time of an encoded Document proto, leaving its fields encoded
+   * until they are accessed.
+   */
+  private MutableDocument decodeLazyDocument(ByteString bytes, boolean hasCommittedMutations)
+      throws IOException {
+    String name = "";
+    com.google.protobuf.Timestamp updateTime = com.google.protobuf.Timestamp.getDefaultInstance();
+
+    CodedInputStream input = bytes.newCodedInput();
+    for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      if (tag == DOCUMENT_NAME_TAG) {
+        name = input.readStringRequireUtf8();
+      } else if (tag == DOCUMENT_UPDATE_TIME_TAG) {
+        updateTime = com.google.protobuf.Timestamp.parseFrom(input.readBytes());
+      } else {
+        input.skipField(tag);
+      }
+    }
+
+    DocumentKey key = rpcSerializer.decodeKey(name);
+    SnapshotVersion version = rpcSerializer.decodeVersion(updateTime);
+    MutableDocument result =
+        MutableDocument.newFoundDocument(key, version, ObjectValue.fromEncodedDocument(bytes));
+    return hasCommittedMutations ? result.setHasCommittedMutations() : result;
+  }
+
   /**
    * Encodes a Document for local storage. This differs from the v1 RPC serializer for Documents in
    * that it preserves the updateTime, which is considered an output only value by the server.
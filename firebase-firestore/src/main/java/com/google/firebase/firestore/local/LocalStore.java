@@ -486,6 +486,7 @@ public final class LocalStore implements BundleCallback {
   private DocumentChangeResult populateDocumentChanges(
       Map<DocumentKey, MutableDocument> documents) {
     Map<DocumentKey, MutableDocument> changedDocs = new HashMap<>();
+    Map<MutableDocument, SnapshotVersion> updatedDocs = new HashMap<>();
     List<DocumentKey> removedDocs = new ArrayList<>();
     Set<DocumentKey> conditionChanged = new HashSet<>();
 
@@ -517,7 +518,7 @@ public final class LocalStore implements BundleCallback {
         hardAssert(
             !SnapshotVersion.NONE.equals(doc.getReadTime()),
             "Cannot add a document when the remote version is zero");
-        remoteDocuments.add(doc, doc.getReadTime());
+        updatedDocs.put(doc, doc.getReadTime());
         changedDocs.put(key, doc);
       } else {
         Logger.debug(
@@ -528,6 +529,7 @@ public final class LocalStore implements BundleCallback {
             doc.getVersion());
       }
     }
+    remoteDocuments.addAll(updatedDocs);
     remoteDocuments.removeAll(removedDocs);
     return new DocumentChangeResult(changedDocs, conditionChanged);
   }
@@ -694,7 +696,9 @@ public final class LocalStore implements BundleCallback {
 
   @Override
   public ImmutableSortedMap<DocumentKey, Document> applyBundledDocuments(
-      ImmutableSortedMap<DocumentKey, MutableDocument> documents, String bundleId) {
+      ImmutableSortedMap<DocumentKey, MutableDocument> documents,
+      String bundleId,
+      boolean isFirstChunk) {
     // Allocates a target to hold all document keys from the bundle, such that
     // they will not get garbage collected right away.
     TargetData umbrellaTargetData = allocateTarget(newUmbrellaTarget(bundleId));
@@ -715,7 +719,9 @@ public final class LocalStore implements BundleCallback {
             documentMap.put(documentKey, document);
           }
 
-          targetCache.removeMatchingKeysForTargetId(umbrellaTargetData.getTargetId());
+          if (isFirstChunk) {
+            targetCache.removeMatchingKeysForTargetId(umbrellaTargetData.getTargetId());
+          }
           targetCache.addMatchingKeys(documentKeys, umbrellaTargetData.getTargetId());
 
           DocumentChangeResult result = populateDocumentChanges(documentMap);
@@ -774,6 +780,7 @@ public final class LocalStore implements BundleCallback {
               indexManager::addFieldIndex,
               indexManager::deleteFieldIndex);
         });
+    queryEngine.invalidateQueryPlans();
   }
 
   /** Mutable state for the transaction in allocateQuery. */
@@ -868,6 +875,13 @@ public final class LocalStore implements BundleCallback {
         "Collect garbage", () -> garbageCollector.collect(queryDataByTarget));
   }
 
+  /** Collects the next chunk of an incremental garbage collection run in its own transaction. */
+  public LruGarbageCollector.Results collectGarbage(
+      LruGarbageCollector.IncrementalCollection collection) {
+    return persistence.runTransaction(
+        "Collect garbage chunk", () -> collection.collectNextChunk(queryDataByTarget));
+  }
+
   /**
    * Creates a new target using the given bundle name, which will be used to hold the keys of all
    * documents from the bundle in query-document mappings. This ensures that the loaded documents do
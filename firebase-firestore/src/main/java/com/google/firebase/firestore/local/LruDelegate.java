@@ -16,6 +16,7 @@ package com.google.firebase.firestore.local;
 
 import android.util.SparseArray;
 import com.google.firebase.firestore.util.Consumer;
+import java.util.List;
 
 /**
  * Persistence layers intending to use LRU Garbage collection should implement this interface. This
@@ -47,6 +48,23 @@ public interface LruDelegate {
    */
   int removeOrphanedDocuments(long upperBound);
 
+  /**
+   * Returns the unreferenced documents that have a sequence number less than or equal to the given
+   * sequence number, together with the size of their contents. Documents with the largest contents
+   * come first.
+   */
+  List<LruGarbageCollector.OrphanedDocument> getOrphanedDocumentsBySize(long upperBound);
+
+  /**
+   * Removes the given documents, which were returned by {@link #getOrphanedDocumentsBySize} for the
+   * same upper bound. Documents that have since been pinned, added to a target or used again are
+   * skipped.
+   *
+   * @return the number of documents removed, and the size of the removed contents.
+   */
+  LruGarbageCollector.RemovedDocuments removeOrphanedDocuments(
+      long upperBound, List<LruGarbageCollector.OrphanedDocument> documents);
+
   /** Access to the underlying LRU Garbage collector instance. */
   LruGarbageCollector getGarbageCollector();
 
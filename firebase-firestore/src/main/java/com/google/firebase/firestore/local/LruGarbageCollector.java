@@ -14,15 +14,23 @@
 
 package com.google.firebase.firestore.local;
 
+import static com.google.firebase.firestore.util.Assert.hardAssert;
+
 import android.util.SparseArray;
 import androidx.annotation.Nullable;
 import com.google.firebase.firestore.FirebaseFirestoreSettings;
 import com.google.firebase.firestore.core.ListenSequence;
+import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.util.AsyncQueue;
 import com.google.firebase.firestore.util.Logger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
 import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 
 /** Implements the steps for LRU garbage collection. */
@@ -31,6 +39,27 @@ public class LruGarbageCollector {
   private static final long INITIAL_GC_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
   /** Minimum amount of time between GC checks, after the first one. */
   private static final long REGULAR_GC_DELAY_MS = TimeUnit.MINUTES.toMillis(5);
+  /**
+   * How long we wait between the chunks of an incremental GC run. Other operations that were
+   * enqueued while a chunk ran are executed before the next chunk.
+   */
+  private static final long CHUNK_GC_DELAY_MS = 0;
+
+  /** The maximum number of orphaned documents that are removed in a single GC chunk. */
+  static final int DOCUMENTS_PER_CHUNK = 100;
+
+  /**
+   * The maximum number of sequence numbers by which a single GC chunk advances the upper bound for
+   * collection. Targets that fall below the new bound are removed in the same chunk.
+   */
+  static final int SEQUENCE_NUMBERS_PER_CHUNK = 100;
+
+  /**
+   * The number of sequence numbers that an incremental GC run reads ahead whenever it runs out of
+   * sequence numbers by which to advance its upper bound. Each read scans all targets and orphaned
+   * documents, so reading ahead keeps the number of scans low.
+   */
+  static final int SEQUENCE_NUMBERS_PER_SCAN = 1000;
 
   public static class Params {
     private static final long COLLECTION_DISABLED = FirebaseFirestoreSettings.CACHE_SIZE_UNLIMITED;
@@ -47,28 +76,50 @@ public class LruGarbageCollector {
     private static final int DEFAULT_MAX_SEQUENCE_NUMBERS_TO_COLLECT = 1000;
 
     public static Params Default() {
-      return new Params(
-          DEFAULT_CACHE_SIZE_BYTES,
-          DEFAULT_COLLECTION_PERCENTILE,
-          DEFAULT_MAX_SEQUENCE_NUMBERS_TO_COLLECT);
+      return WithCacheSizeBytes(DEFAULT_CACHE_SIZE_BYTES);
     }
 
     public static Params Disabled() {
-      return new Params(COLLECTION_DISABLED, 0, 0);
+      return new Params(COLLECTION_DISABLED, 0, 0, COLLECTION_DISABLED);
     }
 
+    /**
+     * Returns parameters that collect garbage once the cache exceeds the given size, and that bring
+     * it back down to 90% of that size.
+     */
     public static Params WithCacheSizeBytes(long cacheSizeBytes) {
-      return new Params(cacheSizeBytes, 10, 1000);
+      return WithCacheSizeBytes(
+          cacheSizeBytes, cacheSizeBytes / 100 * (100 - DEFAULT_COLLECTION_PERCENTILE));
+    }
+
+    /**
+     * Returns parameters that collect garbage once the cache exceeds {@code cacheSizeBytes}, and
+     * that remove the least recently used documents until the cache is estimated to be no larger
+     * than {@code targetSizeBytes}.
+     */
+    public static Params WithCacheSizeBytes(long cacheSizeBytes, long targetSizeBytes) {
+      return new Params(
+          cacheSizeBytes,
+          DEFAULT_COLLECTION_PERCENTILE,
+          DEFAULT_MAX_SEQUENCE_NUMBERS_TO_COLLECT,
+          targetSizeBytes);
     }
 
     final long minBytesThreshold;
     final int percentileToCollect;
     final int maximumSequenceNumbersToCollect;
-
-    Params(long minBytesThreshold, int percentileToCollect, int maximumSequenceNumbersToCollect) {
+    /** The cache size that incremental GC runs collect down to. */
+    final long targetBytes;
+
+    Params(
+        long minBytesThreshold,
+        int percentileToCollect,
+        int maximumSequenceNumbersToCollect,
+        long targetBytes) {
       this.minBytesThreshold = minBytesThreshold;
       this.percentileToCollect = percentileToCollect;
       this.maximumSequenceNumbersToCollect = maximumSequenceNumbersToCollect;
+      this.targetBytes = targetBytes;
     }
   }
 
@@ -77,6 +128,8 @@ public class LruGarbageCollector {
     private final int sequenceNumbersCollected;
     private final int targetsRemoved;
     private final int documentsRemoved;
+    private final long bytesReclaimed;
+    private final int chunksCollected;
 
     static Results DidNotRun() {
       return new Results(/* hasRun= */ false, 0, 0, 0);
@@ -84,10 +137,28 @@ public class LruGarbageCollector {
 
     Results(
         boolean hasRun, int sequenceNumbersCollected, int targetsRemoved, int documentsRemoved) {
+      this(
+          hasRun,
+          sequenceNumbersCollected,
+          targetsRemoved,
+          documentsRemoved,
+          /* bytesReclaimed= */ 0,
+          /* chunksCollected= */ hasRun ? 1 : 0);
+    }
+
+    Results(
+        boolean hasRun,
+        int sequenceNumbersCollected,
+        int targetsRemoved,
+        int documentsRemoved,
+        long bytesReclaimed,
+        int chunksCollected) {
       this.hasRun = hasRun;
       this.sequenceNumbersCollected = sequenceNumbersCollected;
       this.targetsRemoved = targetsRemoved;
       this.documentsRemoved = documentsRemoved;
+      this.bytesReclaimed = bytesReclaimed;
+      this.chunksCollected = chunksCollected;
     }
 
     public boolean hasRun() {
@@ -105,6 +176,166 @@ public class LruGarbageCollector {
     public int getDocumentsRemoved() {
       return documentsRemoved;
     }
+
+    /**
+     * Returns the size of the contents of the removed documents. Only incremental GC runs track
+     * this; a single-pass run reports 0.
+     */
+    public long getBytesReclaimed() {
+      return bytesReclaimed;
+    }
+
+    /** Returns the number of chunks (and therefore transactions) the GC run has taken so far. */
+    public int getChunksCollected() {
+      return chunksCollected;
+    }
+  }
+
+  /** An unreferenced document that is a candidate for removal by an incremental GC run. */
+  static class OrphanedDocument {
+    final DocumentKey key;
+    /** The size of the document's contents. */
+    final long byteSize;
+
+    OrphanedDocument(DocumentKey key, long byteSize) {
+      this.key = key;
+      this.byteSize = byteSize;
+    }
+  }
+
+  /** The outcome of removing a batch of orphaned documents. */
+  static class RemovedDocuments {
+    /** The number of documents that were removed. */
+    final int documentsRemoved;
+    /** The size of the contents of the removed documents. */
+    final long byteSize;
+
+    RemovedDocuments(int documentsRemoved, long byteSize) {
+      this.documentsRemoved = documentsRemoved;
+      this.byteSize = byteSize;
+    }
+  }
+
+  /**
+   * An incremental garbage collection run. Each call to {@link #collectNextChunk} does a bounded
+   * amount of work in the calling transaction, so that a run over a large cache is spread across
+   * many short transactions instead of blocking the queue in a single long one.
+   *
+   * <p>A run removes least recently used targets and orphaned documents, in the order of their
+   * sequence numbers, until the size of the removed documents brings the cache down to {@link
+   * Params#targetBytes}. Among the orphaned documents that fall below the current sequence number
+   * bound, the ones with the largest contents are removed first.
+   *
+   * <p>The candidates below each bound are read once, when the bound is advanced, and are then
+   * removed in chunks. Each candidate is checked again right before it is removed, since it may
+   * have been used again in the meantime.
+   */
+  public class IncrementalCollection {
+    private boolean started = false;
+    private boolean complete = false;
+    private long bytesToReclaim;
+    private long upperBound = ListenSequence.INVALID;
+    /** The sequence numbers above the upper bound that were read ahead, in ascending order. */
+    private final Queue<Long> nextSequenceNumbers = new ArrayDeque<>();
+    /** The orphaned documents below the upper bound, with the largest contents first. */
+    private List<OrphanedDocument> orphanedDocuments = Collections.emptyList();
+    /** The position of the next orphaned document to remove. */
+    private int nextOrphanedDocument = 0;
+
+    private int sequenceNumbersCollected = 0;
+    private int targetsRemoved = 0;
+    private int documentsRemoved = 0;
+    private long bytesReclaimed = 0;
+    private int chunksCollected = 0;
+
+    private IncrementalCollection() {}
+
+    /** Returns whether this run has finished. No further chunks should be collected once it has. */
+    public boolean isComplete() {
+      return complete;
+    }
+
+    /**
+     * Collects the next chunk of garbage. Must be called inside a transaction.
+     *
+     * @return the cumulative results of this run, including the chunk that was just collected.
+     */
+    Results collectNextChunk(SparseArray<?> activeTargetIds) {
+      hardAssert(!complete, "Garbage collection run already completed");
+      if (!started) {
+        started = true;
+        if (!shouldCollect()) {
+          complete = true;
+          return Results.DidNotRun();
+        }
+        bytesToReclaim = getByteSize() - params.targetBytes;
+        if (bytesToReclaim <= 0) {
+          complete = true;
+          return Results.DidNotRun();
+        }
+      }
+
+      ++chunksCollected;
+      if (nextOrphanedDocument >= orphanedDocuments.size()) {
+        advanceUpperBound(activeTargetIds);
+      } else {
+        removeDocumentsBelowUpperBound();
+      }
+
+      if (bytesReclaimed >= bytesToReclaim) {
+        complete = true;
+      }
+
+      Logger.debug(
+          "LruGarbageCollector",
+          "Collected chunk %d: %d targets and %d documents (%d of %d bytes) removed so far",
+          chunksCollected,
+          targetsRemoved,
+          documentsRemoved,
+          bytesReclaimed,
+          bytesToReclaim);
+      return new Results(
+          /* hasRun= */ true,
+          sequenceNumbersCollected,
+          targetsRemoved,
+          documentsRemoved,
+          bytesReclaimed,
+          chunksCollected);
+    }
+
+    private void advanceUpperBound(SparseArray<?> activeTargetIds) {
+      if (nextSequenceNumbers.isEmpty()) {
+        nextSequenceNumbers.addAll(
+            lowestSequenceNumbers(SEQUENCE_NUMBERS_PER_SCAN, upperBound).toSortedList());
+        if (nextSequenceNumbers.isEmpty()) {
+          // Everything that is left is either active or pinned.
+          complete = true;
+          return;
+        }
+      }
+
+      // Sequence numbers that are shared with the new bound are collected along with it.
+      int count = 0;
+      while (!nextSequenceNumbers.isEmpty()
+          && (count < SEQUENCE_NUMBERS_PER_CHUNK || nextSequenceNumbers.peek() == upperBound)) {
+        upperBound = nextSequenceNumbers.poll();
+        ++count;
+      }
+      sequenceNumbersCollected += count;
+      targetsRemoved += removeTargets(upperBound, activeTargetIds);
+      orphanedDocuments = delegate.getOrphanedDocumentsBySize(upperBound);
+      nextOrphanedDocument = 0;
+    }
+
+    private void removeDocumentsBelowUpperBound() {
+      int end = Math.min(nextOrphanedDocument + DOCUMENTS_PER_CHUNK, orphanedDocuments.size());
+      RemovedDocuments removed =
+          delegate.removeOrphanedDocuments(
+              upperBound, orphanedDocuments.subList(nextOrphanedDocument, end));
+      nextOrphanedDocument = end;
+      documentsRemoved += removed.documentsRemoved;
+      bytesReclaimed += removed.byteSize;
+    }
   }
 
   /**
@@ -138,15 +369,25 @@ public class LruGarbageCollector {
 
     private void scheduleGC() {
       long delay = hasRun ? REGULAR_GC_DELAY_MS : INITIAL_GC_DELAY_MS;
+      IncrementalCollection collection = newIncrementalCollection();
       gcTask =
           asyncQueue.enqueueAfterDelay(
-              AsyncQueue.TimerId.GARBAGE_COLLECTION,
-              delay,
-              () -> {
-                localStore.collectGarbage(LruGarbageCollector.this);
-                hasRun = true;
-                scheduleGC();
-              });
+              AsyncQueue.TimerId.GARBAGE_COLLECTION, delay, () -> collectChunk(collection));
+    }
+
+    private void collectChunk(IncrementalCollection collection) {
+      localStore.collectGarbage(collection);
+      if (collection.isComplete()) {
+        hasRun = true;
+        scheduleGC();
+      } else {
+        // Yield to other operations before collecting the next chunk.
+        gcTask =
+            asyncQueue.enqueueAfterDelay(
+                AsyncQueue.TimerId.GARBAGE_COLLECTION,
+                CHUNK_GC_DELAY_MS,
+                () -> collectChunk(collection));
+      }
     }
   }
 
@@ -163,6 +404,11 @@ public class LruGarbageCollector {
     return new GCScheduler(asyncQueue, localStore);
   }
 
+  /** Starts a new incremental GC run. Its chunks are collected with {@link LocalStore}. */
+  public IncrementalCollection newIncrementalCollection() {
+    return new IncrementalCollection();
+  }
+
   /** Given a percentile of target to collect, returns the number of targets to collect. */
   int calculateQueryCount(int percentile) {
     long targetCount = delegate.getSequenceNumberCount();
@@ -199,6 +445,13 @@ public class LruGarbageCollector {
     long getMaxValue() {
       return queue.peek();
     }
+
+    /** Returns the buffered sequence numbers in ascending order. */
+    List<Long> toSortedList() {
+      List<Long> sequenceNumbers = new ArrayList<>(queue);
+      Collections.sort(sequenceNumbers);
+      return sequenceNumbers;
+    }
   }
 
   /** Returns the nth sequence number, counting in order from the smallest. */
@@ -206,10 +459,25 @@ public class LruGarbageCollector {
     if (count == 0) {
       return ListenSequence.INVALID;
     }
+    return lowestSequenceNumbers(count, ListenSequence.INVALID).getMaxValue();
+  }
+
+  /** Returns a buffer with the lowest {@code count} sequence numbers above the lower bound. */
+  private RollingSequenceNumberBuffer lowestSequenceNumbers(int count, long lowerBound) {
     RollingSequenceNumberBuffer buffer = new RollingSequenceNumberBuffer(count);
-    delegate.forEachTarget((targetData) -> buffer.addElement(targetData.getSequenceNumber()));
-    delegate.forEachOrphanedDocumentSequenceNumber(buffer::addElement);
-    return buffer.getMaxValue();
+    delegate.forEachTarget(
+        (targetData) -> {
+          if (targetData.getSequenceNumber() > lowerBound) {
+            buffer.addElement(targetData.getSequenceNumber());
+          }
+        });
+    delegate.forEachOrphanedDocumentSequenceNumber(
+        sequenceNumber -> {
+          if (sequenceNumber > lowerBound) {
+            buffer.addElement(sequenceNumber);
+          }
+        });
+    return buffer;
   }
 
   /**
@@ -228,10 +496,21 @@ public class LruGarbageCollector {
     return delegate.removeOrphanedDocuments(upperBound);
   }
 
+  /**
+   * Collects garbage in a single pass, removing a percentile of the least recently used sequence
+   * numbers. See {@link IncrementalCollection} for the variant that the scheduler uses.
+   */
   Results collect(SparseArray<?> activeTargetIds) {
+    if (!shouldCollect()) {
+      return Results.DidNotRun();
+    }
+    return runGarbageCollection(activeTargetIds);
+  }
+
+  private boolean shouldCollect() {
     if (params.minBytesThreshold == Params.COLLECTION_DISABLED) {
       Logger.debug("LruGarbageCollector", "Garbage collection skipped; disabled");
-      return Results.DidNotRun();
+      return false;
     }
 
     long cacheSize = getByteSize();
@@ -242,10 +521,9 @@ public class LruGarbageCollector {
               + cacheSize
               + " is lower than threshold "
               + params.minBytesThreshold);
-      return Results.DidNotRun();
-    } else {
-      return runGarbageCollection(activeTargetIds);
+      return false;
     }
+    return true;
   }
 
   private Results runGarbageCollection(SparseArray<?> liveTargetIds) {
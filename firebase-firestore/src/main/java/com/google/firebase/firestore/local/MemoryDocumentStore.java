@@ -0,0 +1,50 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.firebase.firestore.local;
+
+import androidx.annotation.Nullable;
+import com.google.firebase.firestore.model.Document;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.MutableDocument;
+import com.google.firebase.firestore.model.ResourcePath;
+
+/**
+ * The sorted storage behind {@link MemoryRemoteDocumentCache}.
+ *
+ * <p>Documents returned by a store are read-only views. Callers must copy them before modifying
+ * them.
+ */
+interface MemoryDocumentStore extends Iterable<Document> {
+  /**
+   * Stores the given document, replacing any document with the same key. The store takes ownership
+   * of the document, which must not be modified afterwards.
+   */
+  void put(MutableDocument document);
+
+  /** Removes the document with the given key, if present. */
+  void remove(DocumentKey key);
+
+  /** Returns the document with the given key, or null if the store does not contain it. */
+  @Nullable
+  Document get(DocumentKey key);
+
+  /**
+   * Returns the documents that are direct children of the given collection (excluding documents in
+   * subcollections), in key order.
+   */
+  Iterable<Document> getCollection(ResourcePath collection);
+
+  /** Returns the approximate size of the stored documents in bytes. */
+  long getByteSize(LocalSerializer serializer);
+}
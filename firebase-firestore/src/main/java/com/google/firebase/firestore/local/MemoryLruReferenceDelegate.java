@@ -22,6 +22,7 @@ import com.google.firebase.firestore.model.Document;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.util.Consumer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -130,6 +131,41 @@ class MemoryLruReferenceDelegate implements ReferenceDelegate, LruDelegate {
     return docsToRemove.size();
   }
 
+  @Override
+  public List<LruGarbageCollector.OrphanedDocument> getOrphanedDocumentsBySize(long upperBound) {
+    List<LruGarbageCollector.OrphanedDocument> documents = new ArrayList<>();
+    for (Document doc : persistence.getRemoteDocumentCache().getDocuments()) {
+      if (!isPinned(doc.getKey(), upperBound)) {
+        documents.add(
+            new LruGarbageCollector.OrphanedDocument(
+                doc.getKey(), serializer.encodeMaybeDocument(doc).getSerializedSize()));
+      }
+    }
+    Collections.sort(
+        documents,
+        (left, right) -> {
+          int cmp = Long.compare(right.byteSize, left.byteSize);
+          return cmp != 0 ? cmp : left.key.compareTo(right.key);
+        });
+    return documents;
+  }
+
+  @Override
+  public LruGarbageCollector.RemovedDocuments removeOrphanedDocuments(
+      long upperBound, List<LruGarbageCollector.OrphanedDocument> documents) {
+    long byteSize = 0;
+    List<DocumentKey> docsToRemove = new ArrayList<>();
+    for (LruGarbageCollector.OrphanedDocument document : documents) {
+      if (!isPinned(document.key, upperBound)) {
+        docsToRemove.add(document.key);
+        byteSize += document.byteSize;
+        orphanedSequenceNumbers.remove(document.key);
+      }
+    }
+    persistence.getRemoteDocumentCache().removeAll(docsToRemove);
+    return new LruGarbageCollector.RemovedDocuments(docsToRemove.size(), byteSize);
+  }
+
   @Override
   public void removeMutationReference(DocumentKey key) {
     orphanedSequenceNumbers.put(key, getCurrentSequenceNumber());
@@ -42,26 +42,37 @@ public final class MemoryPersistence extends Persistence {
   private boolean started;
 
   public static MemoryPersistence createEagerGcMemoryPersistence() {
-    MemoryPersistence persistence = new MemoryPersistence();
+    MemoryPersistence persistence = new MemoryPersistence(new TreeDocumentStore());
+    persistence.setReferenceDelegate(new MemoryEagerReferenceDelegate(persistence));
+    return persistence;
+  }
+
+  /**
+   * Creates a persistence layer with eager GC that keeps remote documents in their serialized form,
+   * decoding them when they are read.
+   */
+  public static MemoryPersistence createCompactEagerGcMemoryPersistence(
+      LocalSerializer serializer) {
+    MemoryPersistence persistence = new MemoryPersistence(new CompactDocumentStore(serializer));
     persistence.setReferenceDelegate(new MemoryEagerReferenceDelegate(persistence));
     return persistence;
   }
 
   public static MemoryPersistence createLruGcMemoryPersistence(
       LruGarbageCollector.Params params, LocalSerializer serializer) {
-    MemoryPersistence persistence = new MemoryPersistence();
+    MemoryPersistence persistence = new MemoryPersistence(new TreeDocumentStore());
     persistence.setReferenceDelegate(
         new MemoryLruReferenceDelegate(persistence, params, serializer));
     return persistence;
   }
 
   /** Use static helpers to instantiate */
-  private MemoryPersistence() {
+  private MemoryPersistence(MemoryDocumentStore documentStore) {
     mutationQueues = new HashMap<>();
     indexManager = new MemoryIndexManager();
     targetCache = new MemoryTargetCache(this);
     bundleCache = new MemoryBundleCache();
-    remoteDocumentCache = new MemoryRemoteDocumentCache();
+    remoteDocumentCache = new MemoryRemoteDocumentCache(documentStore);
     overlays = new HashMap<>();
   }
 
@@ -17,29 +17,31 @@ package com.google.firebase.firestore.local;
 import static com.google.firebase.firestore.model.DocumentCollections.emptyDocumentMap;
 import static com.google.firebase.firestore.util.Assert.hardAssert;
 
-import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.google.firebase.database.collection.ImmutableSortedMap;
+import com.google.firebase.firestore.core.Query;
 import com.google.firebase.firestore.model.Document;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.FieldIndex.IndexOffset;
 import com.google.firebase.firestore.model.MutableDocument;
 import com.google.firebase.firestore.model.ResourcePath;
 import com.google.firebase.firestore.model.SnapshotVersion;
+import com.google.firebase.firestore.util.Function;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 /** In-memory cache of remote documents. */
 final class MemoryRemoteDocumentCache implements RemoteDocumentCache {
 
   /** Underlying cache of documents and their read times. */
-  private ImmutableSortedMap<DocumentKey, Document> docs;
+  private final MemoryDocumentStore docs;
   /** Manages the collection group index. */
   private IndexManager indexManager;
 
-  MemoryRemoteDocumentCache() {
-    docs = emptyDocumentMap();
+  MemoryRemoteDocumentCache(MemoryDocumentStore docs) {
+    this.docs = docs;
   }
 
   @Override
@@ -53,18 +55,25 @@ final class MemoryRemoteDocumentCache implements RemoteDocumentCache {
     hardAssert(
         !readTime.equals(SnapshotVersion.NONE),
         "Cannot add document to the RemoteDocumentCache with a read time of zero");
-    docs = docs.insert(document.getKey(), document.mutableCopy().setReadTime(readTime));
+    docs.put(document.mutableCopy().setReadTime(readTime));
 
     indexManager.addToCollectionParentIndex(document.getKey().getCollectionPath());
   }
 
+  @Override
+  public void addAll(Map<MutableDocument, SnapshotVersion> documents) {
+    for (Map.Entry<MutableDocument, SnapshotVersion> entry : documents.entrySet()) {
+      add(entry.getKey(), entry.getValue());
+    }
+  }
+
   @Override
   public void removeAll(Collection<DocumentKey> keys) {
     hardAssert(indexManager != null, "setIndexManager() not called");
 
     ImmutableSortedMap<DocumentKey, Document> deletedDocs = emptyDocumentMap();
     for (DocumentKey key : keys) {
-      docs = docs.remove(key);
+      docs.remove(key);
       deletedDocs =
           deletedDocs.insert(key, MutableDocument.newNoDocument(key, SnapshotVersion.NONE));
     }
@@ -95,71 +104,47 @@ final class MemoryRemoteDocumentCache implements RemoteDocumentCache {
 
   @Override
   public Map<DocumentKey, MutableDocument> getAll(ResourcePath collection, IndexOffset offset) {
-    Map<DocumentKey, MutableDocument> result = new HashMap<>();
-
-    // Documents are ordered by key, so we can use a prefix scan to narrow down the documents
-    // we need to match the query against.
-    DocumentKey prefix = DocumentKey.fromPath(collection.append(""));
-    Iterator<Map.Entry<DocumentKey, Document>> iterator = docs.iteratorFrom(prefix);
-
-    while (iterator.hasNext()) {
-      Map.Entry<DocumentKey, Document> entry = iterator.next();
-      Document doc = entry.getValue();
+    return getAll(collection, offset, /* filter= */ null);
+  }
 
-      DocumentKey key = entry.getKey();
-      if (!collection.isPrefixOf(key.getPath())) {
-        // We are now scanning the next collection. Abort.
-        break;
-      }
+  @Override
+  public Map<DocumentKey, MutableDocument> getDocumentsMatchingQuery(
+      Query query, IndexOffset offset, Set<DocumentKey> mutatedKeys) {
+    hardAssert(
+        !query.isDocumentQuery() && !query.isCollectionGroupQuery(),
+        "getDocumentsMatchingQuery() only supports collection queries");
+    return getAll(
+        query.getPath(),
+        offset,
+        doc -> query.matches(doc) || mutatedKeys.contains(doc.getKey()));
+  }
 
-      if (key.getPath().length() > collection.length() + 1) {
-        // Exclude entries from subcollections.
-        continue;
-      }
+  private Map<DocumentKey, MutableDocument> getAll(
+      ResourcePath collection,
+      IndexOffset offset,
+      @Nullable Function<MutableDocument, Boolean> filter) {
+    Map<DocumentKey, MutableDocument> result = new HashMap<>();
 
+    for (Document doc : docs.getCollection(collection)) {
       if (IndexOffset.fromDocument(doc).compareTo(offset) <= 0) {
         // The document sorts before the offset.
         continue;
       }
 
-      result.put(doc.getKey(), doc.mutableCopy());
+      MutableDocument document = doc.mutableCopy();
+      if (filter == null || filter.apply(document)) {
+        result.put(document.getKey(), document);
+      }
     }
 
     return result;
   }
 
   Iterable<Document> getDocuments() {
-    return new DocumentIterable();
+    return docs;
   }
 
   long getByteSize(LocalSerializer serializer) {
-    long count = 0;
-    for (Document doc : new DocumentIterable()) {
-      count += serializer.encodeMaybeDocument(doc).getSerializedSize();
-    }
-    return count;
-  }
-
-  /**
-   * A proxy that exposes an iterator over the current set of documents in the RemoteDocumentCache.
-   */
-  private class DocumentIterable implements Iterable<Document> {
-    @NonNull
-    @Override
-    public Iterator<Document> iterator() {
-      Iterator<Map.Entry<DocumentKey, Document>> iterator =
-          MemoryRemoteDocumentCache.this.docs.iterator();
-      return new Iterator<Document>() {
-        @Override
-        public boolean hasNext() {
-          return iterator.hasNext();
-        }
-
-        @Override
-        public Document next() {
-          return iterator.next().getValue();
-        }
-      };
-    }
+    return docs.getByteSize(serializer);
   }
 }
@@ -17,6 +17,7 @@ package com.google.firebase.firestore.local;
 import static com.google.firebase.firestore.util.Assert.hardAssert;
 import static com.google.firebase.firestore.util.Util.values;
 
+import androidx.annotation.VisibleForTesting;
 import com.google.firebase.database.collection.ImmutableSortedMap;
 import com.google.firebase.database.collection.ImmutableSortedSet;
 import com.google.firebase.firestore.core.Query;
@@ -28,6 +29,7 @@ import com.google.firebase.firestore.model.FieldIndex.IndexOffset;
 import com.google.firebase.firestore.model.SnapshotVersion;
 import com.google.firebase.firestore.util.Logger;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -65,18 +67,43 @@ import javax.annotation.Nullable;
  *       that is in the local cache.
  *   <li>Queries that have never been CURRENT or free of limbo documents.
  * </ol>
+ *
+ * <p>The field index and execution statistics for recently executed targets are kept in a {@link
+ * QueryPlan}, which is reused for repeated executions of the same target. If both an index and a
+ * previous result can be used, the query engine picks the strategy that was faster when the plan
+ * has seen both. Otherwise, it picks the one that requires scanning fewer documents that were
+ * written after the index was last backfilled or the query was last synchronized.
  */
 public class QueryEngine {
   private static final String LOG_TAG = "QueryEngine";
 
+  /** The maximum number of targets for which query plans are retained. */
+  private static final int MAX_QUERY_PLANS = 100;
+
   private LocalDocumentsView localDocumentsView;
   private IndexManager indexManager;
   private boolean initialized;
 
+  /** The query plans of recently executed targets, keyed by canonical ID. */
+  private final Map<String, QueryPlan> queryPlans =
+      new LinkedHashMap<String, QueryPlan>(
+          /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryPlan> eldest) {
+          return size() > MAX_QUERY_PLANS;
+        }
+      };
+
   public void initialize(LocalDocumentsView localDocumentsView, IndexManager indexManager) {
     this.localDocumentsView = localDocumentsView;
     this.indexManager = indexManager;
     this.initialized = true;
+    invalidateQueryPlans();
+  }
+
+  /** Discards all query plans. Must be called when the configured field indexes change. */
+  void invalidateQueryPlans() {
+    queryPlans.clear();
   }
 
   public ImmutableSortedMap<DocumentKey, Document> getDocumentsMatchingQuery(
@@ -85,37 +112,104 @@ public class QueryEngine {
       ImmutableSortedSet<DocumentKey> remoteKeys) {
     hardAssert(initialized, "initialize() not called");
 
-    ImmutableSortedMap<DocumentKey, Document> result =
-        performQueryUsingIndex(query, query.toTarget());
-    if (result != null) {
-      return result;
+    long startTimeMs = System.currentTimeMillis();
+    Target target = query.toTarget();
+    QueryPlan plan = planQuery(query, target);
+
+    @Nullable FieldIndex fieldIndex = plan.getFieldIndex();
+    boolean preferPreviousResults =
+        fieldIndex != null
+            && shouldPreferPreviousResults(plan, fieldIndex, lastLimboFreeSnapshotVersion);
+
+    ImmutableSortedMap<DocumentKey, Document> result = null;
+    QueryPlan.Strategy strategy = null;
+
+    if (preferPreviousResults) {
+      result = performQueryUsingRemoteKeys(query, remoteKeys, lastLimboFreeSnapshotVersion);
+      strategy = QueryPlan.Strategy.PREVIOUS_RESULTS;
     }
 
-    result = performQueryUsingRemoteKeys(query, remoteKeys, lastLimboFreeSnapshotVersion);
-    if (result != null) {
-      return result;
+    if (result == null && fieldIndex != null) {
+      result = performQueryUsingIndex(query, target, fieldIndex);
+      strategy = QueryPlan.Strategy.INDEX;
     }
 
-    return executeFullCollectionScan(query);
+    if (result == null && !preferPreviousResults) {
+      result = performQueryUsingRemoteKeys(query, remoteKeys, lastLimboFreeSnapshotVersion);
+      strategy = QueryPlan.Strategy.PREVIOUS_RESULTS;
+    }
+
+    if (result == null) {
+      result = executeFullCollectionScan(query);
+      strategy = QueryPlan.Strategy.FULL_SCAN;
+    }
+
+    plan.recordExecution(strategy, result.size(), System.currentTimeMillis() - startTimeMs);
+    return result;
+  }
+
+  /** Returns the query plan for the given target, or {@code null} if there is none. */
+  @VisibleForTesting
+  @Nullable
+  QueryPlan getQueryPlan(Target target) {
+    return queryPlans.get(target.getCanonicalId());
   }
 
   /**
-   * Performs an indexed query that evaluates the query based on a collection's persisted index
-   * values. Returns {@code null} if an index is not available.
+   * Returns the cached query plan for the given target, or creates a new plan if there is none or
+   * the cached plan has expired.
    */
-  private @Nullable ImmutableSortedMap<DocumentKey, Document> performQueryUsingIndex(
-      Query query, Target target) {
+  private QueryPlan planQuery(Query query, Target target) {
+    String canonicalId = target.getCanonicalId();
+    QueryPlan plan = queryPlans.get(canonicalId);
+    if (plan == null || plan.isExpired()) {
+      plan = new QueryPlan(getFieldIndex(query, target));
+      queryPlans.put(canonicalId, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * Returns whether the previous results should be tried before the field index. Uses the recorded
+   * latencies if the plan has executed the query with both strategies.
+   */
+  private boolean shouldPreferPreviousResults(
+      QueryPlan plan, FieldIndex fieldIndex, SnapshotVersion lastLimboFreeSnapshotVersion) {
+    if (plan.isCheaper(QueryPlan.Strategy.PREVIOUS_RESULTS, QueryPlan.Strategy.INDEX)) {
+      return true;
+    } else if (plan.isCheaper(QueryPlan.Strategy.INDEX, QueryPlan.Strategy.PREVIOUS_RESULTS)) {
+      return false;
+    }
+    return isIndexBehind(fieldIndex, lastLimboFreeSnapshotVersion);
+  }
+
+  /** Returns the field index that can serve the query, or {@code null} if there is none. */
+  private @Nullable FieldIndex getFieldIndex(Query query, Target target) {
     // TODO(orquery): Update this condition when we are able to serve or queries from the index.
     if (query.matchesAllDocuments() || query.containsCompositeFilters()) {
       // Don't use index queries that can be executed by scanning the collection.
       return null;
     }
+    return indexManager.getFieldIndex(target);
+  }
 
-    FieldIndex fieldIndex = indexManager.getFieldIndex(query.toTarget());
-    if (fieldIndex == null) {
-      return null;
+  /**
+   * Returns whether the index has been backfilled less recently than the query was synchronized
+   * with the backend. In that case, an index-based execution has to scan more unindexed documents
+   * than re-using the previous results does.
+   */
+  private boolean isIndexBehind(
+      FieldIndex fieldIndex, SnapshotVersion lastLimboFreeSnapshotVersion) {
+    if (lastLimboFreeSnapshotVersion.equals(SnapshotVersion.NONE)) {
+      return false;
     }
+    SnapshotVersion indexReadTime = fieldIndex.getIndexState().getOffset().getReadTime();
+    return indexReadTime.compareTo(lastLimboFreeSnapshotVersion) < 0;
+  }
 
+  /** Performs an indexed query that evaluates the query based on a collection's persisted index. */
+  private ImmutableSortedMap<DocumentKey, Document> performQueryUsingIndex(
+      Query query, Target target, FieldIndex fieldIndex) {
     Set<DocumentKey> keys = indexManager.getDocumentsMatchingTarget(fieldIndex, target);
     ImmutableSortedMap<DocumentKey, Document> indexedDocuments =
         localDocumentsView.getDocuments(keys);
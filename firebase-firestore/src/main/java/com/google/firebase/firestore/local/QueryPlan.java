@@ -0,0 +1,119 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import androidx.annotation.Nullable;
+import com.google.firebase.firestore.model.FieldIndex;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The execution strategy and runtime statistics that the {@link QueryEngine} keeps for a single
+ * target.
+ *
+ * <p>A plan remembers the field index that can serve the target, so that repeated executions do not
+ * need to look it up again. The index state in the plan may be behind the persisted state, which
+ * is safe: an older index offset only causes more documents to be read outside of the index. Plans
+ * expire after {@link #MAX_EXECUTIONS} executions so that new offsets are eventually picked up.
+ */
+final class QueryPlan {
+  /** The number of executions after which a plan is discarded and the target is planned again. */
+  static final int MAX_EXECUTIONS = 20;
+
+  /** The strategies that the query engine can use to execute a query. */
+  enum Strategy {
+    /** Look up documents via a persisted field index. */
+    INDEX,
+    /** Re-use the results from the last time the target was synchronized with the backend. */
+    PREVIOUS_RESULTS,
+    /** Scan all documents in the collection. */
+    FULL_SCAN
+  }
+
+  @Nullable private final FieldIndex fieldIndex;
+  private final Map<Strategy, Long> latenciesMs = new EnumMap<>(Strategy.class);
+  @Nullable private Strategy strategy;
+  private int executionCount = 0;
+  private int fullScanCount = 0;
+  private int lastResultCount = 0;
+  private long lastLatencyMs = 0;
+
+  /** @param fieldIndex The field index that can serve the target, or {@code null} if none can. */
+  QueryPlan(@Nullable FieldIndex fieldIndex) {
+    this.fieldIndex = fieldIndex;
+  }
+
+  /** Returns the field index that can serve the target, or {@code null} if none can. */
+  @Nullable
+  FieldIndex getFieldIndex() {
+    return fieldIndex;
+  }
+
+  /** Returns whether the plan has been used often enough that the target should be re-planned. */
+  boolean isExpired() {
+    return executionCount >= MAX_EXECUTIONS;
+  }
+
+  /**
+   * Returns whether both strategies have been used with this plan and the last execution with
+   * {@code strategy} was faster than the last execution with {@code other}.
+   */
+  boolean isCheaper(Strategy strategy, Strategy other) {
+    Long latencyMs = latenciesMs.get(strategy);
+    Long otherLatencyMs = latenciesMs.get(other);
+    return latencyMs != null && otherLatencyMs != null && latencyMs < otherLatencyMs;
+  }
+
+  /** Records the outcome of executing the query with the given strategy. */
+  void recordExecution(Strategy strategy, int resultCount, long latencyMs) {
+    this.strategy = strategy;
+    ++executionCount;
+    if (strategy == Strategy.FULL_SCAN) {
+      ++fullScanCount;
+    }
+    latenciesMs.put(strategy, latencyMs);
+    lastResultCount = resultCount;
+    lastLatencyMs = latencyMs;
+  }
+
+  /**
+   * Returns the strategy that was used the last time the query was executed, or {@code null} if
+   * it has not been executed yet.
+   */
+  @Nullable
+  Strategy getStrategy() {
+    return strategy;
+  }
+
+  /** Returns the number of times the query has been executed. */
+  int getExecutionCount() {
+    return executionCount;
+  }
+
+  /** Returns the number of times the query has been executed as a full collection scan. */
+  int getFullScanCount() {
+    return fullScanCount;
+  }
+
+  /** Returns the number of documents in the last result. */
+  int getLastResultCount() {
+    return lastResultCount;
+  }
+
+  /** Returns how long the last execution took. */
+  long getLastLatencyMs() {
+    return lastLatencyMs;
+  }
+}
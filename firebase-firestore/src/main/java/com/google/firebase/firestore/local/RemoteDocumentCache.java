@@ -14,6 +14,7 @@
 
 package com.google.firebase.firestore.local;
 
+import com.google.firebase.firestore.core.Query;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.FieldIndex.IndexOffset;
 import com.google.firebase.firestore.model.MutableDocument;
@@ -21,6 +22,7 @@ import com.google.firebase.firestore.model.ResourcePath;
 import com.google.firebase.firestore.model.SnapshotVersion;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents cached documents received from the remote backend.
@@ -45,6 +47,15 @@ interface RemoteDocumentCache {
    */
   void add(MutableDocument document, SnapshotVersion readTime);
 
+  /**
+   * Adds or replaces multiple entries in the cache. This is equivalent to calling {@link #add} for
+   * each entry, but allows implementations to write the entries in bulk.
+   *
+   * @param documents The documents to put in the cache, mapped to the time at which each document
+   *     was read or committed.
+   */
+  void addAll(Map<MutableDocument, SnapshotVersion> documents);
+
   /** Removes the cached entries for the given keys (no-op if no entry exists). */
   void removeAll(Collection<DocumentKey> keys);
 
@@ -84,4 +95,18 @@ interface RemoteDocumentCache {
    * @return A newly created map with the set of documents in the collection.
    */
   Map<DocumentKey, MutableDocument> getAll(ResourcePath collection, IndexOffset offset);
+
+  /**
+   * Returns the documents from the collection of the provided query that match the query.
+   * Documents are filtered while they are read, which allows implementations to discard
+   * non-matching documents before the full result set is materialized.
+   *
+   * @param query The collection query to match documents against.
+   * @param offset The read time and document key to start scanning at (exclusive).
+   * @param mutatedKeys The keys of documents that have local mutations. These documents are
+   *     returned even if they do not match the query, since their local view may still match.
+   * @return A newly created map with the documents that match the query or have local mutations.
+   */
+  Map<DocumentKey, MutableDocument> getDocumentsMatchingQuery(
+      Query query, IndexOffset offset, Set<DocumentKey> mutatedKeys);
 }
@@ -32,6 +32,7 @@ import com.google.firebase.firestore.core.Target;
 import com.google.firebase.firestore.index.DirectionalIndexByteEncoder;
 import com.google.firebase.firestore.index.FirestoreIndexValueWriter;
 import com.google.firebase.firestore.index.IndexByteEncoder;
+import com.google.firebase.firestore.index.IndexByteEncoderPool;
 import com.google.firebase.firestore.index.IndexEntry;
 import com.google.firebase.firestore.model.Document;
 import com.google.firebase.firestore.model.DocumentKey;
@@ -77,6 +78,9 @@ final class SQLiteIndexManager implements IndexManager {
       new MemoryIndexManager.MemoryCollectionParentIndex();
 
   private final Map<String, Map<Integer, FieldIndex>> memoizedIndexes = new HashMap<>();
+
+  /** Reused encoders for index values. Like the rest of this class, only used on the queue. */
+  private final IndexByteEncoderPool encoderPool = new IndexByteEncoderPool();
   private final Queue<FieldIndex> nextIndexToUpdate =
       new PriorityQueue<>(
           10,
@@ -224,29 +228,36 @@ final class SQLiteIndexManager implements IndexManager {
   public void updateIndexEntries(ImmutableSortedMap<DocumentKey, Document> documents) {
     hardAssert(started, "IndexManager not started");
 
+    // Added entries are collected across all documents and written in bulk at the end, which
+    // requires far fewer statements than inserting each entry separately.
+    List<IndexEntry> addedEntries = new ArrayList<>();
     for (Map.Entry<DocumentKey, Document> entry : documents) {
       Collection<FieldIndex> fieldIndexes = getFieldIndexes(entry.getKey().getCollectionGroup());
       for (FieldIndex fieldIndex : fieldIndexes) {
         SortedSet<IndexEntry> existingEntries = getExistingIndexEntries(entry.getKey(), fieldIndex);
         SortedSet<IndexEntry> newEntries = computeIndexEntries(entry.getValue(), fieldIndex);
         if (!existingEntries.equals(newEntries)) {
-          updateEntries(entry.getValue(), existingEntries, newEntries);
+          updateEntries(entry.getValue(), existingEntries, newEntries, addedEntries);
         }
       }
     }
+    addIndexEntries(addedEntries);
   }
 
   /**
    * Updates the index entries for the provided document by deleting entries that are no longer
-   * referenced in {@code newEntries} and adding all newly added entries.
+   * referenced in {@code newEntries}. Newly added entries are appended to {@code addedEntries}.
    */
   private void updateEntries(
-      Document document, SortedSet<IndexEntry> existingEntries, SortedSet<IndexEntry> newEntries) {
+      Document document,
+      SortedSet<IndexEntry> existingEntries,
+      SortedSet<IndexEntry> newEntries,
+      List<IndexEntry> addedEntries) {
     Logger.debug(TAG, "Updating index entries for document '%s'", document.getKey());
     diffCollections(
         existingEntries,
         newEntries,
-        entry -> addIndexEntry(document, entry),
+        addedEntries::add,
         entry -> deleteIndexEntry(document, entry));
   }
 
@@ -320,15 +331,24 @@ final class SQLiteIndexManager implements IndexManager {
     return result;
   }
 
-  private void addIndexEntry(Document document, IndexEntry indexEntry) {
-    db.execute(
+  /** Writes the given index entries using multi-row INSERT statements. */
+  private void addIndexEntries(List<IndexEntry> indexEntries) {
+    if (indexEntries.isEmpty()) return;
+
+    List<Object> args = new ArrayList<>(indexEntries.size() * 5);
+    for (IndexEntry indexEntry : indexEntries) {
+      args.add(indexEntry.getIndexId());
+      args.add(uid);
+      args.add(indexEntry.getArrayValue());
+      args.add(indexEntry.getDirectionalValue());
+      args.add(indexEntry.getDocumentKey().toString());
+    }
+
+    db.executeMultiRowInsert(
         "INSERT INTO index_entries (index_id, uid, array_value, directional_value, document_key) "
-            + "VALUES(?, ?, ?, ?, ?)",
-        indexEntry.getIndexId(),
-        uid,
-        indexEntry.getArrayValue(),
-        indexEntry.getDirectionalValue(),
-        document.getKey().toString());
+            + "VALUES",
+        /* columnCount= */ 5,
+        args);
   }
 
   private void deleteIndexEntry(Document document, IndexEntry indexEntry) {
@@ -536,24 +556,32 @@ final class SQLiteIndexManager implements IndexManager {
    * null} if the document does not have all fields specified in the index.
    */
   private @Nullable byte[] encodeDirectionalElements(FieldIndex fieldIndex, Document document) {
-    IndexByteEncoder encoder = new IndexByteEncoder();
-    for (FieldIndex.Segment segment : fieldIndex.getDirectionalSegments()) {
-      Value field = document.getField(segment.getFieldPath());
-      if (field == null) {
-        return null;
+    IndexByteEncoder encoder = encoderPool.acquire();
+    try {
+      for (FieldIndex.Segment segment : fieldIndex.getDirectionalSegments()) {
+        Value field = document.getField(segment.getFieldPath());
+        if (field == null) {
+          return null;
+        }
+        DirectionalIndexByteEncoder directionalEncoder = encoder.forKind(segment.getKind());
+        FirestoreIndexValueWriter.INSTANCE.writeIndexValue(field, directionalEncoder);
       }
-      DirectionalIndexByteEncoder directionalEncoder = encoder.forKind(segment.getKind());
-      FirestoreIndexValueWriter.INSTANCE.writeIndexValue(field, directionalEncoder);
+      return encoder.getEncodedBytes();
+    } finally {
+      encoderPool.release(encoder);
     }
-    return encoder.getEncodedBytes();
   }
 
   /** Encodes a single value to the ascending index format. */
   private byte[] encodeSingleElement(Value value) {
-    IndexByteEncoder encoder = new IndexByteEncoder();
-    FirestoreIndexValueWriter.INSTANCE.writeIndexValue(
-        value, encoder.forKind(FieldIndex.Segment.Kind.ASCENDING));
-    return encoder.getEncodedBytes();
+    IndexByteEncoder encoder = encoderPool.acquire();
+    try {
+      FirestoreIndexValueWriter.INSTANCE.writeIndexValue(
+          value, encoder.forKind(FieldIndex.Segment.Kind.ASCENDING));
+      return encoder.getEncodedBytes();
+    } finally {
+      encoderPool.release(encoder);
+    }
   }
 
   /**
@@ -565,21 +593,23 @@ final class SQLiteIndexManager implements IndexManager {
     if (bound == null) return null;
 
     List<IndexByteEncoder> encoders = new ArrayList<>();
-    encoders.add(new IndexByteEncoder());
+    encoders.add(encoderPool.acquire());
 
     Iterator<Value> position = bound.iterator();
     for (FieldIndex.Segment segment : fieldIndex.getDirectionalSegments()) {
       Value value = position.next();
-      for (IndexByteEncoder encoder : encoders) {
-        if (isInFilter(target, segment.getFieldPath()) && isArray(value)) {
-          encoders = expandIndexValues(encoders, segment, value);
-        } else {
+      if (isInFilter(target, segment.getFieldPath()) && isArray(value)) {
+        encoders = expandIndexValues(encoders, segment, value);
+      } else {
+        for (IndexByteEncoder encoder : encoders) {
           DirectionalIndexByteEncoder directionalEncoder = encoder.forKind(segment.getKind());
           FirestoreIndexValueWriter.INSTANCE.writeIndexValue(value, directionalEncoder);
         }
       }
     }
-    return getEncodedBytes(encoders);
+    Object[] encodedBytes = getEncodedBytes(encoders);
+    encoderPool.releaseAll(encoders);
+    return encodedBytes;
   }
 
   /**
@@ -606,21 +636,21 @@ final class SQLiteIndexManager implements IndexManager {
    *
    * <p>The method appends each value to all existing encoders (e.g. filter("a", "==",
    * "a1").filter("b", "in", ["b1", "b2"]) becomes ["a1,b1", "a1,b2"]). A list of new encoders is
-   * returned.
+   * returned, and the given encoders are released.
    */
   private List<IndexByteEncoder> expandIndexValues(
       List<IndexByteEncoder> encoders, FieldIndex.Segment segment, Value value) {
-    List<IndexByteEncoder> prefixes = new ArrayList<>(encoders);
     List<IndexByteEncoder> results = new ArrayList<>();
     for (Value arrayElement : value.getArrayValue().getValuesList()) {
-      for (IndexByteEncoder prefix : prefixes) {
-        IndexByteEncoder clonedEncoder = new IndexByteEncoder();
-        clonedEncoder.seed(prefix.getEncodedBytes());
+      for (IndexByteEncoder prefix : encoders) {
+        IndexByteEncoder clonedEncoder = encoderPool.acquire();
+        clonedEncoder.seed(prefix);
         FirestoreIndexValueWriter.INSTANCE.writeIndexValue(
             arrayElement, clonedEncoder.forKind(segment.getKind()));
         results.add(clonedEncoder);
       }
     }
+    encoderPool.releaseAll(encoders);
     return results;
   }
 
@@ -186,6 +186,59 @@ class SQLiteLruReferenceDelegate implements ReferenceDelegate, LruDelegate {
     return count[0];
   }
 
+  @Override
+  public List<LruGarbageCollector.OrphanedDocument> getOrphanedDocumentsBySize(long upperBound) {
+    List<LruGarbageCollector.OrphanedDocument> documents = new ArrayList<>();
+    persistence
+        .query(
+            "SELECT t.path, IFNULL(LENGTH(r.contents), 0) AS size "
+                + "FROM target_documents AS t LEFT JOIN remote_documents AS r ON r.path = t.path "
+                + "WHERE t.target_id = 0 AND t.sequence_number <= ? AND NOT EXISTS ("
+                + "SELECT 1 FROM target_documents AS o WHERE o.path = t.path AND o.target_id != 0) "
+                + "ORDER BY size DESC, t.path")
+        .binding(upperBound)
+        .forEach(
+            row -> {
+              ResourcePath path = EncodedPath.decodeResourcePath(row.getString(0));
+              documents.add(
+                  new LruGarbageCollector.OrphanedDocument(
+                      DocumentKey.fromPath(path), row.getLong(1)));
+            });
+    return documents;
+  }
+
+  @Override
+  public LruGarbageCollector.RemovedDocuments removeOrphanedDocuments(
+      long upperBound, List<LruGarbageCollector.OrphanedDocument> documents) {
+    long byteSize = 0;
+    List<DocumentKey> docsToRemove = new ArrayList<>();
+    for (LruGarbageCollector.OrphanedDocument document : documents) {
+      if (isOrphaned(document.key, upperBound) && !isPinned(document.key)) {
+        docsToRemove.add(document.key);
+        byteSize += document.byteSize;
+        removeSentinel(document.key);
+      }
+    }
+
+    persistence.getRemoteDocumentCache().removeAll(docsToRemove);
+    return new LruGarbageCollector.RemovedDocuments(docsToRemove.size(), byteSize);
+  }
+
+  /**
+   * Returns true if the document is not present in any targets and has a sequence number less than
+   * or equal to the upper bound.
+   */
+  private boolean isOrphaned(DocumentKey key, long upperBound) {
+    String path = EncodedPath.encode(key.getPath());
+    return !persistence
+        .query(
+            "SELECT 1 FROM target_documents AS t "
+                + "WHERE t.path = ? AND t.target_id = 0 AND t.sequence_number <= ? AND NOT EXISTS ("
+                + "SELECT 1 FROM target_documents AS o WHERE o.path = t.path AND o.target_id != 0)")
+        .binding(path, upperBound)
+        .isEmpty();
+  }
+
   @Override
   public void removeTarget(TargetData targetData) {
     TargetData updated = targetData.withSequenceNumber(getCurrentSequenceNumber());
@@ -102,10 +102,13 @@ public final class SQLitePersistence extends Persistence {
         }
 
         @Override
-        public void onRollback() {}
+        public void onRollback() {
+          remoteDocumentCache.onTransactionRolledBack();
+        }
       };
 
   private SQLiteDatabase db;
+  private SQLiteStatementCache statementCache;
   private boolean started;
 
   public SQLitePersistence(
@@ -114,19 +117,43 @@ public final class SQLitePersistence extends Persistence {
       DatabaseId databaseId,
       LocalSerializer serializer,
       LruGarbageCollector.Params params) {
+    this(context, persistenceKey, databaseId, serializer, params, /* documentCacheSizeBytes= */ 0);
+  }
+
+  /**
+   * @param documentCacheSizeBytes The maximum size of the in-memory cache of recently read
+   *     documents. A size of zero disables the in-memory cache.
+   */
+  public SQLitePersistence(
+      Context context,
+      String persistenceKey,
+      DatabaseId databaseId,
+      LocalSerializer serializer,
+      LruGarbageCollector.Params params,
+      long documentCacheSizeBytes) {
     this(
         serializer,
         params,
-        new OpenHelper(context, serializer, databaseName(persistenceKey, databaseId)));
+        new OpenHelper(context, serializer, databaseName(persistenceKey, databaseId)),
+        documentCacheSizeBytes);
   }
 
   public SQLitePersistence(
       LocalSerializer serializer, LruGarbageCollector.Params params, OpenHelper openHelper) {
+    this(serializer, params, openHelper, /* documentCacheSizeBytes= */ 0);
+  }
+
+  public SQLitePersistence(
+      LocalSerializer serializer,
+      LruGarbageCollector.Params params,
+      OpenHelper openHelper,
+      long documentCacheSizeBytes) {
     this.opener = openHelper;
     this.serializer = serializer;
     this.targetCache = new SQLiteTargetCache(this, this.serializer);
     this.bundleCache = new SQLiteBundleCache(this, this.serializer);
-    this.remoteDocumentCache = new SQLiteRemoteDocumentCache(this, this.serializer);
+    this.remoteDocumentCache =
+        new SQLiteRemoteDocumentCache(this, this.serializer, documentCacheSizeBytes);
     this.referenceDelegate = new SQLiteLruReferenceDelegate(this, params);
   }
 
@@ -148,6 +175,7 @@ public final class SQLitePersistence extends Persistence {
               + " is, call setPersistenceEnabled(true)) in one of them.",
           e);
     }
+    statementCache = new SQLiteStatementCache(db, SQLiteStatementCache.DEFAULT_MAX_SIZE);
     targetCache.start();
     referenceDelegate.start(targetCache.getHighestListenSequenceNumber());
   }
@@ -156,6 +184,8 @@ public final class SQLitePersistence extends Persistence {
   public void shutdown() {
     hardAssert(started, "SQLitePersistence shutdown without start!");
     started = false;
+    statementCache.clear();
+    statementCache = null;
     db.close();
     db = null;
   }
@@ -215,7 +245,7 @@ public final class SQLitePersistence extends Persistence {
       // Note that an exception in operation.run() will prevent this code from running.
       db.setTransactionSuccessful();
     } finally {
-      db.endTransaction();
+      endTransaction();
     }
   }
 
@@ -230,11 +260,20 @@ public final class SQLitePersistence extends Persistence {
       // Note that an exception in operation.run() will prevent this code from running.
       db.setTransactionSuccessful();
     } finally {
-      db.endTransaction();
+      endTransaction();
     }
     return value;
   }
 
+  private void endTransaction() {
+    db.endTransaction();
+    if (!db.inTransaction()) {
+      // Statements that were evicted from the cache during the transaction may have been held by
+      // callers until now.
+      statementCache.closeEvictedStatements();
+    }
+  }
+
   public static void clearPersistence(Context context, DatabaseId databaseId, String persistenceKey)
       throws FirebaseFirestoreException {
     String databaseName = SQLitePersistence.databaseName(persistenceKey, databaseId);
@@ -255,8 +294,12 @@ public final class SQLitePersistence extends Persistence {
     }
   }
 
+  /**
+   * Returns the number of bytes that are in use by the database. Pages that were freed by deleting
+   * data are not counted, since SQLite reuses them before it grows the file.
+   */
   long getByteSize() {
-    return getPageCount() * getPageSize();
+    return (getPageCount() - getFreelistCount()) * getPageSize();
   }
 
   /**
@@ -278,6 +321,15 @@ public final class SQLitePersistence extends Persistence {
     return query("PRAGMA page_count").firstValue(row -> row.getLong(/*column=*/ 0));
   }
 
+  /**
+   * Gets the number of unused pages in the database file.
+   *
+   * @see "https://www.sqlite.org/pragma.html#pragma_freelist_count"
+   */
+  private long getFreelistCount() {
+    return query("PRAGMA freelist_count").firstValue(row -> row.getLong(/*column=*/ 0));
+  }
+
   /**
    * A SQLiteOpenHelper that configures database connections just the way we like them, delegating
    * to SQLiteSchema to actually do the work of migration.
@@ -374,14 +426,36 @@ public final class SQLitePersistence extends Persistence {
    * Execute the given non-query SQL statement. Equivalent to {@code execute(prepare(sql), args)}.
    */
   void execute(String sql, Object... args) {
-    // Note that unlike db.query and friends, execSQL already takes Object[] bindArgs so there's no
-    // need to go through the bind dance below.
-    db.execSQL(sql, args);
+    execute(prepare(sql), args);
   }
 
-  /** Prepare the given non-query SQL statement. */
+  /**
+   * Execute the given non-query SQL statement without going through the statement cache. Use this
+   * for statements whose SQL varies with the number of arguments, so that they do not evict
+   * frequently used statements from the cache.
+   */
+  void executeUncached(String sql, Object... args) {
+    SQLiteStatement statement = db.compileStatement(sql);
+    try {
+      execute(statement, args);
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Prepare the given non-query SQL statement.
+   *
+   * <p>Compiled statements are cached per connection and shared between callers, so the returned
+   * statement should only be used for the duration of the current transaction.
+   */
   SQLiteStatement prepare(String sql) {
-    return db.compileStatement(sql);
+    return statementCache.get(sql);
+  }
+
+  @VisibleForTesting
+  SQLiteStatementCache getStatementCache() {
+    return statementCache;
   }
 
   /**
@@ -395,6 +469,39 @@ public final class SQLitePersistence extends Persistence {
     return statement.executeUpdateDelete();
   }
 
+  /**
+   * Executes an INSERT statement for multiple rows, issuing as few statements as the bind argument
+   * limit permits.
+   *
+   * <p>Only statements that insert the maximum number of rows go through the statement cache. The
+   * remaining rows are inserted with a statement that is compiled for this call only, so that the
+   * many possible row counts do not evict frequently used statements from the cache.
+   *
+   * @param head The beginning of the statement up to and including the VALUES keyword.
+   * @param columnCount The number of bind arguments for each row.
+   * @param args The bind arguments for all rows, in row order.
+   */
+  void executeMultiRowInsert(String head, int columnCount, List<Object> args) {
+    hardAssert(args.size() % columnCount == 0, "Bind arguments do not form complete rows");
+
+    String row = "(" + repeatSequence("?", columnCount, ", ") + ")";
+    int rowCount = args.size() / columnCount;
+    int maxRowsPerStatement = MAX_ARGS / columnCount;
+    int start = 0;
+    for (; start + maxRowsPerStatement <= rowCount; start += maxRowsPerStatement) {
+      Object[] statementArgs =
+          args.subList(start * columnCount, (start + maxRowsPerStatement) * columnCount).toArray();
+      execute(head + " " + repeatSequence(row, maxRowsPerStatement, ", "), statementArgs);
+    }
+
+    int remainingRows = rowCount - start;
+    if (remainingRows > 0) {
+      executeUncached(
+          head + " " + repeatSequence(row, remainingRows, ", "),
+          args.subList(start * columnCount, args.size()).toArray());
+    }
+  }
+
   /**
    * Creates a new {@link Query} for the given SQL query. Supply binding arguments and execute by
    * chaining further methods off the query.
@@ -692,11 +799,15 @@ public final class SQLitePersistence extends Persistence {
           .binding(subqueryArgs);
     }
 
-    /** Executes the next subquery. */
+    /**
+     * Executes the next subquery. Each argument count results in different SQL, so the statement
+     * bypasses the statement cache.
+     */
     void executeNextSubquery() {
       ++subqueriesPerformed;
       Object[] subqueryArgs = getNextSubqueryArgs();
-      db.execute(head + repeatSequence("?", subqueryArgs.length, ", ") + tail, subqueryArgs);
+      db.executeUncached(
+          head + repeatSequence("?", subqueryArgs.length, ", ") + tail, subqueryArgs);
     }
 
     /** How many subqueries were performed. */
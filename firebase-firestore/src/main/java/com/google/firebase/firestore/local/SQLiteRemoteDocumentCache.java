@@ -20,9 +20,12 @@ import static com.google.firebase.firestore.util.Assert.hardAssert;
 import static com.google.firebase.firestore.util.Util.firstNEntries;
 import static com.google.firebase.firestore.util.Util.repeatSequence;
 
+import android.database.Cursor;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.google.firebase.Timestamp;
 import com.google.firebase.database.collection.ImmutableSortedMap;
+import com.google.firebase.firestore.core.Query;
 import com.google.firebase.firestore.model.Document;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.FieldIndex.IndexOffset;
@@ -31,27 +34,59 @@ import com.google.firebase.firestore.model.ResourcePath;
 import com.google.firebase.firestore.model.SnapshotVersion;
 import com.google.firebase.firestore.util.BackgroundQueue;
 import com.google.firebase.firestore.util.Executors;
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.firebase.firestore.util.Function;
 import com.google.protobuf.MessageLite;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executor;
 
 final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
   /** The number of bind args per collection group in {@link #getAll(String, IndexOffset, int)} */
   @VisibleForTesting static final int BINDS_PER_STATEMENT = 9;
 
+  /**
+   * The number of rows that are decoded together by a single background task. Batching rows
+   * amortizes the cost of scheduling a task and of merging its results into the shared result map.
+   */
+  @VisibleForTesting static final int ROWS_PER_DECODE_BATCH = 32;
+
   private final SQLitePersistence db;
   private final LocalSerializer serializer;
+  private final DocumentLruCache documentCache;
   private IndexManager indexManager;
 
   SQLiteRemoteDocumentCache(SQLitePersistence persistence, LocalSerializer serializer) {
+    this(persistence, serializer, /* documentCacheSizeBytes= */ 0);
+  }
+
+  /**
+   * @param documentCacheSizeBytes The maximum size of the in-memory cache of recently read
+   *     documents. A size of zero disables the in-memory cache.
+   */
+  SQLiteRemoteDocumentCache(
+      SQLitePersistence persistence, LocalSerializer serializer, long documentCacheSizeBytes) {
     this.db = persistence;
     this.serializer = serializer;
+    this.documentCache = new DocumentLruCache(documentCacheSizeBytes);
+  }
+
+  /** Returns the in-memory cache that serves lookups of recently read documents. */
+  DocumentLruCache getDocumentCache() {
+    return documentCache;
+  }
+
+  /**
+   * Invalidates the in-memory document cache. Called when a transaction is rolled back, since
+   * documents read during the transaction may no longer match the persisted state.
+   */
+  void onTransactionRolledBack() {
+    documentCache.clear();
   }
 
   @Override
@@ -61,31 +96,51 @@ final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
 
   @Override
   public void add(MutableDocument document, SnapshotVersion readTime) {
-    hardAssert(
-        !readTime.equals(SnapshotVersion.NONE),
-        "Cannot add document to the RemoteDocumentCache with a read time of zero");
+    addAll(Collections.singletonMap(document, readTime));
+  }
 
-    DocumentKey documentKey = document.getKey();
-    Timestamp timestamp = readTime.getTimestamp();
-    MessageLite message = serializer.encodeMaybeDocument(document);
+  @Override
+  public void addAll(Map<MutableDocument, SnapshotVersion> documents) {
+    List<Object> args = new ArrayList<>(documents.size() * 5);
+    Set<ResourcePath> collectionPaths = new HashSet<>();
+
+    for (Map.Entry<MutableDocument, SnapshotVersion> entry : documents.entrySet()) {
+      SnapshotVersion readTime = entry.getValue();
+      hardAssert(
+          !readTime.equals(SnapshotVersion.NONE),
+          "Cannot add document to the RemoteDocumentCache with a read time of zero");
+
+      MutableDocument document = entry.getKey();
+      DocumentKey documentKey = document.getKey();
+      Timestamp timestamp = readTime.getTimestamp();
+      MessageLite message = serializer.encodeMaybeDocument(document);
+      documentCache.remove(documentKey);
+
+      args.add(EncodedPath.encode(documentKey.getPath()));
+      args.add(documentKey.getPath().length());
+      args.add(timestamp.getSeconds());
+      args.add(timestamp.getNanoseconds());
+      args.add(message.toByteArray());
+      collectionPaths.add(documentKey.getCollectionPath());
+    }
 
-    db.execute(
+    db.executeMultiRowInsert(
         "INSERT OR REPLACE INTO remote_documents "
-            + "(path, path_length, read_time_seconds, read_time_nanos, contents) "
-            + "VALUES (?, ?, ?, ?, ?)",
-        EncodedPath.encode(documentKey.getPath()),
-        documentKey.getPath().length(),
-        timestamp.getSeconds(),
-        timestamp.getNanoseconds(),
-        message.toByteArray());
-
-    indexManager.addToCollectionParentIndex(document.getKey().getCollectionPath());
+            + "(path, path_length, read_time_seconds, read_time_nanos, contents) VALUES",
+        /* columnCount= */ 5,
+        args);
+
+    for (ResourcePath collectionPath : collectionPaths) {
+      indexManager.addToCollectionParentIndex(collectionPath);
+    }
   }
 
   @Override
   public void removeAll(Collection<DocumentKey> keys) {
     if (keys.isEmpty()) return;
 
+    documentCache.removeAll(keys);
+
     List<Object> encodedPaths = new ArrayList<>();
     ImmutableSortedMap<DocumentKey, Document> deletedDocs = emptyDocumentMap();
 
@@ -107,6 +162,11 @@ final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
 
   @Override
   public MutableDocument get(DocumentKey documentKey) {
+    MutableDocument cached = documentCache.get(documentKey);
+    if (cached != null) {
+      return cached;
+    }
+
     String path = EncodedPath.encode(documentKey.getPath());
 
     MutableDocument document =
@@ -114,7 +174,7 @@ final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
                 "SELECT contents, read_time_seconds, read_time_nanos "
                     + "FROM remote_documents WHERE path = ?")
             .binding(path)
-            .firstValue(row -> decodeMaybeDocument(row.getBlob(0), row.getInt(1), row.getInt(2)));
+            .firstValue(this::decodeAndCacheRow);
     return document != null ? document : MutableDocument.newInvalidDocument(documentKey);
   }
 
@@ -123,6 +183,12 @@ final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
     Map<DocumentKey, MutableDocument> results = new HashMap<>();
     List<Object> bindVars = new ArrayList<>();
     for (DocumentKey key : documentKeys) {
+      MutableDocument cached = documentCache.get(key);
+      if (cached != null) {
+        results.put(key, cached);
+        continue;
+      }
+
       bindVars.add(EncodedPath.encode(key.getPath()));
 
       // Make sure each key has a corresponding entry, which is null in case the document is not
@@ -130,6 +196,10 @@ final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
       results.put(key, MutableDocument.newInvalidDocument(key));
     }
 
+    if (bindVars.isEmpty()) {
+      return results;
+    }
+
     SQLitePersistence.LongQuery longQuery =
         new SQLitePersistence.LongQuery(
             db,
@@ -143,8 +213,7 @@ final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
           .performNextSubquery()
           .forEach(
               row -> {
-                MutableDocument decoded =
-                    decodeMaybeDocument(row.getBlob(0), row.getInt(1), row.getInt(2));
+                MutableDocument decoded = decodeAndCacheRow(row);
                 results.put(decoded.getKey(), decoded);
               });
     }
@@ -164,7 +233,7 @@ final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
     if (collections.isEmpty()) {
       return Collections.emptyMap();
     } else if (BINDS_PER_STATEMENT * collections.size() < SQLitePersistence.MAX_ARGS) {
-      return getAll(collections, offset, limit);
+      return getAll(collections, offset, limit, /* filter= */ null);
     } else {
       // We need to fan out our collection scan since SQLite only supports 999 binds per statement.
       Map<DocumentKey, MutableDocument> results = new HashMap<>();
@@ -172,7 +241,10 @@ final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
       for (int i = 0; i < collections.size(); i += pageSize) {
         results.putAll(
             getAll(
-                collections.subList(i, Math.min(collections.size(), i + pageSize)), offset, limit));
+                collections.subList(i, Math.min(collections.size(), i + pageSize)),
+                offset,
+                limit,
+                /* filter= */ null));
       }
       return firstNEntries(results, limit, IndexOffset.DOCUMENT_COMPARATOR);
     }
@@ -180,9 +252,13 @@ final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
 
   /**
    * Returns the next {@code count} documents from the provided collections, ordered by read time.
+   * If a {@code filter} is provided, only documents that pass the filter are returned.
    */
   private Map<DocumentKey, MutableDocument> getAll(
-      List<ResourcePath> collections, IndexOffset offset, int count) {
+      List<ResourcePath> collections,
+      IndexOffset offset,
+      int count,
+      @Nullable Function<MutableDocument, Boolean> filter) {
     Timestamp readTime = offset.getReadTime().getTimestamp();
     DocumentKey documentKey = offset.getDocumentKey();
 
@@ -214,55 +290,125 @@ final class SQLiteRemoteDocumentCache implements RemoteDocumentCache {
     }
     bindVars[i] = count;
 
-    BackgroundQueue backgroundQueue = new BackgroundQueue();
-    Map<DocumentKey, MutableDocument>[] results =
-        (HashMap<DocumentKey, MutableDocument>[]) (new HashMap[] {new HashMap()});
-
-    db.query(sql.toString())
-        .binding(bindVars)
-        .forEach(
-            row -> {
-              // Store row values in array entries to provide the correct context inside the
-              // executor.
-              final byte[] rawDocument = row.getBlob(0);
-              final int[] readTimeSeconds = {row.getInt(1)};
-              final int[] readTimeNanos = {row.getInt(2)};
-
-              // Since scheduling background tasks incurs overhead, we only dispatch to a
-              // background thread if there are still some documents remaining.
-              Executor executor = row.isLast() ? Executors.DIRECT_EXECUTOR : backgroundQueue;
-              executor.execute(
-                  () -> {
-                    MutableDocument document =
-                        decodeMaybeDocument(rawDocument, readTimeSeconds[0], readTimeNanos[0]);
-                    synchronized (SQLiteRemoteDocumentCache.this) {
-                      results[0].put(document.getKey(), document);
-                    }
-                  });
-            });
-
-    try {
-      backgroundQueue.drain();
-    } catch (InterruptedException e) {
-      fail("Interrupted while deserializing documents", e);
-    }
-
-    return results[0];
+    BatchDecoder decoder = new BatchDecoder(filter);
+    db.query(sql.toString()).binding(bindVars).forEach(decoder::addRow);
+    return decoder.drain();
   }
 
   @Override
   public Map<DocumentKey, MutableDocument> getAll(ResourcePath collection, IndexOffset offset) {
-    return getAll(Collections.singletonList(collection), offset, Integer.MAX_VALUE);
+    return getAll(Collections.singletonList(collection), offset, Integer.MAX_VALUE, null);
+  }
+
+  @Override
+  public Map<DocumentKey, MutableDocument> getDocumentsMatchingQuery(
+      Query query, IndexOffset offset, Set<DocumentKey> mutatedKeys) {
+    hardAssert(
+        !query.isDocumentQuery() && !query.isCollectionGroupQuery(),
+        "getDocumentsMatchingQuery() only supports collection queries");
+    // Compute the query's memoized state before the filter is invoked from multiple threads.
+    query.getOrderBy();
+    return getAll(
+        Collections.singletonList(query.getPath()),
+        offset,
+        Integer.MAX_VALUE,
+        doc -> query.matches(doc) || mutatedKeys.contains(doc.getKey()));
+  }
+
+  /**
+   * Decodes a row that contains the contents and read time of a document and adds the document to
+   * the in-memory document cache.
+   */
+  private MutableDocument decodeAndCacheRow(Cursor row) {
+    byte[] contents = row.getBlob(0);
+    MutableDocument document = decodeMaybeDocument(contents, row.getInt(1), row.getInt(2));
+    documentCache.put(document, contents.length);
+    return document;
   }
 
   private MutableDocument decodeMaybeDocument(
       byte[] bytes, int readTimeSeconds, int readTimeNanos) {
-    try {
-      return serializer
-          .decodeMaybeDocument(com.google.firebase.firestore.proto.MaybeDocument.parseFrom(bytes))
-          .setReadTime(new SnapshotVersion(new Timestamp(readTimeSeconds, readTimeNanos)));
-    } catch (InvalidProtocolBufferException e) {
-      throw fail("MaybeDocument failed to parse: %s", e);
+    return serializer
+        .decodeMaybeDocument(bytes)
+        .setReadTime(new SnapshotVersion(new Timestamp(readTimeSeconds, readTimeNanos)));
+  }
+
+  /**
+   * Decodes the rows of a collection scan in fixed-size batches on a {@link BackgroundQueue}.
+   *
+   * <p>Each batch decodes into its own result shard, which is merged into the shared result map
+   * once the batch is done. If a filter is provided, documents are filtered as soon as they are
+   * decoded, so that non-matching documents never reach the result map and can be garbage
+   * collected right away.
+   */
+  private class BatchDecoder {
+    private final BackgroundQueue backgroundQueue = new BackgroundQueue();
+    private final Map<DocumentKey, MutableDocument> results = new HashMap<>();
+    private final @Nullable Function<MutableDocument, Boolean> filter;
+
+    private byte[][] rawDocuments = new byte[ROWS_PER_DECODE_BATCH][];
+    private int[] readTimeSeconds = new int[ROWS_PER_DECODE_BATCH];
+    private int[] readTimeNanos = new int[ROWS_PER_DECODE_BATCH];
+    private int pendingRows = 0;
+
+    BatchDecoder(@Nullable Function<MutableDocument, Boolean> filter) {
+      this.filter = filter;
+    }
+
+    void addRow(Cursor row) {
+      rawDocuments[pendingRows] = row.getBlob(0);
+      readTimeSeconds[pendingRows] = row.getInt(1);
+      readTimeNanos[pendingRows] = row.getInt(2);
+      ++pendingRows;
+
+      // Since scheduling background tasks incurs overhead, we decode the final batch on the
+      // current thread.
+      if (row.isLast()) {
+        scheduleBatch(Executors.DIRECT_EXECUTOR);
+      } else if (pendingRows == ROWS_PER_DECODE_BATCH) {
+        scheduleBatch(backgroundQueue);
+      }
+    }
+
+    /** Waits for all scheduled batches to finish and returns the merged results. */
+    Map<DocumentKey, MutableDocument> drain() {
+      try {
+        backgroundQueue.drain();
+      } catch (InterruptedException e) {
+        fail("Interrupted while deserializing documents", e);
+      }
+      return results;
+    }
+
+    private void scheduleBatch(Executor executor) {
+      // Hand the current buffers to the task and start a new batch, so that the task does not
+      // share any mutable state with the cursor thread.
+      final byte[][] batchDocuments = rawDocuments;
+      final int[] batchSeconds = readTimeSeconds;
+      final int[] batchNanos = readTimeNanos;
+      final int batchSize = pendingRows;
+
+      rawDocuments = new byte[ROWS_PER_DECODE_BATCH][];
+      readTimeSeconds = new int[ROWS_PER_DECODE_BATCH];
+      readTimeNanos = new int[ROWS_PER_DECODE_BATCH];
+      pendingRows = 0;
+
+      executor.execute(
+          () -> {
+            Map<DocumentKey, MutableDocument> shard = new HashMap<>();
+            for (int i = 0; i < batchSize; ++i) {
+              MutableDocument document =
+                  decodeMaybeDocument(batchDocuments[i], batchSeconds[i], batchNanos[i]);
+              // Release the raw bytes as soon as the document is decoded.
+              batchDocuments[i] = null;
+              if (filter == null || filter.apply(document)) {
+                shard.put(document.getKey(), document);
+              }
+            }
+            synchronized (results) {
+              results.putAll(shard);
+            }
+          });
     }
   }
 }
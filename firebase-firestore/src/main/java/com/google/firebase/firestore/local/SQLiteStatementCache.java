@@ -0,0 +1,135 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import static com.google.firebase.firestore.util.Assert.hardAssert;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of compiled non-query statements for a single database connection, keyed by
+ * their SQL text.
+ *
+ * <p>Compiling a statement requires parsing the SQL and allocating a new {@link SQLiteStatement}.
+ * Hot paths such as applying a large remote event execute the same handful of statements thousands
+ * of times, so reusing the compiled statement avoids repeating that work for every row.
+ *
+ * <p>Statements returned from this cache are shared and must have their bindings cleared before
+ * use. Callers may hold on to a statement while they execute other statements, which can evict it
+ * from the cache. Evicted statements are therefore not closed right away, but only when {@link
+ * #closeEvictedStatements} is called at the end of the current transaction.
+ *
+ * <p>This class is not thread-safe. Like the rest of the persistence layer, it must only be used
+ * from the AsyncQueue.
+ */
+final class SQLiteStatementCache {
+  /** The default number of compiled statements retained per connection. */
+  static final int DEFAULT_MAX_SIZE = 64;
+
+  private final SQLiteDatabase db;
+  private final int maxSize;
+
+  /** The compiled statements, in access order (least recently used first). */
+  private final LinkedHashMap<String, SQLiteStatement> statements;
+
+  /** Statements that were evicted from the cache but may still be in use. */
+  private final List<SQLiteStatement> evictedStatements = new ArrayList<>();
+
+  private long hitCount = 0;
+  private long missCount = 0;
+  private long evictionCount = 0;
+
+  /**
+   * @param db The connection on which statements are compiled.
+   * @param maxSize The maximum number of statements to retain. Must be positive.
+   */
+  SQLiteStatementCache(SQLiteDatabase db, int maxSize) {
+    hardAssert(maxSize > 0, "Statement cache size must be positive");
+    this.db = db;
+    this.maxSize = maxSize;
+    this.statements =
+        new LinkedHashMap<String, SQLiteStatement>(
+            /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+            if (size() > SQLiteStatementCache.this.maxSize) {
+              evictedStatements.add(eldest.getValue());
+              ++evictionCount;
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /** Returns the compiled statement for the given SQL, compiling and caching it if necessary. */
+  SQLiteStatement get(String sql) {
+    SQLiteStatement statement = statements.get(sql);
+    if (statement != null) {
+      ++hitCount;
+      return statement;
+    }
+
+    ++missCount;
+    statement = db.compileStatement(sql);
+    statements.put(sql, statement);
+    return statement;
+  }
+
+  /**
+   * Closes the statements that were evicted since the last call. Must only be called once no
+   * caller holds on to a statement, such as at the end of a transaction.
+   */
+  void closeEvictedStatements() {
+    for (SQLiteStatement statement : evictedStatements) {
+      statement.close();
+    }
+    evictedStatements.clear();
+  }
+
+  /** Closes and removes all cached and evicted statements. */
+  void clear() {
+    for (SQLiteStatement statement : statements.values()) {
+      statement.close();
+    }
+    statements.clear();
+    closeEvictedStatements();
+  }
+
+  /** Returns the number of statements currently cached. */
+  int size() {
+    return statements.size();
+  }
+
+  /** Returns the number of lookups that were served from this cache. */
+  long getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of lookups that required compiling a new statement. */
+  long getMissCount() {
+    return missCount;
+  }
+
+  /** Returns the number of statements that were evicted to stay within the maximum size. */
+  long getEvictionCount() {
+    return evictionCount;
+  }
+}
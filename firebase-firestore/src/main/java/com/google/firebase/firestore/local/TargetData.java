@@ -16,6 +16,7 @@ package com.google.firebase.firestore.local;
 
 import static com.google.firebase.firestore.util.Preconditions.checkNotNull;
 
+import androidx.annotation.Nullable;
 import com.google.firebase.firestore.core.Target;
 import com.google.firebase.firestore.model.SnapshotVersion;
 import com.google.firebase.firestore.remote.WatchStream;
@@ -30,6 +31,7 @@ public final class TargetData {
   private final SnapshotVersion snapshotVersion;
   private final SnapshotVersion lastLimboFreeSnapshotVersion;
   private final ByteString resumeToken;
+  private final @Nullable Integer expectedCount;
 
   /**
    * Creates a new TargetData with the given values.
@@ -54,6 +56,33 @@ public final class TargetData {
       SnapshotVersion snapshotVersion,
       SnapshotVersion lastLimboFreeSnapshotVersion,
       ByteString resumeToken) {
+    this(
+        target,
+        targetId,
+        sequenceNumber,
+        purpose,
+        snapshotVersion,
+        lastLimboFreeSnapshotVersion,
+        resumeToken,
+        /* expectedCount= */ null);
+  }
+
+  /**
+   * Creates a new TargetData with the given values.
+   *
+   * @param expectedCount The number of documents that last matched the target at the resume token
+   *     or snapshot version, or null if unknown. It is only sent to the backend when the target is
+   *     resumed, which asks the backend to include a bloom filter in existence filters.
+   */
+  private TargetData(
+      Target target,
+      int targetId,
+      long sequenceNumber,
+      QueryPurpose purpose,
+      SnapshotVersion snapshotVersion,
+      SnapshotVersion lastLimboFreeSnapshotVersion,
+      ByteString resumeToken,
+      @Nullable Integer expectedCount) {
     this.target = checkNotNull(target);
     this.targetId = targetId;
     this.sequenceNumber = sequenceNumber;
@@ -61,6 +90,7 @@ public final class TargetData {
     this.purpose = purpose;
     this.snapshotVersion = checkNotNull(snapshotVersion);
     this.resumeToken = checkNotNull(resumeToken);
+    this.expectedCount = expectedCount;
   }
 
   /** Convenience constructor for use when creating a TargetData for the first time. */
@@ -84,10 +114,14 @@ public final class TargetData {
         purpose,
         snapshotVersion,
         lastLimboFreeSnapshotVersion,
-        resumeToken);
+        resumeToken,
+        expectedCount);
   }
 
-  /** Creates a new target data instance with an updated resume token and snapshot version. */
+  /**
+   * Creates a new target data instance with an updated resume token and snapshot version. The
+   * expected count is cleared, since it refers to the previous resume token.
+   */
   public TargetData withResumeToken(ByteString resumeToken, SnapshotVersion snapshotVersion) {
     return new TargetData(
         target,
@@ -108,7 +142,21 @@ public final class TargetData {
         purpose,
         snapshotVersion,
         lastLimboFreeSnapshotVersion,
-        resumeToken);
+        resumeToken,
+        expectedCount);
+  }
+
+  /** Creates a new target data instance with an updated expected count. */
+  public TargetData withExpectedCount(@Nullable Integer expectedCount) {
+    return new TargetData(
+        target,
+        targetId,
+        sequenceNumber,
+        purpose,
+        snapshotVersion,
+        lastLimboFreeSnapshotVersion,
+        resumeToken,
+        expectedCount);
   }
 
   public Target getTarget() {
@@ -135,6 +183,15 @@ public final class TargetData {
     return resumeToken;
   }
 
+  /**
+   * Returns the number of documents that last matched the target at the resume token or snapshot
+   * version, or null if unknown.
+   */
+  @Nullable
+  public Integer getExpectedCount() {
+    return expectedCount;
+  }
+
   /**
    * Returns the last snapshot version for which the associated view contained no limbo documents.
    */
@@ -158,7 +215,10 @@ public final class TargetData {
         && purpose.equals(targetData.purpose)
         && snapshotVersion.equals(targetData.snapshotVersion)
         && lastLimboFreeSnapshotVersion.equals(targetData.lastLimboFreeSnapshotVersion)
-        && resumeToken.equals(targetData.resumeToken);
+        && resumeToken.equals(targetData.resumeToken)
+        && (expectedCount != null
+            ? expectedCount.equals(targetData.expectedCount)
+            : targetData.expectedCount == null);
   }
 
   @Override
@@ -170,6 +230,7 @@ public final class TargetData {
     result = 31 * result + snapshotVersion.hashCode();
     result = 31 * result + lastLimboFreeSnapshotVersion.hashCode();
     result = 31 * result + resumeToken.hashCode();
+    result = 31 * result + (expectedCount != null ? expectedCount.hashCode() : 0);
     return result;
   }
 
@@ -190,6 +251,8 @@ public final class TargetData {
         + lastLimboFreeSnapshotVersion
         + ", resumeToken="
         + resumeToken
+        + ", expectedCount="
+        + expectedCount
         + '}';
   }
 }
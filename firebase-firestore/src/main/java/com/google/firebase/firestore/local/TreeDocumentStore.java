@@ -0,0 +1,131 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.firebase.firestore.local;
+
+import static com.google.firebase.firestore.model.DocumentCollections.emptyDocumentMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.collection.ImmutableSortedMap;
+import com.google.firebase.firestore.model.Document;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.MutableDocument;
+import com.google.firebase.firestore.model.ResourcePath;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link MemoryDocumentStore} that keeps decoded documents in an {@link ImmutableSortedMap}.
+ * Reads are cheap, but every document is held as a fully decoded model object.
+ */
+final class TreeDocumentStore implements MemoryDocumentStore {
+  private ImmutableSortedMap<DocumentKey, Document> docs = emptyDocumentMap();
+
+  @Override
+  public void put(MutableDocument document) {
+    docs = docs.insert(document.getKey(), document);
+  }
+
+  @Override
+  public void remove(DocumentKey key) {
+    docs = docs.remove(key);
+  }
+
+  @Nullable
+  @Override
+  public Document get(DocumentKey key) {
+    return docs.get(key);
+  }
+
+  @Override
+  public Iterable<Document> getCollection(ResourcePath collection) {
+    // Documents are ordered by key, so we can use a prefix scan to narrow down the documents in
+    // the collection.
+    DocumentKey prefix = DocumentKey.fromPath(collection.append(""));
+    return () -> new CollectionIterator(collection, docs.iteratorFrom(prefix));
+  }
+
+  @Override
+  public long getByteSize(LocalSerializer serializer) {
+    long count = 0;
+    for (Document doc : this) {
+      count += serializer.encodeMaybeDocument(doc).getSerializedSize();
+    }
+    return count;
+  }
+
+  @NonNull
+  @Override
+  public Iterator<Document> iterator() {
+    Iterator<Map.Entry<DocumentKey, Document>> iterator = docs.iterator();
+    return new Iterator<Document>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public Document next() {
+        return iterator.next().getValue();
+      }
+    };
+  }
+
+  /** Iterates over the direct children of a collection, starting at the collection's prefix. */
+  private static class CollectionIterator implements Iterator<Document> {
+    private final ResourcePath collection;
+    private final Iterator<Map.Entry<DocumentKey, Document>> iterator;
+    @Nullable private Document next;
+
+    CollectionIterator(
+        ResourcePath collection, Iterator<Map.Entry<DocumentKey, Document>> iterator) {
+      this.collection = collection;
+      this.iterator = iterator;
+      advance();
+    }
+
+    private void advance() {
+      next = null;
+      while (iterator.hasNext()) {
+        Map.Entry<DocumentKey, Document> entry = iterator.next();
+        ResourcePath path = entry.getKey().getPath();
+        if (!collection.isPrefixOf(path)) {
+          // We are now scanning the next collection. Abort.
+          return;
+        }
+        if (path.length() == collection.length() + 1) {
+          // Documents in subcollections are skipped.
+          next = entry.getValue();
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Document next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      Document result = next;
+      advance();
+      return result;
+    }
+  }
+}
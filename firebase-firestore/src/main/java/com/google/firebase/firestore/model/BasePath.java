@@ -17,23 +17,57 @@ package com.google.firebase.firestore.model;
 import static com.google.firebase.firestore.util.Assert.hardAssert;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.google.firebase.firestore.util.Util;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * BasePath represents a path sequence in the Firestore database. It is composed of an ordered
  * sequence of string segments.
+ *
+ * <p>Paths are stored as a chain of nodes, each holding its last segment and a reference to its
+ * parent path. Appending a segment or removing the last one is therefore O(1) and shares the parent
+ * with every sibling path, rather than copying all segments into a new list. This keeps the many
+ * document keys that belong to the same collection from each holding their own copy of the
+ * collection path.
  */
 public abstract class BasePath<B extends BasePath<B>> implements Comparable<B> {
-  final List<String> segments;
+  /** The path without its last segment, or null if this is the empty path. */
+  @Nullable private final B parent;
 
-  BasePath(List<String> segments) {
-    this.segments = segments;
+  /** The last segment of the path, or null if this is the empty path. */
+  @Nullable private final String lastSegment;
+
+  private final int length;
+
+  /** The hash of the segments, computed in the same way as {@link List#hashCode()}. */
+  private final int segmentsHash;
+
+  /** Creates an empty path. */
+  BasePath() {
+    this.parent = null;
+    this.lastSegment = null;
+    this.length = 0;
+    this.segmentsHash = 1;
+  }
+
+  /** Creates a path that consists of the segments of {@code parent} followed by {@code segment}. */
+  BasePath(B parent, String segment) {
+    this.parent = parent;
+    this.lastSegment = segment;
+    this.length = parent.length() + 1;
+    this.segmentsHash = 31 * ((BasePath<B>) parent).segmentsHash + segment.hashCode();
   }
 
   public String getSegment(int index) {
-    return segments.get(index);
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+    }
+    BasePath<B> path = this;
+    for (int i = length - 1; i > index; i--) {
+      path = path.parent;
+    }
+    return path.lastSegment;
   }
 
   /**
@@ -43,9 +77,7 @@ public abstract class BasePath<B extends BasePath<B>> implements Comparable<B> {
    * @return A new path with this path's segment plus the new one.
    */
   public B append(String segment) {
-    List<String> newPath = new ArrayList<>(segments);
-    newPath.add(segment);
-    return createPathWithSegments(newPath);
+    return createChild(self(), segment);
   }
 
   /**
@@ -55,9 +87,11 @@ public abstract class BasePath<B extends BasePath<B>> implements Comparable<B> {
    * @return A new path with this segments path plus the new one
    */
   public B append(B path) {
-    List<String> newPath = new ArrayList<>(segments);
-    newPath.addAll(path.segments);
-    return createPathWithSegments(newPath);
+    B result = self();
+    for (String segment : path.toSegmentArray()) {
+      result = createChild(result, segment);
+    }
+    return result;
   }
 
   /** @return Returns a new path with the current path's first segment removed. */
@@ -67,49 +101,71 @@ public abstract class BasePath<B extends BasePath<B>> implements Comparable<B> {
 
   /** Returns a new path with the current path's first {@code count} segments removed. */
   public B popFirst(int count) {
-    int length = length();
     hardAssert(
         length >= count, "Can't call popFirst with count > length() (%d > %d)", count, length);
-    return createPathWithSegments(segments.subList(count, length));
+    String[] segments = toSegmentArray();
+    B result = emptyPath();
+    for (int i = count; i < length; i++) {
+      result = createChild(result, segments[i]);
+    }
+    return result;
   }
 
   /** @return Returns a new path with the current path's last segment removed. */
   public B popLast() {
-    return createPathWithSegments(segments.subList(0, length() - 1));
+    hardAssert(parent != null, "Can't call popLast() on an empty path");
+    return parent;
   }
 
   /** @return Returns a new path made up of the first count segments of the current path. */
   public B keepFirst(int count) {
-    return createPathWithSegments(segments.subList(0, count));
+    if (count < 0 || count > length) {
+      throw new IndexOutOfBoundsException("Count: " + count + ", Length: " + length);
+    }
+    B path = self();
+    for (int i = length; i > count; i--) {
+      path = path.popLast();
+    }
+    return path;
   }
 
   @Override
   public int compareTo(@NonNull B o) {
-    int i = 0;
-    int myLength = length();
+    int myLength = length;
     int theirLength = o.length();
-    while (i < myLength && i < theirLength) {
-      int localCompare = getSegment(i).compareTo(o.getSegment(i));
-      if (localCompare != 0) {
-        return localCompare;
-      }
-      i++;
+    int commonLength = Math.min(myLength, theirLength);
+    int localCompare = compareSegments(keepFirst(commonLength), o.keepFirst(commonLength));
+    if (localCompare != 0) {
+      return localCompare;
     }
     return Util.compareIntegers(myLength, theirLength);
   }
 
+  /** Compares two paths of equal length segment by segment, starting with the first segment. */
+  private static <B extends BasePath<B>> int compareSegments(BasePath<B> left, BasePath<B> right) {
+    if (left == right || left.length == 0) {
+      // Paths that share a parent only need to compare the segments below it.
+      return 0;
+    }
+    int parentCompare = compareSegments(left.parent, right.parent);
+    if (parentCompare != 0) {
+      return parentCompare;
+    }
+    return left.lastSegment.compareTo(right.lastSegment);
+  }
+
   /** @return Returns the last segment of the path */
   public String getLastSegment() {
-    return segments.get(length() - 1);
+    return getSegment(length - 1);
   }
 
   /** @return Returns the first segment of the path */
   public String getFirstSegment() {
-    return segments.get(0);
+    return getSegment(0);
   }
 
   public boolean isEmpty() {
-    return length() == 0;
+    return length == 0;
   }
 
   /**
@@ -119,15 +175,10 @@ public abstract class BasePath<B extends BasePath<B>> implements Comparable<B> {
    * @return true if current path is a prefix of the other path.
    */
   public boolean isPrefixOf(B path) {
-    if (length() > path.length()) {
+    if (length > path.length()) {
       return false;
     }
-    for (int i = 0; i < length(); i++) {
-      if (!getSegment(i).equals(path.getSegment(i))) {
-        return false;
-      }
-    }
-    return true;
+    return equals(path.keepFirst(length));
   }
 
   /**
@@ -136,15 +187,10 @@ public abstract class BasePath<B extends BasePath<B>> implements Comparable<B> {
    * <p>Empty path is a parent of any path that consists of a single segment.
    */
   public boolean isImmediateParentOf(B potentialChild) {
-    if (length() + 1 != potentialChild.length()) {
+    if (length + 1 != potentialChild.length()) {
       return false;
     }
-    for (int i = 0; i < length(); i++) {
-      if (!getSegment(i).equals(potentialChild.getSegment(i))) {
-        return false;
-      }
-    }
-    return true;
+    return equals(potentialChild.popLast());
   }
 
   public abstract String canonicalString();
@@ -154,10 +200,39 @@ public abstract class BasePath<B extends BasePath<B>> implements Comparable<B> {
     return canonicalString();
   }
 
-  abstract B createPathWithSegments(List<String> segments);
+  /** Returns a path that consists of the segments of {@code parent} followed by {@code segment}. */
+  abstract B createChild(B parent, String segment);
+
+  /** Returns the empty path of this type. */
+  abstract B emptyPath();
+
+  /** Returns a path of the given type that consists of {@code segments}. */
+  static <B extends BasePath<B>> B buildPath(B emptyPath, List<String> segments) {
+    B result = emptyPath;
+    for (String segment : segments) {
+      result = emptyPath.createChild(result, segment);
+    }
+    return result;
+  }
+
+  /** Returns the segments of this path in order. */
+  String[] toSegmentArray() {
+    String[] segments = new String[length];
+    BasePath<B> path = this;
+    for (int i = length - 1; i >= 0; i--) {
+      segments[i] = path.lastSegment;
+      path = path.parent;
+    }
+    return segments;
+  }
 
   public int length() {
-    return segments.size();
+    return length;
+  }
+
+  @SuppressWarnings("unchecked")
+  private B self() {
+    return (B) this;
   }
 
   @Override
@@ -165,7 +240,23 @@ public abstract class BasePath<B extends BasePath<B>> implements Comparable<B> {
     if (this == o) {
       return true;
     }
-    return (o instanceof BasePath) && compareTo((B) o) == 0;
+    if (!(o instanceof BasePath)) {
+      return false;
+    }
+    BasePath<?> other = (BasePath<?>) o;
+    if (length != other.length || segmentsHash != other.segmentsHash) {
+      return false;
+    }
+    BasePath<?> left = this;
+    BasePath<?> right = other;
+    while (left != right && left.length > 0) {
+      if (!left.lastSegment.equals(right.lastSegment)) {
+        return false;
+      }
+      left = left.parent;
+      right = right.parent;
+    }
+    return true;
   }
 
   @Override
@@ -173,7 +264,7 @@ public abstract class BasePath<B extends BasePath<B>> implements Comparable<B> {
     int prime = 37;
     int result = 1;
     result = prime * result + getClass().hashCode();
-    result = prime * result + segments.hashCode();
+    result = prime * result + segmentsHash;
     return result;
   }
 }
@@ -125,7 +125,7 @@ public final class DocumentKey implements Comparable<DocumentKey> {
 
   /** Returns true if the document is in the specified collectionId. */
   public boolean hasCollectionId(String collectionId) {
-    return path.length() >= 2 && path.segments.get(path.length() - 2).equals(collectionId);
+    return path.length() >= 2 && path.popLast().getLastSegment().equals(collectionId);
   }
 
   @Override
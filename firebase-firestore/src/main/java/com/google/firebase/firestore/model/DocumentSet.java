@@ -23,14 +23,25 @@ import com.google.firebase.database.collection.ImmutableSortedSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * An immutable set of documents (unique by key) ordered by the given comparator or ordered by key
  * by default if no document is present.
  */
 public final class DocumentSet implements Iterable<Document> {
+  /** The minimum number of changes for which {@link #update} merges instead of inserting. */
+  private static final int MIN_MERGE_CHANGES = 16;
+
+  /**
+   * The ratio between the size of the set and the number of changes above which {@link #update}
+   * inserts the changes one by one. Each insertion costs a logarithmic number of comparisons,
+   * while merging costs a linear number, so merging only pays off for larger batches.
+   */
+  private static final int MAX_SIZE_PER_MERGED_CHANGE = 8;
 
   /** Returns an empty DocumentSet sorted by the given comparator, then by keys. */
   public static DocumentSet emptySet(final Comparator<Document> comparator) {
@@ -47,7 +58,9 @@ public final class DocumentSet implements Iterable<Document> {
         };
 
     return new DocumentSet(
-        emptyDocumentMap(), new ImmutableSortedSet<>(Collections.emptyList(), adjustedComparator));
+        emptyDocumentMap(),
+        new ImmutableSortedSet<>(Collections.emptyList(), adjustedComparator),
+        adjustedComparator);
   }
 
   /**
@@ -64,10 +77,16 @@ public final class DocumentSet implements Iterable<Document> {
    */
   private final ImmutableSortedSet<Document> sortedSet;
 
+  /** The comparator of {@link #sortedSet}. */
+  private final Comparator<Document> comparator;
+
   private DocumentSet(
-      ImmutableSortedMap<DocumentKey, Document> keyIndex, ImmutableSortedSet<Document> sortedSet) {
+      ImmutableSortedMap<DocumentKey, Document> keyIndex,
+      ImmutableSortedSet<Document> sortedSet,
+      Comparator<Document> comparator) {
     this.keyIndex = keyIndex;
     this.sortedSet = sortedSet;
+    this.comparator = comparator;
   }
 
   public int size() {
@@ -148,7 +167,7 @@ public final class DocumentSet implements Iterable<Document> {
     ImmutableSortedMap<DocumentKey, Document> newKeyIndex =
         removed.keyIndex.insert(document.getKey(), document);
     ImmutableSortedSet<Document> newSortedSet = removed.sortedSet.insert(document);
-    return new DocumentSet(newKeyIndex, newSortedSet);
+    return new DocumentSet(newKeyIndex, newSortedSet, comparator);
   }
 
   /** Returns a new DocumentSet with the document for the provided key removed. */
@@ -160,7 +179,80 @@ public final class DocumentSet implements Iterable<Document> {
 
     ImmutableSortedMap<DocumentKey, Document> newKeyIndex = keyIndex.remove(key);
     ImmutableSortedSet<Document> newSortedSet = sortedSet.remove(document);
-    return new DocumentSet(newKeyIndex, newSortedSet);
+    return new DocumentSet(newKeyIndex, newSortedSet, comparator);
+  }
+
+  /**
+   * Returns a new DocumentSet with the documents for the given keys removed and the given documents
+   * added, replacing any old documents with the same keys. The documents to add must have distinct
+   * keys.
+   *
+   * <p>The result is the same as calling {@link #remove} for every key and then {@link #add} for
+   * every document. For large batches, the documents are instead sorted once and merged with the
+   * existing documents in a single pass.
+   */
+  public DocumentSet update(List<Document> documentsToAdd, List<DocumentKey> keysToRemove) {
+    int changeCount = documentsToAdd.size() + keysToRemove.size();
+    if (changeCount < MIN_MERGE_CHANGES || changeCount * MAX_SIZE_PER_MERGED_CHANGE < size()) {
+      DocumentSet result = this;
+      for (DocumentKey key : keysToRemove) {
+        result = result.remove(key);
+      }
+      for (Document document : documentsToAdd) {
+        result = result.add(document);
+      }
+      return result;
+    }
+
+    // The key index is ordered by key, which is cheap to compare, so it is updated in place.
+    ImmutableSortedMap<DocumentKey, Document> newKeyIndex = keyIndex;
+    Set<DocumentKey> replacedKeys = new HashSet<>();
+    for (DocumentKey key : keysToRemove) {
+      if (keyIndex.containsKey(key)) {
+        replacedKeys.add(key);
+        newKeyIndex = newKeyIndex.remove(key);
+      }
+    }
+    for (Document document : documentsToAdd) {
+      if (keyIndex.containsKey(document.getKey())) {
+        replacedKeys.add(document.getKey());
+      }
+      newKeyIndex = newKeyIndex.insert(document.getKey(), document);
+    }
+
+    List<Document> sortedAdditions = new ArrayList<>(documentsToAdd);
+    Collections.sort(sortedAdditions, comparator);
+
+    List<Document> merged = new ArrayList<>(newKeyIndex.size());
+    Iterator<Document> existing = sortedSet.iterator();
+    Document nextExisting = nextRetainedDocument(existing, replacedKeys);
+    int additionIndex = 0;
+    while (nextExisting != null || additionIndex < sortedAdditions.size()) {
+      if (nextExisting != null
+          && (additionIndex == sortedAdditions.size()
+              || comparator.compare(nextExisting, sortedAdditions.get(additionIndex)) < 0)) {
+        merged.add(nextExisting);
+        nextExisting = nextRetainedDocument(existing, replacedKeys);
+      } else {
+        merged.add(sortedAdditions.get(additionIndex++));
+      }
+    }
+
+    // The merged documents are already in order, so sorting them again when building the set only
+    // takes a single linear pass.
+    return new DocumentSet(newKeyIndex, new ImmutableSortedSet<>(merged, comparator), comparator);
+  }
+
+  @Nullable
+  private static Document nextRetainedDocument(
+      Iterator<Document> iterator, Set<DocumentKey> replacedKeys) {
+    while (iterator.hasNext()) {
+      Document document = iterator.next();
+      if (!replacedKeys.contains(document.getKey())) {
+        return document;
+      }
+    }
+    return null;
   }
 
   /**
@@ -181,6 +273,11 @@ public final class DocumentSet implements Iterable<Document> {
     return sortedSet.iterator();
   }
 
+  /** Returns an iterator over the documents in this set in reverse order. */
+  public Iterator<Document> reverseIterator() {
+    return sortedSet.reverseIterator();
+  }
+
   @Override
   public boolean equals(Object other) {
     if (this == other) {
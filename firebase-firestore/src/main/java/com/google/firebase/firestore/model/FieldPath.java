@@ -14,38 +14,46 @@
 
 package com.google.firebase.firestore.model;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /** A dot separated path for navigating sub-objects with in a document */
 public final class FieldPath extends BasePath<FieldPath> {
 
+  // EMPTY_PATH is declared first because all other paths are built on top of it.
+  public static final FieldPath EMPTY_PATH = new FieldPath();
   public static final FieldPath KEY_PATH = fromSingleSegment(DocumentKey.KEY_FIELD_NAME);
-  public static final FieldPath EMPTY_PATH = new FieldPath(Collections.emptyList());
 
-  private FieldPath(List<String> segments) {
-    super(segments);
+  private FieldPath() {
+    super();
+  }
+
+  private FieldPath(FieldPath parent, String segment) {
+    super(parent, segment);
   }
 
   /** Creates a {@code FieldPath} with a single field. Does not split on dots. */
   public static FieldPath fromSingleSegment(String fieldName) {
-    return new FieldPath(Collections.singletonList(fieldName));
+    return new FieldPath(EMPTY_PATH, fieldName);
   }
 
   /** Creates a {@code FieldPath} from a list of parsed field path segments. */
   public static FieldPath fromSegments(List<String> segments) {
-    return segments.isEmpty() ? FieldPath.EMPTY_PATH : new FieldPath(segments);
+    return buildPath(EMPTY_PATH, segments);
+  }
+
+  @Override
+  FieldPath createChild(FieldPath parent, String segment) {
+    return new FieldPath(parent, segment);
   }
 
   @Override
-  FieldPath createPathWithSegments(List<String> segments) {
-    return new FieldPath(segments);
+  FieldPath emptyPath() {
+    return EMPTY_PATH;
   }
 
   /** Creates a {@code FieldPath} from a server-encoded field path. */
   public static FieldPath fromServerFormat(String path) {
-    List<String> res = new ArrayList<>();
+    FieldPath res = EMPTY_PATH;
     StringBuilder builder = new StringBuilder();
     // TODO: We should make this more strict.
     // Right now, it allows non-identifier path components, even if they aren't escaped.
@@ -73,7 +81,7 @@ public final class FieldPath extends BasePath<FieldPath> {
                     + "). Paths must not be empty, begin with '.', end with '.', or contain '..'");
           }
           builder = new StringBuilder();
-          res.add(elem);
+          res = new FieldPath(res, elem);
         } else {
           // escaped, append to current segment
           builder.append(c);
@@ -92,8 +100,7 @@ public final class FieldPath extends BasePath<FieldPath> {
               + path
               + "). Paths must not be empty, begin with '.', end with '.', or contain '..'");
     }
-    res.add(lastElem);
-    return new FieldPath(res);
+    return new FieldPath(res, lastElem);
   }
 
   /**
@@ -120,13 +127,14 @@ public final class FieldPath extends BasePath<FieldPath> {
 
   @Override
   public String canonicalString() {
+    String[] segments = toSegmentArray();
     StringBuilder builder = new StringBuilder();
-    for (int i = 0; i < segments.size(); i++) {
+    for (int i = 0; i < segments.length; i++) {
       if (i > 0) {
         builder.append(".");
       }
       // Escape backslashes and dots.
-      String escaped = segments.get(i);
+      String escaped = segments[i];
       escaped = escaped.replace("\\", "\\\\").replace("`", "\\`");
 
       if (!isValidIdentifier(escaped)) {
@@ -14,6 +14,7 @@
 
 package com.google.firebase.firestore.model;
 
+import static com.google.firebase.firestore.util.Assert.fail;
 import static com.google.firebase.firestore.util.Assert.hardAssert;
 
 import androidx.annotation.NonNull;
@@ -21,6 +22,10 @@ import androidx.annotation.Nullable;
 import com.google.firebase.firestore.model.mutation.FieldMask;
 import com.google.firestore.v1.MapValue;
 import com.google.firestore.v1.Value;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -28,6 +33,13 @@ import java.util.Set;
 
 /** A structured object value stored in Firestore. */
 public final class ObjectValue implements Cloneable {
+  /** The wire tag of the {@code fields} map in {@code google.firestore.v1.Document}. */
+  private static final int DOCUMENT_FIELDS_TAG = (2 << 3) | 2;
+  /** The wire tag of the key in a protobuf map entry. */
+  private static final int MAP_ENTRY_KEY_TAG = (1 << 3) | 2;
+  /** The wire tag of the value in a protobuf map entry. */
+  private static final int MAP_ENTRY_VALUE_TAG = (2 << 3) | 2;
+
   /**
    * The immutable Value proto for this object. Local mutations are stored in `overlayMap` and only
    * applied when {@link #buildProto()} is invoked.
@@ -41,11 +53,40 @@ public final class ObjectValue implements Cloneable {
    */
   private final Map<String, Object> overlayMap = new HashMap<>();
 
+  /**
+   * The encoded {@code google.firestore.v1.Document} proto that backs this ObjectValue if it was
+   * created via {@link #fromEncodedDocument}, or {@code null} once the fields have been fully
+   * decoded into {@link #partialValue}.
+   *
+   * <p>While the encoded document is present, {@link #get} only decodes the top-level fields that
+   * it is asked for. All other operations decode the full document first.
+   */
+  private @Nullable ByteString encodedDocument;
+
+  /**
+   * The encoded value of each top-level field in {@link #encodedDocument}, populated on the first
+   * call to {@link #get}.
+   */
+  private @Nullable Map<String, ByteString> encodedFields;
+
+  /** The top-level fields that have been decoded from {@link #encodedFields} so far. */
+  private @Nullable Map<String, Value> decodedFields;
+
   public static ObjectValue fromMap(Map<String, Value> value) {
     return new ObjectValue(
         Value.newBuilder().setMapValue(MapValue.newBuilder().putAllFields(value)).build());
   }
 
+  /**
+   * Creates an ObjectValue from the fields of an encoded {@code google.firestore.v1.Document}
+   * proto. The fields are decoded lazily as they are accessed.
+   */
+  public static ObjectValue fromEncodedDocument(ByteString encodedDocument) {
+    ObjectValue objectValue = new ObjectValue();
+    objectValue.encodedDocument = encodedDocument;
+    return objectValue;
+  }
+
   public ObjectValue(Value value) {
     hardAssert(
         value.getValueTypeCase() == Value.ValueTypeCase.MAP_VALUE,
@@ -99,9 +140,107 @@ public final class ObjectValue implements Cloneable {
    * @return The value at the path or null if it doesn't exist.
    */
   public @Nullable Value get(FieldPath fieldPath) {
+    synchronized (overlayMap) {
+      if (encodedDocument != null && overlayMap.isEmpty() && !fieldPath.isEmpty()) {
+        // Only decode the top-level field that contains the requested path.
+        Value value = getEncodedField(fieldPath.getFirstSegment());
+        for (int i = 1; i < fieldPath.length(); ++i) {
+          if (!Values.isMapValue(value)) {
+            return null;
+          }
+          value = value.getMapValue().getFieldsOrDefault(fieldPath.getSegment(i), null);
+        }
+        return value;
+      }
+    }
     return extractNestedValue(buildProto(), fieldPath);
   }
 
+  /**
+   * Returns the decoded value of the given top-level field of {@link #encodedDocument} or {@code
+   * null} if the field is not set. Must be called while holding the lock on {@link #overlayMap}.
+   */
+  private @Nullable Value getEncodedField(String fieldName) {
+    if (encodedFields == null) {
+      encodedFields = scanEncodedFields(encodedDocument);
+      decodedFields = new HashMap<>();
+    }
+
+    Value value = decodedFields.get(fieldName);
+    if (value == null) {
+      ByteString encodedValue = encodedFields.get(fieldName);
+      if (encodedValue == null) {
+        return null;
+      }
+      try {
+        value = Value.parseFrom(encodedValue);
+      } catch (InvalidProtocolBufferException e) {
+        throw fail("Failed to decode field '%s': %s", fieldName, e);
+      }
+      decodedFields.put(fieldName, value);
+    }
+    return value;
+  }
+
+  /**
+   * Scans the map entries of an encoded {@code google.firestore.v1.Document} and returns the
+   * encoded value of each top-level field. The returned values share the underlying bytes of {@code
+   * encodedDocument}.
+   */
+  private static Map<String, ByteString> scanEncodedFields(ByteString encodedDocument) {
+    Map<String, ByteString> fields = new HashMap<>();
+    try {
+      CodedInputStream input = encodedDocument.newCodedInput();
+      input.enableAliasing(true);
+      for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+        if (tag != DOCUMENT_FIELDS_TAG) {
+          input.skipField(tag);
+          continue;
+        }
+        int oldLimit = input.pushLimit(input.readRawVarint32());
+        String key = "";
+        ByteString value = ByteString.EMPTY;
+        for (int entryTag = input.readTag(); entryTag != 0; entryTag = input.readTag()) {
+          if (entryTag == MAP_ENTRY_KEY_TAG) {
+            key = input.readStringRequireUtf8();
+          } else if (entryTag == MAP_ENTRY_VALUE_TAG) {
+            value = input.readBytes();
+          } else {
+            input.skipField(entryTag);
+          }
+        }
+        input.popLimit(oldLimit);
+        fields.put(key, value);
+      }
+    } catch (IOException e) {
+      throw fail("Failed to scan document fields: %s", e);
+    }
+    return fields;
+  }
+
+  /**
+   * Decodes all fields of {@link #encodedDocument} into {@link #partialValue}. Must be called while
+   * holding the lock on {@link #overlayMap}.
+   */
+  private void decodeEncodedDocument() {
+    if (encodedDocument == null) {
+      return;
+    }
+    try {
+      com.google.firestore.v1.Document document =
+          com.google.firestore.v1.Document.parseFrom(encodedDocument);
+      partialValue =
+          Value.newBuilder()
+              .setMapValue(MapValue.newBuilder().putAllFields(document.getFieldsMap()))
+              .build();
+    } catch (InvalidProtocolBufferException e) {
+      throw fail("Failed to decode document fields: %s", e);
+    }
+    encodedDocument = null;
+    encodedFields = null;
+    decodedFields = null;
+  }
+
   @Nullable
   private Value extractNestedValue(Value value, FieldPath fieldPath) {
     if (fieldPath.isEmpty()) {
@@ -125,6 +264,7 @@ public final class ObjectValue implements Cloneable {
    */
   private Value buildProto() {
     synchronized (overlayMap) {
+      decodeEncodedDocument();
       MapValue mergedResult = applyOverlay(FieldPath.EMPTY_PATH, overlayMap);
       if (mergedResult != null) {
         partialValue = Value.newBuilder().setMapValue(mergedResult).build();
@@ -250,6 +390,12 @@ public final class ObjectValue implements Cloneable {
     if (this == o) {
       return true;
     } else if (o instanceof ObjectValue) {
+      ByteString thisEncoded = getUnmodifiedEncodedDocument();
+      ByteString otherEncoded = ((ObjectValue) o).getUnmodifiedEncodedDocument();
+      if (thisEncoded != null && thisEncoded.equals(otherEncoded)) {
+        // Identical encodings always contain identical fields.
+        return true;
+      }
       return Values.equals(buildProto(), ((ObjectValue) o).buildProto());
     }
     return false;
@@ -268,6 +414,21 @@ public final class ObjectValue implements Cloneable {
 
   @NonNull
   public ObjectValue clone() {
+    ByteString encoded = getUnmodifiedEncodedDocument();
+    if (encoded != null) {
+      // The encoded bytes are immutable and can be shared without decoding them.
+      return fromEncodedDocument(encoded);
+    }
     return new ObjectValue(buildProto());
   }
+
+  /**
+   * Returns the encoded document that backs this ObjectValue if it has neither been decoded nor
+   * modified yet, or {@code null} otherwise.
+   */
+  private @Nullable ByteString getUnmodifiedEncodedDocument() {
+    synchronized (overlayMap) {
+      return overlayMap.isEmpty() ? encodedDocument : null;
+    }
+  }
 }
@@ -0,0 +1,64 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.model;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Remembers the parent of the most recently decoded path, keyed by the encoded form of that parent.
+ *
+ * <p>Documents are usually read and received in runs that belong to the same collection. Decoders
+ * use this cache to build each document key on top of the collection path of the previous key, so
+ * that only the last segment has to be decoded and all keys of a run share a single parent path
+ * (and with it, a single instance of each collection ID).
+ *
+ * <p>This class is thread-safe.
+ */
+public final class ParentPathCache {
+  private static final class Entry {
+    final String encodedPrefix;
+    final ResourcePath parent;
+
+    Entry(String encodedPrefix, ResourcePath parent) {
+      this.encodedPrefix = encodedPrefix;
+      this.parent = parent;
+    }
+  }
+
+  @Nullable private volatile Entry entry;
+
+  /**
+   * Returns the cached parent if the first {@code prefixLength} characters of {@code encoded} are
+   * exactly the encoded form of that parent, or null otherwise.
+   */
+  @Nullable
+  public ResourcePath get(String encoded, int prefixLength) {
+    Entry current = entry;
+    if (current != null
+        && current.encodedPrefix.length() == prefixLength
+        && encoded.regionMatches(0, current.encodedPrefix, 0, prefixLength)) {
+      return current.parent;
+    }
+    return null;
+  }
+
+  /**
+   * Caches {@code parent} as the path encoded by the first {@code prefixLength} characters of
+   * {@code encoded}.
+   */
+  public void put(String encoded, int prefixLength, ResourcePath parent) {
+    entry = new Entry(encoded.substring(0, prefixLength), parent);
+  }
+}
@@ -14,26 +14,33 @@
 
 package com.google.firebase.firestore.model;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /** A slash separated path for navigating resources (documents and collections) within Firestore. */
 public final class ResourcePath extends BasePath<ResourcePath> {
 
-  public static final ResourcePath EMPTY = new ResourcePath(Collections.emptyList());
+  public static final ResourcePath EMPTY = new ResourcePath();
 
-  private ResourcePath(List<String> segments) {
-    super(segments);
+  private ResourcePath() {
+    super();
+  }
+
+  private ResourcePath(ResourcePath parent, String segment) {
+    super(parent, segment);
+  }
+
+  @Override
+  ResourcePath createChild(ResourcePath parent, String segment) {
+    return new ResourcePath(parent, segment);
   }
 
   @Override
-  ResourcePath createPathWithSegments(List<String> segments) {
-    return new ResourcePath(segments);
+  ResourcePath emptyPath() {
+    return EMPTY;
   }
 
   public static ResourcePath fromSegments(List<String> segments) {
-    return segments.isEmpty() ? ResourcePath.EMPTY : new ResourcePath(segments);
+    return buildPath(EMPTY, segments);
   }
 
   public static ResourcePath fromString(String path) {
@@ -50,14 +57,14 @@ public final class ResourcePath extends BasePath<ResourcePath> {
     // leading or trailing slash (which we allow).
     @SuppressWarnings("StringSplitter")
     String[] rawSegments = path.split("/");
-    ArrayList<String> segments = new ArrayList<>(rawSegments.length);
+    ResourcePath result = EMPTY;
     for (String segment : rawSegments) {
       if (!segment.isEmpty()) {
-        segments.add(segment);
+        result = new ResourcePath(result, segment);
       }
     }
 
-    return new ResourcePath(segments);
+    return result;
   }
 
   @Override
@@ -65,12 +72,13 @@ public final class ResourcePath extends BasePath<ResourcePath> {
     // NOTE: The client is ignorant of any path segments containing escape
     // sequences (e.g. __id123__) and just passes them through raw (they exist
     // for legacy reasons and should not be used frequently).
+    String[] segments = toSegmentArray();
     StringBuilder builder = new StringBuilder();
-    for (int i = 0; i < segments.size(); i++) {
+    for (int i = 0; i < segments.length; i++) {
       if (i > 0) {
         builder.append("/");
       }
-      builder.append(segments.get(i));
+      builder.append(segments[i]);
     }
     return builder.toString();
   }
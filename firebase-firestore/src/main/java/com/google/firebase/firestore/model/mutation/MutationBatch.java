@@ -23,6 +23,8 @@ import com.google.firebase.firestore.model.Document;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.MutableDocument;
 import com.google.firebase.firestore.model.SnapshotVersion;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -63,6 +65,15 @@ public final class MutationBatch {
    */
   private final List<Mutation> mutations;
 
+  /** The set of keys referenced by the user-provided mutations. Computed lazily. */
+  private volatile @Nullable Set<DocumentKey> keys;
+
+  /**
+   * The base and user-provided mutations grouped by document key, each in the order in which they
+   * are applied to the local view. Computed lazily.
+   */
+  private volatile @Nullable Map<DocumentKey, List<Mutation>> localViewMutationsByKey;
+
   public MutationBatch(
       int batchId,
       Timestamp localWriteTime,
@@ -110,24 +121,43 @@ public final class MutationBatch {
   }
 
   public FieldMask applyToLocalView(MutableDocument document, @Nullable FieldMask mutatedFields) {
-    // First, apply the base state. This allows us to apply non-idempotent transform against a
-    // consistent set of values.
-    for (int i = 0; i < baseMutations.size(); i++) {
-      Mutation mutation = baseMutations.get(i);
-      if (mutation.getKey().equals(document.getKey())) {
-        mutatedFields = mutation.applyToLocalView(document, mutatedFields, localWriteTime);
+    List<Mutation> documentMutations = getLocalViewMutationsByKey().get(document.getKey());
+    if (documentMutations != null) {
+      for (int i = 0; i < documentMutations.size(); i++) {
+        mutatedFields =
+            documentMutations.get(i).applyToLocalView(document, mutatedFields, localWriteTime);
       }
     }
+    return mutatedFields;
+  }
 
-    // Second, apply all user-provided mutations.
-    for (int i = 0; i < mutations.size(); i++) {
-      Mutation mutation = mutations.get(i);
-      if (mutation.getKey().equals(document.getKey())) {
-        mutatedFields = mutation.applyToLocalView(document, mutatedFields, localWriteTime);
-      }
+  /**
+   * Returns the mutations that affect the local view of each document, in application order.
+   *
+   * <p>Base mutations come first. This allows us to apply non-idempotent transforms against a
+   * consistent set of values. The user-provided mutations are applied afterwards.
+   */
+  private Map<DocumentKey, List<Mutation>> getLocalViewMutationsByKey() {
+    // The batch is immutable, so threads that race to compute the index compute the same result.
+    Map<DocumentKey, List<Mutation>> result = localViewMutationsByKey;
+    if (result == null) {
+      result = new HashMap<>();
+      groupByKey(baseMutations, result);
+      groupByKey(mutations, result);
+      localViewMutationsByKey = result;
     }
+    return result;
+  }
 
-    return mutatedFields;
+  private static void groupByKey(List<Mutation> mutations, Map<DocumentKey, List<Mutation>> out) {
+    for (Mutation mutation : mutations) {
+      List<Mutation> documentMutations = out.get(mutation.getKey());
+      if (documentMutations == null) {
+        documentMutations = new ArrayList<>(1);
+        out.put(mutation.getKey(), documentMutations);
+      }
+      documentMutations.add(mutation);
+    }
   }
 
   /**
@@ -194,13 +224,21 @@ public final class MutationBatch {
         + ')';
   }
 
-  /** Returns the set of unique keys referenced by all mutations in the batch. */
+  /**
+   * Returns the set of unique keys referenced by all mutations in the batch. The returned set is
+   * unmodifiable.
+   */
   public Set<DocumentKey> getKeys() {
-    HashSet<DocumentKey> set = new HashSet<>();
-    for (Mutation mutation : mutations) {
-      set.add(mutation.getKey());
+    Set<DocumentKey> result = keys;
+    if (result == null) {
+      HashSet<DocumentKey> set = new HashSet<>();
+      for (Mutation mutation : mutations) {
+        set.add(mutation.getKey());
+      }
+      result = Collections.unmodifiableSet(set);
+      keys = result;
     }
-    return set;
+    return result;
   }
 
   public int getBatchId() {
@@ -0,0 +1,132 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.remote;
+
+import com.google.protobuf.ByteString;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A bloom filter sent by the backend as part of an existence filter. It contains the resource
+ * names of the documents that match a target and have not changed since the target was resumed.
+ *
+ * <p>An entry is hashed with MD5, and the 128-bit hash is split into two 64-bit unsigned integers
+ * {@code h1} and {@code h2}, read in little-endian order. The bits that are tested for an entry are
+ * {@code (h1 + i * h2) mod bitCount} for {@code i} in {@code [0, hashCount)}.
+ *
+ * <p>This class is not thread safe and should only be used from the worker AsyncQueue.
+ */
+public final class BloomFilter {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final ByteString bitmap;
+  private final int bitCount;
+  private final int hashCount;
+  private final MessageDigest md5;
+
+  /**
+   * Creates a new bloom filter.
+   *
+   * @param bitmap The bits of the bloom filter. Bit {@code n} is stored in byte {@code n / 8} at
+   *     position {@code n % 8}, counting from the least significant bit.
+   * @param padding The number of bits at the end of the last byte of {@code bitmap} to ignore.
+   * @param hashCount The number of hash functions.
+   * @throws IllegalArgumentException if the arguments do not describe a valid bloom filter.
+   */
+  public BloomFilter(ByteString bitmap, int padding, int hashCount) {
+    if (padding < 0 || padding >= 8) {
+      throw new IllegalArgumentException("Invalid padding: " + padding);
+    }
+    if (hashCount < 0) {
+      throw new IllegalArgumentException("Invalid hash count: " + hashCount);
+    }
+    if (bitmap.size() > 0 && hashCount == 0) {
+      throw new IllegalArgumentException("Invalid hash count: " + hashCount);
+    }
+    if (bitmap.size() == 0 && padding != 0) {
+      throw new IllegalArgumentException(
+          "Expected padding of 0 when bitmap length is 0, but got " + padding);
+    }
+
+    this.bitmap = bitmap;
+    this.bitCount = bitmap.size() * 8 - padding;
+    this.hashCount = hashCount;
+    try {
+      this.md5 = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("Missing MD5 MessageDigest provider", e);
+    }
+  }
+
+  /** Returns the number of bits in the bloom filter. */
+  public int getBitCount() {
+    return bitCount;
+  }
+
+  /** Returns the number of hash functions. */
+  public int getHashCount() {
+    return hashCount;
+  }
+
+  /**
+   * Returns whether the given value might be contained in the bloom filter. A return value of
+   * false guarantees that the value was not added to the bloom filter.
+   */
+  public boolean mightContain(String value) {
+    if (bitCount == 0) {
+      return false;
+    }
+
+    byte[] hash = md5.digest(value.getBytes(UTF_8));
+    long hash1 = getLongLittleEndian(hash, 0);
+    long hash2 = getLongLittleEndian(hash, 8);
+    for (int i = 0; i < hashCount; ++i) {
+      int index = (int) unsignedRemainder(hash1 + i * hash2, bitCount);
+      if (!isBitSet(index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isBitSet(int index) {
+    int value = bitmap.byteAt(index / 8);
+    return (value & (0x01 << (index % 8))) != 0;
+  }
+
+  private static long getLongLittleEndian(byte[] bytes, int offset) {
+    long result = 0;
+    for (int i = 0; i < 8; ++i) {
+      result |= (bytes[offset + i] & 0xFFL) << (i * 8);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the remainder of dividing the given value, interpreted as an unsigned integer, by the
+   * divisor. Equivalent to {@code Long.remainderUnsigned()}, which requires API level 26.
+   */
+  private static long unsignedRemainder(long dividend, int divisor) {
+    long quotient = ((dividend >>> 1) / divisor) << 1;
+    long remainder = dividend - quotient * divisor;
+    return remainder >= divisor ? remainder - divisor : remainder;
+  }
+
+  @Override
+  public String toString() {
+    return "BloomFilter{bitCount=" + bitCount + ", hashCount=" + hashCount + '}';
+  }
+}
@@ -14,20 +14,40 @@
 
 package com.google.firebase.firestore.remote;
 
-/** Simplest form of existence filter */
+import androidx.annotation.Nullable;
+
+/**
+ * An existence filter, which contains the number of documents that match a target and optionally a
+ * bloom filter of the documents that have not changed since the target was resumed.
+ */
 public final class ExistenceFilter {
   private final int count;
+  @Nullable private final BloomFilter unchangedNames;
 
   public ExistenceFilter(int count) {
+    this(count, /* unchangedNames= */ null);
+  }
+
+  public ExistenceFilter(int count, @Nullable BloomFilter unchangedNames) {
     this.count = count;
+    this.unchangedNames = unchangedNames;
   }
 
   public int getCount() {
     return count;
   }
 
+  /**
+   * Returns a bloom filter of the resource names of the documents that match the target and have
+   * not changed since the target was resumed, or null if the backend did not send one.
+   */
+  @Nullable
+  public BloomFilter getUnchangedNames() {
+    return unchangedNames;
+  }
+
   @Override
   public String toString() {
-    return "ExistenceFilter{count=" + count + '}';
+    return "ExistenceFilter{count=" + count + ", unchangedNames=" + unchangedNames + '}';
   }
 }
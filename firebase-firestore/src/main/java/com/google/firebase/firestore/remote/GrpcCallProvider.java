@@ -221,11 +221,15 @@ public class GrpcCallProvider {
     }
     // Re-listen for next state change.
     channel.notifyWhenStateChanged(
-        newState, () -> asyncQueue.enqueueAndForget(() -> onConnectivityStateChange(channel)));
+        newState,
+        () ->
+            asyncQueue.enqueueAndForget(
+                "Change connectivity state", () -> onConnectivityStateChange(channel)));
   }
 
   private void resetChannel(ManagedChannel channel) {
     asyncQueue.enqueueAndForget(
+        "Reset channel",
         () -> {
           channel.shutdownNow();
           initChannelTask();
@@ -240,7 +244,8 @@ public class GrpcCallProvider {
             Executors.BACKGROUND_EXECUTOR,
             () -> {
               ManagedChannel channel = initChannel(context, databaseInfo);
-              asyncQueue.enqueueAndForget(() -> onConnectivityStateChange(channel));
+              asyncQueue.enqueueAndForget(
+                  "Change connectivity state", () -> onConnectivityStateChange(channel));
               FirestoreGrpc.FirestoreStub firestoreStub =
                   FirestoreGrpc.newStub(channel)
                       .withCallCredentials(firestoreHeaders)
@@ -33,6 +33,7 @@ import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.FieldPath;
 import com.google.firebase.firestore.model.MutableDocument;
 import com.google.firebase.firestore.model.ObjectValue;
+import com.google.firebase.firestore.model.ParentPathCache;
 import com.google.firebase.firestore.model.ResourcePath;
 import com.google.firebase.firestore.model.SnapshotVersion;
 import com.google.firebase.firestore.model.Values;
@@ -53,6 +54,7 @@ import com.google.firebase.firestore.remote.WatchChange.ExistenceFilterWatchChan
 import com.google.firebase.firestore.remote.WatchChange.WatchTargetChange;
 import com.google.firebase.firestore.remote.WatchChange.WatchTargetChangeType;
 import com.google.firebase.firestore.util.Assert;
+import com.google.firebase.firestore.util.Logger;
 import com.google.firestore.v1.ArrayValue;
 import com.google.firestore.v1.BatchGetDocumentsResponse;
 import com.google.firestore.v1.BatchGetDocumentsResponse.ResultCase;
@@ -87,9 +89,11 @@ import java.util.Set;
 
 /** Serializer that converts to and from Firestore API protos. */
 public final class RemoteSerializer {
+  private static final String LOG_TAG = "RemoteSerializer";
 
   private final DatabaseId databaseId;
   private final String databaseName;
+  private final ParentPathCache parentPathCache = new ParentPathCache();
 
   public RemoteSerializer(DatabaseId databaseId) {
     this.databaseId = databaseId;
@@ -132,6 +136,16 @@ public final class RemoteSerializer {
   }
 
   public DocumentKey decodeKey(String name) {
+    // Names that only differ in their last segment share the already validated collection path.
+    int lastSegmentStart = name.lastIndexOf('/') + 1;
+    boolean hasLastSegment = lastSegmentStart > 0 && lastSegmentStart < name.length();
+    if (hasLastSegment) {
+      ResourcePath parent = parentPathCache.get(name, lastSegmentStart);
+      if (parent != null) {
+        return DocumentKey.fromPath(parent.append(name.substring(lastSegmentStart)));
+      }
+    }
+
     ResourcePath resource = decodeResourceName(name);
     Assert.hardAssert(
         resource.getSegment(1).equals(databaseId.getProjectId()),
@@ -139,7 +153,11 @@ public final class RemoteSerializer {
     Assert.hardAssert(
         resource.getSegment(3).equals(databaseId.getDatabaseId()),
         "Tried to deserialize key from different database.");
-    return DocumentKey.fromPath(extractLocalPathFromResourceName(resource));
+    DocumentKey key = DocumentKey.fromPath(extractLocalPathFromResourceName(resource));
+    if (hasLastSegment) {
+      parentPathCache.put(name, lastSegmentStart, key.getPath().popLast());
+    }
+    return key;
   }
 
   private String encodeQueryPath(ResourcePath path) {
@@ -499,6 +517,15 @@ public final class RemoteSerializer {
       builder.setResumeToken(targetData.getResumeToken());
     }
 
+    Integer expectedCount = targetData.getExpectedCount();
+    if (expectedCount != null
+        && (!targetData.getResumeToken().isEmpty()
+            || targetData.getSnapshotVersion().compareTo(SnapshotVersion.NONE) > 0)) {
+      // The backend only sends a bloom filter in existence filters if the target is resumed with an
+      // expected count.
+      builder.setExpectedCount(Int32Value.newBuilder().setValue(expectedCount));
+    }
+
     return builder.build();
   }
 
@@ -915,8 +942,11 @@ public final class RemoteSerializer {
         break;
       case FILTER:
         com.google.firestore.v1.ExistenceFilter protoFilter = protoChange.getFilter();
-        // TODO: implement existence filter parsing (see b/33076578)
-        ExistenceFilter filter = new ExistenceFilter(protoFilter.getCount());
+        BloomFilter unchangedNames =
+            protoFilter.hasUnchangedNames()
+                ? decodeBloomFilter(protoFilter.getUnchangedNames())
+                : null;
+        ExistenceFilter filter = new ExistenceFilter(protoFilter.getCount(), unchangedNames);
         int targetId = protoFilter.getTargetId();
         watchChange = new ExistenceFilterWatchChange(targetId, filter);
         break;
@@ -928,6 +958,21 @@ public final class RemoteSerializer {
     return watchChange;
   }
 
+  /**
+   * Decodes a bloom filter sent as part of an existence filter. Returns null if the bloom filter is
+   * invalid, in which case the client falls back to re-running the target.
+   */
+  @Nullable
+  private BloomFilter decodeBloomFilter(com.google.firestore.v1.BloomFilter proto) {
+    try {
+      return new BloomFilter(
+          proto.getBits().getBitmap(), proto.getBits().getPadding(), proto.getHashCount());
+    } catch (IllegalArgumentException e) {
+      Logger.warn(LOG_TAG, "Ignoring invalid bloom filter in existence filter: %s", e.getMessage());
+      return null;
+    }
+  }
+
   public SnapshotVersion decodeVersionFromListenResponse(ListenResponse watchChange) {
     // We have only reached a consistent snapshot for the entire stream if there is a read_time set
     // and it applies to all targets (i.e. the list of targets is empty). The backend is guaranteed
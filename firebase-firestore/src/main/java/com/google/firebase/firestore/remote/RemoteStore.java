@@ -26,6 +26,7 @@ import com.google.firebase.firestore.local.QueryPurpose;
 import com.google.firebase.firestore.local.TargetData;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.SnapshotVersion;
+import com.google.firebase.firestore.model.mutation.Mutation;
 import com.google.firebase.firestore.model.mutation.MutationBatch;
 import com.google.firebase.firestore.model.mutation.MutationBatchResult;
 import com.google.firebase.firestore.model.mutation.MutationResult;
@@ -40,11 +41,16 @@ import com.google.firebase.firestore.util.Util;
 import com.google.protobuf.ByteString;
 import io.grpc.Status;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 /**
  * RemoteStore handles all interaction with the backend through a simple, clean interface. This
@@ -52,8 +58,11 @@ import java.util.Map.Entry;
  */
 public final class RemoteStore implements WatchChangeAggregator.TargetMetadataProvider {
 
-  /** The maximum number of pending writes to allow. TODO: Negotiate this value with the backend. */
-  private static final int MAX_PENDING_WRITES = 10;
+  /** The maximum number of mutations that are coalesced into a single write request. */
+  private static final int MAX_COALESCED_MUTATIONS = 500;
+
+  /** Batches with more mutations than this are always sent in a write request of their own. */
+  private static final int MAX_COALESCED_BATCH_SIZE = 25;
 
   /** The log tag to use for this class. */
   private static final String LOG_TAG = "RemoteStore";
@@ -130,8 +139,8 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
   @Nullable private WatchChangeAggregator watchChangeAggregator;
 
   /**
-   * A list of up to MAX_PENDING_WRITES writes that we have fetched from the LocalStore via
-   * fillWritePipeline() and have or will send to the write stream.
+   * A list of up to writePipelineWindow.getSize() writes that we have fetched from the LocalStore
+   * via fillWritePipeline() and have or will send to the write stream.
    *
    * <p>Whenever writePipeline.length > 0 the RemoteStore will attempt to start or restart the write
    * stream. When the stream is established the writes in the pipeline will be sent in order.
@@ -145,16 +154,56 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
    */
   private final Deque<MutationBatch> writePipeline;
 
+  /**
+   * The number of batches in each write request that was sent on the current write stream and has
+   * not been acknowledged yet, in the order sent. A request contains more than one batch if small
+   * adjacent batches were coalesced.
+   */
+  private final Deque<Integer> sentRequestBatchCounts = new ArrayDeque<>();
+
+  /** The number of batches at the front of writePipeline that were sent on the current stream. */
+  private int sentBatchCount = 0;
+
+  /**
+   * Batches up to this batch ID are sent in write requests of their own, since a write request that
+   * coalesced them was rejected and the rejection needs to be attributed to a single batch.
+   */
+  private int lastIsolatedBatchId = MutationBatch.UNKNOWN;
+
+  private final WritePipelineWindow writePipelineWindow;
+
   public RemoteStore(
       RemoteStoreCallback remoteStoreCallback,
       LocalStore localStore,
       Datastore datastore,
       AsyncQueue workerQueue,
       ConnectivityMonitor connectivityMonitor) {
+    this(
+        remoteStoreCallback,
+        localStore,
+        datastore,
+        workerQueue,
+        connectivityMonitor,
+        /* adaptiveWritePipeline= */ false);
+  }
+
+  /**
+   * @param adaptiveWritePipeline Whether the size of the write pipeline adapts to the observed
+   *     acknowledgement latency, and small adjacent batches are coalesced into a single write
+   *     request. Otherwise, up to ten batches are sent in write requests of their own.
+   */
+  public RemoteStore(
+      RemoteStoreCallback remoteStoreCallback,
+      LocalStore localStore,
+      Datastore datastore,
+      AsyncQueue workerQueue,
+      ConnectivityMonitor connectivityMonitor,
+      boolean adaptiveWritePipeline) {
     this.remoteStoreCallback = remoteStoreCallback;
     this.localStore = localStore;
     this.datastore = datastore;
     this.connectivityMonitor = connectivityMonitor;
+    this.writePipelineWindow = new WritePipelineWindow(adaptiveWritePipeline);
 
     listenTargets = new HashMap<>();
     writePipeline = new ArrayDeque<>();
@@ -210,6 +259,7 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
     connectivityMonitor.addCallback(
         (NetworkStatus networkStatus) -> {
           workerQueue.enqueueAndForget(
+              "Change network status",
               () -> {
                 // Porting Note: Unlike iOS, `restartNetwork()` is called even when the network
                 // becomes unreachable as we don't have any other way to tear down our streams.
@@ -286,6 +336,8 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
     if (!writePipeline.isEmpty()) {
       Logger.debug(LOG_TAG, "Stopping write stream with %d pending writes", writePipeline.size());
       writePipeline.clear();
+      clearSentRequests();
+      writePipelineWindow.onQueueDepthChanged(0, System.currentTimeMillis());
     }
 
     cleanUpWatchStreamState();
@@ -365,6 +417,13 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
 
   private void sendWatchRequest(TargetData targetData) {
     watchChangeAggregator.recordPendingTargetRequest(targetData.getTargetId());
+    if (!targetData.getResumeToken().isEmpty()
+        || targetData.getSnapshotVersion().compareTo(SnapshotVersion.NONE) > 0) {
+      // Send the number of documents that we have for the target, which allows the backend to
+      // include a bloom filter of the unchanged documents if the count no longer matches.
+      int expectedCount = getRemoteKeysForTarget(targetData.getTargetId()).size();
+      targetData = targetData.withExpectedCount(expectedCount);
+    }
     watchStream.watchQuery(targetData);
   }
 
@@ -430,7 +489,8 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
     hardAssert(
         shouldStartWatchStream(),
         "startWatchStream() called when shouldStartWatchStream() is false.");
-    watchChangeAggregator = new WatchChangeAggregator(this);
+    watchChangeAggregator =
+        new WatchChangeAggregator(this, datastore.getDatabaseInfo().getDatabaseId());
     watchStream.start();
 
     onlineStateTracker.handleWatchStreamStart();
@@ -604,31 +664,103 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
       lastBatchIdRetrieved = batch.getBatchId();
     }
 
+    writePipelineWindow.onQueueDepthChanged(writePipeline.size(), System.currentTimeMillis());
+
+    if (writeStream.isOpen() && writeStream.isHandshakeComplete()) {
+      sendPendingWrites();
+    }
+
     if (shouldStartWriteStream()) {
       startWriteStream();
     }
   }
 
+  /** Returns the window that limits the size of the write pipeline, and its metrics. */
+  public WritePipelineWindow getWritePipelineWindow() {
+    return writePipelineWindow;
+  }
+
   /**
    * Returns true if we can add to the write pipeline (i.e. it is not full and the network is
    * enabled).
    */
   private boolean canAddToWritePipeline() {
-    return canUseNetwork() && writePipeline.size() < MAX_PENDING_WRITES;
+    return canUseNetwork() && writePipeline.size() < writePipelineWindow.getSize();
   }
 
   /**
-   * Queues additional writes to be sent to the write stream, sending them immediately if the write
-   * stream is established.
+   * Queues additional writes to be sent to the write stream. The writes are sent by
+   * sendPendingWrites() once the write stream is established.
    */
   private void addToWritePipeline(MutationBatch mutationBatch) {
     hardAssert(canAddToWritePipeline(), "addToWritePipeline called when pipeline is full");
 
     writePipeline.add(mutationBatch);
+  }
 
-    if (writeStream.isOpen() && writeStream.isHandshakeComplete()) {
-      writeStream.writeMutations(mutationBatch.getMutations());
+  /**
+   * Sends the writes in the pipeline that have not been sent on the current write stream yet.
+   *
+   * <p>If the write pipeline is adaptive, small adjacent batches that write to different documents
+   * are coalesced into a single write request. Since the backend applies a write request
+   * atomically and in order, this preserves the order of the writes.
+   */
+  private void sendPendingWrites() {
+    Iterator<MutationBatch> unsentBatches = writePipeline.iterator();
+    for (int i = 0; i < sentBatchCount; ++i) {
+      unsentBatches.next();
     }
+
+    List<Mutation> requestMutations = new ArrayList<>();
+    Set<DocumentKey> requestKeys = new HashSet<>();
+    int requestBatchCount = 0;
+    boolean canCoalesceRequest = false;
+
+    while (unsentBatches.hasNext()) {
+      MutationBatch batch = unsentBatches.next();
+      boolean canCoalesceBatch = canCoalesce(batch);
+      if (requestBatchCount > 0
+          && !(canCoalesceRequest
+              && canCoalesceBatch
+              && requestMutations.size() + batch.getMutations().size() <= MAX_COALESCED_MUTATIONS
+              && Collections.disjoint(requestKeys, batch.getKeys()))) {
+        sendWriteRequest(requestMutations, requestBatchCount);
+        requestMutations = new ArrayList<>();
+        requestKeys.clear();
+        requestBatchCount = 0;
+      }
+
+      if (requestBatchCount == 0) {
+        canCoalesceRequest = canCoalesceBatch;
+      }
+      requestMutations.addAll(batch.getMutations());
+      requestKeys.addAll(batch.getKeys());
+      ++requestBatchCount;
+    }
+
+    if (requestBatchCount > 0) {
+      sendWriteRequest(requestMutations, requestBatchCount);
+    }
+  }
+
+  /** Returns whether the batch may be sent in the same write request as other batches. */
+  private boolean canCoalesce(MutationBatch batch) {
+    return writePipelineWindow.isAdaptive()
+        && batch.getBatchId() > lastIsolatedBatchId
+        && batch.getMutations().size() <= MAX_COALESCED_BATCH_SIZE;
+  }
+
+  private void sendWriteRequest(List<Mutation> mutations, int batchCount) {
+    writeStream.writeMutations(mutations);
+    sentRequestBatchCounts.add(batchCount);
+    sentBatchCount += batchCount;
+    writePipelineWindow.onRequestSent(System.currentTimeMillis());
+  }
+
+  /** Forgets which writes were sent, so that they are resent once a new stream is established. */
+  private void clearSentRequests() {
+    sentRequestBatchCounts.clear();
+    sentBatchCount = 0;
   }
 
   private void startWriteStream() {
@@ -647,9 +779,9 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
     localStore.setLastStreamToken(writeStream.getLastStreamToken());
 
     // Send the write pipeline now that stream is established.
-    for (MutationBatch batch : writePipeline) {
-      writeStream.writeMutations(batch.getMutations());
-    }
+    clearSentRequests();
+    writePipelineWindow.onStreamRestarted();
+    sendPendingWrites();
   }
 
   /**
@@ -658,12 +790,28 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
   private void handleWriteStreamMutationResults(
       SnapshotVersion commitVersion, List<MutationResult> results) {
     // This is a response to a write containing mutations and should be correlated to the first
-    // write in our write pipeline.
-    MutationBatch batch = writePipeline.poll();
+    // write request that we sent, which contains the batches at the front of our write pipeline.
+    Integer batchCount = sentRequestBatchCounts.poll();
+    hardAssert(batchCount != null, "Received a write response without a pending write request");
+    sentBatchCount -= batchCount;
+    writePipelineWindow.onRequestAcknowledged(System.currentTimeMillis());
+
+    int resultOffset = 0;
+    for (int i = 0; i < batchCount; ++i) {
+      MutationBatch batch = writePipeline.poll();
+      List<MutationResult> batchResults = results;
+      if (batchCount > 1) {
+        // The backend returns one result per mutation of a coalesced request.
+        int mutationCount = batch.getMutations().size();
+        batchResults = results.subList(resultOffset, resultOffset + mutationCount);
+        resultOffset += mutationCount;
+      }
 
-    MutationBatchResult mutationBatchResult =
-        MutationBatchResult.create(batch, commitVersion, results, writeStream.getLastStreamToken());
-    remoteStoreCallback.handleSuccessfulWrite(mutationBatchResult);
+      MutationBatchResult mutationBatchResult =
+          MutationBatchResult.create(
+              batch, commitVersion, batchResults, writeStream.getLastStreamToken());
+      remoteStoreCallback.handleSuccessfulWrite(mutationBatchResult);
+    }
 
     // It's possible that with the completion of this mutation another slot has freed up.
     fillWritePipeline();
@@ -676,6 +824,10 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
           !shouldStartWriteStream(), "Write stream was stopped gracefully while still needed.");
     }
 
+    if (!status.isOk()) {
+      writePipelineWindow.onStreamError();
+    }
+
     // If the write stream closed due to an error, invoke the error callbacks if there are pending
     // writes.
     if (!status.isOk() && !writePipeline.isEmpty()) {
@@ -718,6 +870,18 @@ public final class RemoteStore implements WatchChangeAggregator.TargetMetadataPr
     hardAssert(!status.isOk(), "Handling write error with status OK.");
     // Only handle permanent errors here. If it's transient, just let the retry logic kick in.
     if (Datastore.isPermanentWriteError(status)) {
+      Integer requestBatchCount = sentRequestBatchCounts.peek();
+      if (requestBatchCount != null && requestBatchCount > 1) {
+        // The rejected request coalesced several batches, none of which have been applied. Resend
+        // them in requests of their own, so that the error can be attributed to a single batch.
+        Iterator<MutationBatch> requestBatches = writePipeline.iterator();
+        for (int i = 0; i < requestBatchCount; ++i) {
+          lastIsolatedBatchId = requestBatches.next().getBatchId();
+        }
+        writeStream.inhibitBackoff();
+        return;
+      }
+
       // If this was a permanent error, the request itself was the problem so it's not going
       // to succeed if we resend it.
       MutationBatch batch = writePipeline.poll();
@@ -23,6 +23,7 @@ import com.google.firebase.firestore.core.DocumentViewChange;
 import com.google.firebase.firestore.core.Target;
 import com.google.firebase.firestore.local.QueryPurpose;
 import com.google.firebase.firestore.local.TargetData;
+import com.google.firebase.firestore.model.DatabaseId;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.MutableDocument;
 import com.google.firebase.firestore.model.SnapshotVersion;
@@ -60,6 +61,9 @@ public class WatchChangeAggregator {
 
   private final TargetMetadataProvider targetMetadataProvider;
 
+  /** The prefix of the resource names of all documents, or null if bloom filters are ignored. */
+  @Nullable private final String documentNamePrefix;
+
   /** The internal state of all tracked targets. */
   private final Map<Integer, TargetState> targetStates = new HashMap<>();
 
@@ -76,7 +80,24 @@ public class WatchChangeAggregator {
   private Set<Integer> pendingTargetResets = new HashSet<>();
 
   public WatchChangeAggregator(TargetMetadataProvider targetMetadataProvider) {
+    this(targetMetadataProvider, /* databaseId= */ null);
+  }
+
+  /**
+   * Creates a new WatchChangeAggregator. The database ID is used to look up documents in the bloom
+   * filters of existence filters. If it is null, bloom filters are ignored.
+   */
+  public WatchChangeAggregator(
+      TargetMetadataProvider targetMetadataProvider, @Nullable DatabaseId databaseId) {
     this.targetMetadataProvider = targetMetadataProvider;
+    this.documentNamePrefix =
+        databaseId == null
+            ? null
+            : "projects/"
+                + databaseId.getProjectId()
+                + "/databases/"
+                + databaseId.getDatabaseId()
+                + "/documents/";
   }
 
   /** Processes and adds the DocumentWatchChange to the current set of changes. */
@@ -172,8 +193,9 @@ public class WatchChangeAggregator {
   }
 
   /**
-   * Handles existence filters and synthesizes deletes for filter mismatches. Targets that are
-   * invalidated by filter mismatches are added to `pendingTargetResets`.
+   * Handles existence filters and synthesizes deletes for filter mismatches. If the existence
+   * filter contains a bloom filter, the documents that are missing from it are removed from the
+   * target. Targets whose mismatch cannot be resolved this way are added to `pendingTargetResets`.
    */
   public void handleExistenceFilter(ExistenceFilterWatchChange watchChange) {
     int targetId = watchChange.getTargetId();
@@ -198,6 +220,16 @@ public class WatchChangeAggregator {
       } else {
         long currentSize = getCurrentDocumentCountForTarget(targetId);
         if (currentSize != expectedCount) {
+          BloomFilter unchangedNames = watchChange.getExistenceFilter().getUnchangedNames();
+          if (unchangedNames != null && documentNamePrefix != null) {
+            // Remove the documents that no longer match and check whether that resolves the
+            // mismatch, which avoids re-downloading all documents of the target.
+            removeDocumentsMissingFromBloomFilter(targetId, unchangedNames);
+            if (getCurrentDocumentCountForTarget(targetId) == expectedCount) {
+              return;
+            }
+          }
+
           // Existence filter mismatch: We reset the mapping and raise a new snapshot with
           // `isFromCache:true`.
           resetTarget(targetId);
@@ -207,6 +239,25 @@ public class WatchChangeAggregator {
     }
   }
 
+  /**
+   * Removes the documents of the target that are not contained in the bloom filter. Documents that
+   * were changed since the last raised snapshot are kept, since they are not part of the bloom
+   * filter.
+   */
+  private void removeDocumentsMissingFromBloomFilter(int targetId, BloomFilter unchangedNames) {
+    ImmutableSortedSet<DocumentKey> existingKeys =
+        targetMetadataProvider.getRemoteKeysForTarget(targetId);
+    for (DocumentKey key : existingKeys) {
+      if (pendingDocumentUpdates.containsKey(key)) {
+        continue;
+      }
+      String documentName = documentNamePrefix + key.getPath().canonicalString();
+      if (!unchangedNames.mightContain(documentName)) {
+        removeDocumentFromTarget(targetId, key, /* updatedDocument= */ null);
+      }
+    }
+  }
+
   /**
    * Converts the currently accumulated state into a remote event at the provided snapshot version.
    * Resets the accumulated changes before returning.
@@ -0,0 +1,162 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.remote;
+
+import com.google.firebase.firestore.util.Logger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Determines how many mutation batches the {@link RemoteStore} keeps in its write pipeline, and
+ * records metrics about the pipeline.
+ *
+ * <p>A fixed window always allows {@link #INITIAL_SIZE} batches. An adaptive window starts at the
+ * same size and grows by one batch for every write that is acknowledged within twice the lowest
+ * acknowledgement latency seen so far, up to {@link #MAX_ADAPTIVE_SIZE} batches. It is halved, but
+ * not below its initial size, whenever an acknowledgement takes more than four times the lowest
+ * latency or the write stream fails.
+ *
+ * <p>This class is not thread safe and should only be used from the worker AsyncQueue.
+ */
+public final class WritePipelineWindow {
+  private static final String LOG_TAG = "WritePipelineWindow";
+
+  /** The number of batches that are allowed in the write pipeline initially. */
+  static final int INITIAL_SIZE = 10;
+
+  /** The maximum number of batches that an adaptive window allows in the write pipeline. */
+  static final int MAX_ADAPTIVE_SIZE = 100;
+
+  /** Latency differences below this threshold are attributed to jitter rather than congestion. */
+  private static final long LATENCY_TOLERANCE_MS = 50;
+
+  private final boolean adaptive;
+  private int size = INITIAL_SIZE;
+
+  /** The times at which the unacknowledged write requests were sent, in the order sent. */
+  private final Deque<Long> requestSendTimesMs = new ArrayDeque<>();
+
+  private long minAckLatencyMs = Long.MAX_VALUE;
+  private long smoothedAckLatencyMs = -1;
+
+  private int queueDepth = 0;
+  private int peakQueueDepth = 0;
+  private long drainStartTimeMs = 0;
+  private long lastDrainDurationMs = -1;
+
+  WritePipelineWindow(boolean adaptive) {
+    this.adaptive = adaptive;
+  }
+
+  /** Returns whether the window adapts to the observed acknowledgement latency. */
+  public boolean isAdaptive() {
+    return adaptive;
+  }
+
+  /** Returns the number of batches that are currently allowed in the write pipeline. */
+  public int getSize() {
+    return size;
+  }
+
+  /** Returns the number of batches in the write pipeline. */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /** Returns the largest number of batches that were in the write pipeline at the same time. */
+  public int getPeakQueueDepth() {
+    return peakQueueDepth;
+  }
+
+  /**
+   * Returns the exponentially smoothed latency between sending a write request and receiving its
+   * acknowledgement, or -1 if no write has been acknowledged yet.
+   */
+  public long getSmoothedAckLatencyMs() {
+    return smoothedAckLatencyMs;
+  }
+
+  /**
+   * Returns how long it took to drain the write pipeline the last time it went from non-empty to
+   * empty, or -1 if it has not been drained yet.
+   */
+  public long getLastDrainDurationMs() {
+    return lastDrainDurationMs;
+  }
+
+  /** Records that a write request was sent on the write stream. */
+  void onRequestSent(long nowMs) {
+    requestSendTimesMs.add(nowMs);
+  }
+
+  /** Records that the oldest unacknowledged write request was acknowledged. */
+  void onRequestAcknowledged(long nowMs) {
+    Long sendTimeMs = requestSendTimesMs.poll();
+    if (sendTimeMs == null) {
+      return;
+    }
+
+    long latencyMs = nowMs - sendTimeMs;
+    smoothedAckLatencyMs =
+        smoothedAckLatencyMs < 0 ? latencyMs : (7 * smoothedAckLatencyMs + latencyMs) / 8;
+    minAckLatencyMs = Math.min(minAckLatencyMs, latencyMs);
+
+    if (!adaptive) {
+      return;
+    }
+    if (latencyMs <= 2 * minAckLatencyMs + LATENCY_TOLERANCE_MS) {
+      size = Math.min(MAX_ADAPTIVE_SIZE, size + 1);
+    } else if (latencyMs > 4 * minAckLatencyMs + LATENCY_TOLERANCE_MS) {
+      shrink();
+    }
+  }
+
+  /**
+   * Records that a new write stream was established. All pending requests are resent on the new
+   * stream.
+   */
+  void onStreamRestarted() {
+    requestSendTimesMs.clear();
+  }
+
+  /** Records that the write stream failed. */
+  void onStreamError() {
+    requestSendTimesMs.clear();
+    if (adaptive) {
+      shrink();
+    }
+  }
+
+  /** Records the number of batches in the write pipeline. */
+  void onQueueDepthChanged(int depth, long nowMs) {
+    if (queueDepth == 0 && depth > 0) {
+      drainStartTimeMs = nowMs;
+    } else if (queueDepth > 0 && depth == 0) {
+      lastDrainDurationMs = nowMs - drainStartTimeMs;
+      Logger.debug(
+          LOG_TAG,
+          "Drained write pipeline in %s ms (peak depth: %s, window size: %s)",
+          lastDrainDurationMs,
+          peakQueueDepth,
+          size);
+    }
+    queueDepth = depth;
+    peakQueueDepth = Math.max(peakQueueDepth, depth);
+  }
+
+  private void shrink() {
+    size = Math.max(INITIAL_SIZE, size / 2);
+  }
+}
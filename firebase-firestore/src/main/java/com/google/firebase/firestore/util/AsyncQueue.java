@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -40,11 +41,18 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.CheckReturnValue;
 
 /** A helper class that allows to schedule/queue Runnables on a single threaded background queue. */
 public class AsyncQueue {
 
+  /**
+   * The label that is reported to task observers for tasks that were enqueued without a label,
+   * such as callbacks that run on the {@link #getExecutor() executor}.
+   */
+  public static final String UNLABELED_TASK = "Unlabeled";
+
   /**
    * Well-known "timer" IDs used when scheduling delayed tasks on the AsyncQueue. These IDs can then
    * be used from tests to check for the presence of tasks or to run them early.
@@ -84,7 +92,32 @@ public class AsyncQueue {
     CONNECTIVITY_ATTEMPT_TIMER,
 
     /** A timer used to periodically attempt index backfill. */
-    INDEX_BACKFILL
+    INDEX_BACKFILL,
+
+    /**
+     * A timer used by EventManager to raise the changes that a QueryListener coalesced. Since
+     * every listener has its own window, multiple of these may be in the queue at a given time.
+     */
+    SNAPSHOT_COALESCING
+  }
+
+  /**
+   * Receives timing information about the tasks that run on an AsyncQueue. Observers are only
+   * called for tasks that were enqueued while at least one observer was registered.
+   */
+  public interface TaskObserver {
+    /**
+     * Called on the AsyncQueue thread after a task has run.
+     *
+     * @param label The name of the TimerId for delayed tasks. For all other tasks, the label that
+     *     was passed when the task was enqueued, or {@link #UNLABELED_TASK}.
+     * @param queueTimeMs The time between enqueueing the task, or the end of its delay, and the
+     *     start of the task.
+     * @param runTimeMs The time it took to run the task.
+     * @param queueDepth The number of observed tasks that were still waiting to run when the task
+     *     started.
+     */
+    void onTaskCompleted(String label, long queueTimeMs, long runTimeMs, int queueDepth);
   }
 
   /**
@@ -141,7 +174,20 @@ public class AsyncQueue {
       verifyIsCurrentThread();
       if (scheduledFuture != null) {
         markDone();
-        task.run();
+        if (taskObservers.isEmpty()) {
+          task.run();
+          return;
+        }
+
+        long queueTimeMs = Math.max(0, System.currentTimeMillis() - targetTimeMs);
+        int queueDepth = pendingObservedTasks.get();
+        long startTimeNanos = System.nanoTime();
+        try {
+          task.run();
+        } finally {
+          notifyTaskObservers(
+              timerId.name(), queueTimeMs, elapsedMillis(startTimeNanos), queueDepth);
+        }
       }
     }
 
@@ -294,16 +340,24 @@ public class AsyncQueue {
      * executed.
      */
     @Override
-    public synchronized void execute(Runnable command) {
+    public void execute(Runnable command) {
+      execute(UNLABELED_TASK, command);
+    }
+
+    /**
+     * Same as {@link #execute(Runnable)}, but reports the command to the task observers with the
+     * given label.
+     */
+    private synchronized void execute(String label, Runnable command) {
       if (!isShuttingDown) {
-        internalExecutor.execute(command);
+        executeObserved(label, command);
       }
     }
 
     /** Execute the command, regardless if shutdown has been initiated. */
-    public void executeEvenAfterShutdown(Runnable command) {
+    public void executeEvenAfterShutdown(String label, Runnable command) {
       try {
-        internalExecutor.execute(command);
+        executeObserved(label, command);
       } catch (RejectedExecutionException e) {
         // The only way we can get here is if the AsyncQueue has panicked and we're now racing with
         // the post to the main looper that will crash the app.
@@ -315,13 +369,15 @@ public class AsyncQueue {
      * Run a given `Callable` on this executor, and report the result of the `Callable` in a {@link
      * Task}. The `Callable` will not be run if the executor started shutting down already.
      *
+     * @param label The label that is reported to the task observers.
      * @return A {@link Task} resolves when the requested `Callable` completes, or reports error
      *     when the `Callable` runs into exceptions.
      */
-    private <T> Task<T> executeAndReportResult(Callable<T> task) {
+    private <T> Task<T> executeAndReportResult(String label, Callable<T> task) {
       final TaskCompletionSource<T> completionSource = new TaskCompletionSource<>();
       try {
         this.execute(
+            label,
             () -> {
               try {
                 completionSource.setResult(task.call());
@@ -352,6 +408,7 @@ public class AsyncQueue {
       // Not shutting down yet, execute and return a Task.
       Task<Void> t =
           executeAndReportResult(
+              "Shut down",
               () -> {
                 task.run();
                 return null;
@@ -374,6 +431,23 @@ public class AsyncQueue {
       return null;
     }
 
+    /**
+     * Executes the command on the internal executor and reports it to the task observers with the
+     * given label.
+     */
+    private void executeObserved(String label, Runnable command) {
+      Runnable observedCommand = observe(label, command);
+      try {
+        internalExecutor.execute(observedCommand);
+      } catch (RejectedExecutionException e) {
+        if (observedCommand != command) {
+          // The command never runs, so it must not count towards the queue depth.
+          pendingObservedTasks.decrementAndGet();
+        }
+        throw e;
+      }
+    }
+
     /** Wraps around {@link ScheduledThreadPoolExecutor#shutdownNow()}. */
     private void shutdownNow() {
       internalExecutor.shutdownNow();
@@ -396,6 +470,11 @@ public class AsyncQueue {
   // List of TimerIds to fast-forward delays for.
   private final ArrayList<TimerId> timerIdsToSkip = new ArrayList<>();
 
+  private final CopyOnWriteArrayList<TaskObserver> taskObservers = new CopyOnWriteArrayList<>();
+
+  // The number of observed tasks that have been enqueued but have not started yet.
+  private final AtomicInteger pendingObservedTasks = new AtomicInteger();
+
   public AsyncQueue() {
     delayedTasks = new ArrayList<>();
     executor = new SynchronizedShutdownAwareExecutor();
@@ -425,7 +504,16 @@ public class AsyncQueue {
    */
   @CheckReturnValue
   public <T> Task<T> enqueue(Callable<T> task) {
-    return executor.executeAndReportResult(task);
+    return enqueue(UNLABELED_TASK, task);
+  }
+
+  /**
+   * Same as {@link #enqueue(Callable)}, but reports the task to the task observers with the given
+   * label.
+   */
+  @CheckReturnValue
+  public <T> Task<T> enqueue(String label, Callable<T> task) {
+    return executor.executeAndReportResult(label, task);
   }
 
   /**
@@ -436,7 +524,17 @@ public class AsyncQueue {
    */
   @CheckReturnValue
   public Task<Void> enqueue(Runnable task) {
-    return enqueue(
+    return enqueue(UNLABELED_TASK, task);
+  }
+
+  /**
+   * Same as {@link #enqueue(Runnable)}, but reports the task to the task observers with the given
+   * label.
+   */
+  @CheckReturnValue
+  public Task<Void> enqueue(String label, Runnable task) {
+    return executor.executeAndReportResult(
+        label,
         () -> {
           task.run();
           return null;
@@ -457,7 +555,15 @@ public class AsyncQueue {
    * if shutdown has been initiated.
    */
   public void enqueueAndForgetEvenAfterShutdown(Runnable task) {
-    executor.executeEvenAfterShutdown(task);
+    enqueueAndForgetEvenAfterShutdown(UNLABELED_TASK, task);
+  }
+
+  /**
+   * Same as {@link #enqueueAndForgetEvenAfterShutdown(Runnable)}, but reports the task to the task
+   * observers with the given label.
+   */
+  public void enqueueAndForgetEvenAfterShutdown(String label, Runnable task) {
+    executor.executeEvenAfterShutdown(label, task);
   }
 
   /** Has the shutdown process been initiated. */
@@ -477,6 +583,15 @@ public class AsyncQueue {
     enqueue(task);
   }
 
+  /**
+   * Same as {@link #enqueueAndForget(Runnable)}, but reports the task to the task observers with
+   * the given label.
+   */
+  @SuppressWarnings({"CheckReturnValue", "ResultOfMethodCallIgnored"})
+  public void enqueueAndForget(String label, Runnable task) {
+    enqueue(label, task);
+  }
+
   /**
    * Schedule a task after the specified delay.
    *
@@ -630,6 +745,56 @@ public class AsyncQueue {
     return delayedTask;
   }
 
+  /**
+   * Registers an observer that is notified after every task that runs on this queue. This adds a
+   * small overhead to every task, so observers should only be registered while they are needed.
+   */
+  public void addTaskObserver(TaskObserver observer) {
+    taskObservers.add(observer);
+  }
+
+  /** Removes an observer that was registered with {@link #addTaskObserver}. */
+  public void removeTaskObserver(TaskObserver observer) {
+    taskObservers.remove(observer);
+  }
+
+  /**
+   * Wraps the given command so that it reports its timing to the task observers, or returns the
+   * command itself if there are no observers. The wrapped command counts towards the queue depth
+   * until it starts.
+   */
+  private Runnable observe(String label, Runnable command) {
+    if (taskObservers.isEmpty()) {
+      return command;
+    }
+
+    long enqueueTimeNanos = System.nanoTime();
+    pendingObservedTasks.incrementAndGet();
+    return () -> {
+      long startTimeNanos = System.nanoTime();
+      int queueDepth = pendingObservedTasks.decrementAndGet();
+      try {
+        command.run();
+      } finally {
+        notifyTaskObservers(
+            label,
+            TimeUnit.NANOSECONDS.toMillis(startTimeNanos - enqueueTimeNanos),
+            elapsedMillis(startTimeNanos),
+            queueDepth);
+      }
+    };
+  }
+
+  private void notifyTaskObservers(String label, long queueTimeMs, long runTimeMs, int queueDepth) {
+    for (TaskObserver observer : taskObservers) {
+      observer.onTaskCompleted(label, queueTimeMs, runTimeMs, queueDepth);
+    }
+  }
+
+  private static long elapsedMillis(long startTimeNanos) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos);
+  }
+
   /** Called by DelayedTask to remove itself from our list of pending delayed tasks. */
   private void removeDelayedTask(DelayedTask task) {
     boolean found = delayedTasks.remove(task);
@@ -17,6 +17,7 @@ package com.google.firebase.firestore.util;
 import static com.google.firebase.firestore.util.ApiUtil.invoke;
 import static com.google.firebase.firestore.util.ApiUtil.newInstance;
 
+import androidx.annotation.Nullable;
 import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.Blob;
 import com.google.firebase.firestore.DocumentId;
@@ -28,6 +29,8 @@ import com.google.firebase.firestore.IgnoreExtraProperties;
 import com.google.firebase.firestore.PropertyName;
 import com.google.firebase.firestore.ServerTimestamp;
 import com.google.firebase.firestore.ThrowOnExtraProperties;
+import com.google.firebase.firestore.util.GeneratedBeanMapper.Getter;
+import com.google.firebase.firestore.util.GeneratedBeanMapper.Setter;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -132,7 +135,7 @@ public class CustomClassMapper {
     } else if (o instanceof Character) {
       throw serializeError(path, "Characters are not supported, please use Strings");
     } else if (o instanceof Map) {
-      Map<String, Object> result = new HashMap<>();
+      Map<String, Object> result = new HashMap<>(mapCapacity(((Map<?, ?>) o).size()));
       for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) o).entrySet()) {
         Object key = entry.getKey();
         if (key instanceof String) {
@@ -219,13 +222,15 @@ public class CustomClassMapper {
   private static <T> T deserializeToClass(Object o, Class<T> clazz, DeserializeContext context) {
     if (o == null) {
       return null;
+    } else if (clazz == String.class) {
+      // String and the boxed primitives are final, so identity checks are sufficient here and
+      // avoid walking the class hierarchy for the most common property types.
+      return (T) convertString(o, context);
     } else if (clazz.isPrimitive()
         || Number.class.isAssignableFrom(clazz)
-        || Boolean.class.isAssignableFrom(clazz)
-        || Character.class.isAssignableFrom(clazz)) {
+        || clazz == Boolean.class
+        || clazz == Character.class) {
       return deserializeToPrimitive(o, clazz, context);
-    } else if (String.class.isAssignableFrom(clazz)) {
-      return (T) convertString(o, context);
     } else if (Date.class.isAssignableFrom(clazz)) {
       return (T) convertDate(o, context);
     } else if (Timestamp.class.isAssignableFrom(clazz)) {
@@ -284,7 +289,7 @@ public class CustomClassMapper {
             "Only Maps with string keys are supported, but found Map with key type " + keyType);
       }
       Map<String, Object> map = expectMap(o, context);
-      HashMap<String, Object> result = new HashMap<>();
+      HashMap<String, Object> result = new HashMap<>(mapCapacity(map.size()));
       for (Map.Entry<String, Object> entry : map.entrySet()) {
         result.put(
             entry.getKey(),
@@ -316,15 +321,15 @@ public class CustomClassMapper {
   @SuppressWarnings("unchecked")
   private static <T> T deserializeToPrimitive(
       Object o, Class<T> clazz, DeserializeContext context) {
-    if (Integer.class.isAssignableFrom(clazz) || int.class.isAssignableFrom(clazz)) {
+    if (clazz == Integer.class || clazz == int.class) {
       return (T) convertInteger(o, context);
-    } else if (Boolean.class.isAssignableFrom(clazz) || boolean.class.isAssignableFrom(clazz)) {
+    } else if (clazz == Boolean.class || clazz == boolean.class) {
       return (T) convertBoolean(o, context);
-    } else if (Double.class.isAssignableFrom(clazz) || double.class.isAssignableFrom(clazz)) {
+    } else if (clazz == Double.class || clazz == double.class) {
       return (T) convertDouble(o, context);
-    } else if (Long.class.isAssignableFrom(clazz) || long.class.isAssignableFrom(clazz)) {
+    } else if (clazz == Long.class || clazz == long.class) {
       return (T) convertLong(o, context);
-    } else if (Float.class.isAssignableFrom(clazz) || float.class.isAssignableFrom(clazz)) {
+    } else if (clazz == Float.class || clazz == float.class) {
       return (T) (Float) convertDouble(o, context).floatValue();
     } else {
       throw deserializeError(
@@ -547,6 +552,11 @@ public class CustomClassMapper {
     }
   }
 
+  /** Returns the initial capacity of a HashMap that holds {@code size} entries without resizing. */
+  private static int mapCapacity(int size) {
+    return size < 3 ? size + 1 : (int) (size / 0.75f + 1.0f);
+  }
+
   private static IllegalArgumentException serializeError(ErrorPath path, String reason) {
     reason = "Could not serialize object. " + reason;
     if (path.getLength() > 0) {
@@ -593,6 +603,18 @@ public class CustomClassMapper {
     // serialization.
     private final HashSet<String> documentIdPropertyNames;
 
+    // The declared types of setter parameters and fields by property name, resolved once so that
+    // deserialization does not need to copy them out of the reflection objects for every value.
+    private final Map<String, Type> setterTypes;
+    private final Map<String, Type> fieldTypes;
+
+    // Accessors generated by the Firestore annotation processor, if it ran on this class. Only
+    // properties whose getter, setter or field has a generated accessor have an entry here; all
+    // other properties are read and written reflectively.
+    @Nullable private final GeneratedBeanMapper<T> generatedMapper;
+    private final Map<String, Getter<T>> generatedGetters;
+    private final Map<String, Setter<T>> generatedSetters;
+
     BeanMapper(Class<T> clazz) {
       this.clazz = clazz;
       throwOnUnknownProperties = clazz.isAnnotationPresent(ThrowOnExtraProperties.class);
@@ -725,6 +747,90 @@ public class CustomClassMapper {
                   + " but no field or public setter was found");
         }
       }
+
+      setterTypes = new HashMap<>();
+      for (Map.Entry<String, Method> entry : setters.entrySet()) {
+        setterTypes.put(entry.getKey(), entry.getValue().getGenericParameterTypes()[0]);
+      }
+      fieldTypes = new HashMap<>();
+      for (Map.Entry<String, Field> entry : fields.entrySet()) {
+        fieldTypes.put(entry.getKey(), entry.getValue().getGenericType());
+      }
+
+      generatedMapper = loadGeneratedMapper(clazz);
+      generatedGetters = new HashMap<>();
+      generatedSetters = new HashMap<>();
+      if (generatedMapper != null) {
+        Map<String, Getter<T>> memberGetters = generatedMapper.getters();
+        Map<String, Setter<T>> memberSetters = generatedMapper.setters();
+        for (String property : properties.values()) {
+          // Mirror the lookup order of serialize() and deserialize(): methods take precedence
+          // over fields.
+          Method getter = getters.get(property);
+          Method setter = setters.get(property);
+          Field field = fields.get(property);
+          String fieldKey =
+              field != null && field.getDeclaringClass() == clazz ? field.getName() : null;
+
+          Getter<T> generatedGetter =
+              getter != null
+                  ? memberGetters.get(getterKey(getter))
+                  : lookup(memberGetters, fieldKey);
+          if (generatedGetter != null) {
+            generatedGetters.put(property, generatedGetter);
+          }
+          Setter<T> generatedSetter =
+              setter != null
+                  ? memberSetters.get(setterKey(setter))
+                  : lookup(memberSetters, fieldKey);
+          if (generatedSetter != null) {
+            generatedSetters.put(property, generatedSetter);
+          }
+        }
+      }
+    }
+
+    /**
+     * Instantiates the class generated for {@code clazz} by the Firestore annotation processor, or
+     * returns {@code null} if there is none.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static <T> GeneratedBeanMapper<T> loadGeneratedMapper(Class<T> clazz) {
+      String className = clazz.getName();
+      int packageEnd = className.lastIndexOf('.') + 1;
+      String generatedName =
+          className.substring(0, packageEnd)
+              + className.substring(packageEnd).replace('$', '_')
+              + GeneratedBeanMapper.CLASS_NAME_SUFFIX;
+      Class<?> generatedClass;
+      try {
+        generatedClass =
+            Class.forName(generatedName, /* initialize= */ true, clazz.getClassLoader());
+      } catch (ClassNotFoundException e) {
+        return null;
+      }
+      if (!GeneratedBeanMapper.class.isAssignableFrom(generatedClass)) {
+        return null;
+      }
+      try {
+        return (GeneratedBeanMapper<T>) newInstance(generatedClass.getConstructor());
+      } catch (NoSuchMethodException e) {
+        return null;
+      }
+    }
+
+    private static String getterKey(Method getter) {
+      return getter.getName() + "()";
+    }
+
+    private static String setterKey(Method setter) {
+      return setter.getName() + "(" + setter.getParameterTypes()[0].getName() + ")";
+    }
+
+    @Nullable
+    private static <V> V lookup(Map<String, V> map, @Nullable String key) {
+      return key != null ? map.get(key) : null;
     }
 
     private void addProperty(String property) {
@@ -754,35 +860,41 @@ public class CustomClassMapper {
                 + "sure these constructors are not stripped");
       }
 
-      T instance = newInstance(constructor);
-      HashSet<String> deserialzedProperties = new HashSet<>();
+      T instance = generatedMapper != null ? generatedMapper.newInstance() : null;
+      if (instance == null) {
+        instance = newInstance(constructor);
+      }
+      // Only needed to detect conflicts with @DocumentId properties.
+      HashSet<String> deserialzedProperties =
+          documentIdPropertyNames.isEmpty() ? null : new HashSet<>();
       for (Map.Entry<String, Object> entry : values.entrySet()) {
         String propertyName = entry.getKey();
-        ErrorPath childPath = context.errorPath.child(propertyName);
-        if (setters.containsKey(propertyName)) {
-          Method setter = setters.get(propertyName);
-          Type[] params = setter.getGenericParameterTypes();
-          if (params.length != 1) {
-            throw deserializeError(childPath, "Setter does not have exactly one parameter");
-          }
-          Type resolvedType = resolveType(params[0], types);
-          Object value =
-              CustomClassMapper.deserializeToType(
-                  entry.getValue(), resolvedType, context.newInstanceWithErrorPath(childPath));
-          invoke(setter, instance, value);
-          deserialzedProperties.add(propertyName);
-        } else if (fields.containsKey(propertyName)) {
-          Field field = fields.get(propertyName);
-          Type resolvedType = resolveType(field.getGenericType(), types);
+        Type propertyType = setterTypes.get(propertyName);
+        boolean isSetter = propertyType != null;
+        if (!isSetter) {
+          propertyType = fieldTypes.get(propertyName);
+        }
+        if (propertyType != null) {
+          ErrorPath childPath = context.errorPath.child(propertyName);
+          Type resolvedType = resolveType(propertyType, types);
           Object value =
               CustomClassMapper.deserializeToType(
                   entry.getValue(), resolvedType, context.newInstanceWithErrorPath(childPath));
-          try {
-            field.set(instance, value);
-          } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
+          Setter<T> generatedSetter = generatedSetters.get(propertyName);
+          if (generatedSetter != null) {
+            generatedSetter.set(instance, value);
+          } else if (isSetter) {
+            invoke(setters.get(propertyName), instance, value);
+          } else {
+            try {
+              fields.get(propertyName).set(instance, value);
+            } catch (IllegalAccessException e) {
+              throw new RuntimeException(e);
+            }
+          }
+          if (deserialzedProperties != null) {
+            deserialzedProperties.add(propertyName);
           }
-          deserialzedProperties.add(propertyName);
         } else {
           String message =
               "No setter/field for " + propertyName + " found on class " + clazz.getName();
@@ -808,9 +920,9 @@ public class CustomClassMapper {
         Map<TypeVariable<Class<T>>, Type> types,
         DeserializeContext context,
         T instance,
-        HashSet<String> deserialzedProperties) {
+        @Nullable HashSet<String> deserialzedProperties) {
       for (String docIdPropertyName : documentIdPropertyNames) {
-        if (deserialzedProperties.contains(docIdPropertyName)) {
+        if (deserialzedProperties != null && deserialzedProperties.contains(docIdPropertyName)) {
           String message =
               "'"
                   + docIdPropertyName
@@ -820,27 +932,27 @@ public class CustomClassMapper {
                   + clazz.getName();
           throw new RuntimeException(message);
         }
-        ErrorPath childPath = context.errorPath.child(docIdPropertyName);
-        if (setters.containsKey(docIdPropertyName)) {
-          Method setter = setters.get(docIdPropertyName);
-          Type[] params = setter.getGenericParameterTypes();
-          if (params.length != 1) {
-            throw deserializeError(childPath, "Setter does not have exactly one parameter");
-          }
-          Type resolvedType = resolveType(params[0], types);
-          if (resolvedType == String.class) {
-            invoke(setter, instance, context.documentRef.getId());
-          } else {
-            invoke(setter, instance, context.documentRef);
-          }
+        Object value;
+        Type setterType = setterTypes.get(docIdPropertyName);
+        if (setterType != null) {
+          Type resolvedType = resolveType(setterType, types);
+          value =
+              resolvedType == String.class ? context.documentRef.getId() : context.documentRef;
+        } else {
+          value =
+              fields.get(docIdPropertyName).getType() == String.class
+                  ? context.documentRef.getId()
+                  : context.documentRef;
+        }
+
+        Setter<T> generatedSetter = generatedSetters.get(docIdPropertyName);
+        if (generatedSetter != null) {
+          generatedSetter.set(instance, value);
+        } else if (setterType != null) {
+          invoke(setters.get(docIdPropertyName), instance, value);
         } else {
-          Field docIdField = fields.get(docIdPropertyName);
           try {
-            if (docIdField.getType() == String.class) {
-              docIdField.set(instance, context.documentRef.getId());
-            } else {
-              docIdField.set(instance, context.documentRef);
-            }
+            fields.get(docIdPropertyName).set(instance, value);
           } catch (IllegalAccessException e) {
             throw new RuntimeException(e);
           }
@@ -870,7 +982,7 @@ public class CustomClassMapper {
                 + " with BeanMapper for class "
                 + clazz);
       }
-      Map<String, Object> result = new HashMap<>();
+      Map<String, Object> result = new HashMap<>(mapCapacity(properties.size()));
       for (String property : properties.values()) {
         // Skip @DocumentId annotated properties;
         if (documentIdPropertyNames.contains(property)) {
@@ -878,8 +990,11 @@ public class CustomClassMapper {
         }
 
         Object propertyValue;
-        if (getters.containsKey(property)) {
-          Method getter = getters.get(property);
+        Getter<T> generatedGetter = generatedGetters.get(property);
+        Method getter = getters.get(property);
+        if (generatedGetter != null) {
+          propertyValue = generatedGetter.get(object);
+        } else if (getter != null) {
           propertyValue = invoke(getter, object);
         } else {
           // Must be a field
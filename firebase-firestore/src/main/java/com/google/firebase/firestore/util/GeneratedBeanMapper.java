@@ -0,0 +1,67 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.util;
+
+import androidx.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Direct accessors for the members of a custom class, generated at compile time by the Firestore
+ * annotation processor.
+ *
+ * <p>For a class {@code com.example.Foo} (or {@code com.example.Outer.Foo}), the processor emits a
+ * {@code com.example.Foo_FirestoreMapper} (or {@code com.example.Outer_Foo_FirestoreMapper})
+ * implementing this interface with a public no-argument constructor. {@link CustomClassMapper}
+ * still discovers properties, annotations and types reflectively once per class, but reads and
+ * writes member values through these accessors instead of {@code Method.invoke} and {@code
+ * Field.set}. Members without a generated accessor, such as private fields, keep using reflection.
+ *
+ * <p>Accessors are keyed by member rather than by property name so that the processor does not
+ * need to replicate the mapper's property naming rules:
+ *
+ * <ul>
+ *   <li>fields declared on the class are keyed by their name, e.g. {@code "name"};
+ *   <li>getters are keyed by their name followed by {@code "()"}, e.g. {@code "getName()"};
+ *   <li>setters are keyed by their name followed by the {@link Class#getName() binary name} of the
+ *       erased parameter type in parentheses, e.g. {@code "setName(java.lang.String)"}.
+ * </ul>
+ */
+public interface GeneratedBeanMapper<T> {
+  /** Suffix appended to the flattened class name to form the name of the generated class. */
+  String CLASS_NAME_SUFFIX = "_FirestoreMapper";
+
+  /** Reads a member value of a custom object. */
+  interface Getter<T> {
+    Object get(T object);
+  }
+
+  /** Writes a member value of a custom object. */
+  interface Setter<T> {
+    void set(T object, Object value);
+  }
+
+  /**
+   * Creates a new instance of the class, or returns {@code null} if the class has no accessible
+   * no-argument constructor.
+   */
+  @Nullable
+  T newInstance();
+
+  /** Returns the getters of the class, keyed as described above. */
+  Map<String, Getter<T>> getters();
+
+  /** Returns the setters of the class, keyed as described above. */
+  Map<String, Setter<T>> setters();
+}
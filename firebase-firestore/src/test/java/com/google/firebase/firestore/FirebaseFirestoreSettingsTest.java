@@ -32,6 +32,7 @@ public class FirebaseFirestoreSettingsTest {
     assertEquals(settings.isSslEnabled(), true);
     assertEquals(settings.isPersistenceEnabled(), true);
     assertEquals(settings.getCacheSizeBytes(), 104857600L);
+    assertEquals(settings.getDocumentCacheSizeBytes(), 0L);
   }
 
   @Test
@@ -42,11 +43,13 @@ public class FirebaseFirestoreSettingsTest {
             .setSslEnabled(false)
             .setPersistenceEnabled(false)
             .setCacheSizeBytes(2000000L)
+            .setDocumentCacheSizeBytes(1000000L)
             .build();
     assertEquals(settings.getHost(), "a.b.c");
     assertEquals(settings.isSslEnabled(), false);
     assertEquals(settings.isPersistenceEnabled(), false);
     assertEquals(settings.getCacheSizeBytes(), 2000000L);
+    assertEquals(settings.getDocumentCacheSizeBytes(), 1000000L);
   }
 
   @Test
@@ -57,11 +60,13 @@ public class FirebaseFirestoreSettingsTest {
             .setSslEnabled(false)
             .setPersistenceEnabled(false)
             .setCacheSizeBytes(2000000L)
+            .setDocumentCacheSizeBytes(1000000L)
             .build();
     FirebaseFirestoreSettings settings2 = new FirebaseFirestoreSettings.Builder(settings1).build();
     assertEquals(settings2.getHost(), "a.b.c");
     assertEquals(settings2.isSslEnabled(), false);
     assertEquals(settings2.isPersistenceEnabled(), false);
     assertEquals(settings2.getCacheSizeBytes(), 2000000L);
+    assertEquals(settings2.getDocumentCacheSizeBytes(), 1000000L);
   }
 }
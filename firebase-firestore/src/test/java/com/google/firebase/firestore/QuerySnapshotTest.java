@@ -14,6 +14,7 @@
 
 package com.google.firebase.firestore;
 
+import static com.google.firebase.firestore.testutil.Assert.assertThrows;
 import static com.google.firebase.firestore.testutil.TestUtil.doc;
 import static com.google.firebase.firestore.testutil.TestUtil.docSet;
 import static com.google.firebase.firestore.testutil.TestUtil.keySet;
@@ -24,6 +25,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import com.google.firebase.Timestamp;
@@ -37,7 +39,14 @@ import com.google.firebase.firestore.model.ObjectValue;
 import com.google.firebase.firestore.model.ServerTimestamps;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
@@ -51,6 +60,44 @@ public class QuerySnapshotTest {
     public Date timestamp;
   }
 
+  public static class NumberPOJO {
+    @DocumentId public String id;
+    public long n;
+  }
+
+  /** A POJO whose constructor fails when it is called off the test's thread. */
+  public static class FailingOffThreadPOJO {
+    static volatile Thread testThread;
+
+    public long n;
+
+    public FailingOffThreadPOJO() {
+      if (Thread.currentThread() != testThread) {
+        throw new IllegalStateException("Failed on executor thread");
+      }
+    }
+  }
+
+  /**
+   * A POJO whose constructor interrupts the test's thread and then blocks until released when it
+   * is called off the test's thread.
+   */
+  public static class BlockingOffThreadPOJO {
+    static volatile Thread testThread;
+    static volatile CountDownLatch started;
+    static volatile CountDownLatch released;
+
+    public long n;
+
+    public BlockingOffThreadPOJO() throws InterruptedException {
+      if (Thread.currentThread() != testThread) {
+        started.countDown();
+        testThread.interrupt();
+        released.await();
+      }
+    }
+  }
+
   @Test
   public void testEquals() {
     ObjectValue firstValue = wrapObject("a", 1);
@@ -99,6 +146,115 @@ public class QuerySnapshotTest {
     assertNotNull(docs.get(0).timestamp);
   }
 
+  @Test
+  public void testToObjectsInParallel() {
+    Map<String, ObjectValue> docsToAdd = new HashMap<>();
+    for (int i = 0; i < 1000; ++i) {
+      docsToAdd.put(String.format(Locale.US, "doc%04d", i), wrapObject("n", i));
+    }
+    QuerySnapshot foo = TestUtil.querySnapshot("foo", map(), docsToAdd, false, false);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    List<NumberPOJO> docs =
+        foo.toObjects(NumberPOJO.class, ServerTimestampBehavior.DEFAULT, executor);
+    executor.shutdown();
+
+    assertEquals(1000, docs.size());
+    for (int i = 0; i < 1000; ++i) {
+      assertEquals(String.format(Locale.US, "doc%04d", i), docs.get(i).id);
+      assertEquals(i, docs.get(i).n);
+    }
+  }
+
+  @Test
+  public void testToObjectsDoesNotWaitForUnstartedTasks() {
+    Map<String, ObjectValue> docsToAdd = new HashMap<>();
+    for (int i = 0; i < 1000; ++i) {
+      docsToAdd.put(String.format(Locale.US, "doc%04d", i), wrapObject("n", i));
+    }
+    QuerySnapshot foo = TestUtil.querySnapshot("foo", map(), docsToAdd, false, false);
+
+    // An executor that never runs its tasks leaves all chunks to the calling thread.
+    List<NumberPOJO> docs =
+        foo.toObjects(NumberPOJO.class, ServerTimestampBehavior.DEFAULT, task -> {});
+
+    assertEquals(1000, docs.size());
+    assertEquals(999, docs.get(999).n);
+  }
+
+  @Test
+  public void testToObjectsRethrowsErrorsFromExecutorThreads() {
+    Map<String, ObjectValue> docsToAdd = new HashMap<>();
+    for (int i = 0; i < 1000; ++i) {
+      docsToAdd.put(String.format(Locale.US, "doc%04d", i), wrapObject("n", i));
+    }
+    QuerySnapshot foo = TestUtil.querySnapshot("foo", map(), docsToAdd, false, false);
+    FailingOffThreadPOJO.testThread = Thread.currentThread();
+
+    // The first task converts all chunks on another thread before the calling thread gets to
+    // them.
+    Executor offThreadExecutor =
+        task -> {
+          Thread thread = new Thread(task);
+          thread.start();
+          try {
+            thread.join();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+        };
+
+    RuntimeException e =
+        assertThrows(
+            RuntimeException.class,
+            () ->
+                foo.toObjects(
+                    FailingOffThreadPOJO.class,
+                    ServerTimestampBehavior.DEFAULT,
+                    offThreadExecutor));
+    Throwable cause = e;
+    while (cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    assertEquals("Failed on executor thread", cause.getMessage());
+  }
+
+  @Test
+  public void testToObjectsPreservesInterruptWhileWaiting() {
+    Map<String, ObjectValue> docsToAdd = new HashMap<>();
+    for (int i = 0; i < 1000; ++i) {
+      docsToAdd.put(String.format(Locale.US, "doc%04d", i), wrapObject("n", i));
+    }
+    QuerySnapshot foo = TestUtil.querySnapshot("foo", map(), docsToAdd, false, false);
+    BlockingOffThreadPOJO.testThread = Thread.currentThread();
+    BlockingOffThreadPOJO.started = new CountDownLatch(1);
+    BlockingOffThreadPOJO.released = new CountDownLatch(1);
+
+    // Only the first task is run. It holds on to its chunk, so the calling thread has to wait for
+    // it.
+    Executor executor =
+        task -> {
+          if (BlockingOffThreadPOJO.started.getCount() == 0) {
+            return;
+          }
+          new Thread(task).start();
+          while (BlockingOffThreadPOJO.started.getCount() > 0) {
+            Thread.yield();
+          }
+        };
+
+    try {
+      assertThrows(
+          IllegalStateException.class,
+          () ->
+              foo.toObjects(
+                  BlockingOffThreadPOJO.class, ServerTimestampBehavior.DEFAULT, executor));
+      assertTrue(Thread.interrupted());
+    } finally {
+      BlockingOffThreadPOJO.released.countDown();
+    }
+  }
+
   @Test
   public void testIncludeMetadataChanges() {
     MutableDocument doc1Old = doc("foo/bar", 1, wrapObject("a", "b")).setHasLocalMutations();
@@ -22,6 +22,7 @@ import static com.google.firebase.firestore.testutil.TestUtil.map;
 import static com.google.firebase.firestore.testutil.TestUtil.query;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.firebase.Timestamp;
@@ -33,9 +34,12 @@ import com.google.firebase.firestore.model.Document;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.MutableDocument;
 import com.google.firebase.firestore.model.SnapshotVersion;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.junit.Before;
@@ -52,11 +56,15 @@ public class BundleLoaderTest {
   private final BundleCallback bundleCallback;
 
   private final Set<DocumentKey> lastDocuments;
+  private final List<Integer> chunkSizes;
+  private final List<Boolean> firstChunkFlags;
   private final Map<String, ImmutableSortedSet<DocumentKey>> lastQueries;
   private final Map<String, BundleMetadata> lastBundles;
 
   public BundleLoaderTest() {
     lastDocuments = new HashSet<>();
+    chunkSizes = new ArrayList<>();
+    firstChunkFlags = new ArrayList<>();
     lastQueries = new HashMap<>();
     lastBundles = new HashMap<>();
 
@@ -65,8 +73,12 @@ public class BundleLoaderTest {
 
           @Override
           public ImmutableSortedMap<DocumentKey, Document> applyBundledDocuments(
-              ImmutableSortedMap<DocumentKey, MutableDocument> documents, String bundleId) {
+              ImmutableSortedMap<DocumentKey, MutableDocument> documents,
+              String bundleId,
+              boolean isFirstChunk) {
             documents.forEach(entry -> lastDocuments.add(entry.getKey()));
+            chunkSizes.add(documents.size());
+            firstChunkFlags.add(isFirstChunk);
             return emptyDocumentMap();
           }
 
@@ -86,6 +98,8 @@ public class BundleLoaderTest {
   @Before
   public void before() {
     lastDocuments.clear();
+    chunkSizes.clear();
+    firstChunkFlags.clear();
     lastQueries.clear();
     lastBundles.clear();
   }
@@ -163,6 +177,37 @@ public class BundleLoaderTest {
     assertEquals(lastBundles.get("bundle-1"), createMetadata(/* documents= */ 1));
   }
 
+  @Test
+  public void testAppliesDocumentsInChunks() {
+    BundleLoader bundleLoader =
+        new BundleLoader(
+            bundleCallback, createMetadata(/* documents= */ 3), /* documentsPerChunk= */ 2);
+
+    for (int i = 1; i <= 3; ++i) {
+      bundleLoader.addElement(
+          new BundledDocumentMetadata(
+              key("coll/doc" + i), CREATE_TIME, /* exists= */ false, Collections.emptyList()),
+          /* byteSize= */ 3);
+      if (bundleLoader.hasFullChunk()) {
+        bundleLoader.applyDocuments();
+      }
+    }
+
+    assertEquals(Collections.singletonList(2), chunkSizes);
+    LoadBundleTaskProgress progress = bundleLoader.getProgress();
+    assertEquals(3, progress.getDocumentsLoaded());
+    assertEquals(2, progress.getDocumentsSaved());
+
+    bundleLoader.applyChanges();
+
+    assertEquals(Arrays.asList(2, 1), chunkSizes);
+    assertEquals(Arrays.asList(true, false), firstChunkFlags);
+    assertEquals(
+        new HashSet<>(Arrays.asList(key("coll/doc1"), key("coll/doc2"), key("coll/doc3"))),
+        lastDocuments);
+    assertEquals(lastBundles.get("bundle-1"), createMetadata(/* documents= */ 3));
+  }
+
   @Test
   public void testAppliesNamedQueries() {
     BundleLoader bundleLoader =
@@ -269,6 +314,34 @@ public class BundleLoaderTest {
     }
   }
 
+  @Test
+  public void testKeepsSavedChunksWhenLoadFails() {
+    BundleLoader bundleLoader =
+        new BundleLoader(
+            bundleCallback, createMetadata(/* documents= */ 4), /* documentsPerChunk= */ 2);
+
+    for (int i = 1; i <= 3; ++i) {
+      bundleLoader.addElement(
+          new BundledDocumentMetadata(
+              key("coll/doc" + i), CREATE_TIME, /* exists= */ false, Collections.emptyList()),
+          /* byteSize= */ 3);
+      if (bundleLoader.hasFullChunk()) {
+        bundleLoader.applyDocuments();
+      }
+    }
+
+    try {
+      bundleLoader.applyChanges();
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Expected 4 documents, but loaded 3.", e.getMessage());
+    }
+
+    // The first chunk remains saved, but the bundle is not marked as loaded.
+    assertEquals(new HashSet<>(Arrays.asList(key("coll/doc1"), key("coll/doc2"))), lastDocuments);
+    assertTrue(lastBundles.isEmpty());
+  }
+
   private BundleMetadata createMetadata(int documents) {
     return new BundleMetadata(
         "bundle-1", /* schemaVersion= */ 1, CREATE_TIME, documents, /* totalBytes= */ 10);
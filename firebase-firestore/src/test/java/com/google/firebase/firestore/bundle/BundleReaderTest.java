@@ -31,6 +31,9 @@ import com.google.firebase.firestore.model.SnapshotVersion;
 import com.google.firebase.firestore.remote.RemoteSerializer;
 import com.google.firestore.v1.Value;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -324,6 +327,128 @@ public class BundleReaderTest {
     assertEquals(DOC3, bundleElements.get(1));
   }
 
+  @Test
+  public void testReadsUnicodeUnquotedNames() throws IOException, JSONException {
+    String unquotedFields = "{ f\u00f6\u00f6: { stringValue: 'b\u00e4r' } }";
+    String quotedFields = "{ 'f\u00f6\u00f6': { stringValue: 'b\u00e4r' } }";
+    TestBundleBuilder bundleBuilder = new TestBundleBuilder(TEST_PROJECT);
+    String unquotedDocument =
+        bundleBuilder.addDocument(
+            "coll/doc1",
+            /* createTimeMicros= */ 1200000L,
+            /* updateTimeMicros= */ 30004000L,
+            unquotedFields);
+    String quotedDocument =
+        bundleBuilder.addDocument(
+            "coll/doc1",
+            /* createTimeMicros= */ 1200000L,
+            /* updateTimeMicros= */ 30004000L,
+            quotedFields);
+    String json =
+        bundleBuilder.build("bundle-1", /* createTimeMicros= */ 6000000L, /* version= */ 1);
+
+    BundleReader bundleReader =
+        new BundleReader(SERIALIZER, new ByteArrayInputStream(json.getBytes(UTF8_CHARSET)));
+
+    List<BundleElement> bundleElements =
+        verifyAllElements(bundleReader, unquotedDocument, quotedDocument);
+
+    BundleDocument expectedDocument =
+        new BundleDocument(
+            doc(
+                "coll/doc1",
+                30004000L,
+                ObjectValue.fromMap(
+                    map("f\u00f6\u00f6", Value.newBuilder().setStringValue("b\u00e4r").build()))));
+    assertEquals(expectedDocument, bundleElements.get(0));
+    assertEquals(expectedDocument, bundleElements.get(1));
+  }
+
+  @Test
+  public void testGrowsBufferForLargeElements() throws IOException, JSONException {
+    TestBundleBuilder bundleBuilder = new TestBundleBuilder(TEST_PROJECT);
+    String limitQuery = addLimitQuery(bundleBuilder);
+    String documentMetadata = addDoc1Metadata(bundleBuilder);
+    String document = addDoc1(bundleBuilder);
+    String bundle =
+        bundleBuilder.build("bundle-1", /* createTimeMicros= */ 6000000L, /* version= */ 1);
+
+    BundleReader bundleReader =
+        new BundleReader(
+            SERIALIZER,
+            new ByteArrayInputStream(bundle.getBytes(UTF8_CHARSET)),
+            /* bufferCapacity= */ 4);
+
+    List<BundleElement> bundleElements =
+        verifyAllElements(bundleReader, limitQuery, documentMetadata, document);
+
+    assertEquals(LIMIT_QUERY, bundleElements.get(0));
+    assertEquals(DOC1_METADATA, bundleElements.get(1));
+    assertEquals(DOC1, bundleElements.get(2));
+  }
+
+  @Test
+  public void testDecodesBatchesOfElementsInOrder() throws IOException, JSONException {
+    TestBundleBuilder bundleBuilder = new TestBundleBuilder(TEST_PROJECT);
+    for (int i = 0; i < 100; ++i) {
+      bundleBuilder.addDocumentMetadata(
+          "coll/doc" + i, /* readTimeMicros= */ 5600000L + i, /* exists= */ true);
+      bundleBuilder.addDocument(
+          "coll/doc" + i,
+          /* createTimeMicros= */ 1200000L,
+          /* updateTimeMicros= */ 30004000L + i,
+          String.format("{ foo: { integerValue: %s } }", i));
+    }
+    String bundle =
+        bundleBuilder.build("bundle-1", /* createTimeMicros= */ 6000000L, /* version= */ 1);
+
+    BundleReader sequentialReader =
+        new BundleReader(SERIALIZER, new ByteArrayInputStream(bundle.getBytes(UTF8_CHARSET)));
+    List<BundleElement> expectedElements = new ArrayList<>();
+    BundleElement element;
+    while ((element = sequentialReader.getNextElement()) != null) {
+      expectedElements.add(element);
+    }
+
+    BundleReader batchReader =
+        new BundleReader(SERIALIZER, new ByteArrayInputStream(bundle.getBytes(UTF8_CHARSET)));
+    List<BundleElement> actualElements = new ArrayList<>();
+    List<BundleElement> batch;
+    while (!(batch = batchReader.getNextElements(/* maxCount= */ 75)).isEmpty()) {
+      actualElements.addAll(batch);
+    }
+
+    assertEquals(200, expectedElements.size());
+    assertEquals(expectedElements, actualElements);
+    assertEquals(sequentialReader.getBytesRead(), batchReader.getBytesRead());
+  }
+
+  @Test
+  public void testReadsMemoryMappedFile() throws IOException, JSONException {
+    TestBundleBuilder bundleBuilder = new TestBundleBuilder(TEST_PROJECT);
+    String documentMetadata = addDoc3Metadata(bundleBuilder);
+    String document = addDoc3(bundleBuilder);
+    String bundle =
+        bundleBuilder.build("bundle-1", /* createTimeMicros= */ 6000000L, /* version= */ 1);
+
+    File file = File.createTempFile("bundle", ".json");
+    file.deleteOnExit();
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(bundle.getBytes(UTF8_CHARSET));
+    }
+
+    BundleReader bundleReader = new BundleReader(SERIALIZER, new FileInputStream(file));
+    try {
+      List<BundleElement> bundleElements =
+          verifyAllElements(bundleReader, documentMetadata, document);
+
+      assertEquals(DOC3_METADATA, bundleElements.get(0));
+      assertEquals(DOC3, bundleElements.get(1));
+    } finally {
+      bundleReader.close();
+    }
+  }
+
   private String addDeletedDocMetadata(TestBundleBuilder bundleBuilder) {
     return bundleBuilder.addDocumentMetadata(
         "coll/nodoc", /* readTimeMicros= */ 5000600L, /* exists= */ false);
@@ -37,6 +37,8 @@ import com.google.firestore.v1.Value;
 import com.google.protobuf.NullValue;
 import com.google.protobuf.Timestamp;
 import com.google.type.LatLng;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -669,6 +671,7 @@ public class BundleSerializerTest {
     BundledDocumentMetadata actualMetadata =
         serializer.decodeBundledDocumentMetadata(new JSONObject(json));
     assertEquals(expectedMetadata, actualMetadata);
+    assertEquals(expectedMetadata, serializer.decodeBundledDocumentMetadata(jsonReader(json)));
   }
 
   private void assertDecodesValue(String json, Value proto) throws JSONException {
@@ -697,6 +700,15 @@ public class BundleSerializerTest {
                         .build())));
 
     assertEquals(expectedDocument, actualDocument);
+    assertEquals(expectedDocument, serializer.decodeDocument(jsonReader(documentJson)));
+  }
+
+  /** Returns a reader for the JSON that JSONObject produces when re-encoding the given JSON. */
+  private static BundleJsonReader jsonReader(String json) throws JSONException {
+    byte[] bytes = new JSONObject(json).toString().getBytes(Charset.forName("UTF-8"));
+    BundleJsonReader reader = new BundleJsonReader();
+    reader.reset(ByteBuffer.wrap(bytes));
+    return reader;
   }
 
   private void assertDecodesNamedQuery(String json, Query query) throws JSONException {
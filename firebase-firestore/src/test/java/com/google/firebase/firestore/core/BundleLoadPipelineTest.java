@@ -0,0 +1,244 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.firestore.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.firebase.firestore.LoadBundleTask;
+import com.google.firebase.firestore.LoadBundleTaskProgress;
+import com.google.firebase.firestore.bundle.BundleElement;
+import com.google.firebase.firestore.bundle.BundleMetadata;
+import com.google.firebase.firestore.bundle.BundleReader;
+import com.google.firebase.firestore.bundle.BundleSerializer;
+import com.google.firebase.firestore.model.DatabaseId;
+import com.google.firebase.firestore.remote.RemoteSerializer;
+import com.google.firebase.firestore.util.AsyncQueue;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class BundleLoadPipelineTest {
+  private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+  private static final DatabaseId DATABASE_ID = DatabaseId.forProject("test-project");
+  private static final BundleSerializer SERIALIZER =
+      new BundleSerializer(new RemoteSerializer(DATABASE_ID));
+
+  private AsyncQueue asyncQueue;
+  private ExecutorService loaderExecutor;
+  private SyncEngine syncEngine;
+  private LoadBundleTask resultTask;
+
+  /** The sizes of the batches that were handed to the SyncEngine. */
+  private List<Integer> batchSizes;
+
+  private AtomicReference<Exception> failure;
+  private CountDownLatch taskCompleted;
+  private CountDownLatch bundleClosed;
+
+  @Before
+  public void setUp() {
+    asyncQueue = new AsyncQueue();
+    loaderExecutor = Executors.newSingleThreadExecutor();
+    syncEngine = mock(SyncEngine.class);
+    resultTask = new LoadBundleTask();
+    batchSizes = Collections.synchronizedList(new ArrayList<>());
+    failure = new AtomicReference<>();
+    taskCompleted = new CountDownLatch(1);
+    bundleClosed = new CountDownLatch(1);
+
+    AtomicReference<BundleMetadata> bundleMetadata = new AtomicReference<>();
+    doAnswer(
+            invocation -> {
+              bundleMetadata.set(invocation.getArgument(0));
+              return null;
+            })
+        .when(syncEngine)
+        .startBundleLoad(any(), any());
+    doAnswer(
+            invocation -> {
+              List<BundleElement> elements = invocation.getArgument(1);
+              batchSizes.add(elements.size());
+              return null;
+            })
+        .when(syncEngine)
+        .addBundleElements(any(), any(), anyLong(), any());
+    doAnswer(
+            invocation -> {
+              resultTask.setResult(LoadBundleTaskProgress.forSuccess(bundleMetadata.get()));
+              taskCompleted.countDown();
+              return null;
+            })
+        .when(syncEngine)
+        .completeBundleLoad(any(), any());
+    doAnswer(
+            invocation -> {
+              failure.set(invocation.getArgument(0));
+              resultTask.setException(invocation.getArgument(0));
+              taskCompleted.countDown();
+              return null;
+            })
+        .when(syncEngine)
+        .failBundleLoad(any(), any());
+  }
+
+  @After
+  public void tearDown() {
+    loaderExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testLoadsBundleInBatches() throws Exception {
+    startPipeline(bundleReader(/* documentCount= */ 600, /* invalidElement= */ -1));
+
+    awaitLatch(taskCompleted);
+    awaitLatch(bundleClosed);
+    assertTrue(resultTask.isSuccessful());
+    assertEquals(Arrays.asList(256, 256, 88), batchSizes);
+  }
+
+  @Test
+  public void testStalledAsyncQueueBoundsPendingBatches() throws Exception {
+    CountDownLatch unblockQueue = new CountDownLatch(1);
+    asyncQueue.enqueueAndForget(() -> awaitLatch(unblockQueue));
+
+    BundleReader bundleReader = bundleReader(/* documentCount= */ 2000, /* invalidElement= */ -1);
+    startPipeline(bundleReader);
+
+    // Give the loader time to read ahead. While the AsyncQueue is stalled, it can read at most one
+    // batch beyond the pending batches before it blocks.
+    Thread.sleep(500);
+    assertTrue(bundleReader.getBytesRead() < bundleSize(2000) / 2);
+    assertTrue(batchSizes.isEmpty());
+    assertFalse(resultTask.isComplete());
+
+    unblockQueue.countDown();
+    awaitLatch(taskCompleted);
+    assertTrue(resultTask.isSuccessful());
+    int documentsLoaded = 0;
+    for (int batchSize : batchSizes) {
+      documentsLoaded += batchSize;
+    }
+    assertEquals(2000, documentsLoaded);
+  }
+
+  @Test
+  public void testDecodeFailureFailsLoad() throws Exception {
+    startPipeline(bundleReader(/* documentCount= */ 600, /* invalidElement= */ 400));
+
+    awaitLatch(taskCompleted);
+    awaitLatch(bundleClosed);
+    assertFalse(resultTask.isSuccessful());
+    assertNotNull(failure.get());
+    // Only the batch before the invalid element was handed to the SyncEngine.
+    assertEquals(Collections.singletonList(256), batchSizes);
+    verify(syncEngine, never()).completeBundleLoad(any(), any());
+  }
+
+  @Test
+  public void testShutdownStopsLoad() throws Exception {
+    CountDownLatch unblockQueue = new CountDownLatch(1);
+    asyncQueue.enqueueAndForget(() -> awaitLatch(unblockQueue));
+
+    startPipeline(bundleReader(/* documentCount= */ 2000, /* invalidElement= */ -1));
+    asyncQueue.enqueueAndInitiateShutdown(() -> {});
+    unblockQueue.countDown();
+
+    // The loader stops reading the bundle and closes it, even though the steps that it would
+    // schedule next never run.
+    awaitLatch(bundleClosed);
+    verify(syncEngine, never()).completeBundleLoad(any(), any());
+    assertFalse(resultTask.isComplete());
+  }
+
+  private void startPipeline(BundleReader bundleReader) {
+    new BundleLoadPipeline(asyncQueue, () -> syncEngine, bundleReader, resultTask, loaderExecutor)
+        .start();
+  }
+
+  /**
+   * Returns a reader for a bundle with the given number of deleted documents. If {@code
+   * invalidElement} is not negative, the element at that index cannot be decoded.
+   */
+  private BundleReader bundleReader(int documentCount, int invalidElement) {
+    byte[] bundle = buildBundle(documentCount, invalidElement).getBytes(UTF8_CHARSET);
+    return new BundleReader(
+        SERIALIZER,
+        new ByteArrayInputStream(bundle) {
+          @Override
+          public void close() {
+            bundleClosed.countDown();
+          }
+        });
+  }
+
+  private long bundleSize(int documentCount) {
+    return buildBundle(documentCount, /* invalidElement= */ -1).getBytes(UTF8_CHARSET).length;
+  }
+
+  private static String buildBundle(int documentCount, int invalidElement) {
+    StringBuilder elements = new StringBuilder();
+    for (int i = 0; i < documentCount; ++i) {
+      String element =
+          i == invalidElement
+              ? "{ documentMetadata: { name: "
+              : String.format(
+                  "{ documentMetadata: { name: 'projects/%s/databases/%s/documents/coll/doc%s', "
+                      + "readTime: { seconds: 1, nanos: 0 }, exists: false } }",
+                  DATABASE_ID.getProjectId(), DATABASE_ID.getDatabaseId(), i);
+      elements.append(element.getBytes(UTF8_CHARSET).length).append(element);
+    }
+
+    String metadata =
+        String.format(
+            "{ metadata: { id: 'bundle-1', createTime: { seconds: 6, nanos: 0 }, version: 1, "
+                + "totalDocuments: %s, totalBytes: %s } }",
+            documentCount, elements.length());
+    return metadata.length() + metadata + elements;
+  }
+
+  private static void awaitLatch(CountDownLatch latch) {
+    try {
+      assertTrue("Timed out", latch.await(10, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -14,8 +14,13 @@
 
 package com.google.firebase.firestore.core;
 
+import static com.google.firebase.firestore.testutil.TestUtil.doc;
+import static com.google.firebase.firestore.testutil.TestUtil.docUpdates;
+import static com.google.firebase.firestore.testutil.TestUtil.map;
 import static com.google.firebase.firestore.testutil.TestUtil.path;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.inOrder;
@@ -26,6 +31,10 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.firebase.firestore.core.EventManager.ListenOptions;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.MutableDocument;
+import com.google.firebase.firestore.util.AsyncQueue;
+import com.google.firebase.firestore.util.AsyncQueue.TimerId;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -131,4 +140,41 @@ public class EventManagerTest {
     eventManager.handleOnlineStateChange(OnlineState.ONLINE);
     assertEquals(Arrays.asList(OnlineState.UNKNOWN, OnlineState.ONLINE), events);
   }
+
+  @Test
+  public void testRaisesCoalescedSnapshotsWhenWindowCloses() throws Exception {
+    Query query = Query.atPath(path("rooms"));
+    MutableDocument doc1 = doc("rooms/eros", 1, map("name", "eros"));
+    MutableDocument doc2 = doc("rooms/hades", 2, map("name", "hades"));
+    MutableDocument doc3 = doc("rooms/other", 3, map("name", "other"));
+
+    List<ViewSnapshot> events = new ArrayList<>();
+    ListenOptions options = new ListenOptions();
+    options.coalescingWindowMs = 100;
+    QueryListener listener =
+        new QueryListener(query, options, (value, error) -> events.add(value));
+
+    AsyncQueue asyncQueue = new AsyncQueue();
+    EventManager eventManager = new EventManager(mock(SyncEngine.class), asyncQueue);
+    View view = new View(query, DocumentKey.emptyKeySet());
+
+    asyncQueue.runSync(
+        () -> {
+          eventManager.addQueryListener(listener);
+          eventManager.onViewSnapshots(Arrays.asList(applyChanges(view, doc1)));
+          eventManager.onViewSnapshots(Arrays.asList(applyChanges(view, doc2)));
+          eventManager.onViewSnapshots(Arrays.asList(applyChanges(view, doc3)));
+        });
+    assertEquals(1, events.size());
+    assertTrue(asyncQueue.containsDelayedTask(TimerId.SNAPSHOT_COALESCING));
+
+    asyncQueue.runDelayedTasksUntil(TimerId.SNAPSHOT_COALESCING);
+    assertEquals(2, events.size());
+    assertEquals(2, events.get(1).getChanges().size());
+    assertFalse(asyncQueue.containsDelayedTask(TimerId.SNAPSHOT_COALESCING));
+  }
+
+  private static ViewSnapshot applyChanges(View view, MutableDocument... docs) {
+    return view.applyChanges(view.computeDocChanges(docUpdates(docs))).getSnapshot();
+  }
 }
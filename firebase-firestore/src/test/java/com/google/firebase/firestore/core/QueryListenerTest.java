@@ -15,12 +15,14 @@
 package com.google.firebase.firestore.core;
 
 import static com.google.firebase.firestore.testutil.TestUtil.ackTarget;
+import static com.google.firebase.firestore.testutil.TestUtil.deletedDoc;
 import static com.google.firebase.firestore.testutil.TestUtil.doc;
 import static com.google.firebase.firestore.testutil.TestUtil.docUpdates;
 import static com.google.firebase.firestore.testutil.TestUtil.map;
 import static com.google.firebase.firestore.testutil.TestUtil.path;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -449,6 +451,69 @@ public class QueryListenerTest {
     assertEquals(asList(expectedSnapshot), events);
   }
 
+  @Test
+  public void testMergesCoalescedSnapshots() {
+    List<ViewSnapshot> events = new ArrayList<>();
+    Query query = Query.atPath(path("rooms"));
+    MutableDocument doc1 = doc("rooms/eros", 1, map("name", "eros"));
+    MutableDocument doc2 = doc("rooms/hades", 2, map("name", "hades"));
+    MutableDocument doc2Prime = doc("rooms/hades", 3, map("name", "hades", "owner", "Jonny"));
+    MutableDocument doc3 = doc("rooms/other", 4, map("name", "other"));
+    ListenOptions options = new ListenOptions();
+    options.includeDocumentMetadataChanges = true;
+    options.includeQueryMetadataChanges = true;
+    options.coalescingWindowMs = 100;
+    QueryListener listener = queryListener(query, options, events);
+
+    View view = new View(query, DocumentKey.emptyKeySet());
+    ViewSnapshot snap1 = applyChanges(view, doc1, doc2);
+    ViewSnapshot snap2 = applyChanges(view, doc2Prime);
+    ViewSnapshot snap3 = applyChanges(view, doc3);
+
+    // The initial event is not coalesced.
+    assertFalse(listener.shouldCoalesce());
+    listener.onViewSnapshot(snap1);
+    assertTrue(listener.shouldCoalesce());
+
+    assertTrue(listener.coalesceViewSnapshot(snap2));
+    assertFalse(listener.coalesceViewSnapshot(snap3));
+    assertEquals(1, events.size());
+
+    assertTrue(listener.raiseCoalescedSnapshot());
+    ViewSnapshot expectedSnapshot =
+        new ViewSnapshot(
+            query,
+            snap3.getDocuments(),
+            snap2.getOldDocuments(),
+            asList(
+                DocumentViewChange.create(Type.ADDED, doc3),
+                DocumentViewChange.create(Type.MODIFIED, doc2Prime)),
+            snap3.isFromCache(),
+            snap3.getMutatedKeys(),
+            /* didSyncStateChange= */ false,
+            /* excludesMetadataChanges= */ false);
+    assertEquals(asList(snap1, expectedSnapshot), events);
+  }
+
+  @Test
+  public void testDoesNotRaiseCoalescedChangesThatCancelOut() {
+    List<ViewSnapshot> events = new ArrayList<>();
+    Query query = Query.atPath(path("rooms"));
+    MutableDocument doc1 = doc("rooms/eros", 1, map("name", "eros"));
+    MutableDocument doc2 = doc("rooms/hades", 2, map("name", "hades"));
+    ListenOptions options = new ListenOptions();
+    options.coalescingWindowMs = 100;
+    QueryListener listener = queryListener(query, options, events);
+
+    View view = new View(query, DocumentKey.emptyKeySet());
+    listener.onViewSnapshot(applyChanges(view, doc1));
+    listener.coalesceViewSnapshot(applyChanges(view, doc2));
+    listener.coalesceViewSnapshot(applyChanges(view, deletedDoc("rooms/hades", 3)));
+
+    assertFalse(listener.raiseCoalescedSnapshot());
+    assertEquals(1, events.size());
+  }
+
   private ViewSnapshot applyExpectedMetadata(ViewSnapshot snap, MetadataChanges metadata) {
     return new ViewSnapshot(
         snap.getQuery(),
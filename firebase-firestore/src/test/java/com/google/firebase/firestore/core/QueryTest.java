@@ -26,6 +26,9 @@ import static com.google.firebase.firestore.testutil.TestUtil.testEquality;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.google.firebase.Timestamp;
@@ -110,6 +113,37 @@ public class QueryTest {
     assertFalse(query2.matches(doc5));
   }
 
+  @Test
+  public void testMultipleFiltersOnSameField() {
+    Query query =
+        Query.atPath(ResourcePath.fromString("collection"))
+            .filter(filter("sort", ">", 1))
+            .filter(filter("sort", "<", 5))
+            .filter(filter("sort", "!=", 3));
+
+    assertFalse(query.matches(doc("collection/1", 0, map("sort", 1))));
+    assertTrue(query.matches(doc("collection/2", 0, map("sort", 2))));
+    assertTrue(query.matches(doc("collection/3", 0, map("sort", 2.5))));
+    assertFalse(query.matches(doc("collection/4", 0, map("sort", 3))));
+    assertFalse(query.matches(doc("collection/5", 0, map("sort", 3.0))));
+    assertFalse(query.matches(doc("collection/6", 0, map("sort", 5))));
+    assertFalse(query.matches(doc("collection/7", 0, map("sort", "4"))));
+    assertFalse(query.matches(doc("collection/8", 0, map("other", 4))));
+  }
+
+  @Test
+  public void testFiltersOnStringsAndBooleans() {
+    Query query =
+        Query.atPath(ResourcePath.fromString("collection"))
+            .filter(filter("name", ">=", "b"))
+            .filter(filter("active", "==", true));
+
+    assertFalse(query.matches(doc("collection/1", 0, map("name", "a", "active", true))));
+    assertTrue(query.matches(doc("collection/2", 0, map("name", "b", "active", true))));
+    assertFalse(query.matches(doc("collection/3", 0, map("name", "c", "active", false))));
+    assertFalse(query.matches(doc("collection/4", 0, map("name", "c", "active", 1))));
+  }
+
   @Test
   public void testArrayContainsFilters() {
     Query query =
@@ -565,6 +599,25 @@ public class QueryTest {
             asList(q7a.hashCode())));
   }
 
+  @Test
+  public void testEqualArrayFiltersShareValues() {
+    FieldFilter in1 = filter("a", "in", Arrays.asList(1, 2, 3));
+    FieldFilter in2 = filter("a", "in", Arrays.asList(1, 2, 3));
+    FieldFilter in3 = filter("a", "in", Arrays.asList(1, 2, 4));
+
+    assertSame(in1.getValue(), in2.getValue());
+    assertNotSame(in1.getValue(), in3.getValue());
+    assertEquals(in1, in2);
+    assertEquals(in1.hashCode(), in2.hashCode());
+    assertNotEquals(in1, in3);
+
+    Query query1 = Query.atPath(path("foo")).filter(in1);
+    Query query2 = Query.atPath(path("foo")).filter(in2);
+    assertEquals(query1, query2);
+    assertEquals(query1.hashCode(), query2.hashCode());
+    assertEquals(query1.getCanonicalId(), query2.getCanonicalId());
+  }
+
   @Test
   public void testImplicitOrderBy() {
     Query baseQuery = Query.atPath(path("foo"));
@@ -0,0 +1,79 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.firestore.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.firebase.firestore.model.FieldIndex;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class IndexByteEncoderPoolTest {
+  private final IndexByteEncoderPool pool = new IndexByteEncoderPool();
+
+  @Test
+  public void testReusesReleasedEncoders() {
+    IndexByteEncoder encoder = pool.acquire();
+    pool.release(encoder);
+    assertSame(encoder, pool.acquire());
+  }
+
+  @Test
+  public void testResetsReleasedEncoders() {
+    IndexByteEncoder encoder = pool.acquire();
+    encoder.forKind(FieldIndex.Segment.Kind.ASCENDING).writeString("foo");
+    pool.release(encoder);
+
+    IndexByteEncoder reused = pool.acquire();
+    assertSame(encoder, reused);
+    assertArrayEquals(new byte[0], reused.getEncodedBytes());
+  }
+
+  @Test
+  public void testKeepsAtMostSixteenEncoders() {
+    List<IndexByteEncoder> released = new ArrayList<>();
+    for (int i = 0; i < 17; ++i) {
+      released.add(pool.acquire());
+    }
+    pool.releaseAll(released);
+
+    List<IndexByteEncoder> reused = new ArrayList<>();
+    for (int i = 0; i < 16; ++i) {
+      IndexByteEncoder encoder = pool.acquire();
+      assertTrue(released.contains(encoder));
+      assertFalse(reused.contains(encoder));
+      reused.add(encoder);
+    }
+    assertFalse(released.contains(pool.acquire()));
+  }
+
+  @Test
+  public void testAcquiresNewEncoderWhenEmpty() {
+    IndexByteEncoder first = pool.acquire();
+    IndexByteEncoder second = pool.acquire();
+    assertNotSame(first, second);
+  }
+}
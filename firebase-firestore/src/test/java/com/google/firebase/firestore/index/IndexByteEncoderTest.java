@@ -0,0 +1,59 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.firestore.index;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import com.google.firebase.firestore.model.FieldIndex;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class IndexByteEncoderTest {
+
+  @Test
+  public void testSeedFromEncoderMatchesSeedFromBytes() {
+    IndexByteEncoder prefix = new IndexByteEncoder();
+    prefix.forKind(FieldIndex.Segment.Kind.ASCENDING).writeString("foo");
+    prefix.forKind(FieldIndex.Segment.Kind.DESCENDING).writeLong(42);
+
+    IndexByteEncoder seededFromEncoder = new IndexByteEncoder();
+    seededFromEncoder.seed(prefix);
+    seededFromEncoder.forKind(FieldIndex.Segment.Kind.ASCENDING).writeString("bar");
+
+    IndexByteEncoder seededFromBytes = new IndexByteEncoder();
+    seededFromBytes.seed(prefix.getEncodedBytes());
+    seededFromBytes.forKind(FieldIndex.Segment.Kind.ASCENDING).writeString("bar");
+
+    assertArrayEquals(seededFromBytes.getEncodedBytes(), seededFromEncoder.getEncodedBytes());
+  }
+
+  @Test
+  public void testSeedDoesNotModifyPrefix() {
+    IndexByteEncoder prefix = new IndexByteEncoder();
+    prefix.forKind(FieldIndex.Segment.Kind.ASCENDING).writeString("foo");
+    byte[] prefixBytes = prefix.getEncodedBytes();
+
+    IndexByteEncoder encoder = new IndexByteEncoder();
+    encoder.seed(prefix);
+    encoder.forKind(FieldIndex.Segment.Kind.ASCENDING).writeString("bar");
+
+    assertArrayEquals(prefixBytes, prefix.getEncodedBytes());
+  }
+}
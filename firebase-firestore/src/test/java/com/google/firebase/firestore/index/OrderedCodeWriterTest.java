@@ -0,0 +1,70 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.firestore.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class OrderedCodeWriterTest {
+
+  @Test
+  public void testResetKeepsRegularBuffers() {
+    OrderedCodeWriter writer = new OrderedCodeWriter();
+    writer.writeUtf8Ascending(repeat('a', 10_000));
+    int capacity = writer.getBufferCapacity();
+
+    writer.reset();
+    assertEquals(capacity, writer.getBufferCapacity());
+    assertArrayEquals(new byte[0], writer.encodedBytes());
+  }
+
+  @Test
+  public void testResetDropsLargeBuffers() {
+    OrderedCodeWriter writer = new OrderedCodeWriter();
+    int initialCapacity = writer.getBufferCapacity();
+    writer.writeUtf8Ascending(repeat('a', 100_000));
+
+    writer.reset();
+    assertEquals(initialCapacity, writer.getBufferCapacity());
+    assertArrayEquals(new byte[0], writer.encodedBytes());
+  }
+
+  @Test
+  public void testSeedsFromOtherWriter() {
+    OrderedCodeWriter prefix = new OrderedCodeWriter();
+    prefix.writeUtf8Ascending("foo");
+    prefix.writeSignedLongAscending(42);
+
+    OrderedCodeWriter writer = new OrderedCodeWriter();
+    writer.seed(prefix);
+    assertArrayEquals(prefix.encodedBytes(), writer.encodedBytes());
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder result = new StringBuilder(count);
+    for (int i = 0; i < count; ++i) {
+      result.append(c);
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,116 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.firestore.local;
+
+import static com.google.firebase.firestore.testutil.TestUtil.doc;
+import static com.google.firebase.firestore.testutil.TestUtil.key;
+import static com.google.firebase.firestore.testutil.TestUtil.map;
+import static com.google.firebase.firestore.testutil.TestUtil.path;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.firebase.firestore.model.DatabaseId;
+import com.google.firebase.firestore.model.Document;
+import com.google.firebase.firestore.remote.RemoteSerializer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public final class CompactDocumentStoreTest {
+  private final CompactDocumentStore store =
+      new CompactDocumentStore(
+          new LocalSerializer(new RemoteSerializer(DatabaseId.forProject("projectId"))));
+
+  @Test
+  public void testKeepsKeyOrderForOutOfOrderInserts() {
+    List<String> paths = new ArrayList<>();
+    for (int i = 0; i < 1000; ++i) {
+      paths.add(String.format(Locale.US, "coll/doc%04d", i));
+      if (i % 10 == 0) {
+        paths.add(String.format(Locale.US, "coll/doc%04d/sub/doc", i));
+      }
+    }
+    Collections.shuffle(paths, new Random(42));
+    for (String path : paths) {
+      store.put(doc(path, 1, map("path", path)));
+    }
+
+    Collections.sort(paths, (left, right) -> key(left).compareTo(key(right)));
+    assertEquals(paths, keysOf(store));
+
+    List<String> children = new ArrayList<>();
+    for (String path : paths) {
+      if (path.startsWith("coll/") && !path.contains("/sub/")) {
+        children.add(path);
+      }
+    }
+    assertEquals(children, keysOf(store.getCollection(path("coll"))));
+    assertEquals(
+        Collections.singletonList("coll/doc0500/sub/doc"),
+        keysOf(store.getCollection(path("coll/doc0500/sub"))));
+  }
+
+  @Test
+  public void testRemovesDocumentsAcrossChunks() {
+    List<String> paths = new ArrayList<>();
+    for (int i = 0; i < 1000; ++i) {
+      paths.add(String.format(Locale.US, "coll/doc%04d", i));
+    }
+    Collections.shuffle(paths, new Random(42));
+    for (String path : paths) {
+      store.put(doc(path, 1, map("path", path)));
+    }
+
+    List<String> removed = paths.subList(0, 900);
+    for (String path : removed) {
+      store.remove(key(path));
+    }
+
+    List<String> remaining = new ArrayList<>(paths.subList(900, paths.size()));
+    Collections.sort(remaining);
+    assertEquals(remaining, keysOf(store));
+    assertEquals(remaining, keysOf(store.getCollection(path("coll"))));
+    for (String path : removed) {
+      assertNull(store.get(key(path)));
+    }
+    for (String path : remaining) {
+      assertNotNull(store.get(key(path)));
+    }
+
+    for (String path : remaining) {
+      store.remove(key(path));
+    }
+    assertEquals(Collections.emptyList(), keysOf(store));
+    assertEquals(0, store.getByteSize(/* serializer= */ null));
+  }
+
+  private static List<String> keysOf(Iterable<Document> documents) {
+    List<String> keys = new ArrayList<>();
+    for (Document document : documents) {
+      keys.add(document.getKey().toString());
+    }
+    return keys;
+  }
+}
@@ -28,6 +28,7 @@ import com.google.firebase.firestore.model.mutation.Mutation;
 import com.google.firebase.firestore.model.mutation.Overlay;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A test-only QueryEngine that forwards all API calls and exposes the number of documents and
@@ -63,6 +64,11 @@ class CountingQueryEngine extends QueryEngine {
     queryEngine.initialize(wrappedView, indexManager);
   }
 
+  @Override
+  void invalidateQueryPlans() {
+    queryEngine.invalidateQueryPlans();
+  }
+
   @Override
   public ImmutableSortedMap<DocumentKey, Document> getDocumentsMatchingQuery(
       Query query,
@@ -120,6 +126,11 @@ class CountingQueryEngine extends QueryEngine {
         subject.add(document, readTime);
       }
 
+      @Override
+      public void addAll(Map<MutableDocument, SnapshotVersion> documents) {
+        subject.addAll(documents);
+      }
+
       @Override
       public void removeAll(Collection<DocumentKey> keys) {
         subject.removeAll(keys);
@@ -156,6 +167,15 @@ class CountingQueryEngine extends QueryEngine {
         documentsReadByCollection[0] += result.size();
         return result;
       }
+
+      @Override
+      public Map<DocumentKey, MutableDocument> getDocumentsMatchingQuery(
+          Query query, IndexOffset offset, Set<DocumentKey> mutatedKeys) {
+        Map<DocumentKey, MutableDocument> result =
+            subject.getDocumentsMatchingQuery(query, offset, mutatedKeys);
+        documentsReadByCollection[0] += result.size();
+        return result;
+      }
     };
   }
 
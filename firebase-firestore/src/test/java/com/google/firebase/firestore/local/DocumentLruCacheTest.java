@@ -0,0 +1,133 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import static com.google.firebase.firestore.testutil.TestUtil.doc;
+import static com.google.firebase.firestore.testutil.TestUtil.field;
+import static com.google.firebase.firestore.testutil.TestUtil.key;
+import static com.google.firebase.firestore.testutil.TestUtil.map;
+import static com.google.firebase.firestore.testutil.TestUtil.wrap;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.firebase.firestore.model.MutableDocument;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class DocumentLruCacheTest {
+  private static final long ENTRY_SIZE = 100 + DocumentLruCache.ENTRY_OVERHEAD_BYTES;
+
+  @Test
+  public void testReturnsCachedDocuments() {
+    DocumentLruCache cache = new DocumentLruCache(10 * ENTRY_SIZE);
+    MutableDocument doc = doc("coll/a", 1, map("foo", "bar"));
+    cache.put(doc, 100);
+
+    assertEquals(doc, cache.get(key("coll/a")));
+    assertNull(cache.get(key("coll/b")));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(ENTRY_SIZE, cache.getSizeBytes());
+  }
+
+  @Test
+  public void testReturnsCopies() {
+    DocumentLruCache cache = new DocumentLruCache(10 * ENTRY_SIZE);
+    cache.put(doc("coll/a", 1, map("foo", "bar")), 100);
+
+    MutableDocument first = cache.get(key("coll/a"));
+    first.getData().set(field("foo"), wrap("baz"));
+
+    MutableDocument second = cache.get(key("coll/a"));
+    assertEquals(wrap("bar"), second.getField(field("foo")));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedDocuments() {
+    DocumentLruCache cache = new DocumentLruCache(2 * ENTRY_SIZE);
+    cache.put(doc("coll/a", 1, map()), 100);
+    cache.put(doc("coll/b", 1, map()), 100);
+
+    // Access "coll/a" so that "coll/b" becomes the least recently used entry.
+    assertNotNull(cache.get(key("coll/a")));
+    cache.put(doc("coll/c", 1, map()), 100);
+
+    assertNotNull(cache.get(key("coll/a")));
+    assertNull(cache.get(key("coll/b")));
+    assertNotNull(cache.get(key("coll/c")));
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(2 * ENTRY_SIZE, cache.getSizeBytes());
+  }
+
+  @Test
+  public void testDoesNotCacheDocumentsLargerThanCache() {
+    DocumentLruCache cache = new DocumentLruCache(ENTRY_SIZE);
+    cache.put(doc("coll/a", 1, map()), 100);
+    cache.put(doc("coll/b", 1, map()), 2 * ENTRY_SIZE);
+
+    assertNotNull(cache.get(key("coll/a")));
+    assertNull(cache.get(key("coll/b")));
+  }
+
+  @Test
+  public void testRemovesDocuments() {
+    DocumentLruCache cache = new DocumentLruCache(10 * ENTRY_SIZE);
+    cache.put(doc("coll/a", 1, map()), 100);
+    cache.put(doc("coll/b", 1, map()), 100);
+    cache.put(doc("coll/c", 1, map()), 100);
+
+    cache.remove(key("coll/a"));
+    assertNull(cache.get(key("coll/a")));
+
+    cache.removeAll(asList(key("coll/b"), key("coll/c")));
+    assertNull(cache.get(key("coll/b")));
+    assertNull(cache.get(key("coll/c")));
+    assertEquals(0, cache.getSizeBytes());
+  }
+
+  @Test
+  public void testDisabledCacheDoesNotRetainDocuments() {
+    DocumentLruCache cache = new DocumentLruCache(0);
+    cache.put(doc("coll/a", 1, map()), 100);
+
+    assertNull(cache.get(key("coll/a")));
+    assertEquals(0, cache.getHitCount());
+    assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  public void testDescribesStatistics() {
+    DocumentLruCache cache = new DocumentLruCache(2 * ENTRY_SIZE);
+    cache.put(doc("coll/a", 1, map()), 100);
+    cache.put(doc("coll/b", 1, map()), 100);
+    cache.put(doc("coll/c", 1, map()), 100);
+    cache.get(key("coll/a"));
+    cache.get(key("coll/c"));
+
+    assertEquals(
+        "DocumentLruCache(hits=1, misses=1, evictions=1, entries=2, sizeBytes="
+            + 2 * ENTRY_SIZE
+            + "/"
+            + 2 * ENTRY_SIZE
+            + ")",
+        cache.toString());
+  }
+}
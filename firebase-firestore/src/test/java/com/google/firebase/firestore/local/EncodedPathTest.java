@@ -19,6 +19,8 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -190,6 +192,40 @@ public class EncodedPathTest {
     }
   }
 
+  @Test
+  public void testDecodedSiblingsShareParent() {
+    ResourcePath first = EncodedPath.decodeResourcePath(EncodedPath.encode(path("coll", "a")));
+    ResourcePath second = EncodedPath.decodeResourcePath(EncodedPath.encode(path("coll", "b")));
+    assertEquals(path("coll", "a"), first);
+    assertEquals(path("coll", "b"), second);
+    assertSame(first.popLast(), second.popLast());
+
+    // Escape sequences next to separators must not be mistaken for a shared parent.
+    String[][] segments = {
+      {"coll\u0001", "a"}, {"coll", "\u0001a"}, {"col", "l", "a"}, {"coll", "a", "b", "c"}
+    };
+    for (String[] pathSegments : segments) {
+      ResourcePath path = path(pathSegments);
+      assertEquals(path, EncodedPath.decodeResourcePath(EncodedPath.encode(path)));
+    }
+  }
+
+  @Test
+  public void testIsImmediateChild() {
+    String coll = EncodedPath.encode(path("coll"));
+    assertTrue(EncodedPath.isImmediateChild(coll, EncodedPath.encode(path("coll", "a"))));
+    assertTrue(EncodedPath.isImmediateChild(coll, EncodedPath.encode(path("coll", "\u0001"))));
+    assertTrue(EncodedPath.isImmediateChild(coll, EncodedPath.encode(path("coll", "a\0"))));
+    assertFalse(EncodedPath.isImmediateChild(coll, coll));
+    assertFalse(EncodedPath.isImmediateChild(coll, EncodedPath.encode(path("coll", "a", "b"))));
+    assertFalse(EncodedPath.isImmediateChild(coll, EncodedPath.encode(path("coll2", "a"))));
+    assertFalse(EncodedPath.isImmediateChild(coll, EncodedPath.encode(path("col", "l"))));
+
+    String empty = EncodedPath.encode(path());
+    assertTrue(EncodedPath.isImmediateChild(empty, EncodedPath.encode(path("coll"))));
+    assertFalse(EncodedPath.isImmediateChild(empty, coll + "a" + SEP));
+  }
+
   @Test
   public void testPrefixSuccessor() {
     assertPrefixSuccessorEquals("\u0001\u0002", path());
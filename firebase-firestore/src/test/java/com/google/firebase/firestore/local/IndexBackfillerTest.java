@@ -27,6 +27,7 @@ import static com.google.firebase.firestore.testutil.TestUtil.query;
 import static com.google.firebase.firestore.testutil.TestUtil.setMutation;
 import static com.google.firebase.firestore.testutil.TestUtil.version;
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
 
 import com.google.firebase.firestore.auth.User;
@@ -46,6 +47,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -84,6 +86,8 @@ public class IndexBackfillerTest {
             documentOverlayCache,
             indexManager);
     backfiller = new IndexBackfiller(persistence, new AsyncQueue());
+    // Use a generous time budget so that passes are only limited by their document cap.
+    backfiller.setMaxPassDurationMs(TimeUnit.MINUTES.toMillis(1));
     backfiller.setIndexManager(indexManager);
     backfiller.setLocalDocumentsView(localDocumentsView);
   }
@@ -264,6 +268,67 @@ public class IndexBackfillerTest {
     verifyQueryResults("coll2", "coll2/docA");
   }
 
+  @Test
+  public void testBackfillReportsProgressPerCollectionGroup() {
+    addFieldIndex("coll1", "foo");
+    addFieldIndex("coll2", "foo");
+    addDoc("coll1/docA", version(10), "foo", 1);
+    addDoc("coll1/docB", version(20), "foo", 1);
+    addDoc("coll2/docA", version(30), "foo", 1);
+
+    int documentsProcessed = backfiller.backfill();
+    assertEquals(3, documentsProcessed);
+    assertFalse(backfiller.hasPendingWork());
+
+    Map<String, Integer> expectedProgress = new HashMap<>();
+    expectedProgress.put("coll1", 2);
+    expectedProgress.put("coll2", 1);
+    assertEquals(expectedProgress, backfiller.getLastPassProgress());
+  }
+
+  @Test
+  public void testBackfillReportsPendingWorkWhenCapIsReached() {
+    backfiller.setMaxDocumentsToProcess(2);
+    addFieldIndex("coll1", "foo");
+    addDoc("coll1/docA", version(10), "foo", 1);
+    addDoc("coll1/docB", version(20), "foo", 1);
+    addDoc("coll1/docC", version(30), "foo", 1);
+
+    assertEquals(2, backfiller.backfill());
+    assertTrue(backfiller.hasPendingWork());
+
+    assertEquals(1, backfiller.backfill());
+    assertFalse(backfiller.hasPendingWork());
+    verifyQueryResults("coll1", "coll1/docA", "coll1/docB", "coll1/docC");
+  }
+
+  @Test
+  public void testBackfillWritesCollectionGroupInSeveralBatches() {
+    addFieldIndex("coll1", "foo");
+    int documentCount = 200;
+    for (int i = 0; i < documentCount; ++i) {
+      addDoc("coll1/doc" + i, version(i + 1), "foo", i);
+    }
+
+    int documentsProcessed = backfiller.backfill();
+    assertEquals(documentCount, documentsProcessed);
+    assertFalse(backfiller.hasPendingWork());
+  }
+
+  @Test
+  public void testBackfillProcessesOneBatchWhenOutOfTime() {
+    backfiller.setMaxPassDurationMs(0);
+    addFieldIndex("coll1", "foo");
+    addFieldIndex("coll2", "foo");
+    addDoc("coll1/docA", version(10), "foo", 1);
+    addDoc("coll2/docA", version(20), "foo", 1);
+
+    int documentsProcessed = backfiller.backfill();
+    assertEquals(1, documentsProcessed);
+    assertTrue(backfiller.hasPendingWork());
+    verifyQueryResults("coll1", "coll1/docA");
+  }
+
   @Test
   public void testBackfillUsesLatestReadTimeForEmptyCollections() {
     addFieldIndex("coll", "foo", version(1));
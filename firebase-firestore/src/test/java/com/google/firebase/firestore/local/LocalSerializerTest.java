@@ -25,6 +25,7 @@ import static com.google.firebase.firestore.testutil.TestUtil.map;
 import static com.google.firebase.firestore.testutil.TestUtil.path;
 import static com.google.firebase.firestore.testutil.TestUtil.setMutation;
 import static com.google.firebase.firestore.testutil.TestUtil.unknownDoc;
+import static com.google.firebase.firestore.testutil.TestUtil.wrap;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -316,6 +317,22 @@ public final class LocalSerializerTest {
     assertEquals(maybeDocProto, serializer.encodeMaybeDocument(document));
     MutableDocument decoded = serializer.decodeMaybeDocument(maybeDocProto);
     assertEquals(document, decoded);
+    decoded = serializer.decodeMaybeDocument(maybeDocProto.toByteArray());
+    assertEquals(document, decoded);
+  }
+
+  @Test
+  public void testDecodesEncodedFoundDocumentLazily() {
+    MutableDocument document =
+        doc("some/path", 42, map("foo", "bar", "nested", map("a", 1))).setHasCommittedMutations();
+
+    byte[] bytes = serializer.encodeMaybeDocument(document).toByteArray();
+    MutableDocument decoded = serializer.decodeMaybeDocument(bytes);
+    assertEquals(document.getKey(), decoded.getKey());
+    assertEquals(document.getVersion(), decoded.getVersion());
+    assertTrue(decoded.hasCommittedMutations());
+    assertEquals(wrap(1), decoded.getField(field("nested.a")));
+    assertEquals(document, decoded);
   }
 
   @Test
@@ -334,6 +351,8 @@ public final class LocalSerializerTest {
     assertEquals(maybeDocProto, serializer.encodeMaybeDocument(deletedDoc));
     MutableDocument decoded = serializer.decodeMaybeDocument(maybeDocProto);
     assertEquals(deletedDoc, decoded);
+    decoded = serializer.decodeMaybeDocument(maybeDocProto.toByteArray());
+    assertEquals(deletedDoc, decoded);
   }
 
   @Test
@@ -353,6 +372,8 @@ public final class LocalSerializerTest {
     assertEquals(maybeDocProto, serializer.encodeMaybeDocument(unknownDoc));
     MutableDocument decoded = serializer.decodeMaybeDocument(maybeDocProto);
     assertEquals(unknownDoc, decoded);
+    decoded = serializer.decodeMaybeDocument(maybeDocProto.toByteArray());
+    assertEquals(unknownDoc, decoded);
   }
 
   @Test
@@ -228,7 +228,8 @@ public abstract class LocalStoreTestCase {
 
   private void bundleDocuments(MutableDocument... expected) {
     ImmutableSortedMap<DocumentKey, MutableDocument> documents = docMap(expected);
-    lastChanges = localStore.applyBundledDocuments(documents, /* bundleId= */ "");
+    lastChanges =
+        localStore.applyBundledDocuments(documents, /* bundleId= */ "", /* isFirstChunk= */ true);
   }
 
   private void saveNamedQuery(NamedQuery namedQuery, DocumentKey... matchingKey) {
@@ -731,6 +732,26 @@ public abstract class LocalStoreTestCase {
     assertNotContains("foo/bar");
   }
 
+  @Test
+  public void testRecalculatesOverlaysForManyDocumentsAfterReject() {
+    List<Mutation> patches = new ArrayList<>();
+    List<Mutation> sets = new ArrayList<>();
+    List<Mutation> secondPatches = new ArrayList<>();
+    for (int i = 0; i < 250; ++i) {
+      patches.add(patchMutation("foo/" + i, map("a", 2)));
+      sets.add(setMutation("foo/" + i, map("a", 1)));
+      secondPatches.add(patchMutation("foo/" + i, map("b", i)));
+    }
+    writeMutations(patches);
+    writeMutations(sets);
+    writeMutations(secondPatches);
+
+    rejectMutation();
+    for (int i = 0; i < 250; ++i) {
+      assertContains(doc("foo/" + i, 0, map("a", 1, "b", i)).setHasLocalMutations());
+    }
+  }
+
   @Test
   public void testHandlesSetMutationsAndPatchMutationOfJustOneTogether() {
     writeMutations(
@@ -1095,10 +1116,10 @@ public abstract class LocalStoreTestCase {
     acknowledgeMutation(10);
     acknowledgeMutation(10);
 
-    // Execute the query, but note that we read all existing documents from the RemoteDocumentCache
-    // since we do not yet have target mapping.
+    // Execute the query, but note that we scan the collection in the RemoteDocumentCache since we
+    // do not yet have target mapping. Only the documents that match the query are returned.
     executeQuery(query);
-    assertRemoteDocumentsRead(/* byKey= */ 0, /* byCollection= */ 3);
+    assertRemoteDocumentsRead(/* byKey= */ 0, /* byCollection= */ 2);
 
     // Issue a RemoteEvent to persist the target mapping.
     applyRemoteEvent(
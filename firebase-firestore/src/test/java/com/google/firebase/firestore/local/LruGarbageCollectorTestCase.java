@@ -16,10 +16,12 @@ package com.google.firebase.firestore.local;
 
 import static com.google.firebase.firestore.testutil.TestUtil.doc;
 import static com.google.firebase.firestore.testutil.TestUtil.keySet;
+import static com.google.firebase.firestore.testutil.TestUtil.map;
 import static com.google.firebase.firestore.testutil.TestUtil.query;
 import static com.google.firebase.firestore.testutil.TestUtil.resumeToken;
 import static com.google.firebase.firestore.testutil.TestUtil.version;
 import static com.google.firebase.firestore.testutil.TestUtil.wrapObject;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -38,6 +40,7 @@ import com.google.firebase.firestore.model.mutation.Precondition;
 import com.google.firebase.firestore.model.mutation.SetMutation;
 import com.google.protobuf.ByteString;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -722,4 +725,147 @@ public abstract class LruGarbageCollectorTestCase {
     assertEquals(10, results.getTargetsRemoved());
     assertEquals(100, results.getDocumentsRemoved());
   }
+
+  @Test
+  public void testRemoveOrphanedDocumentsRemovesLargestFirst() {
+    MutableDocument small = doc(nextTestDocumentKey(), 1, map("data", repeat('a', 10)));
+    MutableDocument large = doc(nextTestDocumentKey(), 1, map("data", repeat('b', 1000)));
+    MutableDocument medium = doc(nextTestDocumentKey(), 1, map("data", repeat('c', 100)));
+    persistence.runTransaction(
+        "add orphaned docs",
+        () -> {
+          for (MutableDocument doc : asList(small, large, medium)) {
+            documentCache.add(doc, doc.getVersion());
+            markDocumentEligibleForGcInTransaction(doc.getKey());
+          }
+        });
+
+    LruDelegate delegate = (LruDelegate) persistence.getReferenceDelegate();
+    List<LruGarbageCollector.OrphanedDocument> documents =
+        persistence.runTransaction("GC", () -> delegate.getOrphanedDocumentsBySize(1000));
+    assertEquals(3, documents.size());
+    assertEquals(large.getKey(), documents.get(0).key);
+    assertEquals(medium.getKey(), documents.get(1).key);
+    assertEquals(small.getKey(), documents.get(2).key);
+
+    LruGarbageCollector.RemovedDocuments removed =
+        persistence.runTransaction(
+            "GC", () -> delegate.removeOrphanedDocuments(1000, documents.subList(0, 1)));
+    assertEquals(1, removed.documentsRemoved);
+    assertTrue(removed.byteSize > 1000);
+    assertFalse(documentCache.get(large.getKey()).isValidDocument());
+    assertTrue(documentCache.get(medium.getKey()).isValidDocument());
+  }
+
+  @Test
+  public void testRemoveOrphanedDocumentsSkipsDocumentsUsedSinceTheyWereRead() {
+    MutableDocument reused = nextTestDocument();
+    MutableDocument orphaned = nextTestDocument();
+    persistence.runTransaction(
+        "add orphaned docs",
+        () -> {
+          for (MutableDocument doc : asList(reused, orphaned)) {
+            documentCache.add(doc, doc.getVersion());
+            markDocumentEligibleForGcInTransaction(doc.getKey());
+          }
+        });
+
+    LruDelegate delegate = (LruDelegate) persistence.getReferenceDelegate();
+    List<LruGarbageCollector.OrphanedDocument> documents =
+        persistence.runTransaction("GC", () -> delegate.getOrphanedDocumentsBySize(1000));
+    assertEquals(2, documents.size());
+
+    persistence.runTransaction(
+        "add doc to a target",
+        () -> {
+          TargetData targetData = addNextQueryInTransaction();
+          addDocumentToTarget(reused.getKey(), targetData.getTargetId());
+        });
+
+    LruGarbageCollector.RemovedDocuments removed =
+        persistence.runTransaction("GC", () -> delegate.removeOrphanedDocuments(1000, documents));
+    assertEquals(1, removed.documentsRemoved);
+    assertTrue(documentCache.get(reused.getKey()).isValidDocument());
+    assertFalse(documentCache.get(orphaned.getKey()).isValidDocument());
+  }
+
+  @Test
+  public void testIncrementalCollectionRemovesEverythingInChunks() {
+    // Collect down to an empty cache so that the run only ends once nothing is left to remove.
+    LruGarbageCollector.Params params = LruGarbageCollector.Params.WithCacheSizeBytes(100, 0);
+    persistence.shutdown();
+    newTestResources(params);
+
+    int targetCount = 20;
+    int documentsPerTarget = 20;
+    for (int i = 0; i < targetCount; i++) {
+      persistence.runTransaction(
+          "Add a target and some documents",
+          () -> {
+            TargetData targetData = addNextQueryInTransaction();
+            for (int j = 0; j < documentsPerTarget; j++) {
+              MutableDocument doc = cacheADocumentInTransaction();
+              addDocumentToTarget(doc.getKey(), targetData.getTargetId());
+            }
+          });
+    }
+
+    LruGarbageCollector.IncrementalCollection collection =
+        garbageCollector.newIncrementalCollection();
+    LruGarbageCollector.Results results = null;
+    int documentChunks = 0;
+    int previousDocumentsRemoved = 0;
+    while (!collection.isComplete()) {
+      results =
+          persistence.runTransaction("GC", () -> collection.collectNextChunk(new SparseArray<>()));
+      int documentsRemovedInChunk = results.getDocumentsRemoved() - previousDocumentsRemoved;
+      assertTrue(documentsRemovedInChunk <= LruGarbageCollector.DOCUMENTS_PER_CHUNK);
+      if (documentsRemovedInChunk > 0) {
+        ++documentChunks;
+      }
+      previousDocumentsRemoved = results.getDocumentsRemoved();
+    }
+
+    int documentCount = targetCount * documentsPerTarget;
+    assertTrue(results.hasRun());
+    assertEquals(targetCount, results.getTargetsRemoved());
+    assertEquals(documentCount, results.getDocumentsRemoved());
+    assertTrue(results.getBytesReclaimed() > 0);
+    assertEquals(
+        (documentCount + LruGarbageCollector.DOCUMENTS_PER_CHUNK - 1)
+            / LruGarbageCollector.DOCUMENTS_PER_CHUNK,
+        documentChunks);
+    assertTrue(results.getChunksCollected() > documentChunks);
+  }
+
+  @Test
+  public void testIncrementalCollectionDoesNotRunBelowTargetSize() {
+    LruGarbageCollector.Params params =
+        LruGarbageCollector.Params.WithCacheSizeBytes(100, Long.MAX_VALUE);
+    persistence.shutdown();
+    newTestResources(params);
+
+    persistence.runTransaction(
+        "Fill cache",
+        () -> {
+          for (int i = 0; i < 50; i++) {
+            MutableDocument doc = cacheADocumentInTransaction();
+            markDocumentEligibleForGcInTransaction(doc.getKey());
+          }
+        });
+
+    LruGarbageCollector.IncrementalCollection collection =
+        garbageCollector.newIncrementalCollection();
+    LruGarbageCollector.Results results =
+        persistence.runTransaction("GC", () -> collection.collectNextChunk(new SparseArray<>()));
+
+    assertFalse(results.hasRun());
+    assertTrue(collection.isComplete());
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
 }
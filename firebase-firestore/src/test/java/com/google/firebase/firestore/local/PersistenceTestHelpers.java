@@ -63,6 +63,27 @@ public final class PersistenceTestHelpers {
     return openSQLitePersistence(nextSQLiteDatabaseName(), params);
   }
 
+  /**
+   * Creates and starts a new SQLitePersistence instance for testing that serves reads of recently
+   * used documents from an in-memory cache of the given size.
+   */
+  public static SQLitePersistence createSQLitePersistenceWithDocumentCache(
+      long documentCacheSizeBytes) {
+    DatabaseId databaseId = DatabaseId.forProject("projectId");
+    LocalSerializer serializer = new LocalSerializer(new RemoteSerializer(databaseId));
+    Context context = ApplicationProvider.getApplicationContext();
+    SQLitePersistence persistence =
+        new SQLitePersistence(
+            context,
+            nextSQLiteDatabaseName(),
+            databaseId,
+            serializer,
+            LruGarbageCollector.Params.Default(),
+            documentCacheSizeBytes);
+    persistence.start();
+    return persistence;
+  }
+
   /** Creates and starts a new MemoryPersistence instance for testing. */
   public static MemoryPersistence createEagerGCMemoryPersistence() {
     MemoryPersistence persistence = MemoryPersistence.createEagerGcMemoryPersistence();
@@ -70,6 +91,16 @@ public final class PersistenceTestHelpers {
     return persistence;
   }
 
+  /** Creates and starts a new MemoryPersistence instance that uses the compact document store. */
+  public static MemoryPersistence createCompactEagerGCMemoryPersistence() {
+    DatabaseId databaseId = DatabaseId.forProject("projectId");
+    LocalSerializer serializer = new LocalSerializer(new RemoteSerializer(databaseId));
+    MemoryPersistence persistence =
+        MemoryPersistence.createCompactEagerGcMemoryPersistence(serializer);
+    persistence.start();
+    return persistence;
+  }
+
   public static MemoryPersistence createLRUMemoryPersistence(LruGarbageCollector.Params params) {
     DatabaseId databaseId = DatabaseId.forProject("projectId");
     LocalSerializer serializer = new LocalSerializer(new RemoteSerializer(databaseId));
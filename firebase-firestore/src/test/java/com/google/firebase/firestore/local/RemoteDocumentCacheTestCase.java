@@ -18,15 +18,18 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.firebase.firestore.testutil.TestUtil.assertDoesNotThrow;
 import static com.google.firebase.firestore.testutil.TestUtil.deletedDoc;
 import static com.google.firebase.firestore.testutil.TestUtil.doc;
+import static com.google.firebase.firestore.testutil.TestUtil.filter;
 import static com.google.firebase.firestore.testutil.TestUtil.key;
 import static com.google.firebase.firestore.testutil.TestUtil.map;
 import static com.google.firebase.firestore.testutil.TestUtil.path;
+import static com.google.firebase.firestore.testutil.TestUtil.query;
 import static com.google.firebase.firestore.testutil.TestUtil.version;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 
 import com.google.firebase.firestore.auth.User;
+import com.google.firebase.firestore.core.Query;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.FieldIndex.IndexOffset;
 import com.google.firebase.firestore.model.MutableDocument;
@@ -139,6 +142,25 @@ abstract class RemoteDocumentCacheTestCase {
     assertThat(read.values().stream().filter(MutableDocument::isFoundDocument).toArray()).isEmpty();
   }
 
+  @Test
+  public void testAddAllWritesLotsOfDocuments() {
+    // Make sure to force SQLite implementation to split the insert into several statements.
+    int lotsOfDocuments = 500;
+    Map<MutableDocument, SnapshotVersion> documents = new HashMap<>();
+    Map<DocumentKey, MutableDocument> expected = new HashMap<>();
+    for (int i = 0; i < lotsOfDocuments; i++) {
+      MutableDocument doc = doc("foo/" + i, 42, map("data", i));
+      documents.put(doc, version(42));
+      expected.put(doc.getKey(), doc);
+    }
+
+    persistence.runTransaction("add entries", () -> remoteDocumentCache.addAll(documents));
+
+    Map<DocumentKey, MutableDocument> read = remoteDocumentCache.getAll(expected.keySet());
+    assertEquals(expected, read);
+    assertEquals(lotsOfDocuments, remoteDocumentCache.getAll(path("foo"), IndexOffset.NONE).size());
+  }
+
   @Test
   public void testSetAndReadDeletedDocument() {
     String path = "a/b";
@@ -247,6 +269,55 @@ abstract class RemoteDocumentCacheTestCase {
     assertThat(results.values()).containsExactly(doc("b/old", 1, DOC_DATA));
   }
 
+  @Test
+  public void testGetDocumentsMatchingQuery() {
+    add(doc("a/1", 1, map("matches", true)), version(1));
+    add(doc("a/2", 1, map("matches", false)), version(1));
+    add(doc("a/3", 1, map("matches", true)), version(1));
+    add(doc("b/1", 1, map("matches", true)), version(1));
+
+    Query query = query("a").filter(filter("matches", "==", true));
+    Map<DocumentKey, MutableDocument> results =
+        remoteDocumentCache.getDocumentsMatchingQuery(
+            query, IndexOffset.NONE, Collections.emptySet());
+    assertThat(results.values())
+        .containsExactly(
+            doc("a/1", 1, map("matches", true)), doc("a/3", 1, map("matches", true)));
+  }
+
+  @Test
+  public void testGetDocumentsMatchingQueryIncludesMutatedDocuments() {
+    add(doc("a/1", 1, map("matches", true)), version(1));
+    add(doc("a/2", 1, map("matches", false)), version(1));
+
+    Query query = query("a").filter(filter("matches", "==", true));
+    Map<DocumentKey, MutableDocument> results =
+        remoteDocumentCache.getDocumentsMatchingQuery(
+            query, IndexOffset.NONE, Collections.singleton(key("a/2")));
+    assertThat(results.values())
+        .containsExactly(
+            doc("a/1", 1, map("matches", true)), doc("a/2", 1, map("matches", false)));
+  }
+
+  @Test
+  public void testGetDocumentsMatchingQueryWithManyDocuments() {
+    // Use enough documents to span several decode batches.
+    List<MutableDocument> expected = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      MutableDocument doc = doc("a/" + i, 1, map("even", i % 2 == 0));
+      add(doc, version(1));
+      if (i % 2 == 0) {
+        expected.add(doc);
+      }
+    }
+
+    Query query = query("a").filter(filter("even", "==", true));
+    Map<DocumentKey, MutableDocument> results =
+        remoteDocumentCache.getDocumentsMatchingQuery(
+            query, IndexOffset.NONE, Collections.emptySet());
+    assertThat(results.values()).containsExactlyElementsIn(expected);
+  }
+
   protected MutableDocument addTestDocumentAtPath(String path) {
     return addTestDocumentAtPath(path, 42, 42);
   }
@@ -210,6 +210,23 @@ public class SQLiteIndexManagerTest extends IndexManagerTestCase {
     verifyResults(query, "coll/val1", "coll/val3");
   }
 
+  @Test
+  public void testMultipleInFilters() {
+    indexManager.addFieldIndex(fieldIndex("coll", "a", Kind.ASCENDING, "b", Kind.ASCENDING));
+    for (int a = 1; a <= 3; ++a) {
+      for (int b = 1; b <= 3; ++b) {
+        addDoc("coll/val" + a + b, map("a", a, "b", b));
+      }
+    }
+
+    // Each IN value is a separate bound. The bounds are the cross product of the values.
+    Query query =
+        query("coll")
+            .filter(filter("a", "in", Arrays.asList(1, 3)))
+            .filter(filter("b", "in", Arrays.asList(2, 3)));
+    verifyResults(query, "coll/val12", "coll/val13", "coll/val32", "coll/val33");
+  }
+
   @Test
   public void testNotInFilter() {
     setUpSingleValueFilter();
@@ -23,9 +23,15 @@ import static com.google.firebase.firestore.testutil.TestUtil.filter;
 import static com.google.firebase.firestore.testutil.TestUtil.map;
 import static com.google.firebase.firestore.testutil.TestUtil.query;
 import static com.google.firebase.firestore.testutil.TestUtil.setMutation;
+import static com.google.firebase.firestore.testutil.TestUtil.version;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.google.firebase.database.collection.ImmutableSortedMap;
+import com.google.firebase.database.collection.ImmutableSortedSet;
 import com.google.firebase.firestore.core.Query;
 import com.google.firebase.firestore.model.Document;
 import com.google.firebase.firestore.model.DocumentKey;
@@ -74,4 +80,148 @@ public class SQLiteQueryEngineTest extends QueryEngineTestCase {
     assertTrue(results.containsKey(doc3.getKey()));
     assertTrue(results.containsKey(doc4.getKey()));
   }
+
+  @Test
+  public void recordsQueryPlanForIndexedQuery() throws Exception {
+    MutableDocument doc1 = doc("coll/a", 1, map("foo", true));
+    MutableDocument doc2 = doc("coll/b", 2, map("foo", false));
+
+    indexManager.addFieldIndex(fieldIndex("coll", "foo", Kind.ASCENDING));
+
+    addDocument(doc1, doc2);
+    indexManager.updateIndexEntries(docMap(doc1, doc2));
+    indexManager.updateCollectionGroup("coll", IndexOffset.fromDocument(doc2));
+
+    Query queryWithFilter = query("coll").filter(filter("foo", "==", true));
+    expectOptimizedCollectionScan(
+        () ->
+            queryEngine.getDocumentsMatchingQuery(
+                queryWithFilter, SnapshotVersion.NONE, DocumentKey.emptyKeySet()));
+
+    QueryPlan plan = queryEngine.getQueryPlan(queryWithFilter.toTarget());
+    assertEquals(QueryPlan.Strategy.INDEX, plan.getStrategy());
+    assertEquals(1, plan.getExecutionCount());
+    assertEquals(0, plan.getFullScanCount());
+    assertEquals(1, plan.getLastResultCount());
+  }
+
+  @Test
+  public void prefersPreviousResultsWhenIndexIsBehind() throws Exception {
+    MutableDocument doc1 = doc("coll/a", 1, map("foo", true));
+    MutableDocument doc2 = doc("coll/b", 2, map("foo", false));
+
+    // The index has not been backfilled, so an index-based execution would need to scan all
+    // documents in the collection.
+    indexManager.addFieldIndex(fieldIndex("coll", "foo", Kind.ASCENDING));
+    addDocument(doc1, doc2);
+
+    Query queryWithFilter = query("coll").filter(filter("foo", "==", true));
+    ImmutableSortedMap<DocumentKey, Document> results =
+        expectOptimizedCollectionScan(
+            () ->
+                queryEngine.getDocumentsMatchingQuery(
+                    queryWithFilter,
+                    version(10),
+                    DocumentKey.emptyKeySet().insert(doc1.getKey())));
+
+    assertEquals(1, results.size());
+    assertTrue(results.containsKey(doc1.getKey()));
+
+    QueryPlan plan = queryEngine.getQueryPlan(queryWithFilter.toTarget());
+    assertEquals(QueryPlan.Strategy.PREVIOUS_RESULTS, plan.getStrategy());
+  }
+
+  @Test
+  public void reusesQueryPlanForRepeatedQuery() throws Exception {
+    MutableDocument doc1 = doc("coll/a", 1, map("foo", true));
+    MutableDocument doc2 = doc("coll/b", 2, map("foo", false));
+
+    indexManager.addFieldIndex(fieldIndex("coll", "foo", Kind.ASCENDING));
+    addDocument(doc1, doc2);
+    indexManager.updateIndexEntries(docMap(doc1, doc2));
+    indexManager.updateCollectionGroup("coll", IndexOffset.fromDocument(doc2));
+
+    Query queryWithFilter = query("coll").filter(filter("foo", "==", true));
+    expectOptimizedCollectionScan(
+        () ->
+            queryEngine.getDocumentsMatchingQuery(
+                queryWithFilter, SnapshotVersion.NONE, DocumentKey.emptyKeySet()));
+    QueryPlan plan = queryEngine.getQueryPlan(queryWithFilter.toTarget());
+
+    // Deleting the index without invalidating the plans shows that the second execution uses the
+    // field index from the cached plan rather than looking it up again.
+    indexManager.deleteFieldIndex(plan.getFieldIndex());
+    ImmutableSortedMap<DocumentKey, Document> results =
+        expectOptimizedCollectionScan(
+            () ->
+                queryEngine.getDocumentsMatchingQuery(
+                    queryWithFilter, SnapshotVersion.NONE, DocumentKey.emptyKeySet()));
+
+    assertSame(plan, queryEngine.getQueryPlan(queryWithFilter.toTarget()));
+    assertEquals(2, plan.getExecutionCount());
+    assertEquals(QueryPlan.Strategy.INDEX, plan.getStrategy());
+    assertEquals(0, results.size());
+
+    // Once the plans are invalidated, the query is planned again without the index.
+    queryEngine.invalidateQueryPlans();
+    results =
+        expectFullCollectionScan(
+            () ->
+                queryEngine.getDocumentsMatchingQuery(
+                    queryWithFilter, SnapshotVersion.NONE, DocumentKey.emptyKeySet()));
+
+    QueryPlan newPlan = queryEngine.getQueryPlan(queryWithFilter.toTarget());
+    assertNotSame(plan, newPlan);
+    assertNull(newPlan.getFieldIndex());
+    assertEquals(QueryPlan.Strategy.FULL_SCAN, newPlan.getStrategy());
+    assertEquals(1, results.size());
+  }
+
+  @Test
+  public void replansExpiredQueryPlan() throws Exception {
+    Query query = query("coll").filter(filter("foo", "==", true));
+    for (int i = 0; i < QueryPlan.MAX_EXECUTIONS; ++i) {
+      expectFullCollectionScan(
+          () ->
+              queryEngine.getDocumentsMatchingQuery(
+                  query, SnapshotVersion.NONE, DocumentKey.emptyKeySet()));
+    }
+    QueryPlan plan = queryEngine.getQueryPlan(query.toTarget());
+    assertTrue(plan.isExpired());
+
+    expectFullCollectionScan(
+        () ->
+            queryEngine.getDocumentsMatchingQuery(
+                query, SnapshotVersion.NONE, DocumentKey.emptyKeySet()));
+    assertNotSame(plan, queryEngine.getQueryPlan(query.toTarget()));
+  }
+
+  @Test
+  public void prefersStrategyWithLowerRecordedLatency() throws Exception {
+    MutableDocument doc1 = doc("coll/a", 1, map("foo", true));
+    MutableDocument doc2 = doc("coll/b", 2, map("foo", false));
+
+    // The index has not been backfilled, so the engine would try the previous results first.
+    indexManager.addFieldIndex(fieldIndex("coll", "foo", Kind.ASCENDING));
+    addDocument(doc1, doc2);
+
+    Query queryWithFilter = query("coll").filter(filter("foo", "==", true));
+    ImmutableSortedSet<DocumentKey> remoteKeys = DocumentKey.emptyKeySet().insert(doc1.getKey());
+    expectOptimizedCollectionScan(
+        () -> queryEngine.getDocumentsMatchingQuery(queryWithFilter, version(10), remoteKeys));
+    QueryPlan plan = queryEngine.getQueryPlan(queryWithFilter.toTarget());
+    assertEquals(QueryPlan.Strategy.PREVIOUS_RESULTS, plan.getStrategy());
+
+    // Once the plan has seen the index-based execution to be faster, it uses the index instead,
+    // which has to scan the whole collection since it has not been backfilled.
+    plan.recordExecution(QueryPlan.Strategy.PREVIOUS_RESULTS, 1, /* latencyMs= */ 100);
+    plan.recordExecution(QueryPlan.Strategy.INDEX, 1, /* latencyMs= */ 1);
+    ImmutableSortedMap<DocumentKey, Document> results =
+        expectFullCollectionScan(
+            () -> queryEngine.getDocumentsMatchingQuery(queryWithFilter, version(10), remoteKeys));
+
+    assertEquals(QueryPlan.Strategy.INDEX, plan.getStrategy());
+    assertEquals(1, results.size());
+    assertTrue(results.containsKey(doc1.getKey()));
+  }
 }
@@ -15,9 +15,15 @@
 package com.google.firebase.firestore.local;
 
 import static com.google.common.truth.Truth.assertThat;
+import static com.google.firebase.firestore.testutil.TestUtil.doc;
 import static com.google.firebase.firestore.testutil.TestUtil.key;
+import static com.google.firebase.firestore.testutil.TestUtil.map;
 import static com.google.firebase.firestore.testutil.TestUtil.version;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
+import com.google.firebase.firestore.auth.User;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.FieldIndex;
 import com.google.firebase.firestore.model.MutableDocument;
@@ -86,4 +92,36 @@ public final class SQLiteRemoteDocumentCacheTest extends RemoteDocumentCacheTest
         remoteDocumentCache.getAll("b", FieldIndex.IndexOffset.NONE, size);
     assertThat(results).hasSize(size);
   }
+
+  @Test
+  public void testServesRepeatedReadsFromDocumentCache() {
+    SQLitePersistence persistence =
+        PersistenceTestHelpers.createSQLitePersistenceWithDocumentCache(1024 * 1024);
+    try {
+      SQLiteRemoteDocumentCache cache =
+          (SQLiteRemoteDocumentCache) persistence.getRemoteDocumentCache();
+      IndexManager indexManager = persistence.getIndexManager(User.UNAUTHENTICATED);
+      indexManager.start();
+      cache.setIndexManager(indexManager);
+
+      persistence.runTransaction(
+          "add", () -> cache.add(doc("a/1", 1, map("value", 1)), version(1)));
+      assertEquals(doc("a/1", 1, map("value", 1)), cache.get(key("a/1")));
+      assertEquals(doc("a/1", 1, map("value", 1)), cache.get(key("a/1")));
+      assertEquals(1, cache.getDocumentCache().getHitCount());
+      assertEquals(1, cache.getDocumentCache().getMissCount());
+
+      // Writes invalidate the cached document.
+      persistence.runTransaction(
+          "update", () -> cache.add(doc("a/1", 2, map("value", 2)), version(2)));
+      assertEquals(doc("a/1", 2, map("value", 2)), cache.get(key("a/1")));
+      assertEquals(
+          doc("a/1", 2, map("value", 2)), cache.getAll(asList(key("a/1"))).get(key("a/1")));
+
+      persistence.runTransaction("remove", () -> cache.removeAll(asList(key("a/1"))));
+      assertFalse(cache.get(key("a/1")).isValidDocument());
+    } finally {
+      persistence.shutdown();
+    }
+  }
 }
@@ -0,0 +1,199 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SQLiteStatementCacheTest {
+  private SQLiteDatabase db;
+
+  @Before
+  public void setUp() {
+    db = SQLiteDatabase.create(null);
+    db.execSQL("CREATE TABLE foo (a INTEGER)");
+  }
+
+  @After
+  public void tearDown() {
+    db.close();
+  }
+
+  @Test
+  public void testReusesCompiledStatements() {
+    SQLiteStatementCache cache = new SQLiteStatementCache(db, 10);
+    SQLiteStatement first = cache.get("INSERT INTO foo (a) VALUES (?)");
+    SQLiteStatement second = cache.get("INSERT INTO foo (a) VALUES (?)");
+
+    assertSame(first, second);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedStatements() {
+    SQLiteStatementCache cache = new SQLiteStatementCache(db, 2);
+    SQLiteStatement insert = cache.get("INSERT INTO foo (a) VALUES (?)");
+    SQLiteStatement delete = cache.get("DELETE FROM foo WHERE a = ?");
+
+    // Access the insert so that the delete becomes the least recently used statement.
+    assertSame(insert, cache.get("INSERT INTO foo (a) VALUES (?)"));
+    cache.get("UPDATE foo SET a = ?");
+
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(2, cache.size());
+    assertSame(insert, cache.get("INSERT INTO foo (a) VALUES (?)"));
+    assertNotSame(delete, cache.get("DELETE FROM foo WHERE a = ?"));
+  }
+
+  @Test
+  public void testEvictedStatementsRemainUsableUntilClosed() {
+    SQLiteStatementCache cache = new SQLiteStatementCache(db, 2);
+    SQLiteStatement insert = cache.get("INSERT INTO foo (a) VALUES (?)");
+    cache.get("DELETE FROM foo WHERE a = ?");
+    cache.get("UPDATE foo SET a = ?");
+    cache.get("DELETE FROM foo WHERE a > ?");
+    assertEquals(2, cache.getEvictionCount());
+
+    insert.bindLong(1, 1);
+    insert.executeInsert();
+    cache.closeEvictedStatements();
+
+    assertEquals(1, DatabaseUtils.queryNumEntries(db, "foo"));
+  }
+
+  @Test
+  public void testPersistenceKeepsHeldStatementsOpenDuringTransaction() {
+    SQLitePersistence persistence = PersistenceTestHelpers.createSQLitePersistence();
+    SQLiteStatementCache cache = persistence.getStatementCache();
+    long initialEvictions = cache.getEvictionCount();
+
+    persistence.runTransaction(
+        "insert",
+        () -> {
+          SQLiteStatement insert =
+              persistence.prepare("INSERT INTO bundles (bundle_id) VALUES (?)");
+          for (int i = 0; i <= SQLiteStatementCache.DEFAULT_MAX_SIZE; ++i) {
+            persistence.execute("DELETE FROM bundles WHERE bundle_id = 'other-" + i + "'");
+            persistence.execute(insert, "bundle-" + i);
+          }
+        });
+
+    assertTrue(cache.getEvictionCount() > initialEvictions);
+    long count =
+        persistence.query("SELECT COUNT(*) FROM bundles").firstValue(row -> row.getLong(0));
+    assertEquals(SQLiteStatementCache.DEFAULT_MAX_SIZE + 1, count);
+  }
+
+  @Test
+  public void testClearRemovesAllStatements() {
+    SQLiteStatementCache cache = new SQLiteStatementCache(db, 10);
+    SQLiteStatement insert = cache.get("INSERT INTO foo (a) VALUES (?)");
+    cache.clear();
+
+    assertEquals(0, cache.size());
+    assertNotSame(insert, cache.get("INSERT INTO foo (a) VALUES (?)"));
+  }
+
+  @Test
+  public void testPersistenceExecutesThroughStatementCache() {
+    SQLitePersistence persistence = PersistenceTestHelpers.createSQLitePersistence();
+    SQLiteStatementCache cache = persistence.getStatementCache();
+    long initialMisses = cache.getMissCount();
+    long initialHits = cache.getHitCount();
+
+    persistence.runTransaction(
+        "insert",
+        () -> {
+          for (int i = 0; i < 10; ++i) {
+            persistence.execute("INSERT INTO bundles (bundle_id) VALUES (?)", "bundle-" + i);
+          }
+        });
+
+    assertEquals(initialMisses + 1, cache.getMissCount());
+    assertEquals(initialHits + 9, cache.getHitCount());
+    long count =
+        persistence.query("SELECT COUNT(*) FROM bundles").firstValue(row -> row.getLong(0));
+    assertEquals(10, count);
+  }
+
+  @Test
+  public void testMultiRowInsertOnlyCachesFullStatements() {
+    SQLitePersistence persistence = PersistenceTestHelpers.createSQLitePersistence();
+    SQLiteStatementCache cache = persistence.getStatementCache();
+    int initialSize = cache.size();
+
+    persistence.runTransaction(
+        "insert",
+        () -> {
+          for (int rowCount : new int[] {1, 7, SQLitePersistence.MAX_ARGS + 3}) {
+            List<Object> args = new ArrayList<>();
+            for (int i = 0; i < rowCount; ++i) {
+              args.add("bundle-" + rowCount + "-" + i);
+            }
+            persistence.executeMultiRowInsert(
+                "INSERT INTO bundles (bundle_id) VALUES", /* columnCount= */ 1, args);
+          }
+        });
+
+    // Only the statement that inserts MAX_ARGS rows is cached.
+    assertEquals(initialSize + 1, cache.size());
+    long count =
+        persistence.query("SELECT COUNT(*) FROM bundles").firstValue(row -> row.getLong(0));
+    assertEquals(1 + 7 + SQLitePersistence.MAX_ARGS + 3, count);
+  }
+
+  @Test
+  public void testLongQueryDoesNotCacheSubqueries() {
+    SQLitePersistence persistence = PersistenceTestHelpers.createSQLitePersistence();
+    SQLiteStatementCache cache = persistence.getStatementCache();
+
+    persistence.runTransaction(
+        "delete",
+        () -> {
+          int initialSize = cache.size();
+          for (int argCount = 1; argCount <= 5; ++argCount) {
+            List<Object> args = new ArrayList<>();
+            for (int i = 0; i < argCount; ++i) {
+              args.add("bundle-" + i);
+            }
+            SQLitePersistence.LongQuery longQuery =
+                new SQLitePersistence.LongQuery(
+                    persistence, "DELETE FROM bundles WHERE bundle_id IN (", args, ")");
+            while (longQuery.hasMoreSubqueries()) {
+              longQuery.executeNextSubquery();
+            }
+          }
+          assertEquals(initialSize, cache.size());
+        });
+  }
+}
@@ -25,9 +25,11 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import com.google.firestore.v1.Value;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
@@ -126,6 +128,41 @@ public class DocumentSetTest {
     assertEquals(Arrays.asList(DOC3, DOC1, doc2Prime), set.toList());
   }
 
+  @Test
+  public void testBatchUpdateMatchesIndividualUpdates() {
+    DocumentSet set = docSet(TEST_COMPARATOR);
+    for (int i = 0; i < 50; ++i) {
+      set = set.add(doc("docs/" + i, 0, map("sort", i % 10)));
+    }
+
+    List<Document> added = new ArrayList<>();
+    List<DocumentKey> removed = new ArrayList<>();
+    for (int i = 0; i < 100; i += 2) {
+      // Updates half of the existing documents and adds new ones.
+      added.add(doc("docs/" + i, 1, map("sort", 10 - i % 7)));
+    }
+    for (int i = 1; i < 50; i += 6) {
+      removed.add(DocumentKey.fromPathString("docs/" + i));
+    }
+    removed.add(DocumentKey.fromPathString("docs/missing"));
+
+    DocumentSet expected = set;
+    for (DocumentKey key : removed) {
+      expected = expected.remove(key);
+    }
+    for (Document document : added) {
+      expected = expected.add(document);
+    }
+
+    DocumentSet actual = set.update(added, removed);
+    assertEquals(expected, actual);
+    assertEquals(expected.toList(), actual.toList());
+    for (Document document : expected) {
+      assertEquals(document, actual.getDocument(document.getKey()));
+    }
+    assertNull(actual.getDocument(removed.get(0)));
+  }
+
   @Test
   public void testAddsDocsWithEqualComparisonValues() {
     MutableDocument doc1 = doc("docs/1", 0, map("sort", 2));
@@ -18,6 +18,7 @@ import static com.google.firebase.firestore.testutil.TestUtil.field;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.google.firebase.firestore.testutil.ComparatorTester;
@@ -175,4 +176,30 @@ public class FieldPathTest {
     assertEquals("bar", path.popFirst().popLast().toString());
     assertEquals("bar", path.popLast().popFirst().toString());
   }
+
+  @Test
+  public void testAppendSharesParent() {
+    FieldPath parent = field("a.b");
+    FieldPath first = parent.append("c");
+    FieldPath second = parent.append("d");
+
+    assertSame(parent, first.popLast());
+    assertSame(first.popLast(), second.popLast());
+    assertTrue(parent.isImmediateParentOf(first));
+    assertFalse(first.isImmediateParentOf(second));
+  }
+
+  @Test
+  public void testEqualsAndHashCodeAreIndependentOfStructure() {
+    FieldPath built = FieldPath.EMPTY_PATH.append("a").append(field("b.c"));
+    FieldPath parsed = FieldPath.fromServerFormat("a.b.c");
+    FieldPath popped = field("x.a.b.c").popFirst();
+
+    assertEquals(parsed, built);
+    assertEquals(parsed, popped);
+    assertEquals(parsed.hashCode(), built.hashCode());
+    assertEquals(parsed.hashCode(), popped.hashCode());
+    assertEquals(0, parsed.compareTo(popped));
+    assertNotEquals(parsed, field("a.b.d"));
+  }
 }
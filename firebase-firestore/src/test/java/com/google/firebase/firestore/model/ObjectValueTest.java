@@ -285,4 +285,57 @@ public class ObjectValueTest {
     objectValue.set(field("a.c"), fooValue);
     assertEquals(wrapObject("a", map("b", fooString, "c", fooString)), objectValue);
   }
+
+  @Test
+  public void testExtractsFieldsFromEncodedDocument() {
+    ObjectValue obj =
+        encodedObject(wrapObject("foo", map("a", 1, "b", true), "bar", "string", "empty", map()));
+    assertEquals(wrap(1), obj.get(field("foo.a")));
+    assertEquals(wrap(true), obj.get(field("foo.b")));
+    assertEquals(wrap("string"), obj.get(field("bar")));
+    assertEquals(emptyObject, obj.get(field("empty")));
+
+    assertNull(obj.get(field("foo.a.b")));
+    assertNull(obj.get(field("bar.a")));
+    assertNull(obj.get(field("baz")));
+  }
+
+  @Test
+  public void testEncodedDocumentEqualsDecodedObject() {
+    ObjectValue decoded = wrapObject("foo", map("a", 1), "bar", "string");
+    ObjectValue encoded = encodedObject(decoded);
+    assertEquals(decoded, encoded);
+    assertEquals(encoded, decoded);
+    assertEquals(encodedObject(decoded), encoded);
+    assertEquals(decoded.getFieldsMap(), encoded.getFieldsMap());
+    assertEquals(decoded.hashCode(), encoded.hashCode());
+  }
+
+  @Test
+  public void testClonesEncodedDocument() {
+    ObjectValue encoded = encodedObject(wrapObject("foo", fooString));
+    ObjectValue clone = encoded.clone();
+    clone.set(field("foo"), barValue);
+    assertEquals(fooValue, encoded.get(field("foo")));
+    assertEquals(barValue, clone.get(field("foo")));
+  }
+
+  @Test
+  public void testModifiesEncodedDocument() {
+    ObjectValue objectValue = encodedObject(wrapObject("a", map("b", fooString), "c", fooString));
+    assertEquals(fooValue, objectValue.get(field("a.b")));
+    objectValue.set(field("a.d"), barValue);
+    objectValue.delete(field("c"));
+    assertEquals(barValue, objectValue.get(field("a.d")));
+    assertEquals(wrapObject("a", map("b", fooString, "d", barString)), objectValue);
+  }
+
+  private static ObjectValue encodedObject(ObjectValue value) {
+    com.google.firestore.v1.Document document =
+        com.google.firestore.v1.Document.newBuilder()
+            .setName("projects/p/databases/d/documents/coll/doc")
+            .putAllFields(value.getFieldsMap())
+            .build();
+    return ObjectValue.fromEncodedDocument(document.toByteString());
+  }
 }
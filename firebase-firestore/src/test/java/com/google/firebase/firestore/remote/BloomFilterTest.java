@@ -0,0 +1,81 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.remote;
+
+import static com.google.firebase.firestore.testutil.TestUtil.bloomFilterProto;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class BloomFilterTest {
+
+  @Test
+  public void testComputesBitCountFromPadding() {
+    BloomFilter bloomFilter = new BloomFilter(ByteString.copyFrom(new byte[10]), 5, 3);
+    assertEquals(75, bloomFilter.getBitCount());
+    assertEquals(3, bloomFilter.getHashCount());
+  }
+
+  @Test
+  public void testRejectsInvalidArguments() {
+    ByteString bitmap = ByteString.copyFrom(new byte[1]);
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(bitmap, -1, 1));
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(bitmap, 8, 1));
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(bitmap, 0, -1));
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(bitmap, 0, 0));
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(ByteString.EMPTY, 1, 1));
+  }
+
+  @Test
+  public void testEmptyBloomFilterContainsNothing() {
+    BloomFilter bloomFilter = new BloomFilter(ByteString.EMPTY, 0, 0);
+    assertFalse(bloomFilter.mightContain(""));
+    assertFalse(bloomFilter.mightContain("a"));
+  }
+
+  @Test
+  public void testContainsAddedEntries() {
+    String[] entries = new String[100];
+    for (int i = 0; i < entries.length; ++i) {
+      entries[i] = "projects/p/databases/d/documents/coll/doc" + i;
+    }
+    com.google.firestore.v1.BloomFilter proto = bloomFilterProto(1021, 8, entries);
+    BloomFilter bloomFilter =
+        new BloomFilter(
+            proto.getBits().getBitmap(), proto.getBits().getPadding(), proto.getHashCount());
+
+    for (String entry : entries) {
+      assertTrue(bloomFilter.mightContain(entry));
+    }
+
+    int falsePositives = 0;
+    for (int i = 0; i < 1000; ++i) {
+      if (bloomFilter.mightContain("projects/p/databases/d/documents/coll/other" + i)) {
+        ++falsePositives;
+      }
+    }
+    // The expected false positive rate for these parameters is below 3%.
+    assertTrue("False positives: " + falsePositives, falsePositives < 100);
+  }
+}
@@ -52,6 +52,9 @@ public class MockDatastore extends Datastore {
     /** Tracks the currently active watch targets as sent over the watch stream. */
     private final Map<Integer, TargetData> activeTargets = new HashMap<>();
 
+    /** Tracks the expected counts that were last sent for each target. */
+    private final Map<Integer, Integer> expectedCounts = new HashMap<>();
+
     MockWatchStream(AsyncQueue workerQueue, WatchStream.Callback listener) {
       super(/*channel=*/ null, workerQueue, serializer, listener);
     }
@@ -96,6 +99,7 @@ public class MockDatastore extends Datastore {
           targetData.withResumeToken(targetData.getResumeToken(), SnapshotVersion.NONE);
       watchStreamRequestCount += 1;
       this.activeTargets.put(targetData.getTargetId(), sentTargetData);
+      this.expectedCounts.put(targetData.getTargetId(), targetData.getExpectedCount());
     }
 
     @Override
@@ -298,6 +302,14 @@ public class MockDatastore extends Datastore {
     return new HashMap<>(watchStream.activeTargets);
   }
 
+  /**
+   * Returns the expected count that was last sent for the given target, or null if none was sent.
+   */
+  @Nullable
+  public Integer expectedCount(int targetId) {
+    return watchStream.expectedCounts.get(targetId);
+  }
+
   /** Helper method to expose stream state to verify in tests. */
   public boolean isWatchStreamOpen() {
     return watchStream.isOpen();
@@ -16,6 +16,7 @@ package com.google.firebase.firestore.remote;
 
 import static com.google.firebase.firestore.testutil.TestUtil.activeLimboQueries;
 import static com.google.firebase.firestore.testutil.TestUtil.activeQueries;
+import static com.google.firebase.firestore.testutil.TestUtil.bloomFilterProto;
 import static com.google.firebase.firestore.testutil.TestUtil.deletedDoc;
 import static com.google.firebase.firestore.testutil.TestUtil.doc;
 import static com.google.firebase.firestore.testutil.TestUtil.key;
@@ -33,6 +34,7 @@ import static org.junit.Assert.fail;
 
 import com.google.firebase.database.collection.ImmutableSortedSet;
 import com.google.firebase.firestore.local.TargetData;
+import com.google.firebase.firestore.model.DatabaseId;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.MutableDocument;
 import com.google.firebase.firestore.remote.WatchChange.DocumentChange;
@@ -456,6 +458,48 @@ public class RemoteEventTest {
     assertEquals(0, event.getDocumentUpdates().size());
   }
 
+  @Test
+  public void testExistenceFilterMismatchWithBloomFilterRemovesMissingDocuments() {
+    Map<Integer, TargetData> targetMap = activeQueries(1);
+    MutableDocument doc1 = doc("docs/1", 1, map("value", 1));
+    MutableDocument doc2 = doc("docs/2", 2, map("value", 2));
+    MutableDocument doc3 = doc("docs/3", 3, map("value", 3));
+
+    WatchChangeAggregator aggregator =
+        new WatchChangeAggregator(targetMetadataProvider, DatabaseId.forProject("project"));
+    targetMetadataProvider.setSyncedKeys(
+        targetMap.get(1), keySet(doc1.getKey(), doc2.getKey(), doc3.getKey()));
+
+    aggregator.handleExistenceFilter(
+        new WatchChange.ExistenceFilterWatchChange(1, existenceFilter(2, "docs/1", "docs/2")));
+    RemoteEvent event = aggregator.createRemoteEvent(version(3));
+
+    // Only the document that is missing from the bloom filter is removed.
+    assertEquals(0, event.getTargetMismatches().size());
+    TargetChange expected = targetChange(ByteString.EMPTY, false, null, null, asList(doc3));
+    assertEquals(expected, event.getTargetChanges().get(1));
+  }
+
+  @Test
+  public void testExistenceFilterMismatchWithUnresolvedBloomFilterClearsTarget() {
+    Map<Integer, TargetData> targetMap = activeQueries(1);
+    MutableDocument doc1 = doc("docs/1", 1, map("value", 1));
+    MutableDocument doc2 = doc("docs/2", 2, map("value", 2));
+
+    WatchChangeAggregator aggregator =
+        new WatchChangeAggregator(targetMetadataProvider, DatabaseId.forProject("project"));
+    targetMetadataProvider.setSyncedKeys(targetMap.get(1), keySet(doc1.getKey(), doc2.getKey()));
+
+    // The bloom filter contains both documents, so it cannot explain the mismatch.
+    aggregator.handleExistenceFilter(
+        new WatchChange.ExistenceFilterWatchChange(1, existenceFilter(1, "docs/1", "docs/2")));
+    RemoteEvent event = aggregator.createRemoteEvent(version(3));
+
+    assertEquals(1, event.getTargetMismatches().size());
+    TargetChange expected = targetChange(ByteString.EMPTY, false, null, null, asList(doc1, doc2));
+    assertEquals(expected, event.getTargetChanges().get(1));
+  }
+
   @Test
   public void testExistenceFilterMismatchRemovesCurrentChanges() {
     Map<Integer, TargetData> targetMap = activeQueries(1);
@@ -712,4 +756,17 @@ public class RemoteEventTest {
     // Doc3 is only in the non-limbo target, therefore not tracked as limbo
     assertFalse(limboDocuments.contains(doc3.getKey()));
   }
+
+  private static ExistenceFilter existenceFilter(int count, String... paths) {
+    String[] names = new String[paths.length];
+    for (int i = 0; i < paths.length; ++i) {
+      names[i] = "projects/project/databases/(default)/documents/" + paths[i];
+    }
+    com.google.firestore.v1.BloomFilter proto =
+        bloomFilterProto(/* bitCount= */ 256, /* hashCount= */ 7, names);
+    return new ExistenceFilter(
+        count,
+        new BloomFilter(
+            proto.getBits().getBitmap(), proto.getBits().getPadding(), proto.getHashCount()));
+  }
 }
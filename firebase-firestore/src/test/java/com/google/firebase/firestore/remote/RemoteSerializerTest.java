@@ -37,6 +37,7 @@ import static com.google.firebase.firestore.testutil.TestUtil.wrap;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.google.firebase.firestore.DocumentReference;
@@ -876,6 +877,18 @@ public final class RemoteSerializerTest {
     assertTrue(roundTripped instanceof ArrayContainsAnyFilter);
   }
 
+  @Test
+  public void testDecodedKeysShareCollectionPath() {
+    DocumentKey first = serializer.decodeKey(serializer.encodeKey(key("rooms/a/messages/1")));
+    DocumentKey second = serializer.decodeKey(serializer.encodeKey(key("rooms/a/messages/2")));
+    DocumentKey other = serializer.decodeKey(serializer.encodeKey(key("rooms/b/messages/1")));
+
+    assertEquals(key("rooms/a/messages/1"), first);
+    assertEquals(key("rooms/a/messages/2"), second);
+    assertEquals(key("rooms/b/messages/1"), other);
+    assertSame(first.getPath().popLast(), second.getPath().popLast());
+  }
+
   @Test
   public void testKeyFieldSerializationEncoding() {
     FieldFilter inputFilter = filter("__name__", "==", ref("project/database"));
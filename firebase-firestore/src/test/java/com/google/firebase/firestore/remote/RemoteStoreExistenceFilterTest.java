@@ -0,0 +1,199 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.remote;
+
+import static com.google.firebase.firestore.testutil.TestUtil.bloomFilterProto;
+import static com.google.firebase.firestore.testutil.TestUtil.key;
+import static com.google.firebase.firestore.testutil.TestUtil.keySet;
+import static com.google.firebase.firestore.testutil.TestUtil.query;
+import static com.google.firebase.firestore.testutil.TestUtil.resumeToken;
+import static com.google.firebase.firestore.testutil.TestUtil.version;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.firebase.database.collection.ImmutableSortedSet;
+import com.google.firebase.firestore.auth.User;
+import com.google.firebase.firestore.core.DatabaseInfo;
+import com.google.firebase.firestore.core.OnlineState;
+import com.google.firebase.firestore.local.IndexBackfiller;
+import com.google.firebase.firestore.local.LocalStore;
+import com.google.firebase.firestore.local.MemoryPersistence;
+import com.google.firebase.firestore.local.PersistenceTestHelpers;
+import com.google.firebase.firestore.local.QueryEngine;
+import com.google.firebase.firestore.local.QueryPurpose;
+import com.google.firebase.firestore.local.TargetData;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.SnapshotVersion;
+import com.google.firebase.firestore.model.mutation.MutationBatchResult;
+import com.google.firebase.firestore.remote.WatchChange.WatchTargetChange;
+import com.google.firebase.firestore.remote.WatchChange.WatchTargetChangeType;
+import com.google.firebase.firestore.util.AsyncQueue;
+import com.google.firestore.v1.ExistenceFilter;
+import com.google.firestore.v1.ListenResponse;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests the handling of existence filter mismatches against a MockDatastore that stands in for the
+ * backend.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class RemoteStoreExistenceFilterTest {
+  private static final int TARGET_ID = 1;
+
+  private final ImmutableSortedSet<DocumentKey> syncedKeys =
+      keySet(key("coll/a"), key("coll/b"), key("coll/c"));
+
+  private AsyncQueue queue;
+  private DatabaseInfo databaseInfo;
+  private MockDatastore datastore;
+  private RemoteSerializer serializer;
+  private List<RemoteEvent> remoteEvents;
+
+  @Before
+  public void setUp() throws InterruptedException {
+    queue = new AsyncQueue();
+    databaseInfo = PersistenceTestHelpers.nextDatabaseInfo();
+    datastore = new MockDatastore(databaseInfo, queue, ApplicationProvider.getApplicationContext());
+    serializer = new RemoteSerializer(databaseInfo.getDatabaseId());
+    remoteEvents = new ArrayList<>();
+    startRemoteStoreAndResumeTarget();
+  }
+
+  @Test
+  public void testSendsExpectedCountWhenResumingTarget() {
+    assertEquals(Integer.valueOf(3), datastore.expectedCount(TARGET_ID));
+    assertEquals(1, datastore.getWatchStreamRequestCount());
+  }
+
+  @Test
+  public void testBloomFilterAvoidsRelisten() throws InterruptedException {
+    ExistenceFilter.Builder filter =
+        ExistenceFilter.newBuilder()
+            .setTargetId(TARGET_ID)
+            .setCount(2)
+            .setUnchangedNames(
+                bloomFilterProto(
+                    /* bitCount= */ 512,
+                    /* hashCount= */ 7,
+                    documentName("coll/a"),
+                    documentName("coll/b")));
+    sendExistenceFilter(filter);
+
+    assertEquals(1, remoteEvents.size());
+    RemoteEvent event = remoteEvents.get(0);
+    assertTrue(event.getTargetMismatches().isEmpty());
+    assertEquals(
+        keySet(key("coll/c")), event.getTargetChanges().get(TARGET_ID).getRemovedDocuments());
+
+    // The target was not re-listened, so its documents are not downloaded again.
+    assertEquals(1, datastore.getWatchStreamRequestCount());
+  }
+
+  @Test
+  public void testExistenceFilterWithoutBloomFilterRelistens() throws InterruptedException {
+    sendExistenceFilter(ExistenceFilter.newBuilder().setTargetId(TARGET_ID).setCount(2));
+
+    assertEquals(1, remoteEvents.size());
+    RemoteEvent event = remoteEvents.get(0);
+    assertEquals(singletonList(TARGET_ID), new ArrayList<>(event.getTargetMismatches()));
+    assertEquals(2, datastore.getWatchStreamRequestCount());
+    assertEquals(
+        QueryPurpose.EXISTENCE_FILTER_MISMATCH,
+        datastore.activeTargets().get(TARGET_ID).getPurpose());
+  }
+
+  private String documentName(String path) {
+    return serializer.encodeKey(key(path));
+  }
+
+  private void sendExistenceFilter(ExistenceFilter.Builder filter) throws InterruptedException {
+    WatchChange watchChange =
+        serializer.decodeWatchChange(ListenResponse.newBuilder().setFilter(filter).build());
+    queue.runSync(
+        () -> {
+          datastore.writeWatchChange(watchChange, SnapshotVersion.NONE);
+          datastore.writeWatchChange(
+              new WatchTargetChange(WatchTargetChangeType.NoChange, emptyList(), resumeToken(2)),
+              version(2));
+        });
+  }
+
+  private void startRemoteStoreAndResumeTarget() throws InterruptedException {
+    MemoryPersistence persistence = MemoryPersistence.createEagerGcMemoryPersistence();
+    persistence.start();
+    LocalStore localStore =
+        new LocalStore(
+            persistence,
+            new IndexBackfiller(persistence, new AsyncQueue()),
+            new QueryEngine(),
+            User.UNAUTHENTICATED);
+    localStore.start();
+
+    RemoteStore.RemoteStoreCallback callback =
+        new RemoteStore.RemoteStoreCallback() {
+          @Override
+          public void handleRemoteEvent(RemoteEvent remoteEvent) {
+            remoteEvents.add(remoteEvent);
+          }
+
+          @Override
+          public void handleRejectedListen(int targetId, Status error) {}
+
+          @Override
+          public void handleSuccessfulWrite(MutationBatchResult successfulWrite) {}
+
+          @Override
+          public void handleRejectedWrite(int batchId, Status error) {}
+
+          @Override
+          public void handleOnlineStateChange(OnlineState onlineState) {}
+
+          @Override
+          public ImmutableSortedSet<DocumentKey> getRemoteKeysForTarget(int targetId) {
+            return syncedKeys;
+          }
+        };
+    RemoteStore remoteStore =
+        new RemoteStore(
+            callback,
+            localStore,
+            datastore,
+            queue,
+            new AndroidConnectivityMonitor(ApplicationProvider.getApplicationContext()));
+
+    TargetData targetData =
+        new TargetData(query("coll").toTarget(), TARGET_ID, 1, QueryPurpose.LISTEN)
+            .withResumeToken(resumeToken(1), version(1));
+    queue.runSync(
+        () -> {
+          remoteStore.start();
+          remoteStore.listen(targetData);
+          datastore.writeWatchChange(
+              new WatchTargetChange(WatchTargetChangeType.Added, singletonList(TARGET_ID)),
+              SnapshotVersion.NONE);
+        });
+  }
+}
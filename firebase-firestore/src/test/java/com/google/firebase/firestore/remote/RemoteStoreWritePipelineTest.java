@@ -0,0 +1,189 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.remote;
+
+import static com.google.firebase.firestore.testutil.TestUtil.map;
+import static com.google.firebase.firestore.testutil.TestUtil.setMutation;
+import static com.google.firebase.firestore.testutil.TestUtil.version;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.firebase.database.collection.ImmutableSortedSet;
+import com.google.firebase.firestore.auth.User;
+import com.google.firebase.firestore.core.OnlineState;
+import com.google.firebase.firestore.local.IndexBackfiller;
+import com.google.firebase.firestore.local.LocalStore;
+import com.google.firebase.firestore.local.MemoryPersistence;
+import com.google.firebase.firestore.local.PersistenceTestHelpers;
+import com.google.firebase.firestore.local.QueryEngine;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.mutation.MutationBatchResult;
+import com.google.firebase.firestore.model.mutation.MutationResult;
+import com.google.firebase.firestore.util.AsyncQueue;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class RemoteStoreWritePipelineTest {
+  private AsyncQueue queue;
+  private MockDatastore datastore;
+  private LocalStore localStore;
+  private List<Integer> acknowledgedBatchIds;
+  private List<Integer> rejectedBatchIds;
+
+  @Before
+  public void setUp() {
+    queue = new AsyncQueue();
+    datastore =
+        new MockDatastore(
+            PersistenceTestHelpers.nextDatabaseInfo(),
+            queue,
+            ApplicationProvider.getApplicationContext());
+    MemoryPersistence persistence = MemoryPersistence.createEagerGcMemoryPersistence();
+    persistence.start();
+    localStore =
+        new LocalStore(
+            persistence,
+            new IndexBackfiller(persistence, new AsyncQueue()),
+            new QueryEngine(),
+            User.UNAUTHENTICATED);
+    localStore.start();
+    acknowledgedBatchIds = new ArrayList<>();
+    rejectedBatchIds = new ArrayList<>();
+  }
+
+  @Test
+  public void testCoalescesSmallBatchesForDifferentDocuments() throws Exception {
+    writeLocally("coll/a");
+    writeLocally("coll/b");
+    writeLocally("coll/c");
+    startRemoteStore(/* adaptive= */ true);
+
+    assertEquals(1, datastore.writesSent());
+    assertEquals(3, datastore.waitForWriteSend().size());
+
+    ackWrite(/* mutationCount= */ 3);
+    assertEquals(asList(1, 2, 3), acknowledgedBatchIds);
+  }
+
+  @Test
+  public void testDoesNotCoalesceBatchesForTheSameDocument() throws Exception {
+    writeLocally("coll/a");
+    writeLocally("coll/a");
+    writeLocally("coll/b");
+    startRemoteStore(/* adaptive= */ true);
+
+    assertEquals(2, datastore.writesSent());
+    assertEquals(1, datastore.waitForWriteSend().size());
+    assertEquals(2, datastore.waitForWriteSend().size());
+
+    ackWrite(/* mutationCount= */ 1);
+    assertEquals(singletonList(1), acknowledgedBatchIds);
+    ackWrite(/* mutationCount= */ 2);
+    assertEquals(asList(1, 2, 3), acknowledgedBatchIds);
+  }
+
+  @Test
+  public void testDoesNotCoalesceBatchesWithFixedWindow() throws Exception {
+    writeLocally("coll/a");
+    writeLocally("coll/b");
+    startRemoteStore(/* adaptive= */ false);
+
+    assertEquals(2, datastore.writesSent());
+    assertEquals(1, datastore.waitForWriteSend().size());
+    assertEquals(1, datastore.waitForWriteSend().size());
+  }
+
+  @Test
+  public void testResendsRejectedCoalescedBatchesSeparately() throws Exception {
+    writeLocally("coll/a");
+    writeLocally("coll/b");
+    startRemoteStore(/* adaptive= */ true);
+    assertEquals(2, datastore.waitForWriteSend().size());
+
+    queue.runSync(() -> datastore.failWrite(Status.INVALID_ARGUMENT));
+    assertEquals(Collections.emptyList(), rejectedBatchIds);
+    assertEquals(2, datastore.writesSent());
+    assertEquals(1, datastore.waitForWriteSend().size());
+
+    queue.runSync(() -> datastore.failWrite(Status.INVALID_ARGUMENT));
+    assertEquals(singletonList(1), rejectedBatchIds);
+
+    ackWrite(/* mutationCount= */ 1);
+    assertEquals(singletonList(2), acknowledgedBatchIds);
+  }
+
+  private void writeLocally(String path) {
+    localStore.writeLocally(singletonList(setMutation(path, map("foo", "bar"))));
+  }
+
+  private void ackWrite(int mutationCount) throws InterruptedException {
+    List<MutationResult> results = new ArrayList<>();
+    for (int i = 0; i < mutationCount; ++i) {
+      results.add(new MutationResult(version(1), Collections.emptyList()));
+    }
+    queue.runSync(() -> datastore.ackWrite(version(1), results));
+  }
+
+  private void startRemoteStore(boolean adaptive) throws InterruptedException {
+    RemoteStore.RemoteStoreCallback callback =
+        new RemoteStore.RemoteStoreCallback() {
+          @Override
+          public void handleRemoteEvent(RemoteEvent remoteEvent) {}
+
+          @Override
+          public void handleRejectedListen(int targetId, Status error) {}
+
+          @Override
+          public void handleSuccessfulWrite(MutationBatchResult successfulWrite) {
+            acknowledgedBatchIds.add(successfulWrite.getBatch().getBatchId());
+            localStore.acknowledgeBatch(successfulWrite);
+          }
+
+          @Override
+          public void handleRejectedWrite(int batchId, Status error) {
+            rejectedBatchIds.add(batchId);
+            localStore.rejectBatch(batchId);
+          }
+
+          @Override
+          public void handleOnlineStateChange(OnlineState onlineState) {}
+
+          @Override
+          public ImmutableSortedSet<DocumentKey> getRemoteKeysForTarget(int targetId) {
+            return DocumentKey.emptyKeySet();
+          }
+        };
+    RemoteStore remoteStore =
+        new RemoteStore(
+            callback,
+            localStore,
+            datastore,
+            queue,
+            new AndroidConnectivityMonitor(ApplicationProvider.getApplicationContext()),
+            adaptive);
+    queue.runSync(remoteStore::start);
+  }
+}
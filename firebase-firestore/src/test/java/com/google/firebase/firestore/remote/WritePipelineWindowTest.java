@@ -0,0 +1,97 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.remote;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class WritePipelineWindowTest {
+
+  @Test
+  public void testFixedWindowDoesNotGrow() {
+    WritePipelineWindow window = new WritePipelineWindow(/* adaptive= */ false);
+    acknowledge(window, /* requests= */ 50, /* latencyMs= */ 10);
+
+    assertEquals(WritePipelineWindow.INITIAL_SIZE, window.getSize());
+    assertEquals(10, window.getSmoothedAckLatencyMs());
+  }
+
+  @Test
+  public void testAdaptiveWindowGrowsWithFastAcknowledgements() {
+    WritePipelineWindow window = new WritePipelineWindow(/* adaptive= */ true);
+    acknowledge(window, /* requests= */ 5, /* latencyMs= */ 10);
+    assertEquals(WritePipelineWindow.INITIAL_SIZE + 5, window.getSize());
+
+    acknowledge(window, /* requests= */ 500, /* latencyMs= */ 10);
+    assertEquals(WritePipelineWindow.MAX_ADAPTIVE_SIZE, window.getSize());
+  }
+
+  @Test
+  public void testAdaptiveWindowShrinksWithSlowAcknowledgements() {
+    WritePipelineWindow window = new WritePipelineWindow(/* adaptive= */ true);
+    acknowledge(window, /* requests= */ 30, /* latencyMs= */ 10);
+    assertEquals(40, window.getSize());
+
+    acknowledge(window, /* requests= */ 1, /* latencyMs= */ 1000);
+    assertEquals(20, window.getSize());
+
+    acknowledge(window, /* requests= */ 5, /* latencyMs= */ 1000);
+    assertEquals(WritePipelineWindow.INITIAL_SIZE, window.getSize());
+  }
+
+  @Test
+  public void testAdaptiveWindowShrinksOnStreamError() {
+    WritePipelineWindow window = new WritePipelineWindow(/* adaptive= */ true);
+    acknowledge(window, /* requests= */ 30, /* latencyMs= */ 10);
+    window.onRequestSent(/* nowMs= */ 0);
+
+    window.onStreamError();
+    assertEquals(20, window.getSize());
+
+    // The request that was outstanding when the stream failed is no longer acknowledged.
+    window.onRequestAcknowledged(/* nowMs= */ 10);
+    assertEquals(20, window.getSize());
+  }
+
+  @Test
+  public void testRecordsQueueDepthAndDrainDuration() {
+    WritePipelineWindow window = new WritePipelineWindow(/* adaptive= */ true);
+    assertEquals(-1, window.getLastDrainDurationMs());
+
+    window.onQueueDepthChanged(/* depth= */ 10, /* nowMs= */ 100);
+    window.onQueueDepthChanged(/* depth= */ 4, /* nowMs= */ 150);
+    window.onQueueDepthChanged(/* depth= */ 12, /* nowMs= */ 200);
+    assertEquals(12, window.getQueueDepth());
+    assertEquals(-1, window.getLastDrainDurationMs());
+
+    window.onQueueDepthChanged(/* depth= */ 0, /* nowMs= */ 400);
+    assertEquals(0, window.getQueueDepth());
+    assertEquals(12, window.getPeakQueueDepth());
+    assertEquals(300, window.getLastDrainDurationMs());
+  }
+
+  private void acknowledge(WritePipelineWindow window, int requests, long latencyMs) {
+    for (int i = 0; i < requests; ++i) {
+      window.onRequestSent(/* nowMs= */ 0);
+      window.onRequestAcknowledged(/* nowMs= */ latencyMs);
+    }
+  }
+}
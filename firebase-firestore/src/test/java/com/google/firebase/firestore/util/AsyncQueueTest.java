@@ -22,6 +22,7 @@ import com.google.firebase.firestore.util.AsyncQueue.DelayedTask;
 import com.google.firebase.firestore.util.AsyncQueue.TimerId;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Semaphore;
 import org.junit.Before;
@@ -124,6 +125,36 @@ public class AsyncQueueTest {
     assertEquals(Arrays.asList(1, 2, 3, 4), completedSteps);
   }
 
+  @Test
+  public void taskObserversAreNotifiedAboutTasks() throws Exception {
+    List<String> labels = Collections.synchronizedList(new ArrayList<>());
+    AsyncQueue.TaskObserver observer =
+        (label, queueTimeMs, runTimeMs, queueDepth) -> {
+          assertTrue(queueTimeMs >= 0);
+          assertTrue(runTimeMs >= 0);
+          assertTrue(queueDepth >= 0);
+          labels.add(label);
+        };
+    queue.addTaskObserver(observer);
+
+    queue.enqueueAndForget("Step 1", runnableForStep(1));
+    queue.enqueueAfterDelay(TIMER_ID_1, 20, runnableForStep(2));
+    queue.runDelayedTasksUntil(TIMER_ID_1);
+    // Tasks are reported after they ran, so wait for one more task to flush the last report.
+    queue.runSync(() -> {});
+    assertEquals(Arrays.asList(1, 2), completedSteps);
+    assertTrue(labels.contains("Step 1"));
+    assertTrue(labels.contains(TIMER_ID_1.name()));
+    assertTrue(labels.contains(AsyncQueue.UNLABELED_TASK));
+
+    queue.removeTaskObserver(observer);
+    queue.runSync(() -> {});
+    int reportedTasks = labels.size();
+    queue.enqueueAndForget(runnableForStep(3));
+    queue.runSync(() -> {});
+    assertEquals(reportedTasks, labels.size());
+  }
+
   @Test
   public void tasksAreScheduledWithRespectToShutdown() {
     expectedSteps = Arrays.asList(1, 2, 4);
@@ -2461,4 +2461,48 @@ public class MapperTest {
                 DocumentIdOnNestedObjects.class,
                 ref));
   }
+
+  /** A bean with accessors in {@link MapperTest_GeneratedBean_FirestoreMapper}. */
+  static class GeneratedBean {
+    @DocumentId public String id;
+    public int count;
+    private String name;
+    private String secret;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String getSecret() {
+      return secret;
+    }
+
+    private void setSecret(String secret) {
+      this.secret = secret;
+    }
+  }
+
+  @Test
+  public void generatedMapperIsUsedWhenPresent() {
+    DocumentReference ref = TestUtil.documentReference("coll/doc123");
+    MapperTest_GeneratedBean_FirestoreMapper.accesses.set(0);
+
+    GeneratedBean bean =
+        deserialize("{'count': 3, 'name': 'foo', 'secret': 'bar'}", GeneratedBean.class, ref);
+    assertEquals("doc123", bean.id);
+    assertEquals(3, bean.count);
+    assertEquals("foo", bean.getName());
+    // The private setter has no generated accessor and is invoked reflectively.
+    assertEquals("bar", bean.getSecret());
+    // newInstance(), count, name and the document ID.
+    assertEquals(4, MapperTest_GeneratedBean_FirestoreMapper.accesses.get());
+
+    assertJson("{'count': 3, 'name': 'foo', 'secret': 'bar'}", serialize(bean));
+    // count, name and secret; the document ID is not serialized.
+    assertEquals(7, MapperTest_GeneratedBean_FirestoreMapper.accesses.get());
+  }
 }
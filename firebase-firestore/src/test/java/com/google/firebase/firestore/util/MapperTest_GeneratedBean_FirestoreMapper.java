@@ -0,0 +1,65 @@
+// Copyright 2022 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.util;
+
+import com.google.firebase.firestore.util.MapperTest.GeneratedBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stands in for the class the Firestore annotation processor would generate for {@link
+ * GeneratedBean}, and counts how often its accessors are used.
+ */
+public final class MapperTest_GeneratedBean_FirestoreMapper
+    implements GeneratedBeanMapper<GeneratedBean> {
+  static final AtomicInteger accesses = new AtomicInteger();
+
+  private static final Map<String, Getter<GeneratedBean>> GETTERS = new HashMap<>();
+  private static final Map<String, Setter<GeneratedBean>> SETTERS = new HashMap<>();
+
+  static {
+    GETTERS.put("id", object -> counted(object.id));
+    GETTERS.put("count", object -> counted(object.count));
+    GETTERS.put("getName()", object -> counted(object.getName()));
+    GETTERS.put("getSecret()", object -> counted(object.getSecret()));
+    SETTERS.put("id", (object, value) -> object.id = counted((String) value));
+    SETTERS.put("count", (object, value) -> object.count = counted((int) value));
+    SETTERS.put(
+        "setName(java.lang.String)", (object, value) -> object.setName(counted((String) value)));
+  }
+
+  public MapperTest_GeneratedBean_FirestoreMapper() {}
+
+  @Override
+  public GeneratedBean newInstance() {
+    return counted(new GeneratedBean());
+  }
+
+  @Override
+  public Map<String, Getter<GeneratedBean>> getters() {
+    return GETTERS;
+  }
+
+  @Override
+  public Map<String, Setter<GeneratedBean>> setters() {
+    return SETTERS;
+  }
+
+  private static <T> T counted(T value) {
+    accesses.incrementAndGet();
+    return value;
+  }
+}
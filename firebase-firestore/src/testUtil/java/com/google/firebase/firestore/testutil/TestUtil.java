@@ -29,6 +29,7 @@ import com.google.android.gms.common.internal.Preconditions;
 import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.UnsignedLongs;
 import com.google.firebase.Timestamp;
 import com.google.firebase.database.collection.ImmutableSortedMap;
 import com.google.firebase.database.collection.ImmutableSortedSet;
@@ -79,10 +80,15 @@ import com.google.firebase.firestore.remote.TargetChange;
 import com.google.firebase.firestore.remote.WatchChange;
 import com.google.firebase.firestore.remote.WatchChange.DocumentChange;
 import com.google.firebase.firestore.remote.WatchChangeAggregator;
+import com.google.firestore.v1.BitSequence;
 import com.google.firestore.v1.StructuredQuery;
 import com.google.firestore.v1.Value;
 import com.google.protobuf.ByteString;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -623,6 +629,37 @@ public class TestUtil {
     return new LocalViewChanges(targetId, fromCache, added, removed);
   }
 
+  /**
+   * Creates a bloom filter proto with the given number of bits and hash functions that contains the
+   * given entries.
+   */
+  public static com.google.firestore.v1.BloomFilter bloomFilterProto(
+      int bitCount, int hashCount, String... entries) {
+    byte[] bitmap = new byte[(bitCount + 7) / 8];
+    for (String entry : entries) {
+      byte[] hash;
+      try {
+        hash = MessageDigest.getInstance("MD5").digest(entry.getBytes(Charsets.UTF_8));
+      } catch (NoSuchAlgorithmException e) {
+        throw new AssertionError(e);
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(hash).order(ByteOrder.LITTLE_ENDIAN);
+      long hash1 = buffer.getLong();
+      long hash2 = buffer.getLong();
+      for (int i = 0; i < hashCount; ++i) {
+        int index = (int) UnsignedLongs.remainder(hash1 + i * hash2, bitCount);
+        bitmap[index / 8] |= (byte) (1 << (index % 8));
+      }
+    }
+    return com.google.firestore.v1.BloomFilter.newBuilder()
+        .setBits(
+            BitSequence.newBuilder()
+                .setBitmap(ByteString.copyFrom(bitmap))
+                .setPadding(bitmap.length * 8 - bitCount))
+        .setHashCount(hashCount)
+        .build();
+  }
+
   /** Creates a resume token to match the given snapshot version. */
   @Nullable
   public static ByteString resumeToken(long snapshotVersion) {